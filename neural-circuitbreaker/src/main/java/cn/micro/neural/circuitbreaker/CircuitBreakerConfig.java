@@ -17,6 +17,8 @@ import java.util.stream.Stream;
  * 2.在closed状态下，时间窗口failCountWindowInMs范围内，连续失败failThreshold次,则打开熔断为open状态
  * 3.在open状态下，经过open2HalfOpenTimeoutInMs长的超时等待后(熔断休眠时间)，状态将自动进入half-open状态中
  * 4.在half-open状态下，连续经过consecutiveSuccessThreshold此成功后，状态自动变为closed状态，否则失败一次则重置计数
+ * 5.algorithm为滑动窗口时，在closed状态下，最近slidingWindowSize次调用(或秒)内至少minimumCalls次调用且失败率达到failureRateThreshold,则打开熔断
+ * 6.algorithm为滑动窗口时，耗时达到slowCallDurationInMs的调用为慢调用，慢调用率达到slowCallRateThreshold同样打开熔断，half-open状态下的慢调用则重新打开熔断
  *
  * @author lry
  */
@@ -88,6 +90,30 @@ public class CircuitBreakerConfig implements Serializable {
      * half-open状态下成功次数阈值
      */
     private int consecutiveSuccessThreshold = 5;
+    /**
+     * closed状态的失败判定算法, default is FailureAlgorithm.FIXED_WINDOW
+     */
+    private FailureAlgorithm algorithm = FailureAlgorithm.FIXED_WINDOW;
+    /**
+     * 滑动窗口的大小: COUNT_SLIDING_WINDOW为最近的调用次数, TIME_SLIDING_WINDOW为最近的秒数
+     */
+    private int slidingWindowSize = 100;
+    /**
+     * 滑动窗口内计算失败率的最小调用次数
+     */
+    private int minimumCalls = 20;
+    /**
+     * 滑动窗口内的失败率阈值(百分比)
+     */
+    private double failureRateThreshold = 50.0;
+    /**
+     * 慢调用的耗时阈值, 调用耗时达到该值即为慢调用
+     */
+    private int slowCallDurationInMs = 60 * 1000;
+    /**
+     * 滑动窗口内的慢调用率阈值(百分比)
+     */
+    private double slowCallRateThreshold = 100.0;
     /**
      * 排除的异常的ClassName全称
      */
@@ -154,4 +180,28 @@ public class CircuitBreakerConfig implements Serializable {
         private final String message;
     }
 
+    /**
+     * The Failure Algorithm
+     *
+     * @author lry
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum FailureAlgorithm {
+        /**
+         * The fail count within a fixed time window
+         */
+        FIXED_WINDOW("The fail count within a fixed time window"),
+        /**
+         * The failure rate of the last N calls
+         */
+        COUNT_SLIDING_WINDOW("The failure rate of the last N calls"),
+        /**
+         * The failure rate of the last N seconds
+         */
+        TIME_SLIDING_WINDOW("The failure rate of the last N seconds");
+
+        private final String message;
+    }
+
 }
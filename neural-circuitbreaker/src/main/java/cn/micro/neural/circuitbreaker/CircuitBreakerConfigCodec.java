@@ -0,0 +1,87 @@
+package cn.micro.neural.circuitbreaker;
+
+import cn.micro.neural.storage.BinaryReader;
+import cn.micro.neural.storage.BinaryWriter;
+import cn.micro.neural.storage.ICodec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Circuit-Breaker Config Codec.
+ * <p>
+ * The compact binary codec of {@link CircuitBreakerConfig}.
+ * The field missing in the value keeps its default value, and the tags must never be reused.
+ *
+ * @author lry
+ */
+public class CircuitBreakerConfigCodec implements ICodec<CircuitBreakerConfig> {
+
+    public static final int TYPE_ID = 20;
+    public static final CircuitBreakerConfigCodec INSTANCE = new CircuitBreakerConfigCodec();
+
+    @Override
+    public void encode(CircuitBreakerConfig value, BinaryWriter writer) {
+        writer.writeString(1, value.getNode())
+                .writeString(2, value.getApplication())
+                .writeString(3, value.getGroup())
+                .writeString(4, value.getTag())
+                .writeEnum(5, value.getEnable())
+                .writeString(6, value.getName())
+                .writeStrings(7, value.getLabels())
+                .writeString(8, value.getIntro())
+                .writeEnum(9, value.getMode())
+                .writeInt(10, value.getFailThreshold())
+                .writeInt(11, value.getFailCountWindowInMs())
+                .writeInt(12, value.getOpen2HalfOpenTimeoutInMs())
+                .writeInt(13, value.getConsecutiveSuccessThreshold())
+                .writeStrings(14, value.getExcludeExceptions())
+                .writeStrings(15, value.getIncludeExceptions())
+                .writeEnum(16, value.getAlgorithm())
+                .writeInt(17, value.getSlidingWindowSize())
+                .writeInt(18, value.getMinimumCalls())
+                .writeDouble(19, value.getFailureRateThreshold())
+                .writeInt(20, value.getSlowCallDurationInMs())
+                .writeDouble(21, value.getSlowCallRateThreshold());
+    }
+
+    @Override
+    public CircuitBreakerConfig decode(BinaryReader reader) {
+        CircuitBreakerConfig value = new CircuitBreakerConfig();
+        List<String> labels = new ArrayList<>();
+        List<String> excludeExceptions = new ArrayList<>();
+        List<String> includeExceptions = new ArrayList<>();
+        int key;
+        while ((key = reader.readKey()) != 0) {
+            switch (BinaryReader.tag(key)) {
+                case 1: value.setNode(reader.readString()); break;
+                case 2: value.setApplication(reader.readString()); break;
+                case 3: value.setGroup(reader.readString()); break;
+                case 4: value.setTag(reader.readString()); break;
+                case 5: value.setEnable(reader.readEnum(CircuitBreakerConfig.Switch.class)); break;
+                case 6: value.setName(reader.readString()); break;
+                case 7: labels.add(reader.readString()); break;
+                case 8: value.setIntro(reader.readString()); break;
+                case 9: value.setMode(reader.readEnum(CircuitBreakerConfig.Mode.class)); break;
+                case 10: value.setFailThreshold(reader.readInt()); break;
+                case 11: value.setFailCountWindowInMs(reader.readInt()); break;
+                case 12: value.setOpen2HalfOpenTimeoutInMs(reader.readInt()); break;
+                case 13: value.setConsecutiveSuccessThreshold(reader.readInt()); break;
+                case 14: excludeExceptions.add(reader.readString()); break;
+                case 15: includeExceptions.add(reader.readString()); break;
+                case 16: value.setAlgorithm(reader.readEnum(CircuitBreakerConfig.FailureAlgorithm.class)); break;
+                case 17: value.setSlidingWindowSize(reader.readInt()); break;
+                case 18: value.setMinimumCalls(reader.readInt()); break;
+                case 19: value.setFailureRateThreshold(reader.readDouble()); break;
+                case 20: value.setSlowCallDurationInMs(reader.readInt()); break;
+                case 21: value.setSlowCallRateThreshold(reader.readDouble()); break;
+                default: reader.skip(key);
+            }
+        }
+        value.setLabels(labels);
+        value.setExcludeExceptions(excludeExceptions);
+        value.setIncludeExceptions(includeExceptions);
+        return value;
+    }
+
+}
@@ -3,6 +3,7 @@ package cn.micro.neural.circuitbreaker;
 import cn.micro.neural.circuitbreaker.core.ICircuitBreaker;
 import cn.micro.neural.circuitbreaker.event.EventListener;
 import cn.micro.neural.circuitbreaker.event.EventType;
+import cn.micro.neural.storage.FactoryStorage;
 import cn.micro.neural.storage.Neural;
 import cn.micro.neural.storage.OriginalCall;
 import cn.micro.neural.storage.OriginalContext;
@@ -28,6 +29,12 @@ public class CircuitBreakerFactory implements EventListener, Neural<CircuitBreak
 
     public static final String IDENTITY = "circuit_breaker";
 
+    static {
+        // the configs stored through the storage are encoded by the compact binary codec
+        FactoryStorage.INSTANCE.registerCodec(CircuitBreakerConfigCodec.TYPE_ID,
+                CircuitBreakerConfigCodec.INSTANCE, CircuitBreakerConfig.class);
+    }
+
     /**
      * Map<key=ICircuitBreaker#identity(), ICircuitBreaker>
      */
@@ -49,6 +49,10 @@ public class CircuitBreakerStatistics implements Serializable {
      * The total fallback counter in the current time window
      */
     private final LongAdder fallbackCounter = new LongAdder();
+    /**
+     * The total slow call counter in the current time window
+     */
+    private final LongAdder slowCallCounter = new LongAdder();
 
     // === request/success/failure/timeout/rejection
 
@@ -103,6 +107,7 @@ public class CircuitBreakerStatistics implements Serializable {
     public static final String TIMEOUT_KEY = "timeout";
     public static final String REJECTED_KEY = "rejected";
     public static final String FALLBACK_KEY = "fallback";
+    public static final String SLOW_CALL_KEY = "slow_call";
 
     public static final String AVG_ELAPSED_KEY = "avg_elapsed";
     public static final String MAX_ELAPSED_KEY = "max_elapsed";
@@ -129,6 +134,7 @@ public class CircuitBreakerStatistics implements Serializable {
         map.put(TIMEOUT_KEY, timeoutCounter.sumThenReset());
         map.put(REJECTED_KEY, rejectedCounter.sumThenReset());
         map.put(FALLBACK_KEY, fallbackCounter.sumThenReset());
+        map.put(SLOW_CALL_KEY, slowCallCounter.sumThenReset());
         return map;
     }
 
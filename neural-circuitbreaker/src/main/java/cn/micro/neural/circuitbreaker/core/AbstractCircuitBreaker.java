@@ -8,7 +8,6 @@ import cn.micro.neural.circuitbreaker.event.EventType;
 import cn.micro.neural.circuitbreaker.exception.CircuitBreakerOpenException;
 import cn.micro.neural.storage.OriginalCall;
 import cn.micro.neural.storage.OriginalContext;
-import cn.neural.common.utils.BeanUtils;
 import cn.neural.common.utils.CloneUtils;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +16,7 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AbstractCircuitBreaker
@@ -29,7 +29,7 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
 
     private final Set<EventListener> listeners = new LinkedHashSet<>();
     private final CircuitBreakerStatistics statistics = new CircuitBreakerStatistics();
-    protected CircuitBreakerConfig config;
+    protected volatile CircuitBreakerConfig config = new CircuitBreakerConfig();
 
     @Override
     public void addListener(EventListener... eventListeners) {
@@ -44,10 +44,13 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
                 return false;
             }
 
-            // Copy properties attributes after deep copy
-            BeanUtils.copyProperties(CloneUtils.clone(config), this.config);
+            if (!tryRefresh(config)) {
+                return false;
+            }
 
-            return tryRefresh(config);
+            // publish the deep copy, the illegal config is never published
+            this.config = CloneUtils.clone(config);
+            return true;
         } catch (Exception e) {
             this.collectEvent(EventType.REFRESH_EXCEPTION, config);
             throw e;
@@ -109,8 +112,10 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
      * @throws Throwable throw exception
      */
     private Object processClose(OriginalContext originalContext, OriginalCall originalCall) throws Throwable {
+        Object result;
+        long startTime = System.nanoTime();
         try {
-            return statistics.wrapperOriginalCall(originalContext, originalCall);
+            result = statistics.wrapperOriginalCall(originalContext, originalCall);
         } catch (Throwable t) {
             if (isIgnoreException(t)) {
                 // Skip ignored exceptions, do not count
@@ -118,7 +123,7 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
             }
 
             // 增量统计失败次数
-            incrFailCounter();
+            incrFailCounter(isSlowCall(startTime));
 
             // Check if you should go from ‘close’ to ‘open’
             if (isCloseFailThresholdReached()) {
@@ -131,6 +136,19 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
 
             throw t;
         }
+
+        // 增量统计成功次数
+        boolean slowCall = isSlowCall(startTime);
+        incrSuccessCounter(slowCall);
+
+        // The slow call rate is only changed by the slow call
+        if (slowCall && isCloseFailThresholdReached()) {
+            log.debug("[{}] reached slow call threshold, circuit-breaker open.", config.identity());
+            open();
+            this.collectEvent(EventType.CIRCUIT_BREAKER_OPEN);
+        }
+
+        return result;
     }
 
     /**
@@ -166,10 +184,19 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
      * @throws Throwable throw exception
      */
     private Object processHalfOpen(OriginalContext originalContext, OriginalCall originalCall) throws Throwable {
+        long startTime = System.nanoTime();
         try {
             // try to release the request
             Object result = statistics.wrapperOriginalCall(originalContext, originalCall);
 
+            // The slow call in half-open state means the resource is not recovered, open again
+            if (isSlowCall(startTime)) {
+                log.debug("[{}] slow call in half open, circuit-breaker open.", config.identity());
+                open();
+                this.collectEvent(EventType.CIRCUIT_BREAKER_OPEN);
+                return result;
+            }
+
             // Record the number of consecutive successes in the half-open state, and failures are immediately cleared
             incrConsecutiveSuccessCounter();
 
@@ -224,6 +251,23 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
         return false;
     }
 
+    /**
+     * 是否是慢调用, 慢调用同时计入统计
+     *
+     * @param startTime the start time of call(nanoseconds)
+     * @return true表示慢调用
+     */
+    private boolean isSlowCall(long startTime) {
+        long elapsed = System.nanoTime() - startTime;
+        if (config.getSlowCallDurationInMs() <= 0
+                || elapsed < TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationInMs())) {
+            return false;
+        }
+
+        statistics.getSlowCallCounter().increment();
+        return true;
+    }
+
     // === 获取熔断状态
 
     /**
@@ -274,7 +318,7 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
     /**
      * close状态下是否可以转移至open状态
      * <p>
-     * 原理：closed状态下判断是否超过允许的最大失败次数
+     * 原理：closed状态下判断是否超过允许的最大失败次数, 或滑动窗口内的失败率或慢调用率是否达到阈值
      *
      * @return true表示达到了转为打开状态的条件
      */
@@ -301,8 +345,19 @@ public abstract class AbstractCircuitBreaker implements ICircuitBreaker {
 
     /**
      * 增量增加失败次数
+     *
+     * @param slowCall true表示慢调用
      */
-    protected abstract void incrFailCounter();
+    protected abstract void incrFailCounter(boolean slowCall);
+
+    /**
+     * 增量增加closed状态的成功次数, 用于失败率和慢调用率的统计
+     *
+     * @param slowCall true表示慢调用
+     */
+    protected void incrSuccessCounter(boolean slowCall) {
+
+    }
 
     /**
      * 增量增加连续成功次数
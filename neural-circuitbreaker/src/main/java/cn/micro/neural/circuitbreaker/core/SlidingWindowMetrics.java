@@ -0,0 +1,302 @@
+package cn.micro.neural.circuitbreaker.core;
+
+import cn.micro.neural.circuitbreaker.CircuitBreakerConfig;
+import cn.micro.neural.circuitbreaker.exception.CircuitBreakerException;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Sliding Window Metrics.
+ * <p>
+ * The outcomes of calls within a sliding window, for the failure rate and slow call rate of the circuit-breaker:
+ * 1.Count based: the last N calls, each call takes the next slot of a preallocated ring by a sequence,
+ * and the totals are adjusted by the outcome it replaces(getAndSet), so they are always consistent
+ * 2.Time based: the last N seconds, a ring of 1s buckets counted by {@link LongAdder}, the stale bucket is
+ * replaced by a fresh bucket of the current second with one CAS, so a bucket is never reset while it is counted
+ * <p>
+ * The recording never locks, the time based window allocates at most one bucket per second.
+ *
+ * @author lry
+ */
+public abstract class SlidingWindowMetrics {
+
+    private final CircuitBreakerConfig.FailureAlgorithm algorithm;
+    private final int size;
+
+    SlidingWindowMetrics(CircuitBreakerConfig.FailureAlgorithm algorithm, int size) {
+        this.algorithm = algorithm;
+        this.size = size;
+    }
+
+    /**
+     * The sliding window algorithm
+     *
+     * @param algorithm {@link CircuitBreakerConfig.FailureAlgorithm}
+     * @return true is a sliding window algorithm
+     */
+    public static boolean isSliding(CircuitBreakerConfig.FailureAlgorithm algorithm) {
+        return CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW == algorithm
+                || CircuitBreakerConfig.FailureAlgorithm.TIME_SLIDING_WINDOW == algorithm;
+    }
+
+    /**
+     * The create the metrics of the algorithm
+     *
+     * @param config {@link CircuitBreakerConfig}
+     * @return {@link SlidingWindowMetrics}, null is not a sliding window algorithm
+     */
+    public static SlidingWindowMetrics of(CircuitBreakerConfig config) {
+        if (!isSliding(config.getAlgorithm())) {
+            return null;
+        }
+        if (config.getSlidingWindowSize() < 1) {
+            throw new CircuitBreakerException("Illegal sliding window size: " + config.getSlidingWindowSize());
+        }
+
+        if (CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW == config.getAlgorithm()) {
+            return new CountWindow(config.getSlidingWindowSize());
+        }
+        return new TimeWindow(config.getSlidingWindowSize());
+    }
+
+    /**
+     * The metrics are of the algorithm and window size of the config, so they can be kept by the refresh
+     *
+     * @param config {@link CircuitBreakerConfig}
+     * @return true is matched
+     */
+    public boolean matches(CircuitBreakerConfig config) {
+        return algorithm == config.getAlgorithm() && size == config.getSlidingWindowSize();
+    }
+
+    /**
+     * The record the outcome of a call
+     *
+     * @param failure  true is failure
+     * @param slowCall true is slow call
+     */
+    public abstract void record(boolean failure, boolean slowCall);
+
+    /**
+     * The number of calls within the window
+     *
+     * @return calls
+     */
+    public abstract long getCalls();
+
+    /**
+     * The number of failed calls within the window
+     *
+     * @return failures
+     */
+    public abstract long getFailures();
+
+    /**
+     * The number of slow calls within the window
+     *
+     * @return slow calls
+     */
+    public abstract long getSlowCalls();
+
+    /**
+     * The failure rate reached the threshold
+     *
+     * @param minimumCalls         the minimum calls before the rate is evaluated
+     * @param failureRateThreshold the threshold of failure rate(percentage)
+     * @return true is reached
+     */
+    public boolean isFailureRateReached(int minimumCalls, double failureRateThreshold) {
+        long calls = getCalls();
+        return calls >= minimumCalls && calls > 0 && getFailures() * 100.0 >= failureRateThreshold * calls;
+    }
+
+    /**
+     * The slow call rate reached the threshold
+     *
+     * @param minimumCalls          the minimum calls before the rate is evaluated
+     * @param slowCallRateThreshold the threshold of slow call rate(percentage)
+     * @return true is reached
+     */
+    public boolean isSlowCallRateReached(int minimumCalls, double slowCallRateThreshold) {
+        long calls = getCalls();
+        return calls >= minimumCalls && calls > 0 && getSlowCalls() * 100.0 >= slowCallRateThreshold * calls;
+    }
+
+    /**
+     * The last N calls
+     *
+     * @author lry
+     */
+    private static class CountWindow extends SlidingWindowMetrics {
+
+        private static final int RECORDED = 1;
+        private static final int FAILURE = 2;
+        private static final int SLOW_CALL = 4;
+
+        private final int size;
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong slowCalls = new AtomicLong();
+
+        CountWindow(int size) {
+            super(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW, size);
+            this.size = size;
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        @Override
+        public void record(boolean failure, boolean slowCall) {
+            int outcome = RECORDED | (failure ? FAILURE : 0) | (slowCall ? SLOW_CALL : 0);
+            int index = (int) (sequence.getAndIncrement() % size);
+            int old = outcomes.getAndSet(index, outcome);
+            if ((old & RECORDED) == 0) {
+                calls.incrementAndGet();
+            }
+
+            int failureDelta = (failure ? 1 : 0) - ((old & FAILURE) == 0 ? 0 : 1);
+            if (failureDelta != 0) {
+                failures.addAndGet(failureDelta);
+            }
+
+            int slowCallDelta = (slowCall ? 1 : 0) - ((old & SLOW_CALL) == 0 ? 0 : 1);
+            if (slowCallDelta != 0) {
+                slowCalls.addAndGet(slowCallDelta);
+            }
+        }
+
+        @Override
+        public long getCalls() {
+            return calls.get();
+        }
+
+        @Override
+        public long getFailures() {
+            return failures.get();
+        }
+
+        @Override
+        public long getSlowCalls() {
+            return slowCalls.get();
+        }
+
+    }
+
+    /**
+     * The last N seconds
+     *
+     * @author lry
+     */
+    private static class TimeWindow extends SlidingWindowMetrics {
+
+        private static final long BUCKET_MILLIS = 1000L;
+
+        private final long windowMillis;
+        private final AtomicReferenceArray<Bucket> buckets;
+
+        TimeWindow(int seconds) {
+            super(CircuitBreakerConfig.FailureAlgorithm.TIME_SLIDING_WINDOW, seconds);
+            this.windowMillis = seconds * BUCKET_MILLIS;
+            this.buckets = new AtomicReferenceArray<>(seconds);
+            for (int i = 0; i < seconds; i++) {
+                buckets.set(i, new Bucket(-1L));
+            }
+        }
+
+        @Override
+        public void record(boolean failure, boolean slowCall) {
+            Bucket bucket = currentBucket(System.currentTimeMillis());
+            bucket.calls.increment();
+            if (failure) {
+                bucket.failures.increment();
+            }
+            if (slowCall) {
+                bucket.slowCalls.increment();
+            }
+        }
+
+        @Override
+        public long getCalls() {
+            return sum(Bucket.CALLS);
+        }
+
+        @Override
+        public long getFailures() {
+            return sum(Bucket.FAILURES);
+        }
+
+        @Override
+        public long getSlowCalls() {
+            return sum(Bucket.SLOW_CALLS);
+        }
+
+        private long sum(int counter) {
+            long total = 0;
+            long windowStart = System.currentTimeMillis() - windowMillis;
+            for (int i = 0; i < buckets.length(); i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket.windowStart > windowStart) {
+                    total += bucket.counter(counter).sum();
+                }
+            }
+
+            return total;
+        }
+
+        private Bucket currentBucket(long now) {
+            long bucketStart = now - now % BUCKET_MILLIS;
+            int index = (int) ((now / BUCKET_MILLIS) % buckets.length());
+            for (; ; ) {
+                Bucket bucket = buckets.get(index);
+                if (bucket.windowStart >= bucketStart) {
+                    return bucket;
+                }
+
+                // 旧的时间桶整体替换为新的时间桶，不会在计数时被重置
+                Bucket newBucket = new Bucket(bucketStart);
+                if (buckets.compareAndSet(index, bucket, newBucket)) {
+                    return newBucket;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The time bucket
+     *
+     * @author lry
+     */
+    private static final class Bucket {
+
+        private static final int CALLS = 0;
+        private static final int FAILURES = 1;
+        private static final int SLOW_CALLS = 2;
+
+        private final long windowStart;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+
+        private Bucket(long windowStart) {
+            this.windowStart = windowStart;
+        }
+
+        private LongAdder counter(int counter) {
+            switch (counter) {
+                case CALLS:
+                    return calls;
+                case FAILURES:
+                    return failures;
+                default:
+                    return slowCalls;
+            }
+        }
+
+    }
+
+}
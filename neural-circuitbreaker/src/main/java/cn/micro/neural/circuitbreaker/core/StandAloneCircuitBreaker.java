@@ -43,14 +43,42 @@ public class StandAloneCircuitBreaker extends AbstractCircuitBreaker {
      */
     private AtomicLong failCounter = new AtomicLong(0);
 
+    // === 基于滑动窗口的失败率统计器
+
+    /**
+     * 滑动窗口的调用统计, null表示使用固定时间窗口的失败次数
+     */
+    private volatile SlidingWindowMetrics slidingWindowMetrics;
 
     @Override
     protected boolean tryRefresh(CircuitBreakerConfig config) {
+        if (!SlidingWindowMetrics.isSliding(config.getAlgorithm())) {
+            this.slidingWindowMetrics = null;
+            return true;
+        }
+        if (config.getSlidingWindowSize() < 1 || config.getMinimumCalls() < 1
+                || config.getFailureRateThreshold() <= 0 || config.getFailureRateThreshold() > 100
+                || config.getSlowCallRateThreshold() <= 0 || config.getSlowCallRateThreshold() > 100) {
+            log.warn("Illegal circuit-breaker[{}] sliding window config", config.identity());
+            return false;
+        }
+
+        // 算法和窗口大小未变化时保留滑动窗口内的统计
+        SlidingWindowMetrics metrics = this.slidingWindowMetrics;
+        if (null == metrics || !metrics.matches(config)) {
+            this.slidingWindowMetrics = SlidingWindowMetrics.of(config);
+        }
         return true;
     }
 
     @Override
-    protected void incrFailCounter() {
+    protected void incrFailCounter(boolean slowCall) {
+        SlidingWindowMetrics metrics = slidingWindowMetrics;
+        if (metrics != null) {
+            metrics.record(true, slowCall);
+            return;
+        }
+
         long currentTime = System.currentTimeMillis();
 
         // 校验是否该重置时间窗的开始时间和计数器: 时间窗超时则自动重置开始时间和统计次数
@@ -66,6 +94,14 @@ public class StandAloneCircuitBreaker extends AbstractCircuitBreaker {
         failCounter.incrementAndGet();
     }
 
+    @Override
+    protected void incrSuccessCounter(boolean slowCall) {
+        SlidingWindowMetrics metrics = slidingWindowMetrics;
+        if (metrics != null) {
+            metrics.record(false, slowCall);
+        }
+    }
+
     @Override
     protected void incrConsecutiveSuccessCounter() {
         consecutiveSuccessCounter.incrementAndGet();
@@ -91,6 +127,10 @@ public class StandAloneCircuitBreaker extends AbstractCircuitBreaker {
     public void close() {
         // 重置失败次数统计器
         failCounter.set(0);
+        // 重新分配滑动窗口,避免在调用路径上加锁清零
+        if (slidingWindowMetrics != null) {
+            slidingWindowMetrics = SlidingWindowMetrics.of(config);
+        }
         state = CircuitBreakerState.CLOSED;
         log.debug("Circuit-breaker[{}] close", config.identity());
     }
@@ -104,6 +144,13 @@ public class StandAloneCircuitBreaker extends AbstractCircuitBreaker {
 
     @Override
     public boolean isCloseFailThresholdReached() {
+        SlidingWindowMetrics metrics = slidingWindowMetrics;
+        if (metrics != null) {
+            // 判断滑动窗口内的失败率或慢调用率是否达到阈值
+            return metrics.isFailureRateReached(config.getMinimumCalls(), config.getFailureRateThreshold())
+                    || metrics.isSlowCallRateReached(config.getMinimumCalls(), config.getSlowCallRateThreshold());
+        }
+
         // 判断是否超过允许的最大失败次数,true表示超过最大失败次数
         return failCounter.get() > config.getFailThreshold();
     }
@@ -0,0 +1,147 @@
+package cn.micro.neural.circuitbreaker.core;
+
+import cn.micro.neural.circuitbreaker.CircuitBreakerConfig;
+import cn.micro.neural.circuitbreaker.exception.CircuitBreakerException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class SlidingWindowMetricsTest {
+
+    @Test
+    public void countWindowTest() {
+        SlidingWindowMetrics metrics = SlidingWindowMetrics.of(newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW, 10));
+        for (int i = 0; i < 10; i++) {
+            metrics.record(false, false);
+        }
+        for (int i = 0; i < 5; i++) {
+            metrics.record(true, true);
+        }
+        Assert.assertEquals(10, metrics.getCalls());
+        Assert.assertEquals(5, metrics.getFailures());
+        Assert.assertEquals(5, metrics.getSlowCalls());
+
+        // 只统计最近的10次调用，旧的结果被新的结果替换
+        for (int i = 0; i < 5; i++) {
+            metrics.record(false, false);
+        }
+        Assert.assertEquals(10, metrics.getCalls());
+        Assert.assertEquals(5, metrics.getFailures());
+        for (int i = 0; i < 5; i++) {
+            metrics.record(false, false);
+        }
+        Assert.assertEquals(0, metrics.getFailures());
+        Assert.assertEquals(0, metrics.getSlowCalls());
+    }
+
+    @Test
+    public void timeWindowTest() throws Exception {
+        SlidingWindowMetrics metrics = SlidingWindowMetrics.of(newConfig(CircuitBreakerConfig.FailureAlgorithm.TIME_SLIDING_WINDOW, 1));
+        metrics.record(true, false);
+        metrics.record(false, true);
+        metrics.record(false, false);
+        Assert.assertEquals(3, metrics.getCalls());
+        Assert.assertEquals(1, metrics.getFailures());
+        Assert.assertEquals(1, metrics.getSlowCalls());
+
+        // 超过窗口时间的调用不再统计
+        Thread.sleep(1100);
+        Assert.assertEquals(0, metrics.getCalls());
+        metrics.record(true, false);
+        Assert.assertEquals(1, metrics.getCalls());
+        Assert.assertEquals(1, metrics.getFailures());
+    }
+
+    @Test
+    public void timeWindowConcurrentTest() throws Exception {
+        SlidingWindowMetrics metrics = SlidingWindowMetrics.of(newConfig(CircuitBreakerConfig.FailureAlgorithm.TIME_SLIDING_WINDOW, 60));
+        int threads = 8;
+        int records = 10000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < records; j++) {
+                    metrics.record(j % 2 == 0, false);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // 时间桶被替换而不是重置，并发的记录不会丢失
+        Assert.assertEquals(threads * records, metrics.getCalls());
+        Assert.assertEquals(threads * records / 2, metrics.getFailures());
+    }
+
+    @Test
+    public void minimumCallsTest() {
+        SlidingWindowMetrics metrics = SlidingWindowMetrics.of(newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW, 100));
+        for (int i = 0; i < 9; i++) {
+            metrics.record(true, true);
+        }
+        // 调用次数未达到最小调用次数时不计算失败率
+        Assert.assertFalse(metrics.isFailureRateReached(10, 50.0));
+        Assert.assertFalse(metrics.isSlowCallRateReached(10, 50.0));
+
+        metrics.record(true, true);
+        Assert.assertTrue(metrics.isFailureRateReached(10, 50.0));
+        Assert.assertTrue(metrics.isSlowCallRateReached(10, 50.0));
+    }
+
+    @Test
+    public void failureRateTest() {
+        SlidingWindowMetrics metrics = SlidingWindowMetrics.of(newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW, 10));
+        for (int i = 0; i < 6; i++) {
+            metrics.record(false, false);
+        }
+        for (int i = 0; i < 4; i++) {
+            metrics.record(true, false);
+        }
+        Assert.assertFalse(metrics.isFailureRateReached(10, 50.0));
+
+        // 第5次失败替换了最早的成功，失败率达到50%
+        metrics.record(true, false);
+        Assert.assertTrue(metrics.isFailureRateReached(10, 50.0));
+        Assert.assertFalse(metrics.isSlowCallRateReached(10, 50.0));
+    }
+
+    @Test
+    public void ofTest() {
+        // 非滑动窗口算法不校验滑动窗口大小
+        Assert.assertNull(SlidingWindowMetrics.of(newConfig(CircuitBreakerConfig.FailureAlgorithm.FIXED_WINDOW, 0)));
+        try {
+            SlidingWindowMetrics.of(newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW, 0));
+            Assert.fail();
+        } catch (CircuitBreakerException e) {
+            Assert.assertTrue(e.getMessage().contains("sliding window size"));
+        }
+
+        CircuitBreakerConfig config = newConfig(CircuitBreakerConfig.FailureAlgorithm.TIME_SLIDING_WINDOW, 10);
+        SlidingWindowMetrics metrics = SlidingWindowMetrics.of(config);
+        Assert.assertTrue(metrics.matches(config));
+        Assert.assertFalse(metrics.matches(newConfig(CircuitBreakerConfig.FailureAlgorithm.TIME_SLIDING_WINDOW, 20)));
+        Assert.assertFalse(metrics.matches(newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW, 10)));
+    }
+
+    private static CircuitBreakerConfig newConfig(CircuitBreakerConfig.FailureAlgorithm algorithm, int size) {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setTag("test");
+        config.setAlgorithm(algorithm);
+        config.setSlidingWindowSize(size);
+        return config;
+    }
+
+}
@@ -0,0 +1,150 @@
+package cn.micro.neural.circuitbreaker.core;
+
+import cn.micro.neural.circuitbreaker.CircuitBreakerConfig;
+import cn.micro.neural.circuitbreaker.CircuitBreakerState;
+import cn.micro.neural.storage.OriginalCall;
+import cn.micro.neural.storage.OriginalContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StandAloneCircuitBreakerTest {
+
+    @Test
+    public void refreshKeepWindowTest() throws Throwable {
+        StandAloneCircuitBreaker circuitBreaker = new StandAloneCircuitBreaker();
+        CircuitBreakerConfig config = newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW);
+        Assert.assertTrue(circuitBreaker.refresh(config));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("ok", circuitBreaker.wrapperCall(new OriginalContext(), () -> "ok"));
+        }
+        SlidingWindowMetrics metrics = circuitBreaker.getSlidingWindowMetrics();
+        Assert.assertEquals(5, metrics.getCalls());
+
+        // 算法和窗口大小未变化时，刷新配置保留滑动窗口内的统计
+        config = newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW);
+        config.setFailureRateThreshold(80.0);
+        Assert.assertTrue(circuitBreaker.refresh(config));
+        Assert.assertSame(metrics, circuitBreaker.getSlidingWindowMetrics());
+        Assert.assertEquals(5, circuitBreaker.getSlidingWindowMetrics().getCalls());
+
+        config = newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW);
+        config.setFailureRateThreshold(80.0);
+        config.setSlidingWindowSize(50);
+        Assert.assertTrue(circuitBreaker.refresh(config));
+        Assert.assertEquals(0, circuitBreaker.getSlidingWindowMetrics().getCalls());
+    }
+
+    @Test
+    public void refreshValidateTest() throws Exception {
+        // 固定时间窗口不校验滑动窗口的配置
+        StandAloneCircuitBreaker circuitBreaker = new StandAloneCircuitBreaker();
+        CircuitBreakerConfig config = newConfig(CircuitBreakerConfig.FailureAlgorithm.FIXED_WINDOW);
+        config.setSlidingWindowSize(0);
+        config.setMinimumCalls(0);
+        config.setFailureRateThreshold(0);
+        Assert.assertTrue(circuitBreaker.refresh(config));
+        Assert.assertNull(circuitBreaker.getSlidingWindowMetrics());
+
+        config = newConfig(CircuitBreakerConfig.FailureAlgorithm.TIME_SLIDING_WINDOW);
+        config.setMinimumCalls(0);
+        Assert.assertFalse(circuitBreaker.refresh(config));
+    }
+
+    @Test
+    public void failureRateOpenTest() throws Throwable {
+        StandAloneCircuitBreaker circuitBreaker = new StandAloneCircuitBreaker();
+        Assert.assertTrue(circuitBreaker.refresh(newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW)));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("ok", circuitBreaker.wrapperCall(new OriginalContext(), () -> "ok"));
+        }
+        for (int i = 0; i < 4; i++) {
+            try {
+                circuitBreaker.wrapperCall(new OriginalContext(), () -> {
+                    throw new IllegalStateException("failure");
+                });
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+            }
+        }
+
+        // 第10次调用失败，失败率达到50%
+        try {
+            circuitBreaker.wrapperCall(new OriginalContext(), () -> {
+                throw new IllegalStateException("failure");
+            });
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+        }
+    }
+
+    @Test
+    public void slowCallOpenTest() throws Throwable {
+        StandAloneCircuitBreaker circuitBreaker = new StandAloneCircuitBreaker();
+        CircuitBreakerConfig config = newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW);
+        config.setMinimumCalls(2);
+        config.setSlowCallDurationInMs(20);
+        config.setSlowCallRateThreshold(100.0);
+        Assert.assertTrue(circuitBreaker.refresh(config));
+
+        // 慢调用成功时返回结果，慢调用率达到阈值后打开熔断
+        Assert.assertEquals("slow", circuitBreaker.wrapperCall(new OriginalContext(), slowCall(40)));
+        Assert.assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+        Assert.assertEquals("slow", circuitBreaker.wrapperCall(new OriginalContext(), slowCall(40)));
+        Assert.assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void slowHalfOpenProbeTest() throws Throwable {
+        StandAloneCircuitBreaker circuitBreaker = new StandAloneCircuitBreaker();
+        CircuitBreakerConfig config = newConfig(CircuitBreakerConfig.FailureAlgorithm.COUNT_SLIDING_WINDOW);
+        config.setSlowCallDurationInMs(20);
+        config.setOpen2HalfOpenTimeoutInMs(10);
+        Assert.assertTrue(circuitBreaker.refresh(config));
+        circuitBreaker.open();
+        Thread.sleep(20);
+
+        // half-open状态的慢调用返回结果，并重新打开熔断
+        Assert.assertEquals("slow", circuitBreaker.wrapperCall(new OriginalContext(), slowCall(40)));
+        Assert.assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+
+        // 正常的探测调用不会重新打开熔断
+        Thread.sleep(20);
+        Assert.assertEquals("ok", circuitBreaker.wrapperCall(new OriginalContext(), () -> "ok"));
+        Assert.assertEquals(CircuitBreakerState.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void fixedWindowSlowCallTest() throws Throwable {
+        StandAloneCircuitBreaker circuitBreaker = new StandAloneCircuitBreaker();
+        CircuitBreakerConfig config = newConfig(CircuitBreakerConfig.FailureAlgorithm.FIXED_WINDOW);
+        config.setSlowCallDurationInMs(10);
+        config.setSlowCallRateThreshold(1.0);
+        Assert.assertTrue(circuitBreaker.refresh(config));
+
+        // 固定时间窗口只统计失败次数，慢调用不会打开熔断
+        for (int i = 0; i < 12; i++) {
+            Assert.assertEquals("slow", circuitBreaker.wrapperCall(new OriginalContext(), slowCall(15)));
+        }
+        Assert.assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+    }
+
+    private static OriginalCall slowCall(long sleepMillis) {
+        return () -> {
+            Thread.sleep(sleepMillis);
+            return "slow";
+        };
+    }
+
+    private static CircuitBreakerConfig newConfig(CircuitBreakerConfig.FailureAlgorithm algorithm) {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setTag("test");
+        config.setAlgorithm(algorithm);
+        config.setSlidingWindowSize(10);
+        config.setMinimumCalls(10);
+        config.setFailureRateThreshold(50.0);
+        return config;
+    }
+
+}
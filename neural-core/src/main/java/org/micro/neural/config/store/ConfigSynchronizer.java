@@ -0,0 +1,140 @@
+package org.micro.neural.config.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.micro.neural.config.GlobalConfig.Category;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.micro.neural.common.Constants.DELIMITER;
+
+/**
+ * Config Synchronizer
+ * <p>
+ * The {@link NearCache} of the global and rule configs, synchronized with the {@link IConfigStore}:
+ * 1.The pull reads the revision only, the versions are read when the revision changed
+ * 2.Only the configs whose version changed are fetched, and the changed ones are notified
+ * 3.All the configs are reconciled by checksum every reconcile cycle, as a backstop
+ *
+ * @author lry
+ */
+@Slf4j
+public class ConfigSynchronizer {
+
+    private static final String VERSION = "VERSION";
+    private static final String REVISION = "REVISION";
+
+    private final IConfigStore configStore;
+    private final String space;
+    private final long reconcileConfigCycle;
+    /**
+     * The listener of the changed configs: (category, Map<[identity], [json]>)
+     */
+    private final BiConsumer<Category, Map<String, String>> listener;
+
+    private final NearCache globalCache = new NearCache();
+    private final NearCache ruleCache = new NearCache();
+    /**
+     * The remote revision of the near cache, -1 is never synchronized
+     */
+    private long revision = -1L;
+    private long reconcileTime = 0L;
+
+    public ConfigSynchronizer(IConfigStore configStore, String space, long reconcileConfigCycle,
+                              BiConsumer<Category, Map<String, String>> listener) {
+        this.configStore = configStore;
+        this.space = space;
+        this.reconcileConfigCycle = reconcileConfigCycle;
+        this.listener = listener;
+    }
+
+    /**
+     * The get the config from the near cache
+     *
+     * @param category {@link Category}
+     * @param identity [module] or [module]:[application]:[group]:[resource]
+     * @return config json, null is not exists
+     */
+    public String get(Category category, String identity) {
+        return cache(category).get(identity);
+    }
+
+    /**
+     * The pull the changed configs
+     *
+     * @param force true is the configs are synchronized even if the revision is unchanged
+     * @return true is synchronized, false is skipped as the revision is unchanged
+     */
+    public synchronized boolean pull(boolean force) {
+        long now = System.currentTimeMillis();
+        boolean reconcile = now - reconcileTime >= reconcileConfigCycle;
+        // the revision is read before the versions, so a later write is always pulled by the next cycle
+        long remoteRevision = configStore.getRevision(buildKey(REVISION));
+        if (!reconcile && !force && remoteRevision == revision) {
+            return false;
+        }
+
+        sync(Category.GLOBAL, reconcile);
+        sync(Category.RULE, reconcile);
+        this.revision = remoteRevision;
+        if (reconcile) {
+            this.reconcileTime = now;
+        }
+
+        return true;
+    }
+
+    /**
+     * The write the configs to the remote with the new versions, and to the near cache
+     *
+     * @param category {@link Category}
+     * @param configs  Map<[identity], [json]>
+     */
+    public void write(Category category, Map<String, String> configs) {
+        Map<String, Long> versions = configStore.putAllMap(buildKey(category.name()),
+                buildKey(category.name(), VERSION), buildKey(REVISION), configs);
+        listener.accept(category, cache(category).putAll(configs, versions));
+    }
+
+    /**
+     * The synchronize the near cache with the remote configs
+     *
+     * @param category  {@link Category}
+     * @param reconcile true is all the configs are fetched and compared by checksum
+     */
+    private void sync(Category category, boolean reconcile) {
+        NearCache cache = cache(category);
+        Map<String, Long> remoteVersions = configStore.getVersions(buildKey(category.name(), VERSION));
+        Set<String> staleFields = cache.stale(remoteVersions);
+        Map<String, String> remoteConfigs;
+        if (reconcile) {
+            remoteConfigs = new HashMap<>(configStore.getMap(buildKey(category.name())));
+            Set<String> mismatchFields = cache.mismatch(remoteConfigs);
+            if (!mismatchFields.isEmpty()) {
+                log.warn("The {} {} configs reconciled: {}", space, category, mismatchFields);
+            }
+            // the stale fields with the same data only update their versions
+            mismatchFields.addAll(staleFields);
+            remoteConfigs.keySet().retainAll(mismatchFields);
+        } else if (staleFields.isEmpty()) {
+            return;
+        } else {
+            remoteConfigs = configStore.getMap(buildKey(category.name()), staleFields);
+        }
+
+        Map<String, String> changedConfigs = cache.putAll(remoteConfigs, remoteVersions);
+        log.debug("The {} config pull changed: {}", category, changedConfigs);
+        listener.accept(category, changedConfigs);
+    }
+
+    private NearCache cache(Category category) {
+        return Category.GLOBAL == category ? globalCache : ruleCache;
+    }
+
+    private String buildKey(String... names) {
+        return space + DELIMITER + String.join(DELIMITER, names);
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.micro.neural.config.store;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Config Store
+ * <p>
+ * The versioned config hashes synchronized by the {@link ConfigSynchronizer}
+ *
+ * @author lry
+ **/
+public interface IConfigStore {
+
+    /**
+     * The put all map with the new versions of the fields, and increase the revision
+     *
+     * @param name         map name
+     * @param versionName  the map name of versions
+     * @param revisionName the revision name of all the maps
+     * @param data         map data
+     * @return Map<[field], [new version]>
+     */
+    Map<String, Long> putAllMap(String name, String versionName, String revisionName, Map<String, String> data);
+
+    /**
+     * The get the revision, which is increased by every versioned write
+     *
+     * @param name revision name
+     * @return revision
+     */
+    long getRevision(String name);
+
+    /**
+     * The get all versions by name
+     *
+     * @param name the map name of versions
+     * @return Map<[field], [version]>
+     */
+    Map<String, Long> getVersions(String name);
+
+    /**
+     * The get all key-value by name
+     *
+     * @param name map name
+     * @return map
+     */
+    Map<String, String> getMap(String name);
+
+    /**
+     * The get the key-value of the fields by name
+     *
+     * @param name   map name
+     * @param fields the fields
+     * @return map
+     */
+    Map<String, String> getMap(String name, Set<String> fields);
+
+}
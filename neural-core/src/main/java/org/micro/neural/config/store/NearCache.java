@@ -0,0 +1,138 @@
+package org.micro.neural.config.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Near Cache
+ * <p>
+ * The immutable local copy of a remote config hash, each entry with its version and checksum:
+ * 1.The readers always see a consistent snapshot, the writers replace the snapshot(copy on write)
+ * 2.Only the entries whose remote version is newer than the local one are fetched
+ * 3.The checksum of each entry is compared with the remote data periodically, as a backstop
+ *
+ * @author lry
+ */
+public class NearCache {
+
+    /**
+     * Map<[field], Entry>
+     */
+    private volatile Map<String, Entry> entries = Collections.emptyMap();
+
+    /**
+     * The get the data of field
+     *
+     * @param field field
+     * @return data, null is not exists
+     */
+    public String get(String field) {
+        Entry entry = entries.get(field);
+        return null == entry ? null : entry.data;
+    }
+
+    /**
+     * The get the snapshot of all the data
+     *
+     * @return Map<[field], [data]>
+     */
+    public Map<String, String> getAll() {
+        Map<String, String> snapshot = new HashMap<>(entries.size());
+        entries.forEach((field, entry) -> snapshot.put(field, entry.data));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * The fields whose remote version is newer than the local one
+     *
+     * @param remoteVersions Map<[field], [version]>
+     * @return fields
+     */
+    public Set<String> stale(Map<String, Long> remoteVersions) {
+        Map<String, Entry> snapshot = this.entries;
+        Set<String> fields = new HashSet<>();
+        for (Map.Entry<String, Long> entry : remoteVersions.entrySet()) {
+            Entry local = snapshot.get(entry.getKey());
+            if (null == local || local.version < entry.getValue()) {
+                fields.add(entry.getKey());
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * The fields whose remote data differs from the local one by checksum
+     *
+     * @param remoteData Map<[field], [data]>
+     * @return fields
+     */
+    public Set<String> mismatch(Map<String, String> remoteData) {
+        Map<String, Entry> snapshot = this.entries;
+        Set<String> fields = new HashSet<>();
+        for (Map.Entry<String, String> entry : remoteData.entrySet()) {
+            Entry local = snapshot.get(entry.getKey());
+            if (null == local || local.checksum != checksum(entry.getValue())) {
+                fields.add(entry.getKey());
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * The put the data with the version, the older version is ignored
+     *
+     * @param data     Map<[field], [data]>
+     * @param versions Map<[field], [version]>, the missing version is 0
+     * @return Map<[field], [data]> of the changed data
+     */
+    public synchronized Map<String, String> putAll(Map<String, String> data, Map<String, Long> versions) {
+        Map<String, Entry> newEntries = new HashMap<>(this.entries);
+        Map<String, String> changed = new HashMap<>();
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            String field = entry.getKey();
+            long version = versions.getOrDefault(field, 0L);
+            Entry local = newEntries.get(field);
+            if (null != local && local.version > version) {
+                continue;
+            }
+
+            Entry newEntry = new Entry(version, entry.getValue());
+            newEntries.put(field, newEntry);
+            if (null == local || !local.data.equals(newEntry.data)) {
+                changed.put(field, newEntry.data);
+            }
+        }
+
+        this.entries = Collections.unmodifiableMap(newEntries);
+        return changed;
+    }
+
+    private static long checksum(String data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+
+    /**
+     * The data with the version
+     *
+     * @author lry
+     */
+    private static class Entry {
+
+        private final long version;
+        private final String data;
+        private final long checksum;
+
+        Entry(long version, String data) {
+            this.version = version;
+            this.data = data;
+            this.checksum = checksum(data);
+        }
+
+    }
+
+}
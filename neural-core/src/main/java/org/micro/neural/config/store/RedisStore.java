@@ -6,6 +6,7 @@ import org.micro.neural.common.utils.SerializeUtils;
 import org.redisson.Redisson;
 import org.redisson.api.*;
 import org.redisson.api.listener.PatternMessageListener;
+import org.redisson.client.codec.StringCodec;
 import org.redisson.codec.SerializationCodec;
 import org.redisson.config.*;
 
@@ -19,7 +20,7 @@ import java.util.concurrent.TimeUnit;
  * @author lry
  */
 @Slf4j
-public enum RedisStore {
+public enum RedisStore implements IConfigStore {
 
     //===
 
@@ -65,15 +66,30 @@ public enum RedisStore {
         this.started = true;
     }
 
-    public void batchIncrementBy(String key, Map<String, Object> data, long expire) {
-        for (Map.Entry<String, Object> entry : data.entrySet()) {
-            if (entry.getValue() instanceof Long) {
-                redissonClient.getMap(key).addAndGet(entry.getKey(), (Long) entry.getValue());
-            } else {
-                redissonClient.getMap(key).put(entry.getKey(), String.valueOf(entry.getValue()));
+    /**
+     * The increment all the maps by one pipelined round trip, each map with a single expire
+     * <p>
+     * The {@link Long} value is increased(HINCRBY), and the others are put as string.
+     *
+     * @param data    Map<[key], Map<[field], [value]>>
+     * @param expires Map<[key], [expire ms]>
+     * @return the future of batch
+     */
+    public RFuture<BatchResult<?>> batchIncrementByAsync(Map<String, Map<String, Object>> data, Map<String, Long> expires) {
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults().skipResult());
+        for (Map.Entry<String, Map<String, Object>> entry : data.entrySet()) {
+            RMapAsync<Object, Object> map = batch.getMap(entry.getKey());
+            for (Map.Entry<String, Object> field : entry.getValue().entrySet()) {
+                if (field.getValue() instanceof Long) {
+                    map.addAndGetAsync(field.getKey(), (Long) field.getValue());
+                } else {
+                    map.fastPutAsync(field.getKey(), String.valueOf(field.getValue()));
+                }
             }
+            map.expireAsync(expires.get(entry.getKey()), TimeUnit.MILLISECONDS);
         }
-        redissonClient.getMap(key).expire(expire, TimeUnit.MILLISECONDS);
+
+        return batch.executeAsync();
     }
 
     /**
@@ -86,6 +102,63 @@ public enum RedisStore {
         redissonClient.getMap(space).putAll(data);
     }
 
+    /**
+     * The put all map with the new versions of the fields, by one pipelined round trip
+     *
+     * @param name         map name
+     * @param versionName  the map name of versions
+     * @param revisionName the revision name of all the maps
+     * @param data         map data
+     * @return Map<[field], [new version]>
+     */
+    @Override
+    public Map<String, Long> putAllMap(String name, String versionName, String revisionName, Map<String, String> data) {
+        RBatch batch = redissonClient.createBatch();
+        batch.getMap(name).putAllAsync(data);
+        RMapAsync<String, Long> versionMap = batch.getMap(versionName, StringCodec.INSTANCE);
+        Map<String, RFuture<Long>> futures = new HashMap<>(data.size());
+        for (String field : data.keySet()) {
+            futures.put(field, versionMap.addAndGetAsync(field, 1L));
+        }
+        batch.getAtomicLong(revisionName).incrementAndGetAsync();
+        batch.execute();
+
+        Map<String, Long> versions = new HashMap<>(futures.size());
+        for (Map.Entry<String, RFuture<Long>> entry : futures.entrySet()) {
+            versions.put(entry.getKey(), toVersion(entry.getValue().getNow()));
+        }
+
+        return versions;
+    }
+
+    /**
+     * The get the revision, which is increased by every versioned write
+     *
+     * @param name revision name
+     * @return revision
+     */
+    @Override
+    public long getRevision(String name) {
+        return redissonClient.getAtomicLong(name).get();
+    }
+
+    /**
+     * The get all versions by name
+     *
+     * @param name the map name of versions
+     * @return Map<[field], [version]>
+     */
+    @Override
+    public Map<String, Long> getVersions(String name) {
+        Map<String, Object> remoteMap = redissonClient.<String, Object>getMap(name, StringCodec.INSTANCE).readAllMap();
+        Map<String, Long> versions = new HashMap<>(remoteMap.size());
+        for (Map.Entry<String, Object> entry : remoteMap.entrySet()) {
+            versions.put(entry.getKey(), toVersion(entry.getValue()));
+        }
+
+        return versions;
+    }
+
     /**
      * The execute lua script
      *
@@ -120,6 +193,7 @@ public enum RedisStore {
      * @param name map name
      * @return map
      */
+    @Override
     public Map<String, String> getMap(String name) {
         Map<Object, Object> remoteMap = redissonClient.getMap(name);
         if (remoteMap == null || remoteMap.isEmpty()) {
@@ -134,6 +208,24 @@ public enum RedisStore {
         return map;
     }
 
+    /**
+     * The get the key-value of the fields by name
+     *
+     * @param name   map name
+     * @param fields the fields
+     * @return map
+     */
+    @Override
+    public Map<String, String> getMap(String name, Set<String> fields) {
+        Map<Object, Object> remoteMap = redissonClient.getMap(name).getAll(new HashSet<>(fields));
+        Map<String, String> map = new HashMap<>(remoteMap.size());
+        for (Map.Entry<Object, Object> entry : remoteMap.entrySet()) {
+            map.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+
+        return map;
+    }
+
     /**
      * The publish
      *
@@ -182,6 +274,11 @@ public enum RedisStore {
         rPatternTopic.removeListener(patternMessageListener);
     }
 
+    private static long toVersion(Object value) {
+        // the version is increased by HINCRBYFLOAT
+        return null == value ? 0L : (long) Double.parseDouble(String.valueOf(value));
+    }
+
     /**
      * The destroy
      */
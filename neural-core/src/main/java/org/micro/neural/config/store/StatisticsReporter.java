@@ -0,0 +1,123 @@
+package org.micro.neural.config.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Statistics Reporter
+ * <p>
+ * The write-behind reporter of statistics:
+ * 1.The statistics of each key are aggregated locally, the same key of several cycles is merged
+ * 2.All the keys are shipped by one pipelined round trip, each key with a single expire
+ * 3.Only one batch is in flight, the cycles are merged while the store is slow
+ * 4.The new keys are dropped when the pending keys exceed the max
+ *
+ * @author lry
+ */
+@Slf4j
+public class StatisticsReporter {
+
+    /**
+     * The batch writer: (Map<[key], Map<[field], [value]>>, Map<[key], [expire ms]>) -> the batch result
+     */
+    private final BiFunction<Map<String, Map<String, Object>>, Map<String, Long>, CompletionStage<?>> batchWriter;
+    private final int maxPendingKeys;
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    /**
+     * Map<[key], Map<[field], [value]>>
+     */
+    private Map<String, Map<String, Object>> pending = new HashMap<>();
+    /**
+     * Map<[key], [expire ms]>
+     */
+    private Map<String, Long> expires = new HashMap<>();
+
+    public StatisticsReporter(RedisStore redisStore, int maxPendingKeys) {
+        this(redisStore::batchIncrementByAsync, maxPendingKeys);
+    }
+
+    StatisticsReporter(BiFunction<Map<String, Map<String, Object>>, Map<String, Long>, CompletionStage<?>> batchWriter,
+                       int maxPendingKeys) {
+        this.batchWriter = batchWriter;
+        this.maxPendingKeys = maxPendingKeys;
+    }
+
+    /**
+     * The report the statistics of the key
+     *
+     * @param key        the key of statistics
+     * @param attributes the attributes, which are overwritten
+     * @param deltas     the deltas, which are added up
+     * @param expire     the expire(ms) of the key
+     */
+    public synchronized void report(String key, Map<String, String> attributes, Map<String, Long> deltas, long expire) {
+        Map<String, Object> fields = pending.get(key);
+        if (null == fields) {
+            if (pending.size() >= maxPendingKeys) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            fields = new HashMap<>(attributes.size() + deltas.size());
+            pending.put(key, fields);
+        }
+
+        fields.putAll(attributes);
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            if (null != entry.getValue()) {
+                fields.merge(entry.getKey(), entry.getValue(), (a, b) -> (Long) a + (Long) b);
+            }
+        }
+        expires.put(key, expire);
+    }
+
+    /**
+     * The ship the pending statistics, unless the previous batch is still in flight
+     */
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            log.debug("The statistics batch is in flight, the cycle is merged");
+            return;
+        }
+
+        Map<String, Map<String, Object>> data;
+        Map<String, Long> dataExpires;
+        synchronized (this) {
+            data = pending;
+            dataExpires = expires;
+            pending = new HashMap<>();
+            expires = new HashMap<>();
+        }
+
+        long droppedKeys = dropped.getAndSet(0);
+        if (droppedKeys > 0) {
+            log.warn("The statistics store is slow, dropped keys: {}", droppedKeys);
+        }
+        if (data.isEmpty()) {
+            flushing.set(false);
+            return;
+        }
+
+        try {
+            batchWriter.apply(data, dataExpires).whenComplete((r, t) -> {
+                flushing.set(false);
+                if (null != t) {
+                    // the batch may be applied partially, it isn't retried to avoid counting twice
+                    log.error("The push statistics exception", t);
+                }
+            });
+        } catch (Exception e) {
+            flushing.set(false);
+            log.error("The push statistics exception", e);
+        }
+    }
+
+}
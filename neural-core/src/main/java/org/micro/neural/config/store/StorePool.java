@@ -1,6 +1,5 @@
 package org.micro.neural.config.store;
 
-import com.alibaba.fastjson.JSON;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.micro.neural.Neural;
@@ -29,6 +28,16 @@ import java.util.concurrent.*;
  * 1.GlobalConfig-Channel: [space]:CHANNEL:GLOBAL:[module]-->[json]
  * 2.NeuralConfig-Channel: [space]:CHANNEL:RULE:[module]:[application]:[group]:[resource]-->[json]
  * <p>
+ * 1.GlobalVersion-Hash: [space]:GLOBAL:VERSION-->[module]-->[version]
+ * 2.NeuralVersion-Hash: [space]:RULE:VERSION-->[module]:[application]:[group]:[resource]-->[version]
+ * 3.Revision: [space]:REVISION-->[revision], increased by every versioned write
+ * <p>
+ * The configs are read from the {@link NearCache} of the {@link ConfigSynchronizer}, and synchronized with the remote:
+ * 1.The pull cycle reads the revision only, the versions are read when the revision changed
+ * 2.Only the configs whose version changed are fetched, and the changed ones are notified
+ * 3.The message of the channel is an invalidation hint, which triggers the synchronization at once
+ * 4.All the configs are reconciled by checksum every reconcile cycle, as a backstop
+ * <p>
  * identity=[module]
  * identity=[module]:[application]:[group]:[resource]
  *
@@ -44,13 +53,22 @@ public enum StorePool implements IStoreListener {
     private static final String SPACE_DEFAULT = "neural";
     private static final String PULL_CONFIG_CYCLE_KEY = "pullConfigCycle";
     private static final String STATISTIC_REPORT_CYCLE_KEY = "statisticReportCycle";
+    private static final String RECONCILE_CONFIG_CYCLE_KEY = "reconcileConfigCycle";
+    private static final String MAX_PENDING_STATISTICS_KEY = "maxPendingStatistics";
 
     private boolean started;
 
     private String space;
     private long pullConfigCycle;
     private long statisticReportCycle;
+    private long reconcileConfigCycle;
     private RedisStore redisStore = RedisStore.INSTANCE;
+    private ConfigSynchronizer configSynchronizer;
+    private StatisticsReporter statisticsReporter;
+    /**
+     * The attributes of this node in the statistics
+     */
+    private Map<String, String> nodeAttributes;
 
     private ScheduledExecutorService pullConfigExecutor = null;
     private ScheduledExecutorService pushStatisticsExecutor = null;
@@ -80,13 +98,17 @@ public enum StorePool implements IStoreListener {
         }
 
         this.started = true;
-        this.pullConfigCycle = url.getParameter(PULL_CONFIG_CYCLE_KEY, 5L);
+        this.pullConfigCycle = url.getParameter(PULL_CONFIG_CYCLE_KEY, 1000L);
+        this.reconcileConfigCycle = url.getParameter(RECONCILE_CONFIG_CYCLE_KEY, 60 * 1000L);
         this.statisticReportCycle = url.getParameter(STATISTIC_REPORT_CYCLE_KEY, 1000L);
+        this.statisticsReporter = new StatisticsReporter(redisStore, url.getParameter(MAX_PENDING_STATISTICS_KEY, 10000));
+        this.nodeAttributes = buildNodeAttributes(new NodeConfig());
         this.space = url.getParameter(URL.GROUP_KEY, SPACE_DEFAULT).toUpperCase();
         if (space.contains(Constants.DELIMITER)) {
             throw new IllegalArgumentException("The space can't include ':'");
         }
         this.patternChannel = String.join(DELIMITER, space, CHANNEL, "*");
+        this.configSynchronizer = new ConfigSynchronizer(redisStore, space, reconcileConfigCycle, this::notifyConfigs);
 
         // initialize store
         redisStore.initialize(url);
@@ -103,22 +125,31 @@ public enum StorePool implements IStoreListener {
     }
 
     /**
-     * The subscribe
+     * The publish, the config is written with a new version and the channel notifies the nodes
      *
      * @param module module
      * @param object {@link RuleConfig}
      */
     public void publish(String module, Object object) {
+        Category category;
+        String identity;
         String channel;
         if (object instanceof GlobalConfig) {
+            category = Category.GLOBAL;
+            identity = module;
             channel = buildGlobalChannel(module);
         } else if (object instanceof RuleConfig) {
             RuleConfig ruleConfig = (RuleConfig) object;
+            category = Category.RULE;
+            identity = String.join(DELIMITER, module, ruleConfig.identity());
             channel = buildRuleChannel(module, ruleConfig.identity());
         } else {
             throw new IllegalArgumentException("Illegal object type");
         }
-        redisStore.publish(channel, SerializeUtils.serialize(object));
+
+        String data = SerializeUtils.serialize(object);
+        configSynchronizer.write(category, Collections.singletonMap(identity, data));
+        redisStore.publish(channel, data);
     }
 
     /**
@@ -149,53 +180,72 @@ public enum StorePool implements IStoreListener {
     }
 
     /**
-     * The pull all configs
+     * The pull the changed configs
      */
-    private void pullConfigs() {
-        // pull remote global configs
-        String remoteGlobalConfigKey = String.join(DELIMITER, space, Category.GLOBAL.name());
-        Map<String, String> remoteGlobalConfigs = redisStore.getMap(remoteGlobalConfigKey);
-        log.debug("The global config pull changed: {}", remoteGlobalConfigs);
-        Map<String, String> addRemoteGlobalConfigs = new HashMap<>(modules.size());
+    private synchronized void pullConfigs() {
+        try {
+            // the unregistered local configs force the synchronization, then are registered
+            if (configSynchronizer.pull(hasUnregisteredConfigs())) {
+                registerConfigs();
+            }
+        } catch (Exception e) {
+            log.error("The " + space + " pull configs exception", e);
+        }
+    }
+
+    /**
+     * The register the local configs missing in the remote
+     */
+    private void registerConfigs() {
+        Map<String, String> addGlobalConfigs = new HashMap<>();
         for (Map.Entry<String, Neural> entry : modules.entrySet()) {
             String module = entry.getKey().toUpperCase();
-            if (remoteGlobalConfigs.isEmpty() || !remoteGlobalConfigs.containsKey(module)) {
-                addRemoteGlobalConfigs.put(module, SerializeUtils.serialize(entry.getValue().getGlobalConfig()));
+            if (null == configSynchronizer.get(Category.GLOBAL, module)) {
+                addGlobalConfigs.put(module, SerializeUtils.serialize(entry.getValue().getGlobalConfig()));
             }
         }
-        if (!addRemoteGlobalConfigs.isEmpty()) {
-            redisStore.putAllMap(remoteGlobalConfigKey, addRemoteGlobalConfigs);
-            remoteGlobalConfigs.putAll(addRemoteGlobalConfigs);
-        }
-        for (Map.Entry<String, String> entry : remoteGlobalConfigs.entrySet()) {
-            Neural neural = modules.get(entry.getKey());
-            if (neural != null) {
-                neural.notify(Category.GLOBAL, Category.GLOBAL.name(), entry.getValue());
-            }
+        if (!addGlobalConfigs.isEmpty()) {
+            configSynchronizer.write(Category.GLOBAL, addGlobalConfigs);
         }
 
-        // pull remote rule configs
-        String remoteRuleConfigKey = String.join(DELIMITER, space, Category.RULE.name());
-        Map<String, String> remoteRuleConfigs = redisStore.getMap(remoteRuleConfigKey);
-        log.debug("The rule config pull changed: {}", remoteRuleConfigs);
-        Map<String, String> addRemoteRuleConfigs = new HashMap<>(modules.size());
+        Map<String, String> addRuleConfigs = new HashMap<>();
         for (Map.Entry<String, Map<String, String>> entry : ruleConfigs.entrySet()) {
             for (Map.Entry<String, String> subEntry : entry.getValue().entrySet()) {
                 String identity = entry.getKey() + DELIMITER + subEntry.getKey();
-                if (remoteRuleConfigs.isEmpty() || !remoteRuleConfigs.containsKey(identity)) {
-                    addRemoteRuleConfigs.put(identity, subEntry.getValue());
+                if (null == configSynchronizer.get(Category.RULE, identity)) {
+                    addRuleConfigs.put(identity, subEntry.getValue());
                 }
             }
         }
-        if (!addRemoteRuleConfigs.isEmpty()) {
-            redisStore.putAllMap(remoteRuleConfigKey, addRemoteRuleConfigs);
-            remoteRuleConfigs.putAll(addRemoteRuleConfigs);
+        if (!addRuleConfigs.isEmpty()) {
+            configSynchronizer.write(Category.RULE, addRuleConfigs);
+        }
+    }
+
+    private boolean hasUnregisteredConfigs() {
+        for (String module : modules.keySet()) {
+            if (null == configSynchronizer.get(Category.GLOBAL, module.toUpperCase())) {
+                return true;
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> entry : ruleConfigs.entrySet()) {
+            for (String identity : entry.getValue().keySet()) {
+                if (null == configSynchronizer.get(Category.RULE, entry.getKey() + DELIMITER + identity)) {
+                    return true;
+                }
+            }
         }
-        for (Map.Entry<String, String> entry : remoteRuleConfigs.entrySet()) {
+
+        return false;
+    }
+
+    private void notifyConfigs(Category category, Map<String, String> configs) {
+        for (Map.Entry<String, String> entry : configs.entrySet()) {
             String identity = entry.getKey();
-            Neural neural = modules.get(identity.substring(0, identity.indexOf(DELIMITER)));
+            int index = identity.indexOf(DELIMITER);
+            Neural neural = modules.get(index < 0 ? identity : identity.substring(0, index));
             if (neural != null) {
-                neural.notify(Category.RULE, identity, entry.getValue());
+                neural.notify(category, Category.GLOBAL == category ? category.name() : identity, entry.getValue());
             }
         }
     }
@@ -213,21 +263,12 @@ public enum StorePool implements IStoreListener {
     @Override
     public void notify(String channel, String data) {
         log.debug("The {} config subscribed changed: {}, {}", space, channel, data);
-        if (null == channel || channel.length() == 0 || null == data || data.length() == 0) {
+        if (null == channel || channel.length() == 0 || null == pullConfigExecutor) {
             return;
         }
 
-        Category remoteCategory = Category.valueOf(channel.split(DELIMITER)[2]);
-        String remoteChannel = channel.substring(channel.indexOf(CHANNEL) + 8);
-        String module = remoteChannel.split(DELIMITER)[0];
-        Neural neural = modules.get(module);
-        if (neural != null) {
-            String identity = null;
-            if (Category.RULE == remoteCategory) {
-                identity = remoteChannel.substring(remoteChannel.indexOf(DELIMITER) + 1);
-            }
-            neural.notify(remoteCategory, identity, data);
-        }
+        // the message is only a hint, the changed configs are pulled by their versions
+        pullConfigExecutor.execute(this::pullConfigs);
     }
 
     /**
@@ -251,11 +292,11 @@ public enum StorePool implements IStoreListener {
     }
 
     /**
-     * The collect
+     * The collect the statistics of all modules, and ship them by one batch
      */
-    @SuppressWarnings("unchecked")
     private void collect() {
-        NodeConfig nodeConfig = new NodeConfig();
+        Map<String, String> attributes = new HashMap<>(nodeAttributes);
+        attributes.put("time", String.valueOf(System.currentTimeMillis()));
         for (Map.Entry<String, Neural> entry : modules.entrySet()) {
             try {
                 Neural neural = entry.getValue();
@@ -266,24 +307,33 @@ public enum StorePool implements IStoreListener {
                 Map<String, Map<String, Long>> statisticsData = neural.collect();
                 log.debug("The {} cycle push statistics: {}", space, statisticsData);
                 if (null == statisticsData || statisticsData.isEmpty()) {
-                    return;
+                    continue;
                 }
 
-                System.out.println(statisticsData);
                 for (Map.Entry<String, Map<String, Long>> identityEntry : statisticsData.entrySet()) {
-                    Map<String, Object> sendData = new HashMap<>(JSON.parseObject(JSON.toJSONString(nodeConfig), Map.class));
-                    for (Map.Entry<String, Long> tempEntry : identityEntry.getValue().entrySet()) {
-                        sendData.put(tempEntry.getKey(), tempEntry.getValue());
-                    }
-
                     String key = String.join(DELIMITER, space, STATISTICS, identityEntry.getKey(), String.valueOf(time));
-                    // push statistics data to remote
-                    redisStore.batchIncrementBy(key, sendData, neural.getGlobalConfig().getStatisticExpire());
+                    statisticsReporter.report(key, attributes, identityEntry.getValue(), globalConfig.getStatisticExpire());
                 }
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
         }
+
+        // push statistics data to remote, without waiting for the round trip
+        statisticsReporter.flush();
+    }
+
+    /**
+     * The build the attributes of this node from all the non-null fields of the {@link NodeConfig}
+     *
+     * @param nodeConfig {@link NodeConfig}
+     * @return Map<[field], [value]>
+     */
+    private static Map<String, String> buildNodeAttributes(NodeConfig nodeConfig) {
+        // the null fields are skipped by the serializer, and the time is stamped by every collect
+        Map<String, String> attributes = SerializeUtils.parseStringMap(SerializeUtils.serialize(nodeConfig));
+        attributes.remove("time");
+        return attributes;
     }
 
     /**
@@ -0,0 +1,117 @@
+package org.micro.neural.config.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.micro.neural.config.GlobalConfig.Category;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ConfigSynchronizerTest {
+
+    private static final String SPACE = "TEST";
+
+    @Test
+    public void pullTest() {
+        MemoryConfigStore store = new MemoryConfigStore();
+        Map<Category, Map<String, String>> notified = new HashMap<>();
+        ConfigSynchronizer synchronizer = new ConfigSynchronizer(store, SPACE, Long.MAX_VALUE,
+                (category, configs) -> notified.computeIfAbsent(category, k -> new HashMap<>()).putAll(configs));
+
+        store.putAllMap("TEST:RULE", "TEST:RULE:VERSION", "TEST:REVISION", Collections.singletonMap("a", "A1"));
+        Assert.assertTrue(synchronizer.pull(false));
+        Assert.assertEquals("A1", synchronizer.get(Category.RULE, "a"));
+        Assert.assertEquals(Collections.singletonMap("a", "A1"), notified.get(Category.RULE));
+
+        // the revision is unchanged, the versions are not read
+        int versionReads = store.versionReads;
+        Assert.assertFalse(synchronizer.pull(false));
+        Assert.assertEquals(versionReads, store.versionReads);
+
+        // the forced pull reads the versions, but fetches no fresh config
+        int fieldReads = store.fieldReads;
+        Assert.assertTrue(synchronizer.pull(true));
+        Assert.assertEquals(versionReads + 2, store.versionReads);
+        Assert.assertEquals(fieldReads, store.fieldReads);
+
+        // only the stale config is fetched
+        Map<String, String> configs = new HashMap<>();
+        configs.put("b", "B1");
+        store.putAllMap("TEST:RULE", "TEST:RULE:VERSION", "TEST:REVISION", configs);
+        notified.clear();
+        Assert.assertTrue(synchronizer.pull(false));
+        Assert.assertEquals(Collections.singleton("b"), store.lastFields);
+        Assert.assertEquals(Collections.singletonMap("b", "B1"), notified.get(Category.RULE));
+    }
+
+    @Test
+    public void reconcileTest() {
+        MemoryConfigStore store = new MemoryConfigStore();
+        Map<String, String> notified = new HashMap<>();
+        ConfigSynchronizer synchronizer = new ConfigSynchronizer(store, SPACE, 0L,
+                (category, configs) -> notified.putAll(configs));
+
+        synchronizer.write(Category.GLOBAL, Collections.singletonMap("LIMITER", "G1"));
+        Assert.assertEquals("G1", notified.get("LIMITER"));
+
+        // the remote data is changed without a new version or revision
+        store.maps.get("TEST:GLOBAL").put("LIMITER", "G2");
+        Assert.assertTrue(synchronizer.pull(false));
+        Assert.assertEquals("G2", synchronizer.get(Category.GLOBAL, "LIMITER"));
+        Assert.assertEquals("G2", notified.get("LIMITER"));
+    }
+
+    /**
+     * The in-memory config store
+     *
+     * @author lry
+     */
+    private static class MemoryConfigStore implements IConfigStore {
+
+        private final Map<String, Map<String, String>> maps = new ConcurrentHashMap<>();
+        private final Map<String, Map<String, Long>> versions = new ConcurrentHashMap<>();
+        private final Map<String, Long> revisions = new ConcurrentHashMap<>();
+        private int versionReads;
+        private int fieldReads;
+        private Set<String> lastFields;
+
+        @Override
+        public Map<String, Long> putAllMap(String name, String versionName, String revisionName, Map<String, String> data) {
+            maps.computeIfAbsent(name, k -> new HashMap<>()).putAll(data);
+            Map<String, Long> fieldVersions = versions.computeIfAbsent(versionName, k -> new HashMap<>());
+            Map<String, Long> newVersions = new HashMap<>();
+            for (String field : data.keySet()) {
+                newVersions.put(field, fieldVersions.merge(field, 1L, Long::sum));
+            }
+            revisions.merge(revisionName, 1L, Long::sum);
+            return newVersions;
+        }
+
+        @Override
+        public long getRevision(String name) {
+            return revisions.getOrDefault(name, 0L);
+        }
+
+        @Override
+        public Map<String, Long> getVersions(String name) {
+            versionReads++;
+            return new HashMap<>(versions.getOrDefault(name, Collections.emptyMap()));
+        }
+
+        @Override
+        public Map<String, String> getMap(String name) {
+            return new HashMap<>(maps.getOrDefault(name, Collections.emptyMap()));
+        }
+
+        @Override
+        public Map<String, String> getMap(String name, Set<String> fields) {
+            fieldReads++;
+            lastFields = new HashSet<>(fields);
+            Map<String, String> data = getMap(name);
+            data.keySet().retainAll(fields);
+            return data;
+        }
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.micro.neural.config.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class NearCacheTest {
+
+    @Test
+    public void staleTest() {
+        NearCache cache = new NearCache();
+        cache.putAll(Collections.singletonMap("a", "A1"), Collections.singletonMap("a", 2L));
+
+        Map<String, Long> remoteVersions = new HashMap<>();
+        remoteVersions.put("a", 2L);
+        remoteVersions.put("b", 1L);
+        // the same version is fresh, the missing field is stale
+        Assert.assertEquals(Collections.singleton("b"), cache.stale(remoteVersions));
+
+        remoteVersions.put("a", 3L);
+        Assert.assertEquals(2, cache.stale(remoteVersions).size());
+        Assert.assertTrue(cache.stale(Collections.singletonMap("a", 1L)).isEmpty());
+    }
+
+    @Test
+    public void mismatchTest() {
+        NearCache cache = new NearCache();
+        cache.putAll(Collections.singletonMap("a", "A1"), Collections.singletonMap("a", 1L));
+
+        Assert.assertTrue(cache.mismatch(Collections.singletonMap("a", "A1")).isEmpty());
+        // the remote data is changed without a new version
+        Assert.assertEquals(Collections.singleton("a"), cache.mismatch(Collections.singletonMap("a", "A2")));
+        Assert.assertEquals(Collections.singleton("b"), cache.mismatch(Collections.singletonMap("b", "B1")));
+    }
+
+    @Test
+    public void putAllTest() {
+        NearCache cache = new NearCache();
+        Map<String, String> changed = cache.putAll(
+                Collections.singletonMap("a", "A2"), Collections.singletonMap("a", 2L));
+        Assert.assertEquals(Collections.singletonMap("a", "A2"), changed);
+
+        // the older version is ignored
+        changed = cache.putAll(Collections.singletonMap("a", "A1"), Collections.singletonMap("a", 1L));
+        Assert.assertTrue(changed.isEmpty());
+        Assert.assertEquals("A2", cache.get("a"));
+
+        // the newer version with the same data only updates the version
+        changed = cache.putAll(Collections.singletonMap("a", "A2"), Collections.singletonMap("a", 3L));
+        Assert.assertTrue(changed.isEmpty());
+        Assert.assertTrue(cache.stale(Collections.singletonMap("a", 3L)).isEmpty());
+
+        changed = cache.putAll(Collections.singletonMap("a", "A3"), Collections.singletonMap("a", 4L));
+        Assert.assertEquals(Collections.singletonMap("a", "A3"), changed);
+        Assert.assertEquals(Collections.singletonMap("a", "A3"), cache.getAll());
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.micro.neural.config.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+public class StatisticsReporterTest {
+
+    private static final Map<String, String> ATTRIBUTES = Collections.singletonMap("hostName", "node1");
+
+    @Test
+    public void mergeInFlightTest() {
+        BatchWriter writer = new BatchWriter();
+        StatisticsReporter reporter = new StatisticsReporter(writer::write, 10);
+
+        reporter.report("k1", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.flush();
+        Assert.assertEquals(1, writer.batches.size());
+
+        // the batch is in flight, the cycles are merged
+        reporter.report("k1", ATTRIBUTES, Collections.singletonMap("success", 2L), 1000L);
+        reporter.flush();
+        reporter.report("k1", ATTRIBUTES, Collections.singletonMap("success", 3L), 2000L);
+        reporter.flush();
+        Assert.assertEquals(1, writer.batches.size());
+
+        writer.futures.get(0).complete(null);
+        reporter.flush();
+        Assert.assertEquals(2, writer.batches.size());
+        Map<String, Object> fields = writer.batches.get(1).get("k1");
+        Assert.assertEquals(5L, fields.get("success"));
+        Assert.assertEquals("node1", fields.get("hostName"));
+        Assert.assertEquals(Long.valueOf(2000L), writer.expires.get(1).get("k1"));
+    }
+
+    @Test
+    public void maxPendingKeysTest() {
+        BatchWriter writer = new BatchWriter();
+        StatisticsReporter reporter = new StatisticsReporter(writer::write, 2);
+
+        reporter.report("k1", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.report("k2", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        // the new key is dropped, the pending key is still merged
+        reporter.report("k3", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.report("k1", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.flush();
+
+        Map<String, Map<String, Object>> batch = writer.batches.get(0);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("k1", "k2")), batch.keySet());
+        Assert.assertEquals(2L, batch.get("k1").get("success"));
+
+        // the pending keys are released by the flush
+        writer.futures.get(0).complete(null);
+        reporter.report("k3", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.flush();
+        Assert.assertEquals(Collections.singleton("k3"), writer.batches.get(1).keySet());
+    }
+
+    @Test
+    public void batchFailureTest() {
+        BatchWriter writer = new BatchWriter();
+        StatisticsReporter reporter = new StatisticsReporter(writer::write, 10);
+
+        reporter.report("k1", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.flush();
+        writer.futures.get(0).completeExceptionally(new IllegalStateException("timeout"));
+
+        // the failed batch isn't retried, the next batch is shipped
+        reporter.report("k2", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.flush();
+        Assert.assertEquals(2, writer.batches.size());
+        Assert.assertEquals(Collections.singleton("k2"), writer.batches.get(1).keySet());
+    }
+
+    @Test
+    public void writerExceptionTest() {
+        BatchWriter writer = new BatchWriter();
+        StatisticsReporter reporter = new StatisticsReporter((data, expires) -> {
+            if (writer.batches.isEmpty()) {
+                writer.batches.add(data);
+                throw new IllegalStateException("disconnected");
+            }
+            return writer.write(data, expires);
+        }, 10);
+
+        reporter.report("k1", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.flush();
+        reporter.report("k2", ATTRIBUTES, Collections.singletonMap("success", 1L), 1000L);
+        reporter.flush();
+        Assert.assertEquals(2, writer.batches.size());
+        Assert.assertEquals(Collections.singleton("k2"), writer.batches.get(1).keySet());
+    }
+
+    /**
+     * The batch writer, which completes the batches by the test
+     *
+     * @author lry
+     */
+    private static class BatchWriter {
+
+        private final List<Map<String, Map<String, Object>>> batches = new ArrayList<>();
+        private final List<Map<String, Long>> expires = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        private CompletableFuture<Void> write(Map<String, Map<String, Object>> data, Map<String, Long> dataExpires) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            batches.add(data);
+            expires.add(dataExpires);
+            futures.add(future);
+            return future;
+        }
+
+    }
+
+}
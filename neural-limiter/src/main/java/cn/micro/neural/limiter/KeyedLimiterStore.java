@@ -0,0 +1,138 @@
+package cn.micro.neural.limiter;
+
+import cn.micro.neural.limiter.core.ILimiter;
+import cn.micro.neural.limiter.exception.LimiterException;
+import cn.micro.neural.limiter.extension.FrequencySketch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The Keyed Limiter Store.
+ * <p>
+ * The bounded store of the per-key(hot-parameter) limiters, such as per ip or per user:
+ * 1.The limiters are kept in a segmented LRU cache of at most maximumSize keys, so a scan of random keys
+ * can't grow the memory without bound
+ * 2.The limiter of a key is created lazily on the first admitted call
+ * 3.When the admissionThreshold is positive, a key only gets its own limiter after it has been seen
+ * admissionThreshold times recently(estimated by {@link FrequencySketch})
+ * 4.The cold keys share one cold limiter per rule, which is kept apart from the limiter of the rule, so a flood
+ * of one-shot keys only drains the cold limiter. The trade-off is that a legitimate key shares the cold limiter
+ * with the flood until it becomes hot.
+ *
+ * @author lry
+ */
+public class KeyedLimiterStore {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000L;
+    public static final int DEFAULT_ADMISSION_THRESHOLD = 2;
+
+    /**
+     * The key of the limiter shared by the cold keys of a rule
+     */
+    public static final String COLD_KEY = "*";
+
+    private static final String DELIMITER = "@";
+
+    @Getter
+    private final long maximumSize;
+    @Getter
+    private final int admissionThreshold;
+    private final Cache<String, ILimiter> limiters;
+    private final ConcurrentMap<String, ILimiter> coldLimiters = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+
+    public KeyedLimiterStore() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_ADMISSION_THRESHOLD);
+    }
+
+    public KeyedLimiterStore(long maximumSize, int admissionThreshold) {
+        this.maximumSize = maximumSize;
+        this.admissionThreshold = admissionThreshold;
+        this.limiters = CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .<String, ILimiter>removalListener(notification -> notification.getValue().destroy()).build();
+        this.sketch = admissionThreshold > 0 ? new FrequencySketch(maximumSize) : null;
+    }
+
+    /**
+     * The get or lazily create the limiter of the key
+     *
+     * @param identity the identity of the rule
+     * @param key      the hot parameter
+     * @param creator  the creator of the limiter by the key, {@link #COLD_KEY} is the cold limiter
+     * @return the limiter of the key, or the cold limiter of the rule if the key is not hot enough
+     */
+    public ILimiter get(String identity, String key, Function<String, ILimiter> creator) {
+        String cacheKey = identity + DELIMITER + key;
+        ILimiter limiter = limiters.getIfPresent(cacheKey);
+        if (null != limiter) {
+            return limiter;
+        }
+
+        // 准入: 只有近期访问频率达到阈值的key才创建独立的限流器
+        if (null != sketch) {
+            sketch.increment(cacheKey);
+            if (sketch.frequency(cacheKey) < admissionThreshold) {
+                return coldLimiters.computeIfAbsent(identity, k -> creator.apply(COLD_KEY));
+            }
+        }
+
+        try {
+            return limiters.get(cacheKey, () -> creator.apply(key));
+        } catch (ExecutionException e) {
+            throw new LimiterException("Create limiter[" + cacheKey + "] failure", e.getCause());
+        }
+    }
+
+    /**
+     * The remove all key limiters of the rule, they will be rebuilt by the new config on demand
+     *
+     * @param identity the identity of the rule
+     */
+    public void invalidate(String identity) {
+        String prefix = identity + DELIMITER;
+        limiters.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+        ILimiter coldLimiter = coldLimiters.remove(identity);
+        if (null != coldLimiter) {
+            coldLimiter.destroy();
+        }
+    }
+
+    /**
+     * The traverse all key limiters with the identity of their rule
+     *
+     * @param consumer the consumer of (rule identity, key limiter)
+     */
+    public void forEach(BiConsumer<String, ILimiter> consumer) {
+        for (Map.Entry<String, ILimiter> entry : limiters.asMap().entrySet()) {
+            String cacheKey = entry.getKey();
+            consumer.accept(cacheKey.substring(0, cacheKey.indexOf(DELIMITER)), entry.getValue());
+        }
+        coldLimiters.forEach(consumer);
+    }
+
+    /**
+     * The remove all key limiters
+     */
+    public void invalidateAll() {
+        limiters.invalidateAll();
+        for (String identity : coldLimiters.keySet()) {
+            ILimiter coldLimiter = coldLimiters.remove(identity);
+            if (null != coldLimiter) {
+                coldLimiter.destroy();
+            }
+        }
+    }
+
+    public long size() {
+        return limiters.size();
+    }
+
+}
@@ -16,7 +16,7 @@ import java.util.stream.Stream;
 @Data
 @ToString
 @EqualsAndHashCode
-public class LimiterConfig implements Serializable {
+public class LimiterConfig implements Serializable, Cloneable {
 
     private static final long serialVersionUID = -2617753757420740743L;
 
@@ -25,7 +25,6 @@ public class LimiterConfig implements Serializable {
     public static final String DEFAULT_APPLICATION = "micro";
     public static final String DEFAULT_GROUP = "neural";
 
-
     // === limiter config identity
 
     /**
@@ -82,6 +81,22 @@ public class LimiterConfig implements Serializable {
      * The concurrent limiter
      */
     private ConcurrentLimiterConfig concurrent = new ConcurrentLimiterConfig();
+    /**
+     * The adaptive concurrent limiter, only for Mode.ADAPTIVE
+     */
+    private AdaptiveLimiterConfig adaptive = new AdaptiveLimiterConfig();
+    /**
+     * The system load adaptive admission, only for Mode.SYSTEM_ADAPTIVE
+     */
+    private SystemLimiterConfig system = new SystemLimiterConfig();
+    /**
+     * The fallback of cluster limiter, only for Mode.CLUSTER
+     */
+    private ClusterLimiterConfig cluster = new ClusterLimiterConfig();
+    /**
+     * The embedded token server, only for Mode.TOKEN
+     */
+    private TokenLimiterConfig token = new TokenLimiterConfig();
 
     /**
      * Get config identity key
@@ -96,6 +111,63 @@ public class LimiterConfig implements Serializable {
         return String.join(DELIMITER, node, application, group, tag);
     }
 
+    /**
+     * The deep copy without serialization, all the properties are immutable except the labels and the sub configs
+     *
+     * @return the copy of config
+     */
+    public LimiterConfig copy() {
+        try {
+            LimiterConfig config = (LimiterConfig) super.clone();
+            config.labels = null == labels ? null : new ArrayList<>(labels);
+            config.rate = null == rate ? null : rate.copy();
+            config.counter = null == counter ? null : counter.copy();
+            config.concurrent = null == concurrent ? null : concurrent.copy();
+            config.adaptive = null == adaptive ? null : adaptive.copy();
+            config.system = null == system ? null : system.copy();
+            config.cluster = null == cluster ? null : cluster.copy();
+            config.token = null == token ? null : token.copy();
+            return config;
+        } catch (CloneNotSupportedException e) {
+            throw new LimiterException("Copy limiter config failure", e);
+        }
+    }
+
+    /**
+     * The stand-alone config of the node's fair share of the global limits(the global limit / nodes),
+     * at least one unit is allowed
+     *
+     * @param nodes the nodes sharing the global limits
+     * @return the stand-alone config
+     */
+    public LimiterConfig fairShare(int nodes) {
+        LimiterConfig config = share(1.0 / Math.max(nodes, 1));
+        config.setMode(Mode.STAND_ALONE);
+        return config;
+    }
+
+    /**
+     * The config of the share of the global limits(the global limit * ratio), at least one unit is allowed
+     *
+     * @param ratio the ratio of the global limits
+     * @return the config of the share
+     */
+    public LimiterConfig share(double ratio) {
+        LimiterConfig config = copy();
+        config.concurrent.setMaxPermit((int) share(concurrent.getMaxPermit(), concurrent.getPermitUnit(), ratio));
+        config.rate.setMaxRate((int) share(rate.getMaxRate(), rate.getRateUnit(), ratio));
+        if (rate.getBurst() > 0) {
+            config.rate.setBurst((int) share(rate.getBurst(), rate.getRateUnit() - 1, ratio));
+        }
+        config.counter.setMaxCount(share(counter.getMaxCount(), counter.getCountUnit(), ratio));
+        return config;
+    }
+
+    private static long share(long max, int unit, double ratio) {
+        // 忽略浮点误差，避免整除时向上取整多出一个
+        return Math.max((long) Math.ceil(max * ratio - 1e-9), unit + 1L);
+    }
+
     /**
      * The Switch.
      *
@@ -131,7 +203,19 @@ public class LimiterConfig implements Serializable {
         /**
          * The cluster model
          */
-        CLUSTER("cluster", "Cluster mode");
+        CLUSTER("cluster", "Cluster mode"),
+        /**
+         * The stand-alone model with the adaptive concurrent limit
+         */
+        ADAPTIVE("adaptive", "Adaptive mode"),
+        /**
+         * The stand-alone model with the system load adaptive admission
+         */
+        SYSTEM_ADAPTIVE("system-adaptive", "System adaptive mode"),
+        /**
+         * The cluster model by the embedded token server
+         */
+        TOKEN("token", "Token server mode");
 
         private final String value;
         private final String message;
@@ -161,13 +245,61 @@ public class LimiterConfig implements Serializable {
         private final String message;
     }
 
+    /**
+     * The Algorithm of Rate Limiter.
+     *
+     * @author lry
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum RateAlgorithm {
+        /**
+         * The smooth bursty token bucket, guarded by a mutex
+         */
+        SMOOTH_BURSTY("The smooth bursty token bucket, guarded by a mutex"),
+        /**
+         * The bursty token bucket, updated by CAS without lock
+         */
+        LOCK_FREE("The bursty token bucket, updated by CAS without lock"),
+        /**
+         * The warming up token bucket, the rate increases from maxRate/coldFactor to maxRate within warmupPeriod
+         */
+        WARM_UP("The warming up token bucket, the rate increases from maxRate/coldFactor to maxRate within warmupPeriod"),
+        /**
+         * The generic cell rate algorithm, only the theoretical arrival time is stored, at most burst at once
+         */
+        GCRA("The generic cell rate algorithm, only the theoretical arrival time is stored, at most burst at once");
+
+        private final String message;
+    }
+
+    /**
+     * The Algorithm of Counter Limiter.
+     *
+     * @author lry
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum CounterAlgorithm {
+        /**
+         * The fixed time window counter
+         */
+        FIXED_WINDOW("The fixed time window counter"),
+        /**
+         * The sliding time window counter, made of a ring of time buckets
+         */
+        SLIDING_WINDOW("The sliding time window counter, made of a ring of time buckets");
+
+        private final String message;
+    }
+
     /**
      * ConcurrentConfig
      *
      * @author lry
      */
     @Data
-    public static class ConcurrentLimiterConfig implements Serializable {
+    public static class ConcurrentLimiterConfig implements Serializable, Cloneable {
 
         private static final long serialVersionUID = -5671416423715135681L;
 
@@ -193,6 +325,31 @@ public class LimiterConfig implements Serializable {
          * The strategy of limiter, default is Strategy.NON
          */
         private Strategy strategy = Strategy.IGNORE;
+        /**
+         * The fair of stand-alone concurrent limiter.
+         * <p>
+         * true is the fair semaphore, false is the non-fair lock-free semaphore.
+         */
+        private Boolean fair = false;
+        /**
+         * The cluster concurrent limiter holds each permit by a lease with a deadline, default is Switch.OFF
+         * <p>
+         * The leases of a crashed node expire and are reclaimed by the next acquire, the leases of the
+         * in-flight calls are renewed every leaseTimeout / 3.
+         */
+        private Switch lease = Switch.OFF;
+        /**
+         * The lease timeout(ms) of the cluster concurrent permit
+         */
+        private Long leaseTimeout = 30 * 1000L;
+
+        public ConcurrentLimiterConfig copy() {
+            try {
+                return (ConcurrentLimiterConfig) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new LimiterException("Copy limiter config failure", e);
+            }
+        }
 
     }
 
@@ -202,7 +359,7 @@ public class LimiterConfig implements Serializable {
      * @author lry
      */
     @Data
-    public static class RateLimiterConfig implements Serializable {
+    public static class RateLimiterConfig implements Serializable, Cloneable {
 
         private static final long serialVersionUID = -7307976708697925384L;
 
@@ -228,6 +385,44 @@ public class LimiterConfig implements Serializable {
          * The strategy of limiter, default is Strategy.NON
          */
         private Strategy strategy = Strategy.IGNORE;
+        /**
+         * The algorithm of stand-alone rate limiter, default is RateAlgorithm.SMOOTH_BURSTY
+         */
+        private RateAlgorithm algorithm = RateAlgorithm.SMOOTH_BURSTY;
+        /**
+         * The warm up period(ms) of RateAlgorithm.WARM_UP, the time from the cold rate to the max rate
+         */
+        private Long warmupPeriod = 10 * 1000L;
+        /**
+         * The cold factor of RateAlgorithm.WARM_UP, the cold rate is maxRate / coldFactor
+         */
+        private Double coldFactor = 3.0;
+        /**
+         * The burst tolerance of RateAlgorithm.GCRA, the max permits acquired at once
+         * <p>
+         * The 0 is the maxRate, the same as the bursty token bucket storing the permits of 1 second.
+         */
+        private Integer burst = 0;
+        /**
+         * The cluster rate limiter leases the tokens in blocks and serves them locally, default is Switch.OFF
+         * <p>
+         * Only the stored tokens of the bursty bucket are leased, the global rate may be overshot by the
+         * tokens leased but not consumed yet, at most maxLeaseSize per node. The RateAlgorithm.WARM_UP and
+         * RateAlgorithm.GCRA are never leased.
+         */
+        private Switch lease = Switch.OFF;
+        /**
+         * The max tokens of a lease
+         */
+        private Integer maxLeaseSize = 100;
+
+        public RateLimiterConfig copy() {
+            try {
+                return (RateLimiterConfig) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new LimiterException("Copy limiter config failure", e);
+            }
+        }
 
     }
 
@@ -237,7 +432,7 @@ public class LimiterConfig implements Serializable {
      * @author lry
      */
     @Data
-    public static class CounterLimiterConfig implements Serializable {
+    public static class CounterLimiterConfig implements Serializable, Cloneable {
 
         private static final long serialVersionUID = -8642894858491116612L;
 
@@ -263,6 +458,219 @@ public class LimiterConfig implements Serializable {
          * The strategy of limiter, default is Strategy.NON
          */
         private Strategy strategy = Strategy.IGNORE;
+        /**
+         * The algorithm of stand-alone counter limiter, default is CounterAlgorithm.FIXED_WINDOW
+         */
+        private CounterAlgorithm algorithm = CounterAlgorithm.FIXED_WINDOW;
+        /**
+         * The bucket number of sliding window, the bucket granularity is timeout / bucketCount
+         */
+        private Integer bucketCount = 10;
+
+        public CounterLimiterConfig copy() {
+            try {
+                return (CounterLimiterConfig) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new LimiterException("Copy limiter config failure", e);
+            }
+        }
+
+    }
+
+    /**
+     * AdaptiveLimiterConfig
+     * <p>
+     * The concurrent limit is adjusted between minLimit and ConcurrentLimiterConfig#maxPermit by the RTT.
+     *
+     * @author lry
+     */
+    @Data
+    public static class AdaptiveLimiterConfig implements Serializable, Cloneable {
+
+        private static final long serialVersionUID = 4781923473625125896L;
+
+        /**
+         * The initial concurrent limit
+         */
+        private Integer initialLimit = 20;
+        /**
+         * The min concurrent limit
+         */
+        private Integer minLimit = 1;
+        /**
+         * The smoothing factor(0, 1] of the limit change, 1 is no smoothing
+         */
+        private Double smoothing = 1.0;
+        /**
+         * The probe the no-load RTT again after probeMultiplier * limit samples
+         */
+        private Integer probeMultiplier = 30;
+        /**
+         * The number of samples aggregated for each update of the limit
+         */
+        private Integer sampleWindow = 10;
+
+        public AdaptiveLimiterConfig copy() {
+            try {
+                return (AdaptiveLimiterConfig) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new LimiterException("Copy limiter config failure", e);
+            }
+        }
+
+    }
+
+    /**
+     * SystemLimiterConfig
+     * <p>
+     * When the system is overloaded, the in-flight calls are limited to the estimated capacity(max pass QPS * min RT).
+     *
+     * @author lry
+     */
+    @Data
+    public static class SystemLimiterConfig implements Serializable, Cloneable {
+
+        private static final long serialVersionUID = -3817542215836710472L;
+
+        /**
+         * The system cpu usage[0, 1] from which the system is overloaded, negative is disabled
+         */
+        private Double cpuThreshold = 0.8;
+        /**
+         * The system load average from which the system is overloaded, negative is disabled
+         */
+        private Double loadThreshold = -1.0;
+        /**
+         * The window of max pass QPS and min RT
+         */
+        private Long windowMillis = 10 * 1000L;
+        /**
+         * The bucket number of the window, the QPS is counted by bucket
+         */
+        private Integer bucketCount = 10;
+
+        public SystemLimiterConfig copy() {
+            try {
+                return (SystemLimiterConfig) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new LimiterException("Copy limiter config failure", e);
+            }
+        }
+
+    }
+
+    /**
+     * The Cluster Limiter Config.
+     * <p>
+     * When the storage is slow or down, the cluster limiter falls back to a local limiter, which limits the
+     * node's fair share of the global quota(the global limit / the live nodes), and switches back after
+     * the storage passes the health probes.
+     *
+     * @author lry
+     */
+    @Data
+    public static class ClusterLimiterConfig implements Serializable, Cloneable {
+
+        private static final long serialVersionUID = 4361237129846719123L;
+
+        /**
+         * The local fallback switch, default is Switch.OFF
+         */
+        private Switch fallback = Switch.OFF;
+        /**
+         * The storage call slower than it(ms) is counted as a failure
+         */
+        private Long slowThreshold = 50L;
+        /**
+         * The consecutive slow or failed storage calls to fall back
+         */
+        private Integer failureThreshold = 3;
+        /**
+         * The interval(ms) of the health probes when falling back, one storage call per interval
+         */
+        private Long probeInterval = 1000L;
+        /**
+         * The consecutive healthy probes to switch back
+         */
+        private Integer recoverThreshold = 3;
+        /**
+         * The number of nodes sharing the global quota until the live nodes are known
+         */
+        private Integer nodeCount = 1;
+        /**
+         * The interval(ms) of the node heartbeat counting the live nodes
+         */
+        private Long heartbeatInterval = 3000L;
+        /**
+         * The number of the sub-keys(shards) splitting the global limit, default 1 is not sharded
+         * <p>
+         * Each node limits on the shard picked by consistent hashing, with the quota of the shard
+         * rebalanced by the demand of the shards every rebalanceInterval.
+         */
+        private Integer shards = 1;
+        /**
+         * The keys of a shard are wrapped by the hash tag({identity} or {identity:shard}), default is Switch.ON
+         * <p>
+         * It must be on for the Redis Cluster, so the keys of a shard(checked by one script) land on one slot
+         * and the shards are spread across the slots.
+         */
+        private Switch hashTag = Switch.ON;
+        /**
+         * The interval(ms) of rebalancing the quotas of shards
+         */
+        private Long rebalanceInterval = 5000L;
+
+        public ClusterLimiterConfig copy() {
+            try {
+                return (ClusterLimiterConfig) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new LimiterException("Copy limiter config failure", e);
+            }
+        }
+
+    }
+
+    /**
+     * The Token Limiter Config.
+     * <p>
+     * One node(the server switch is on) runs the embedded token server holding the global limits in memory,
+     * all nodes acquire the permits from it, and limit locally by the fair share when it is unreachable.
+     *
+     * @author lry
+     */
+    @Data
+    public static class TokenLimiterConfig implements Serializable, Cloneable {
+
+        private static final long serialVersionUID = -2087619371512469211L;
+
+        /**
+         * The host of token server
+         */
+        private String host = "127.0.0.1";
+        /**
+         * The port of token server
+         */
+        private Integer port = 9527;
+        /**
+         * This node runs the token server, default is Switch.OFF
+         */
+        private Switch server = Switch.OFF;
+        /**
+         * The timeout(ms) of acquiring from the token server, then limit locally
+         */
+        private Long timeout = 20L;
+        /**
+         * The number of nodes sharing the global limits when limiting locally
+         */
+        private Integer nodeCount = 1;
+
+        public TokenLimiterConfig copy() {
+            try {
+                return (TokenLimiterConfig) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new LimiterException("Copy limiter config failure", e);
+            }
+        }
 
     }
 
@@ -0,0 +1,316 @@
+package cn.micro.neural.limiter;
+
+import cn.micro.neural.limiter.LimiterConfig.*;
+import cn.micro.neural.storage.BinaryReader;
+import cn.micro.neural.storage.BinaryWriter;
+import cn.micro.neural.storage.ICodec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Limiter Config Codec.
+ * <p>
+ * The compact binary codec of {@link LimiterConfig}, each sub-config is a nested message.
+ * The field missing in the value keeps its default value, and the tags must never be reused.
+ *
+ * @author lry
+ */
+public class LimiterConfigCodec implements ICodec<LimiterConfig> {
+
+    public static final int TYPE_ID = 10;
+    public static final LimiterConfigCodec INSTANCE = new LimiterConfigCodec();
+
+    @Override
+    public void encode(LimiterConfig value, BinaryWriter writer) {
+        writer.writeString(1, value.getNode())
+                .writeString(2, value.getApplication())
+                .writeString(3, value.getGroup())
+                .writeString(4, value.getTag())
+                .writeEnum(5, value.getEnable())
+                .writeString(6, value.getName())
+                .writeStrings(7, value.getLabels())
+                .writeString(8, value.getIntro())
+                .writeEnum(9, value.getMode())
+                .writeMessage(10, value.getRate(), RATE)
+                .writeMessage(11, value.getCounter(), COUNTER)
+                .writeMessage(12, value.getConcurrent(), CONCURRENT)
+                .writeMessage(13, value.getAdaptive(), ADAPTIVE)
+                .writeMessage(14, value.getSystem(), SYSTEM)
+                .writeMessage(15, value.getCluster(), CLUSTER)
+                .writeMessage(16, value.getToken(), TOKEN);
+    }
+
+    @Override
+    public LimiterConfig decode(BinaryReader reader) {
+        LimiterConfig value = new LimiterConfig();
+        List<String> labels = new ArrayList<>();
+        int key;
+        while ((key = reader.readKey()) != 0) {
+            switch (BinaryReader.tag(key)) {
+                case 1: value.setNode(reader.readString()); break;
+                case 2: value.setApplication(reader.readString()); break;
+                case 3: value.setGroup(reader.readString()); break;
+                case 4: value.setTag(reader.readString()); break;
+                case 5: value.setEnable(reader.readEnum(Switch.class)); break;
+                case 6: value.setName(reader.readString()); break;
+                case 7: labels.add(reader.readString()); break;
+                case 8: value.setIntro(reader.readString()); break;
+                case 9: value.setMode(reader.readEnum(Mode.class)); break;
+                case 10: value.setRate(reader.readMessage(RATE)); break;
+                case 11: value.setCounter(reader.readMessage(COUNTER)); break;
+                case 12: value.setConcurrent(reader.readMessage(CONCURRENT)); break;
+                case 13: value.setAdaptive(reader.readMessage(ADAPTIVE)); break;
+                case 14: value.setSystem(reader.readMessage(SYSTEM)); break;
+                case 15: value.setCluster(reader.readMessage(CLUSTER)); break;
+                case 16: value.setToken(reader.readMessage(TOKEN)); break;
+                default: reader.skip(key);
+            }
+        }
+        value.setLabels(labels);
+        return value;
+    }
+
+    // === the codecs of the sub-configs
+
+    private static final ICodec<RateLimiterConfig> RATE = new ICodec<RateLimiterConfig>() {
+
+        @Override
+        public void encode(RateLimiterConfig value, BinaryWriter writer) {
+            writer.writeEnum(1, value.getEnable())
+                    .writeInt(2, value.getRateUnit())
+                    .writeInt(3, value.getMaxRate())
+                    .writeLong(4, value.getTimeout())
+                    .writeEnum(5, value.getStrategy())
+                    .writeEnum(6, value.getAlgorithm())
+                    .writeLong(7, value.getWarmupPeriod())
+                    .writeDouble(8, value.getColdFactor())
+                    .writeInt(9, value.getBurst())
+                    .writeEnum(10, value.getLease())
+                    .writeInt(11, value.getMaxLeaseSize());
+        }
+
+        @Override
+        public RateLimiterConfig decode(BinaryReader reader) {
+            RateLimiterConfig value = new RateLimiterConfig();
+            int key;
+            while ((key = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(key)) {
+                    case 1: value.setEnable(reader.readEnum(Switch.class)); break;
+                    case 2: value.setRateUnit(reader.readInt()); break;
+                    case 3: value.setMaxRate(reader.readInt()); break;
+                    case 4: value.setTimeout(reader.readLong()); break;
+                    case 5: value.setStrategy(reader.readEnum(Strategy.class)); break;
+                    case 6: value.setAlgorithm(reader.readEnum(RateAlgorithm.class)); break;
+                    case 7: value.setWarmupPeriod(reader.readLong()); break;
+                    case 8: value.setColdFactor(reader.readDouble()); break;
+                    case 9: value.setBurst(reader.readInt()); break;
+                    case 10: value.setLease(reader.readEnum(Switch.class)); break;
+                    case 11: value.setMaxLeaseSize(reader.readInt()); break;
+                    default: reader.skip(key);
+                }
+            }
+            return value;
+        }
+
+    };
+
+    private static final ICodec<CounterLimiterConfig> COUNTER = new ICodec<CounterLimiterConfig>() {
+
+        @Override
+        public void encode(CounterLimiterConfig value, BinaryWriter writer) {
+            writer.writeEnum(1, value.getEnable())
+                    .writeInt(2, value.getCountUnit())
+                    .writeLong(3, value.getMaxCount())
+                    .writeLong(4, value.getTimeout())
+                    .writeEnum(5, value.getStrategy())
+                    .writeEnum(6, value.getAlgorithm())
+                    .writeInt(7, value.getBucketCount());
+        }
+
+        @Override
+        public CounterLimiterConfig decode(BinaryReader reader) {
+            CounterLimiterConfig value = new CounterLimiterConfig();
+            int key;
+            while ((key = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(key)) {
+                    case 1: value.setEnable(reader.readEnum(Switch.class)); break;
+                    case 2: value.setCountUnit(reader.readInt()); break;
+                    case 3: value.setMaxCount(reader.readLong()); break;
+                    case 4: value.setTimeout(reader.readLong()); break;
+                    case 5: value.setStrategy(reader.readEnum(Strategy.class)); break;
+                    case 6: value.setAlgorithm(reader.readEnum(CounterAlgorithm.class)); break;
+                    case 7: value.setBucketCount(reader.readInt()); break;
+                    default: reader.skip(key);
+                }
+            }
+            return value;
+        }
+
+    };
+
+    private static final ICodec<ConcurrentLimiterConfig> CONCURRENT = new ICodec<ConcurrentLimiterConfig>() {
+
+        @Override
+        public void encode(ConcurrentLimiterConfig value, BinaryWriter writer) {
+            writer.writeEnum(1, value.getEnable())
+                    .writeInt(2, value.getPermitUnit())
+                    .writeInt(3, value.getMaxPermit())
+                    .writeLong(4, value.getTimeout())
+                    .writeEnum(5, value.getStrategy())
+                    .writeBoolean(6, value.getFair())
+                    .writeEnum(7, value.getLease())
+                    .writeLong(8, value.getLeaseTimeout());
+        }
+
+        @Override
+        public ConcurrentLimiterConfig decode(BinaryReader reader) {
+            ConcurrentLimiterConfig value = new ConcurrentLimiterConfig();
+            int key;
+            while ((key = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(key)) {
+                    case 1: value.setEnable(reader.readEnum(Switch.class)); break;
+                    case 2: value.setPermitUnit(reader.readInt()); break;
+                    case 3: value.setMaxPermit(reader.readInt()); break;
+                    case 4: value.setTimeout(reader.readLong()); break;
+                    case 5: value.setStrategy(reader.readEnum(Strategy.class)); break;
+                    case 6: value.setFair(reader.readBoolean()); break;
+                    case 7: value.setLease(reader.readEnum(Switch.class)); break;
+                    case 8: value.setLeaseTimeout(reader.readLong()); break;
+                    default: reader.skip(key);
+                }
+            }
+            return value;
+        }
+
+    };
+
+    private static final ICodec<AdaptiveLimiterConfig> ADAPTIVE = new ICodec<AdaptiveLimiterConfig>() {
+
+        @Override
+        public void encode(AdaptiveLimiterConfig value, BinaryWriter writer) {
+            writer.writeInt(1, value.getInitialLimit())
+                    .writeInt(2, value.getMinLimit())
+                    .writeDouble(3, value.getSmoothing())
+                    .writeInt(4, value.getProbeMultiplier())
+                    .writeInt(5, value.getSampleWindow());
+        }
+
+        @Override
+        public AdaptiveLimiterConfig decode(BinaryReader reader) {
+            AdaptiveLimiterConfig value = new AdaptiveLimiterConfig();
+            int key;
+            while ((key = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(key)) {
+                    case 1: value.setInitialLimit(reader.readInt()); break;
+                    case 2: value.setMinLimit(reader.readInt()); break;
+                    case 3: value.setSmoothing(reader.readDouble()); break;
+                    case 4: value.setProbeMultiplier(reader.readInt()); break;
+                    case 5: value.setSampleWindow(reader.readInt()); break;
+                    default: reader.skip(key);
+                }
+            }
+            return value;
+        }
+
+    };
+
+    private static final ICodec<SystemLimiterConfig> SYSTEM = new ICodec<SystemLimiterConfig>() {
+
+        @Override
+        public void encode(SystemLimiterConfig value, BinaryWriter writer) {
+            writer.writeDouble(1, value.getCpuThreshold())
+                    .writeDouble(2, value.getLoadThreshold())
+                    .writeLong(3, value.getWindowMillis())
+                    .writeInt(4, value.getBucketCount());
+        }
+
+        @Override
+        public SystemLimiterConfig decode(BinaryReader reader) {
+            SystemLimiterConfig value = new SystemLimiterConfig();
+            int key;
+            while ((key = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(key)) {
+                    case 1: value.setCpuThreshold(reader.readDouble()); break;
+                    case 2: value.setLoadThreshold(reader.readDouble()); break;
+                    case 3: value.setWindowMillis(reader.readLong()); break;
+                    case 4: value.setBucketCount(reader.readInt()); break;
+                    default: reader.skip(key);
+                }
+            }
+            return value;
+        }
+
+    };
+
+    private static final ICodec<ClusterLimiterConfig> CLUSTER = new ICodec<ClusterLimiterConfig>() {
+
+        @Override
+        public void encode(ClusterLimiterConfig value, BinaryWriter writer) {
+            writer.writeEnum(1, value.getFallback())
+                    .writeLong(2, value.getSlowThreshold())
+                    .writeInt(3, value.getFailureThreshold())
+                    .writeLong(4, value.getProbeInterval())
+                    .writeInt(5, value.getRecoverThreshold())
+                    .writeInt(6, value.getNodeCount())
+                    .writeLong(7, value.getHeartbeatInterval())
+                    .writeInt(8, value.getShards())
+                    .writeEnum(9, value.getHashTag())
+                    .writeLong(10, value.getRebalanceInterval());
+        }
+
+        @Override
+        public ClusterLimiterConfig decode(BinaryReader reader) {
+            ClusterLimiterConfig value = new ClusterLimiterConfig();
+            int key;
+            while ((key = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(key)) {
+                    case 1: value.setFallback(reader.readEnum(Switch.class)); break;
+                    case 2: value.setSlowThreshold(reader.readLong()); break;
+                    case 3: value.setFailureThreshold(reader.readInt()); break;
+                    case 4: value.setProbeInterval(reader.readLong()); break;
+                    case 5: value.setRecoverThreshold(reader.readInt()); break;
+                    case 6: value.setNodeCount(reader.readInt()); break;
+                    case 7: value.setHeartbeatInterval(reader.readLong()); break;
+                    case 8: value.setShards(reader.readInt()); break;
+                    case 9: value.setHashTag(reader.readEnum(Switch.class)); break;
+                    case 10: value.setRebalanceInterval(reader.readLong()); break;
+                    default: reader.skip(key);
+                }
+            }
+            return value;
+        }
+
+    };
+
+    private static final ICodec<TokenLimiterConfig> TOKEN = new ICodec<TokenLimiterConfig>() {
+
+        @Override
+        public void encode(TokenLimiterConfig value, BinaryWriter writer) {
+            writer.writeString(1, value.getHost())
+                    .writeInt(2, value.getPort())
+                    .writeEnum(3, value.getServer())
+                    .writeLong(4, value.getTimeout())
+                    .writeInt(5, value.getNodeCount());
+        }
+
+        @Override
+        public TokenLimiterConfig decode(BinaryReader reader) {
+            TokenLimiterConfig value = new TokenLimiterConfig();
+            int key;
+            while ((key = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(key)) {
+                    case 1: value.setHost(reader.readString()); break;
+                    case 2: value.setPort(reader.readInt()); break;
+                    case 3: value.setServer(reader.readEnum(Switch.class)); break;
+                    case 4: value.setTimeout(reader.readLong()); break;
+                    case 5: value.setNodeCount(reader.readInt()); break;
+                    default: reader.skip(key);
+                }
+            }
+            return value;
+        }
+
+    };
+
+}
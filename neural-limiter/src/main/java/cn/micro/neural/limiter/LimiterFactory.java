@@ -3,6 +3,8 @@ package cn.micro.neural.limiter;
 import cn.micro.neural.limiter.core.ILimiter;
 import cn.micro.neural.limiter.event.EventListener;
 import cn.micro.neural.limiter.event.EventType;
+import cn.micro.neural.limiter.exception.LimiterException;
+import cn.micro.neural.storage.FactoryStorage;
 import cn.micro.neural.storage.Neural;
 import cn.neural.common.extension.Extension;
 import cn.neural.common.extension.ExtensionLoader;
@@ -13,6 +15,8 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -28,6 +32,11 @@ public class LimiterFactory implements EventListener, Neural<LimiterConfig> {
 
     public static final String IDENTITY = "limiter";
 
+    static {
+        // the configs stored through the storage are encoded by the compact binary codec
+        FactoryStorage.INSTANCE.registerCodec(LimiterConfigCodec.TYPE_ID, LimiterConfigCodec.INSTANCE, LimiterConfig.class);
+    }
+
     /**
      * Map<key=IdempotentConfig#identity(), ILimiter>
      */
@@ -36,18 +45,40 @@ public class LimiterFactory implements EventListener, Neural<LimiterConfig> {
      * Map<key=LimiterConfig#getGroup(), subKey=LimiterConfig#getTag(), value=LimiterConfig>
      */
     private final ConcurrentMap<String, ConcurrentMap<String, LimiterConfig>> rules = new ConcurrentHashMap<>();
+    /**
+     * The bounded per-key(hot-parameter) limiters
+     */
+    private volatile KeyedLimiterStore keyedLimiters = new KeyedLimiterStore();
+
+    /**
+     * The resize the per-key limiter store, the existing per-key limiters are dropped
+     *
+     * @param maximumSize        the max number of per-key limiters
+     * @param admissionThreshold the recent frequency a key needs to get its own limiter, 0 is always
+     */
+    public void setKeyedLimiters(long maximumSize, int admissionThreshold) {
+        KeyedLimiterStore oldKeyedLimiters = this.keyedLimiters;
+        this.keyedLimiters = new KeyedLimiterStore(maximumSize, admissionThreshold);
+        oldKeyedLimiters.invalidateAll();
+    }
 
     @Override
     public LimiterConfig getConfig(String group, String tag) {
         return rules.containsKey(group) ? rules.get(group).get(tag) : null;
     }
 
+    /**
+     * The add config and register its limiter
+     *
+     * @param config {@link LimiterConfig}
+     * @throws LimiterException the config is illegal
+     */
     @Override
     public void addConfig(LimiterConfig config) {
-        ILimiter limiter = ExtensionLoader.getLoader(ILimiter.class).getExtension(config.getMode().getValue());
-        limiter.addListener(this);
-
-        limiters.put(config.identity(), limiter);
+        ILimiter oldLimiter = limiters.put(config.identity(), createLimiter(config));
+        if (null != oldLimiter) {
+            oldLimiter.destroy();
+        }
         rules.computeIfAbsent(config.getGroup(), k -> new ConcurrentHashMap<>()).put(config.getTag(), config);
     }
 
@@ -71,6 +102,8 @@ public class LimiterFactory implements EventListener, Neural<LimiterConfig> {
             return;
         }
         if (limiter.refresh(config)) {
+            // the per-key limiters are rebuilt by the new config on demand
+            keyedLimiters.invalidate(config.identity());
             log.info("Limiter[{}] config refresh success: {}", config.identity(), config);
             return;
         }
@@ -93,6 +126,68 @@ public class LimiterFactory implements EventListener, Neural<LimiterConfig> {
         }
     }
 
+    /**
+     * The async original call, the permits are held until the returned stage completes
+     *
+     * @param identity        the identity of the rule
+     * @param originalCall    {@link OriginalCall}, return {@link CompletionStage} or the plain result
+     * @param originalContext {@link OriginalContext}
+     * @return the stage of original call, the exceed is returned as the exceptionally completed stage
+     */
+    public CompletionStage<?> originalAsyncCall(String identity, OriginalCall originalCall, final OriginalContext originalContext) {
+        try {
+            OriginalContext.set(originalContext);
+            ILimiter limiter = null == identity ? null : limiters.get(identity);
+            if (null != limiter) {
+                return limiter.wrapperAsyncCall(originalContext, originalCall);
+            }
+
+            Object result = originalCall.call(originalContext);
+            return result instanceof CompletionStage ? (CompletionStage<?>) result : CompletableFuture.completedFuture(result);
+        } catch (Throwable t) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            return future;
+        } finally {
+            OriginalContext.remove();
+        }
+    }
+
+    /**
+     * The original call limited by the limiter of the key, such as the ip or the user id.
+     * <p>
+     * The key gets its own limiter(with a copy of the rule config tagged by the key) once it is hot,
+     * otherwise it is limited by the cold limiter shared by the cold keys of the rule.
+     * The per-key limiting is only applied to the local modes, the rules of {@link LimiterConfig.Mode#CLUSTER}
+     * and {@link LimiterConfig.Mode#TOKEN} are limited by their global limiter.
+     *
+     * @param identity        the identity of the rule
+     * @param key             the hot parameter
+     * @param originalCall    {@link OriginalCall}
+     * @param originalContext {@link OriginalContext}
+     * @return invoke return object
+     * @throws Throwable throw original call exception
+     */
+    public Object originalCall(String identity, String key, OriginalCall originalCall, final OriginalContext originalContext) throws Throwable {
+        try {
+            OriginalContext.set(originalContext);
+            ILimiter limiter = null == identity ? null : limiters.get(identity);
+            if (null == limiter) {
+                return originalCall.call(originalContext);
+            }
+
+            LimiterConfig config = limiter.getConfig();
+            if (null == key || !isLocalMode(config.getMode())) {
+                return limiter.wrapperCall(originalContext, originalCall);
+            }
+
+            ILimiter keyLimiter = keyedLimiters.get(identity, key, k -> createLimiter(keyedConfig(config, k)));
+            return keyLimiter.wrapperCall(originalContext, originalCall);
+        } finally {
+            OriginalContext.remove();
+        }
+    }
+
     @Override
     public Map<String, Map<String, Long>> collect() {
         final Map<String, Map<String, Long>> dataMap = new LinkedHashMap<>();
@@ -103,7 +198,78 @@ public class LimiterFactory implements EventListener, Neural<LimiterConfig> {
             }
         }
 
+        // the statistics of the per-key limiters are aggregated into their rule
+        keyedLimiters.forEach((identity, keyLimiter) -> {
+            Map<String, Long> tempMap = keyLimiter.collect();
+            if (!tempMap.isEmpty()) {
+                LimiterStatistics.merge(dataMap.computeIfAbsent(identity, k -> new LinkedHashMap<>()), tempMap);
+            }
+        });
+
         return dataMap;
     }
 
+    /**
+     * The destroy all limiters, such as give back the resources held from the cluster
+     */
+    public void destroy() {
+        keyedLimiters.invalidateAll();
+        for (Map.Entry<String, ILimiter> entry : limiters.entrySet()) {
+            try {
+                entry.getValue().destroy();
+            } catch (Exception e) {
+                log.error("Destroy limiter[" + entry.getKey() + "] exception", e);
+            }
+        }
+    }
+
+    /**
+     * The per-key limiting is only applied to the modes limited in the local memory
+     *
+     * @param mode {@link LimiterConfig.Mode}
+     * @return true is the local mode
+     */
+    private static boolean isLocalMode(LimiterConfig.Mode mode) {
+        return LimiterConfig.Mode.STAND_ALONE == mode
+                || LimiterConfig.Mode.ADAPTIVE == mode
+                || LimiterConfig.Mode.SYSTEM_ADAPTIVE == mode;
+    }
+
+    /**
+     * The config of the per-key limiter, the tag is derived from the key so its identity differs from the rule
+     *
+     * @param config the config of the rule
+     * @param key    the hot parameter or {@link KeyedLimiterStore#COLD_KEY}
+     * @return {@link LimiterConfig}
+     */
+    private static LimiterConfig keyedConfig(LimiterConfig config, String key) {
+        LimiterConfig keyedConfig = config.copy();
+        keyedConfig.setTag(config.getTag() + "@" + key);
+        return keyedConfig;
+    }
+
+    /**
+     * The create limiter and build its engines by the initial config
+     *
+     * @param config {@link LimiterConfig}
+     * @return {@link ILimiter}
+     */
+    private ILimiter createLimiter(LimiterConfig config) {
+        ILimiter limiter = ExtensionLoader.getLoader(ILimiter.class).getExtension(config.getMode().getValue());
+        limiter.addListener(this);
+        boolean success;
+        try {
+            success = limiter.refresh(config);
+        } catch (Exception e) {
+            throw new LimiterException("Limiter[" + config.identity() + "] initial refresh failure", e);
+        }
+        if (!success) {
+            // the engines of an illegal config are never built, so the limiter is not registered
+            limiter.destroy();
+            throw new LimiterException("Limiter[" + config.identity() + "] illegal config: " + config);
+        }
+
+        return limiter;
+    }
+
 }
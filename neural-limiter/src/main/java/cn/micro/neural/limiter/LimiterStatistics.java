@@ -11,6 +11,8 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -91,7 +93,9 @@ public class LimiterStatistics implements Serializable {
     private final LongAdder concurrentExceedCounter = new LongAdder();
 
     /**
-     * The wrapper of original call
+     * The wrapper of original call.
+     * <p>
+     * When the original call returns a {@link CompletionStage}, the call is counted when the stage completes.
      *
      * @param originalCall The original call interface
      * @return The original call result
@@ -101,48 +105,83 @@ public class LimiterStatistics implements Serializable {
         final long startTime = System.currentTimeMillis();
 
         try {
-            try {
-                // Step 1: increment traffic
-                requestCounter.increment();
-                maxConcurrentAccumulator.accumulate(concurrentCounter.incrementAndGet());
-            } catch (Exception e) {
-                log.error("Total increment traffic exception", e);
-            }
-
-            // Step 2: original call
-            Object result = originalCall.call(originalContext);
-
-            try {
-                // Step 3: success traffic
-                successCounter.increment();
-            } catch (Exception e) {
-                log.error("Total success traffic exception", e);
-            }
+            // Step 1: increment traffic
+            requestCounter.increment();
+            maxConcurrentAccumulator.accumulate(concurrentCounter.incrementAndGet());
+        } catch (Exception e) {
+            log.error("Total increment traffic exception", e);
+        }
 
-            return result;
+        // Step 2: original call
+        Object result;
+        try {
+            result = originalCall.call(originalContext);
         } catch (Throwable t) {
-            try {
-                // Step 4: exception traffic
-                failureCounter.increment();
-                if (t instanceof TimeoutException) {
-                    timeoutCounter.increment();
-                } else if (t instanceof RejectedExecutionException) {
-                    rejectedCounter.increment();
+            failureTraffic(t);
+            decrementTraffic(startTime);
+            throw t;
+        }
+
+        if (result instanceof CompletionStage) {
+            // the async call is finished when the stage completes
+            ((CompletionStage<?>) result).whenComplete((r, t) -> {
+                if (null == t) {
+                    successTraffic();
+                } else {
+                    failureTraffic(t instanceof CompletionException && null != t.getCause() ? t.getCause() : t);
                 }
-            } catch (Exception e) {
-                log.error("Total exception traffic exception", e);
-            }
+                decrementTraffic(startTime);
+            });
+            return result;
+        }
 
-            throw t;
-        } finally {
-            try {
-                // Step 5: decrement traffic
-                long elapsed = System.currentTimeMillis() - startTime;
-                totalElapsedAccumulator.accumulate(elapsed);
-                maxElapsedAccumulator.accumulate(elapsed);
-            } catch (Exception e) {
-                log.error("Total decrement traffic exception", e);
+        successTraffic();
+        decrementTraffic(startTime);
+        return result;
+    }
+
+    /**
+     * Step 3: success traffic
+     */
+    private void successTraffic() {
+        try {
+            successCounter.increment();
+        } catch (Exception e) {
+            log.error("Total success traffic exception", e);
+        }
+    }
+
+    /**
+     * Step 4: exception traffic
+     *
+     * @param t the exception of original call
+     */
+    private void failureTraffic(Throwable t) {
+        try {
+            failureCounter.increment();
+            if (t instanceof TimeoutException) {
+                timeoutCounter.increment();
+            } else if (t instanceof RejectedExecutionException) {
+                rejectedCounter.increment();
             }
+        } catch (Exception e) {
+            log.error("Total exception traffic exception", e);
+        }
+    }
+
+    /**
+     * Step 5: decrement traffic
+     *
+     * @param startTime the start time of original call
+     */
+    private void decrementTraffic(long startTime) {
+        try {
+            concurrentCounter.decrementAndGet();
+            long elapsed = System.currentTimeMillis() - startTime;
+            totalElapsedAccumulator.accumulate(elapsed);
+            maxElapsedAccumulator.accumulate(elapsed);
+        } catch (Exception e) {
+            log.error("Total decrement traffic exception", e);
         }
     }
 
@@ -236,4 +275,37 @@ public class LimiterStatistics implements Serializable {
         return map;
     }
 
+    /**
+     * The merge the collected statistics of another limiter into the target, such as a per-key limiter into its rule:
+     * the max values take the max, the average elapsed is weighted by the success, and the others are summed
+     *
+     * @param target the statistics merged into
+     * @param source the statistics to merge
+     */
+    public static void merge(Map<String, Long> target, Map<String, Long> source) {
+        if (target.isEmpty()) {
+            target.putAll(source);
+            return;
+        }
+
+        long targetSuccess = target.getOrDefault(SUCCESS_KEY, 0L);
+        long sourceSuccess = source.getOrDefault(SUCCESS_KEY, 0L);
+        long totalSuccess = targetSuccess + sourceSuccess;
+        long avgElapsed = totalSuccess < 1 ? 0 : (target.getOrDefault(AVG_ELAPSED_KEY, 0L) * targetSuccess
+                + source.getOrDefault(AVG_ELAPSED_KEY, 0L) * sourceSuccess) / totalSuccess;
+        for (Map.Entry<String, Long> entry : source.entrySet()) {
+            switch (entry.getKey()) {
+                case AVG_ELAPSED_KEY:
+                    break;
+                case MAX_ELAPSED_KEY:
+                case MAX_CONCURRENT_KEY:
+                    target.merge(entry.getKey(), entry.getValue(), Math::max);
+                    break;
+                default:
+                    target.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+        }
+        target.put(AVG_ELAPSED_KEY, avgElapsed);
+    }
+
 }
@@ -7,8 +7,6 @@ import cn.micro.neural.limiter.event.EventType;
 import cn.micro.neural.limiter.exception.LimiterException;
 import cn.micro.neural.storage.OriginalCall;
 import cn.micro.neural.storage.OriginalContext;
-import cn.neural.common.utils.BeanUtils;
-import cn.neural.common.utils.CloneUtils;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +15,10 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The Abstract Call Limiter.
@@ -28,6 +30,12 @@ import java.util.Set;
 @Getter
 public abstract class AbstractCallLimiter implements ILimiter {
 
+    /**
+     * The attachment key of {@link OriginalContext}, the micros after which the rejected rate permits are available
+     * without waiting(not reduced by the rate timeout), the same for the stand-alone and the cluster limiters
+     */
+    public static final String RETRY_AFTER_KEY = "retry_after_micros";
+
     private final Set<EventListener> listeners = new LinkedHashSet<>();
     protected volatile LimiterConfig config = new LimiterConfig();
     protected volatile LimiterStatistics statistics = new LimiterStatistics();
@@ -48,27 +56,50 @@ public abstract class AbstractCallLimiter implements ILimiter {
             // check concurrent limiter config
             LimiterConfig.ConcurrentLimiterConfig concurrent = config.getConcurrent();
             if (concurrent.getPermitUnit() < 1 || concurrent.getMaxPermit() < 1
-                    || concurrent.getMaxPermit() <= concurrent.getPermitUnit()) {
+                    || concurrent.getMaxPermit() <= concurrent.getPermitUnit()
+                    || (LimiterConfig.Switch.ON == concurrent.getLease() && concurrent.getLeaseTimeout() < 3)) {
                 log.warn("Illegal concurrent limiter config: {}", config);
                 return false;
             }
             // check rate limiter config
             LimiterConfig.RateLimiterConfig rate = config.getRate();
             if (rate.getRateUnit() < 1 || rate.getMaxRate() < 1
-                    || rate.getMaxRate() <= rate.getRateUnit()) {
+                    || rate.getMaxRate() <= rate.getRateUnit()
+                    || (LimiterConfig.RateAlgorithm.WARM_UP == rate.getAlgorithm()
+                    && (rate.getWarmupPeriod() < 1 || rate.getColdFactor() < 1.0))
+                    || (LimiterConfig.RateAlgorithm.GCRA == rate.getAlgorithm()
+                    && rate.getBurst() != 0 && rate.getBurst() < rate.getRateUnit())
+                    || (LimiterConfig.Switch.ON == rate.getLease() && rate.getMaxLeaseSize() < 1)) {
                 log.warn("Illegal rate limiter config: {}", config);
                 return false;
             }
             // check counter limiter config
             LimiterConfig.CounterLimiterConfig counter = config.getCounter();
             if (counter.getCountUnit() < 1 || counter.getMaxCount() < 1
-                    || counter.getMaxCount() <= counter.getCountUnit()) {
+                    || counter.getMaxCount() <= counter.getCountUnit() || counter.getBucketCount() < 1) {
                 log.warn("Illegal counter limiter config: {}", config);
                 return false;
             }
+            // check the fallback and the shards of cluster limiter config
+            LimiterConfig.ClusterLimiterConfig cluster = config.getCluster();
+            if ((LimiterConfig.Switch.ON == cluster.getFallback() && (cluster.getSlowThreshold() < 1
+                    || cluster.getFailureThreshold() < 1 || cluster.getProbeInterval() < 1
+                    || cluster.getRecoverThreshold() < 1 || cluster.getNodeCount() < 1
+                    || cluster.getHeartbeatInterval() < 1))
+                    || cluster.getShards() < 1 || cluster.getRebalanceInterval() < 1) {
+                log.warn("Illegal cluster limiter config: {}", config);
+                return false;
+            }
+            // check token limiter config
+            LimiterConfig.TokenLimiterConfig token = config.getToken();
+            if (LimiterConfig.Mode.TOKEN == config.getMode() && (null == token.getHost() || token.getPort() < 0
+                    || token.getTimeout() < 1 || token.getNodeCount() < 1)) {
+                log.warn("Illegal token limiter config: {}", config);
+                return false;
+            }
 
-            // Copy properties attributes after deep copy
-            BeanUtils.copyProperties(CloneUtils.clone(config), this.config);
+            // publish the deep copy, the engines read the new config on the next acquire
+            this.config = config.copy();
 
             return tryRefresh(config);
         } catch (Exception e) {
@@ -110,13 +141,8 @@ public abstract class AbstractCallLimiter implements ILimiter {
                 return statistics.doStrategyProcess(originalContext, EventType.CONCURRENT_EXCEED,
                         config.getConcurrent().getStrategy(), originalCall);
             case SUCCESS:
-                // try acquire concurrent success
-                try {
-                    return doRateOriginalCall(originalContext, originalCall);
-                } finally {
-                    // only need to be released after success
-                    releaseConcurrent();
-                }
+                // try acquire concurrent success, only need to be released after success
+                return doReleaseOriginalCall(originalContext, () -> doRateOriginalCall(originalContext, originalCall));
             case EXCEPTION:
                 // try acquire concurrent exceptions
                 this.collectEvent(EventType.CONCURRENT_EXCEPTION);
@@ -127,6 +153,36 @@ public abstract class AbstractCallLimiter implements ILimiter {
         }
     }
 
+    /**
+     * The original call holding the acquired concurrent permit, the permit is released when
+     * the call returns or when its {@link CompletionStage} completes
+     *
+     * @param originalContext {@link OriginalContext}
+     * @param originalCall    The original call interface
+     * @return The original call result
+     * @throws Throwable throw original call exception
+     */
+    protected Object doReleaseOriginalCall(OriginalContext originalContext, OriginalCall originalCall) throws Throwable {
+        final long startNanos = System.nanoTime();
+        Object result;
+        try {
+            result = originalCall.call(originalContext);
+        } catch (Throwable t) {
+            releaseConcurrent(System.nanoTime() - startNanos, isDropped(t));
+            throw t;
+        }
+
+        if (result instanceof CompletionStage) {
+            // the async call holds the permit until the stage completes
+            ((CompletionStage<?>) result).whenComplete((r, t) ->
+                    releaseConcurrent(System.nanoTime() - startNanos, null != t && isDropped(t)));
+        } else {
+            releaseConcurrent(System.nanoTime() - startNanos, false);
+        }
+
+        return result;
+    }
+
     /**
      * The rate limiter and original call
      *
@@ -144,9 +200,10 @@ public abstract class AbstractCallLimiter implements ILimiter {
         switch (tryAcquireRate()) {
             case FAILURE:
                 // try acquire rate exceed
+                attachRetryAfter(originalContext, getRetryAfterMicros());
                 this.collectEvent(EventType.RATE_EXCEED);
                 return statistics.doStrategyProcess(originalContext, EventType.RATE_EXCEED,
-                        config.getConcurrent().getStrategy(), originalCall);
+                        config.getRate().getStrategy(), originalCall);
             case SUCCESS:
                 // try acquire rate success
                 return doCounterOriginalCall(originalContext, originalCall);
@@ -179,7 +236,7 @@ public abstract class AbstractCallLimiter implements ILimiter {
                 // try acquire counter exceed
                 this.collectEvent(EventType.COUNTER_EXCEED);
                 return statistics.doStrategyProcess(originalContext, EventType.COUNTER_EXCEED,
-                        config.getConcurrent().getStrategy(), originalCall);
+                        config.getCounter().getStrategy(), originalCall);
             case SUCCESS:
                 // try acquire counter success
                 return statistics.wrapperOriginalCall(originalContext, originalCall);
@@ -210,7 +267,7 @@ public abstract class AbstractCallLimiter implements ILimiter {
      * @param eventType {@link EventType}
      * @param args      attachment parameters
      */
-    private void collectEvent(EventType eventType, Object... args) {
+    protected void collectEvent(EventType eventType, Object... args) {
         for (EventListener eventListener : listeners) {
             try {
                 eventListener.onEvent(config, eventType, args);
@@ -240,6 +297,27 @@ public abstract class AbstractCallLimiter implements ILimiter {
      */
     protected abstract void releaseConcurrent();
 
+    /**
+     * The release(decrement) of concurrent limiter with the sample of the call.
+     *
+     * @param elapsedNanos the elapsed nanos of the call holding the permit
+     * @param dropped      true is the call is timeout or rejected
+     */
+    protected void releaseConcurrent(long elapsedNanos, boolean dropped) {
+        releaseConcurrent();
+    }
+
+    /**
+     * The call is dropped by the downstream, such as timeout or rejected
+     *
+     * @param t the exception of original call
+     * @return true is dropped
+     */
+    private static boolean isDropped(Throwable t) {
+        Throwable cause = t instanceof CompletionException && null != t.getCause() ? t.getCause() : t;
+        return cause instanceof TimeoutException || cause instanceof RejectedExecutionException;
+    }
+
     /**
      * The try acquire of rate limiter.
      *
@@ -247,6 +325,27 @@ public abstract class AbstractCallLimiter implements ILimiter {
      */
     protected abstract Acquire tryAcquireRate();
 
+    /**
+     * The micros after which the rejected rate permits are available, only known by some rate algorithms
+     *
+     * @return micros, -1 is unknown
+     */
+    protected long getRetryAfterMicros() {
+        return -1L;
+    }
+
+    /**
+     * The attach the retry-after of the rejected rate permits to the {@link OriginalContext}
+     *
+     * @param originalContext  {@link OriginalContext}
+     * @param retryAfterMicros micros, negative is unknown
+     */
+    protected static void attachRetryAfter(OriginalContext originalContext, long retryAfterMicros) {
+        if (null != originalContext && retryAfterMicros >= 0) {
+            originalContext.getAttachments().put(RETRY_AFTER_KEY, retryAfterMicros);
+        }
+    }
+
     /**
      * The acquire windows time of counter limiter.
      *
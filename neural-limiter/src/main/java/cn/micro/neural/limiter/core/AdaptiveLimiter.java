@@ -0,0 +1,64 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import cn.micro.neural.limiter.event.EventType;
+import cn.micro.neural.limiter.extension.IConcurrentLimiter;
+import cn.micro.neural.limiter.extension.VegasLimit;
+import cn.neural.common.extension.Extension;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The Adaptive Limiter.
+ * <p>
+ * The stand-alone limiter whose concurrent limit is adjusted by {@link VegasLimit} from the RTT and the
+ * in-flight calls, the ConcurrentLimiterConfig#maxPermit is the upper bound of the limit.
+ * The change of the limit is published as {@link EventType#CONCURRENT_LIMIT_CHANGED}.
+ *
+ * @author lry
+ * @apiNote The local limiter with the adaptive concurrent limit
+ */
+@Slf4j
+@Extension("adaptive")
+public class AdaptiveLimiter extends StandAloneLimiter {
+
+    private volatile VegasLimit vegasLimit;
+
+    @Override
+    protected boolean tryRefresh(LimiterConfig config) {
+        super.tryRefresh(config);
+
+        // the learned limit and no-load RTT are kept, only the parameters are updated
+        LimiterConfig.AdaptiveLimiterConfig adaptiveConfig = config.getAdaptive();
+        int maxLimit = config.getConcurrent().getMaxPermit();
+        int minLimit = Math.min(adaptiveConfig.getMinLimit(), maxLimit);
+        if (null == vegasLimit) {
+            this.vegasLimit = new VegasLimit(adaptiveConfig.getInitialLimit(), minLimit, maxLimit,
+                    adaptiveConfig.getSmoothing(), adaptiveConfig.getProbeMultiplier(), adaptiveConfig.getSampleWindow());
+        } else {
+            vegasLimit.update(minLimit, maxLimit, adaptiveConfig.getSmoothing(),
+                    adaptiveConfig.getProbeMultiplier(), adaptiveConfig.getSampleWindow());
+        }
+        semaphore.setMaxPermits(vegasLimit.getLimit());
+        return true;
+    }
+
+    @Override
+    protected void releaseConcurrent(long elapsedNanos, boolean dropped) {
+        IConcurrentLimiter tempSemaphore = semaphore;
+        int inflight = tempSemaphore.acquiredPermits();
+        releaseConcurrent();
+
+        try {
+            VegasLimit tempVegasLimit = vegasLimit;
+            int oldLimit = tempVegasLimit.getLimit();
+            int newLimit = tempVegasLimit.onSample(elapsedNanos, inflight, dropped);
+            if (newLimit != oldLimit) {
+                tempSemaphore.setMaxPermits(newLimit);
+                collectEvent(EventType.CONCURRENT_LIMIT_CHANGED, oldLimit, newLimit);
+            }
+        } catch (Exception e) {
+            log.error("Adaptive concurrent limit exception", e);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Cluster Health.
+ * <p>
+ * The health of the storage judged by the latency and the errors of the storage calls:
+ * 1.The consecutive failureThreshold slow(or failed) calls degrade the storage
+ * 2.When degraded, only one call per probeInterval is allowed to probe the storage
+ * 3.The consecutive recoverThreshold healthy probes recover the storage
+ *
+ * @author lry
+ */
+public class ClusterHealth {
+
+    private final long slowThresholdNanos;
+    private final int failureThreshold;
+    private final long probeIntervalNanos;
+    private final int recoverThreshold;
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger recovers = new AtomicInteger();
+    private final AtomicLong nextProbeNanos = new AtomicLong();
+    private volatile boolean degraded = false;
+
+    public ClusterHealth(LimiterConfig.ClusterLimiterConfig config) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowThreshold());
+        this.failureThreshold = config.getFailureThreshold();
+        this.probeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getProbeInterval());
+        this.recoverThreshold = config.getRecoverThreshold();
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * The try to probe the degraded storage, at most one probe per interval
+     *
+     * @return true is allowed to call the storage
+     */
+    public boolean tryProbe() {
+        long next = nextProbeNanos.get();
+        long now = System.nanoTime();
+        return now - next >= 0 && nextProbeNanos.compareAndSet(next, now + probeIntervalNanos);
+    }
+
+    /**
+     * The record a storage call
+     *
+     * @param elapsedNanos the elapsed nanos of the call
+     * @param success      the call is success
+     * @return true is the degraded state changed
+     */
+    public boolean record(long elapsedNanos, boolean success) {
+        boolean healthy = success && elapsedNanos < slowThresholdNanos;
+        if (degraded) {
+            if (!healthy) {
+                recovers.set(0);
+                return false;
+            }
+            if (recovers.incrementAndGet() == recoverThreshold) {
+                failures.set(0);
+                degraded = false;
+                return true;
+            }
+
+            return false;
+        }
+
+        if (healthy) {
+            failures.set(0);
+            return false;
+        }
+        if (failures.incrementAndGet() == failureThreshold) {
+            recovers.set(0);
+            nextProbeNanos.set(System.nanoTime() + probeIntervalNanos);
+            degraded = true;
+            return true;
+        }
+
+        return false;
+    }
+
+}
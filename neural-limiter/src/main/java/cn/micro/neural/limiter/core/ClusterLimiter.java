@@ -1,21 +1,60 @@
 package cn.micro.neural.limiter.core;
 
 import cn.micro.neural.limiter.LimiterConfig;
+import cn.micro.neural.limiter.event.EventType;
+import cn.micro.neural.limiter.exception.LimiterException;
 import cn.micro.neural.storage.FactoryStorage;
+import cn.micro.neural.storage.IAsyncStorage;
+import cn.micro.neural.storage.OriginalCall;
+import cn.micro.neural.storage.OriginalContext;
 import cn.neural.common.extension.Extension;
+import cn.neural.common.thread.NamedThreadFactory;
 import cn.neural.common.utils.StreamUtils;
+import com.google.common.util.concurrent.Uninterruptibles;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The Cluster Limiter by Redis.
  * <p>
  * 1.Limit instantaneous concurrent
  * 2.Limit the maximum number of counter for a time window
- * 3.Token Bucket
+ * 3.Token Bucket(bursty or warming up) or GCRA(only the theoretical arrival time per key)
+ * <p>
+ * The {@link #wrapperCall(OriginalContext, OriginalCall)} checks and reserves all the enabled limiters by
+ * one fused script, so a guarded call only costs the round trip of admission and the one of release.
+ * When the rate lease is on, the rate tokens are leased in blocks by {@link LeasedTokenBucket} and
+ * the rate limiter is checked locally. With the {@link IAsyncStorage}, the async call doesn't block the
+ * calling thread on the admission, and the concurrent permits are released without waiting.
+ * <p>
+ * When the fallback is on and the storage is slow or down({@link ClusterHealth}), the calls are limited by a
+ * local {@link StandAloneLimiter} with the node's fair share of the global quota, the live nodes are counted
+ * by the node heartbeat.
+ * <p>
+ * When the concurrent lease is on, each cluster concurrent permit is a lease with a deadline, so the permits
+ * of a crashed node are reclaimed once their leases expire, and the leases of the in-flight calls are renewed.
+ * <p>
+ * When sharded, the global limit is split into the sub-keys of shards spread across the slots of the Redis
+ * Cluster by the hash tag, the node limits on its shard({@link ShardedQuota}) with the quota of the shard.
  *
  * @author lry
  **/
@@ -23,86 +62,831 @@ import java.util.List;
 @Extension("cluster")
 public class ClusterLimiter extends AbstractCallLimiter {
 
-    private static String CONCURRENT_SCRIPT = StreamUtils.loadScript("concurrent_limiter.lua");
-    private static String COUNTER_SCRIPT = StreamUtils.loadScript("counter_limiter.lua");
-    private static String RATE_SCRIPT = StreamUtils.loadScript("rate_limiter.lua");
+    private static String CLUSTER_SCRIPT = StreamUtils.loadScript("/cluster_limiter.lua");
+    private static String CONCURRENT_SCRIPT = StreamUtils.loadScript("/concurrent_limiter.lua");
+    private static String LEASE_RATE_SCRIPT = StreamUtils.loadScript("/lease_rate_limiter.lua");
+    private static String NODE_HEARTBEAT_SCRIPT = StreamUtils.loadScript("/node_heartbeat.lua");
+    private static String LEASE_CONCURRENT_SCRIPT = StreamUtils.loadScript("/lease_concurrent_limiter.lua");
+    private static String SHARD_DEMAND_SCRIPT = StreamUtils.loadScript("/shard_demand.lua");
+
+    static {
+        // the scripts are loaded once, and evaluated by the SHA1 on the hot path(or locally by the memory storage)
+        FactoryStorage.INSTANCE.registerScript(CLUSTER_SCRIPT, LocalScripts::cluster);
+        FactoryStorage.INSTANCE.registerScript(CONCURRENT_SCRIPT, LocalScripts::counter);
+        FactoryStorage.INSTANCE.registerScript(LEASE_RATE_SCRIPT, LocalScripts::leaseRate);
+        FactoryStorage.INSTANCE.registerScript(NODE_HEARTBEAT_SCRIPT, LocalScripts::nodeHeartbeat);
+        FactoryStorage.INSTANCE.registerScript(LEASE_CONCURRENT_SCRIPT, LocalScripts::leaseConcurrent);
+        FactoryStorage.INSTANCE.registerScript(SHARD_DEMAND_SCRIPT, LocalScripts::shardDemand);
+    }
+
+    private static final int EXECUTOR_THREADS = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
+    private static final int EXECUTOR_QUEUE_SIZE = 10000;
+    /**
+     * The executor of the lease renewal and of the original calls admitted by the async storage, bounded by
+     * the threads and the queue, the overflow runs on the submitting thread
+     */
+    private static volatile Executor callExecutor = new ThreadPoolExecutor(EXECUTOR_THREADS, EXECUTOR_THREADS,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(EXECUTOR_QUEUE_SIZE),
+            new NamedThreadFactory("neural-limiter-cluster", true), new ThreadPoolExecutor.CallerRunsPolicy());
+    /**
+     * The executor of the node heartbeat and the shard rebalance
+     */
+    private static final ScheduledExecutorService HEARTBEAT_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("neural-limiter-heartbeat", true));
+    /**
+     * The executor of the concurrent lease renewal, one thread per limiter holding leases(at most EXECUTOR_THREADS),
+     * so a slow renewal or heartbeat doesn't delay the other renewals past the lease timeout
+     */
+    private static final ScheduledThreadPoolExecutor LEASE_EXECUTOR = newLeaseExecutor();
+    private static final AtomicInteger LEASE_RENEWALS = new AtomicInteger();
+    /**
+     * The executor only completing the admitted async calls after their rate wait, it never runs the calls
+     */
+    private static final ScheduledExecutorService DELAY_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("neural-limiter-delay", true));
+    private static final String INSTANCE_ID = UUID.randomUUID().toString();
+    private static final AtomicLong LEASE_SEQUENCE = new AtomicLong();
+
+    private static final String CONCURRENT_KEY_SUFFIX = "concurrent";
+    private static final String CONCURRENT_LEASE_KEY_SUFFIX = "concurrent_lease";
+    private static final String RATE_KEY_SUFFIX = "rate";
+    private static final String GCRA_KEY_SUFFIX = "gcra";
+    private static final String COUNTER_KEY_SUFFIX = "counter";
+    private static final String NODES_KEY_SUFFIX = "nodes";
+    private static final String DEMAND_KEY_SUFFIX = "demand";
+
+    private volatile LeasedTokenBucket leasedBucket;
+    private volatile StandAloneLimiter fallbackLimiter;
+    private volatile ClusterHealth health;
+    private volatile int liveNodes = 0;
+    private LimiterConfig.ClusterLimiterConfig clusterConfig;
+    private ScheduledFuture<?> heartbeat;
+    /**
+     * The concurrent leases of the in-flight calls, renewed by the lease renewal
+     */
+    private final Set<String> inflightLeases = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> leaseRenewal;
+    private long leaseTimeout;
+    /**
+     * The limits of the shard of this node, the same as the config when not sharded
+     */
+    private volatile LimiterConfig limits = config;
+    private volatile ShardedQuota shardedQuota;
+    private volatile int shard = 0;
+    private ScheduledFuture<?> rebalance;
+    private long rebalanceInterval;
+
+    /**
+     * The use the executor supplied by the caller, for the lease renewal and the original calls admitted by
+     * the async storage. It is taken by the limiters refreshed or called afterwards, and not shutdown here.
+     *
+     * @param executor {@link Executor}
+     */
+    public static void setExecutor(Executor executor) {
+        if (null == executor) {
+            throw new LimiterException("The executor can't be null");
+        }
+
+        callExecutor = executor;
+    }
 
     @Override
     protected boolean tryRefresh(LimiterConfig config) {
+        refreshShard(this.config);
+        refreshLease(config.getRate());
+        refreshConcurrentLease(config.getConcurrent());
+        refreshFallback(config.getCluster());
         return true;
     }
 
     @Override
-    protected Acquire tryAcquireConcurrent() {
-        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = config.getConcurrent();
-        List<String> keys = Collections.singletonList(config.identity());
-        List<Object> values = Arrays.asList(concurrentConfig.getPermitUnit(),
-                concurrentConfig.getMaxPermit(), concurrentConfig.getTimeout());
+    public synchronized void destroy() {
+        LeasedTokenBucket bucket = this.leasedBucket;
+        if (null != bucket) {
+            bucket.giveBack();
+        }
+        if (null != heartbeat) {
+            heartbeat.cancel(false);
+            this.heartbeat = null;
+        }
+        cancelLeaseRenewal();
+        if (null != rebalance) {
+            rebalance.cancel(false);
+            this.rebalance = null;
+        }
+    }
 
+    /**
+     * The refresh the shard of this node and the limits of the shard
+     *
+     * @param newConfig the published config
+     */
+    private void refreshShard(LimiterConfig newConfig) {
+        LimiterConfig.ClusterLimiterConfig newClusterConfig = newConfig.getCluster();
+        if (newClusterConfig.getShards() <= 1) {
+            this.shardedQuota = null;
+            this.shard = 0;
+            this.limits = newConfig;
+            if (null != rebalance) {
+                rebalance.cancel(false);
+                this.rebalance = null;
+            }
+            return;
+        }
+
+        ShardedQuota quota = this.shardedQuota;
+        if (null == quota || quota.getShards() != newClusterConfig.getShards()) {
+            quota = new ShardedQuota(newClusterConfig.getShards());
+            this.shard = quota.select(INSTANCE_ID);
+            this.shardedQuota = quota;
+        }
+        this.limits = newConfig.share(quota.getRatio());
+        if (null == rebalance || rebalanceInterval != newClusterConfig.getRebalanceInterval()) {
+            if (null != rebalance) {
+                rebalance.cancel(false);
+            }
+            this.rebalanceInterval = newClusterConfig.getRebalanceInterval();
+            this.rebalance = HEARTBEAT_EXECUTOR.scheduleWithFixedDelay(this::rebalance,
+                    rebalanceInterval, rebalanceInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The report the demand of this node in the current period, and rebalance the quota of the shard by
+     * the demand of all shards in the last period(completed, so all nodes see the same demand)
+     */
+    private void rebalance() {
+        ShardedQuota quota = this.shardedQuota;
+        if (null == quota) {
+            return;
+        }
+
+        long interval = config.getCluster().getRebalanceInterval();
+        long period = System.currentTimeMillis() / interval;
         try {
-            Number[] result = FactoryStorage.INSTANCE.getStorage().eval(CONCURRENT_SCRIPT, keys, values);
-            if (result == null || result.length != 2) {
-                return Acquire.EXCEPTION;
+            // 需求key保留两个周期，供下一个周期读取
+            FactoryStorage.INSTANCE.getStorage().eval(SHARD_DEMAND_SCRIPT,
+                    Collections.singletonList(demandKey(shard, period)), quota.drain(), interval * 2);
+
+            long[] demands = new long[quota.getShards()];
+            for (int i = 0; i < demands.length; i++) {
+                Number[] result = FactoryStorage.INSTANCE.getStorage().eval(SHARD_DEMAND_SCRIPT,
+                        Collections.singletonList(demandKey(i, period - 1)), 0, interval * 2);
+                demands[i] = null == result || result.length != 2 ? 0L : result[0].longValue();
+            }
+            if (quota.rebalance(shard, demands)) {
+                this.limits = config.share(quota.getRatio());
+            }
+        } catch (Exception e) {
+            log.warn("The cluster limiter rebalance exception: {}", e.getMessage());
+        }
+    }
+
+    private void refreshLease(LimiterConfig.RateLimiterConfig rateConfig) {
+        LeasedTokenBucket oldBucket = this.leasedBucket;
+        if (isLeaseEnable(rateConfig)) {
+            if (null != oldBucket && oldBucket.getMaxLeaseSize() == rateConfig.getMaxLeaseSize()) {
+                return;
+            }
+            this.leasedBucket = new LeasedTokenBucket(rateConfig.getMaxLeaseSize(), this::leaseRate, callExecutor);
+        } else {
+            this.leasedBucket = null;
+        }
+
+        // 归还旧租约中未使用的令牌
+        if (null != oldBucket) {
+            oldBucket.giveBack();
+        }
+    }
+
+    private void refreshConcurrentLease(LimiterConfig.ConcurrentLimiterConfig concurrentConfig) {
+        boolean leaseEnable = LimiterConfig.Switch.ON == concurrentConfig.getLease();
+        if (leaseEnable && null != leaseRenewal && leaseTimeout == concurrentConfig.getLeaseTimeout()) {
+            return;
+        }
+
+        cancelLeaseRenewal();
+        if (leaseEnable) {
+            // 每个租约周期续约三次，偶尔的续约失败不会导致租约过期
+            this.leaseTimeout = concurrentConfig.getLeaseTimeout();
+            long interval = leaseTimeout / 3;
+            LEASE_RENEWALS.incrementAndGet();
+            resizeLeaseExecutor();
+            this.leaseRenewal = LEASE_EXECUTOR.scheduleWithFixedDelay(
+                    this::renewConcurrentLeases, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelLeaseRenewal() {
+        if (null != leaseRenewal) {
+            leaseRenewal.cancel(false);
+            this.leaseRenewal = null;
+            LEASE_RENEWALS.decrementAndGet();
+            resizeLeaseExecutor();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newLeaseExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new NamedThreadFactory("neural-limiter-lease", true));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * The resize the lease executor to the number of limiters renewing the leases
+     */
+    private static synchronized void resizeLeaseExecutor() {
+        LEASE_EXECUTOR.setCorePoolSize(Math.max(1, Math.min(LEASE_RENEWALS.get(), EXECUTOR_THREADS)));
+    }
+
+    private void refreshFallback(LimiterConfig.ClusterLimiterConfig newClusterConfig) {
+        if (LimiterConfig.Switch.ON != newClusterConfig.getFallback()) {
+            this.health = null;
+            this.fallbackLimiter = null;
+            this.clusterConfig = null;
+            if (null != heartbeat) {
+                heartbeat.cancel(false);
+                this.heartbeat = null;
             }
+            return;
+        }
+
+        // the quota of the local limiter follows the new config
+        refreshFallbackLimiter();
+        if (newClusterConfig.equals(clusterConfig)) {
+            return;
+        }
+
+        this.health = new ClusterHealth(newClusterConfig);
+        if (null == clusterConfig || !clusterConfig.getHeartbeatInterval().equals(newClusterConfig.getHeartbeatInterval())) {
+            if (null != heartbeat) {
+                heartbeat.cancel(false);
+            }
+            this.heartbeat = HEARTBEAT_EXECUTOR.scheduleWithFixedDelay(this::heartbeat,
+                    0, newClusterConfig.getHeartbeatInterval(), TimeUnit.MILLISECONDS);
+        }
+        this.clusterConfig = newClusterConfig;
+    }
 
-            return Acquire.valueOf(result[0].intValue());
+    /**
+     * The refresh the local limiter by the node's fair share of the global quota
+     */
+    private synchronized void refreshFallbackLimiter() {
+        int nodes = liveNodes > 0 ? liveNodes : config.getCluster().getNodeCount();
+        LimiterConfig localConfig = config.fairShare(nodes);
+
+        StandAloneLimiter limiter = this.fallbackLimiter;
+        if (null == limiter) {
+            limiter = new StandAloneLimiter();
+            // the calls limited locally are counted by the statistics of the cluster limiter
+            limiter.statistics = this.statistics;
+        }
+        try {
+            limiter.refresh(localConfig);
+            this.fallbackLimiter = limiter;
         } catch (Exception e) {
-            log.error("Try acquire cluster concurrent exception", e);
-            return Acquire.EXCEPTION;
+            log.error("Refresh the local fallback limiter exception", e);
         }
     }
 
-    @Override
-    protected void releaseConcurrent() {
-        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = config.getConcurrent();
-        List<String> keys = Collections.singletonList(config.identity());
-        List<Object> values = Arrays.asList(-concurrentConfig.getPermitUnit(),
-                concurrentConfig.getMaxPermit(), concurrentConfig.getTimeout());
+    /**
+     * The heartbeat of the node, and count the live nodes sharing the global quota
+     */
+    private void heartbeat() {
+        LimiterConfig.ClusterLimiterConfig clusterConfig = config.getCluster();
+        List<String> keys = Collections.singletonList(globalKey(NODES_KEY_SUFFIX));
+        // 连续三次未心跳的节点视为下线
+        Object[] values = {INSTANCE_ID, clusterConfig.getHeartbeatInterval() * 3};
 
         try {
-            FactoryStorage.INSTANCE.getStorage().eval(CONCURRENT_SCRIPT, keys, values);
+            Number[] result = FactoryStorage.INSTANCE.getStorage().eval(NODE_HEARTBEAT_SCRIPT, keys, values);
+            if (result == null || result.length != 2 || result[0].intValue() < 1) {
+                return;
+            }
+
+            int nodes = result[0].intValue();
+            if (nodes != liveNodes) {
+                this.liveNodes = nodes;
+                refreshFallbackLimiter();
+            }
         } catch (Exception e) {
-            log.error("Try release cluster concurrent exception", e);
+            log.warn("The cluster limiter heartbeat exception: {}", e.getMessage());
         }
     }
 
     @Override
-    protected Acquire tryAcquireRate() {
-        LimiterConfig.RateLimiterConfig rateConfig = config.getRate();
-        List<String> keys = Collections.singletonList(config.identity());
-        List<Object> values = Arrays.asList(rateConfig.getRateUnit(), rateConfig.getMaxRate());
+    public Object wrapperCall(final OriginalContext originalContext, final OriginalCall originalCall) throws Throwable {
+        return doClusterCall(originalContext, originalCall, null);
+    }
+
+    @Override
+    public CompletionStage<?> wrapperAsyncCall(final OriginalContext originalContext, final OriginalCall originalCall) {
+        IAsyncStorage asyncStorage = FactoryStorage.INSTANCE.getAsyncStorage();
+        if (null == asyncStorage) {
+            return super.wrapperAsyncCall(originalContext, originalCall);
+        }
 
         try {
-            Number[] result = FactoryStorage.INSTANCE.getStorage().eval(RATE_SCRIPT, keys, values);
-            if (result == null || result.length != 2) {
-                return Acquire.EXCEPTION;
+            return toStage(doClusterCall(originalContext, originalCall, asyncStorage));
+        } catch (Throwable t) {
+            return failedStage(t);
+        }
+    }
+
+    /**
+     * The cluster limiter and original call
+     *
+     * @param originalContext {@link OriginalContext}
+     * @param originalCall    The original call interface
+     * @param asyncStorage    the admission is non-blocking by the async storage, null is blocking
+     * @return The original call result, or its {@link CompletionStage} when the admission is non-blocking
+     * @throws Throwable throw original call exception
+     */
+    private Object doClusterCall(final OriginalContext originalContext, final OriginalCall originalCall,
+                                 final IAsyncStorage asyncStorage) throws Throwable {
+        // the don't need limiting
+        if (null == config || LimiterConfig.Switch.OFF == config.getEnable()) {
+            return originalCall.call(originalContext);
+        }
+
+        // the demand of the shard
+        ShardedQuota quota = this.shardedQuota;
+        if (null != quota) {
+            quota.record();
+        }
+
+        // the storage is degraded, limit locally except the probes
+        final ClusterHealth health = this.health;
+        StandAloneLimiter fallbackLimiter = this.fallbackLimiter;
+        if (null != health && null != fallbackLimiter && health.isDegraded() && !health.tryProbe()) {
+            return fallbackLimiter.wrapperCall(originalContext, originalCall);
+        }
+
+        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = limits.getConcurrent();
+        LimiterConfig.RateLimiterConfig rateConfig = limits.getRate();
+        LimiterConfig.CounterLimiterConfig counterConfig = limits.getCounter();
+        final boolean concurrentEnable = LimiterConfig.Switch.ON == concurrentConfig.getEnable();
+        boolean rateEnable = LimiterConfig.Switch.ON == rateConfig.getEnable();
+        final boolean counterEnable = LimiterConfig.Switch.ON == counterConfig.getEnable();
+        if (!concurrentEnable && !rateEnable && !counterEnable) {
+            return statistics.wrapperOriginalCall(originalContext, originalCall);
+        }
+
+        // the leased rate tokens are checked locally, before the round trip
+        final LeasedTokenBucket bucket = rateEnable ? this.leasedBucket : null;
+        if (null != bucket) {
+            if (!bucket.tryAcquire(rateConfig.getRateUnit(), rateConfig.getTimeout())) {
+                this.collectEvent(EventType.RATE_EXCEED);
+                return statistics.doStrategyProcess(originalContext, EventType.RATE_EXCEED,
+                        rateConfig.getStrategy(), originalCall);
+            }
+            if (!concurrentEnable && !counterEnable) {
+                return statistics.wrapperOriginalCall(originalContext, originalCall);
+            }
+            rateEnable = false;
+        }
+
+        // check and reserve all the enabled limiters by one round trip
+        final boolean clusterRateEnable = rateEnable;
+        final String leaseId = concurrentEnable && LimiterConfig.Switch.ON == concurrentConfig.getLease() ?
+                INSTANCE_ID + LimiterConfig.DELIMITER + LEASE_SEQUENCE.incrementAndGet() : "";
+        if (null == asyncStorage) {
+            long startNanos = System.nanoTime();
+            Number[] result = tryAcquireAll(concurrentEnable, rateEnable, counterEnable, leaseId);
+            recordHealth(health, System.nanoTime() - startNanos, null != result);
+            // the permits are reserved, wait for the ticket like the stand-alone token bucket
+            long waitMicros = admittedWaitMicros(result);
+            if (waitMicros > 0) {
+                Uninterruptibles.sleepUninterruptibly(waitMicros, TimeUnit.MICROSECONDS);
+            }
+            return doAdmittedCall(originalContext, originalCall, result,
+                    bucket, concurrentEnable, clusterRateEnable, counterEnable, leaseId);
+        }
+
+        // the calling thread doesn't wait for the round trip nor the rate wait, the original call runs on the
+        // limiter executor with the OriginalContext of the caller
+        final long startNanos = System.nanoTime();
+        return asyncStorage.evalAsync(CLUSTER_SCRIPT, clusterKeys(leaseId),
+                clusterValues(concurrentEnable, rateEnable, counterEnable, leaseId))
+                .handle((result, t) -> {
+                    if (null != t) {
+                        log.error("Try acquire cluster limiter exception", t);
+                    }
+                    Number[] admitted = null != t || null == result || result.length != 4 ? null : result;
+                    recordHealth(health, System.nanoTime() - startNanos, null != admitted);
+                    return admitted;
+                }).thenCompose(ClusterLimiter::delay).thenComposeAsync(result -> {
+                    OriginalContext threadContext = OriginalContext.get();
+                    try {
+                        OriginalContext.set(originalContext);
+                        return toStage(doAdmittedCall(originalContext, originalCall, result,
+                                bucket, concurrentEnable, clusterRateEnable, counterEnable, leaseId));
+                    } catch (Throwable e) {
+                        return failedStage(e);
+                    } finally {
+                        // the executor may run the call on the calling thread(CallerRunsPolicy)
+                        if (null == threadContext) {
+                            OriginalContext.remove();
+                        } else {
+                            OriginalContext.set(threadContext);
+                        }
+                    }
+                }, callExecutor);
+    }
+
+    /**
+     * The rate wait of the admitted result, the rejected result doesn't wait
+     *
+     * @param result {concurrent, rate, counter, rate wait micros}, null is exception
+     * @return micros
+     */
+    private static long admittedWaitMicros(Number[] result) {
+        if (null == result) {
+            return 0L;
+        }
+        for (int i = 0; i < 3; i++) {
+            if (Acquire.FAILURE == Acquire.valueOf(result[i].intValue())) {
+                return 0L;
             }
+        }
+
+        return result[3].longValue();
+    }
+
+    /**
+     * The complete the admitted result after its rate wait by a timer, instead of parking a thread
+     *
+     * @param result {concurrent, rate, counter, rate wait micros}, null is exception
+     * @return the stage of result
+     */
+    private static CompletionStage<Number[]> delay(Number[] result) {
+        long waitMicros = admittedWaitMicros(result);
+        if (waitMicros <= 0) {
+            return CompletableFuture.completedFuture(result);
+        }
+
+        CompletableFuture<Number[]> future = new CompletableFuture<>();
+        DELAY_EXECUTOR.schedule(() -> future.complete(result), waitMicros, TimeUnit.MICROSECONDS);
+        return future;
+    }
+
+    /**
+     * The original call admitted by the result of the fused script
+     *
+     * @param originalContext  {@link OriginalContext}
+     * @param originalCall     The original call interface
+     * @param result           {concurrent, rate, counter, rate wait micros}, null is exception, the rate wait
+     *                         has elapsed when admitted
+     * @param bucket           the leased rate tokens taken before the script, null is not leased
+     * @param concurrentEnable the concurrent limiter is checked by the script
+     * @param rateEnable       the rate limiter is checked by the script
+     * @param counterEnable    the counter limiter is checked by the script
+     * @param leaseId          the id of the concurrent lease, empty is not leased
+     * @return The original call result
+     * @throws Throwable throw original call exception
+     */
+    private Object doAdmittedCall(final OriginalContext originalContext, final OriginalCall originalCall, Number[] result,
+                                  LeasedTokenBucket bucket, boolean concurrentEnable, boolean rateEnable,
+                                  boolean counterEnable, String leaseId) throws Throwable {
+        if (null == result) {
+            if (concurrentEnable) {
+                this.collectEvent(EventType.CONCURRENT_EXCEPTION);
+            }
+            if (rateEnable) {
+                this.collectEvent(EventType.RATE_EXCEPTION);
+            }
+            if (counterEnable) {
+                this.collectEvent(EventType.COUNTER_EXCEPTION);
+            }
+            return statistics.wrapperOriginalCall(originalContext, originalCall);
+        }
+
+        // the first rejected limiter decides the strategy, nothing is reserved when rejected
+        if (null != bucket && (Acquire.FAILURE == Acquire.valueOf(result[0].intValue())
+                || Acquire.FAILURE == Acquire.valueOf(result[2].intValue()))) {
+            bucket.refund(limits.getRate().getRateUnit());
+        }
+        if (Acquire.FAILURE == Acquire.valueOf(result[0].intValue())) {
+            this.collectEvent(EventType.CONCURRENT_EXCEED);
+            return statistics.doStrategyProcess(originalContext, EventType.CONCURRENT_EXCEED,
+                    limits.getConcurrent().getStrategy(), originalCall);
+        }
+        if (Acquire.FAILURE == Acquire.valueOf(result[1].intValue())) {
+            attachRetryAfter(originalContext, result[3].longValue());
+            this.collectEvent(EventType.RATE_EXCEED);
+            return statistics.doStrategyProcess(originalContext, EventType.RATE_EXCEED,
+                    limits.getRate().getStrategy(), originalCall);
+        }
+        if (Acquire.FAILURE == Acquire.valueOf(result[2].intValue())) {
+            this.collectEvent(EventType.COUNTER_EXCEED);
+            return statistics.doStrategyProcess(originalContext, EventType.COUNTER_EXCEED,
+                    limits.getCounter().getStrategy(), originalCall);
+        }
+
+        if (concurrentEnable && !leaseId.isEmpty()) {
+            return doLeaseOriginalCall(originalContext, leaseId,
+                    () -> statistics.wrapperOriginalCall(originalContext, originalCall));
+        }
+        if (concurrentEnable) {
+            return doReleaseOriginalCall(originalContext,
+                    () -> statistics.wrapperOriginalCall(originalContext, originalCall));
+        }
+
+        return statistics.wrapperOriginalCall(originalContext, originalCall);
+    }
+
+    /**
+     * The original call holding the concurrent lease, the lease is renewed until the call returns or
+     * its {@link CompletionStage} completes, and then released
+     *
+     * @param originalContext {@link OriginalContext}
+     * @param leaseId         the id of the concurrent lease
+     * @param originalCall    The original call interface
+     * @return The original call result
+     * @throws Throwable throw original call exception
+     */
+    private Object doLeaseOriginalCall(OriginalContext originalContext, String leaseId,
+                                       OriginalCall originalCall) throws Throwable {
+        inflightLeases.add(leaseId);
+        Object result;
+        try {
+            result = originalCall.call(originalContext);
+        } catch (Throwable t) {
+            releaseConcurrentLease(leaseId);
+            throw t;
+        }
+
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((r, t) -> releaseConcurrentLease(leaseId));
+        } else {
+            releaseConcurrentLease(leaseId);
+        }
+
+        return result;
+    }
+
+    private void releaseConcurrentLease(String leaseId) {
+        inflightLeases.remove(leaseId);
+        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = limits.getConcurrent();
+        List<String> keys = Collections.singletonList(key(CONCURRENT_LEASE_KEY_SUFFIX));
+        Object[] values = {"release", concurrentConfig.getPermitUnit(), concurrentConfig.getLeaseTimeout(), leaseId};
+        evalWithoutResult(LEASE_CONCURRENT_SCRIPT, keys, values, "Try release cluster concurrent lease exception");
+    }
+
+    /**
+     * The renew the concurrent leases of all in-flight calls by one round trip
+     */
+    private void renewConcurrentLeases() {
+        if (inflightLeases.isEmpty()) {
+            return;
+        }
+
+        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = limits.getConcurrent();
+        List<String> keys = Collections.singletonList(key(CONCURRENT_LEASE_KEY_SUFFIX));
+        List<Object> values = new ArrayList<>(inflightLeases.size() + 3);
+        values.add("renew");
+        values.add(concurrentConfig.getPermitUnit());
+        values.add(concurrentConfig.getLeaseTimeout());
+        values.addAll(inflightLeases);
+
+        try {
+            FactoryStorage.INSTANCE.getStorage().eval(LEASE_CONCURRENT_SCRIPT, keys, values.toArray());
+        } catch (Exception e) {
+            log.error("Renew cluster concurrent leases exception", e);
+        }
+    }
+
+    /**
+     * The check and reserve all the enabled limiters atomically
+     *
+     * @param concurrentEnable the concurrent limiter is enabled
+     * @param rateEnable       the rate limiter is enabled
+     * @param counterEnable    the counter limiter is enabled
+     * @param leaseId          the id of the concurrent lease, empty is not leased
+     * @return {concurrent, rate, counter, rate wait micros}, null is exception
+     */
+    private Number[] tryAcquireAll(boolean concurrentEnable, boolean rateEnable, boolean counterEnable, String leaseId) {
+        try {
+            Number[] result = FactoryStorage.INSTANCE.getStorage().eval(CLUSTER_SCRIPT,
+                    clusterKeys(leaseId), clusterValues(concurrentEnable, rateEnable, counterEnable, leaseId));
+            if (result == null || result.length != 4) {
+                return null;
+            }
+
+            return result;
+        } catch (Exception e) {
+            log.error("Try acquire cluster limiter exception", e);
+            return null;
+        }
+    }
+
+    private List<String> clusterKeys(String leaseId) {
+        String concurrentKey = key(leaseId.isEmpty() ? CONCURRENT_KEY_SUFFIX : CONCURRENT_LEASE_KEY_SUFFIX);
+        return Arrays.asList(concurrentKey, key(rateKeySuffix(limits.getRate())), key(COUNTER_KEY_SUFFIX));
+    }
 
-            return Acquire.valueOf(result[0].intValue());
+    private Object[] clusterValues(boolean concurrentEnable, boolean rateEnable, boolean counterEnable, String leaseId) {
+        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = limits.getConcurrent();
+        LimiterConfig.RateLimiterConfig rateConfig = limits.getRate();
+        LimiterConfig.CounterLimiterConfig counterConfig = limits.getCounter();
+        long warmupPeriod = LimiterConfig.RateAlgorithm.WARM_UP == rateConfig.getAlgorithm() ?
+                TimeUnit.MILLISECONDS.toMicros(rateConfig.getWarmupPeriod()) : 0L;
+        return new Object[]{
+                concurrentEnable ? 1 : 0, concurrentConfig.getPermitUnit(),
+                concurrentConfig.getMaxPermit(), concurrentConfig.getTimeout(),
+                rateEnable ? 1 : 0, rateConfig.getRateUnit(), rateConfig.getMaxRate(),
+                TimeUnit.MILLISECONDS.toMicros(rateConfig.getTimeout()), warmupPeriod, rateConfig.getColdFactor(),
+                counterEnable ? 1 : 0, counterConfig.getCountUnit(),
+                counterConfig.getMaxCount(), counterConfig.getTimeout(),
+                leaseId, concurrentConfig.getLeaseTimeout(), gcraBurst(rateConfig)};
+    }
+
+    /**
+     * The limiters are checked and reserved by the fused script of {@link #wrapperCall(OriginalContext, OriginalCall)}
+     */
+    @Override
+    protected Acquire tryAcquireConcurrent() {
+        throw new UnsupportedOperationException("The cluster concurrent limiter is checked by the cluster script");
+    }
+
+    @Override
+    protected void releaseConcurrent() {
+        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = limits.getConcurrent();
+        List<String> keys = Collections.singletonList(key(CONCURRENT_KEY_SUFFIX));
+        List<Object> values = Arrays.asList(-concurrentConfig.getPermitUnit(),
+                concurrentConfig.getMaxPermit(), concurrentConfig.getTimeout());
+
+        evalWithoutResult(CONCURRENT_SCRIPT, keys, values.toArray(), "Try release cluster concurrent exception");
+    }
+
+    /**
+     * The eval the script whose result isn't needed, it doesn't wait for the round trip if possible
+     *
+     * @param script  the Lua script
+     * @param keys    the keys
+     * @param values  the arguments
+     * @param message the message of exception
+     */
+    private void evalWithoutResult(String script, List<String> keys, Object[] values, String message) {
+        IAsyncStorage asyncStorage = FactoryStorage.INSTANCE.getAsyncStorage();
+        if (null != asyncStorage) {
+            asyncStorage.evalAsync(script, keys, values).whenComplete((r, t) -> {
+                if (null != t) {
+                    log.error(message, t);
+                }
+            });
+            return;
+        }
+
+        try {
+            FactoryStorage.INSTANCE.getStorage().eval(script, keys, values);
         } catch (Exception e) {
-            log.error("Try acquire cluster rate exception", e);
-            return Acquire.EXCEPTION;
+            log.error(message, e);
         }
     }
 
+    @Override
+    protected Acquire tryAcquireRate() {
+        throw new UnsupportedOperationException("The cluster rate limiter is checked by the cluster script");
+    }
+
     @Override
     protected Acquire tryAcquireCounter() {
-        LimiterConfig.CounterLimiterConfig counterConfig = config.getCounter();
-        List<String> keys = Collections.singletonList(config.identity());
-        List<Object> values = Arrays.asList(counterConfig.getCountUnit(),
-                counterConfig.getMaxCount(), counterConfig.getTimeout());
+        throw new UnsupportedOperationException("The cluster counter limiter is checked by the cluster script");
+    }
+
+    /**
+     * The lease(or give back) the tokens of the global rate limiter
+     *
+     * @param size the size of lease, negative is give back
+     * @return the granted size
+     */
+    private int leaseRate(int size) {
+        List<String> keys = Collections.singletonList(key(RATE_KEY_SUFFIX));
+        Object[] values = {size, limits.getRate().getMaxRate()};
 
+        long startNanos = System.nanoTime();
         try {
-            Number[] result = FactoryStorage.INSTANCE.getStorage().eval(COUNTER_SCRIPT, keys, values);
+            Number[] result = FactoryStorage.INSTANCE.getStorage().eval(LEASE_RATE_SCRIPT, keys, values);
+            recordHealth(health, System.nanoTime() - startNanos, null != result && result.length == 2);
             if (result == null || result.length != 2) {
-                return Acquire.EXCEPTION;
+                return 0;
             }
 
-            return Acquire.valueOf(result[0].intValue());
+            return result[0].intValue();
         } catch (Exception e) {
-            log.error("Try acquire cluster counter exception", e);
-            return Acquire.EXCEPTION;
+            recordHealth(health, System.nanoTime() - startNanos, false);
+            log.error("Lease cluster rate exception", e);
+            return 0;
+        }
+    }
+
+    /**
+     * The record the storage call, and collect the event when the degraded state changes
+     *
+     * @param health       {@link ClusterHealth}, null is the fallback off
+     * @param elapsedNanos the elapsed nanos of the storage call
+     * @param success      the storage call is success
+     */
+    private void recordHealth(ClusterHealth health, long elapsedNanos, boolean success) {
+        if (null != health && health.record(elapsedNanos, success)) {
+            this.collectEvent(health.isDegraded() ? EventType.CLUSTER_DEGRADED : EventType.CLUSTER_RECOVERED);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private static CompletionStage<Object> toStage(Object result) {
+        return result instanceof CompletionStage ?
+                (CompletionStage<Object>) result : CompletableFuture.completedFuture(result);
+    }
+
+    private static CompletionStage<Object> failedStage(Throwable t) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    private static boolean isLeaseEnable(LimiterConfig.RateLimiterConfig rateConfig) {
+        return LimiterConfig.Switch.ON == rateConfig.getLease()
+                && LimiterConfig.RateAlgorithm.WARM_UP != rateConfig.getAlgorithm()
+                && LimiterConfig.RateAlgorithm.GCRA != rateConfig.getAlgorithm();
+    }
+
+    /**
+     * The burst tolerance of GCRA
+     *
+     * @param rateConfig {@link LimiterConfig.RateLimiterConfig}
+     * @return burst, 0 is not GCRA
+     */
+    private static int gcraBurst(LimiterConfig.RateLimiterConfig rateConfig) {
+        if (LimiterConfig.RateAlgorithm.GCRA != rateConfig.getAlgorithm()) {
+            return 0;
+        }
+
+        return rateConfig.getBurst() > 0 ? rateConfig.getBurst() : rateConfig.getMaxRate();
+    }
+
+    /**
+     * The GCRA stores a timestamp instead of the hash of token bucket, so they never share a key
+     *
+     * @param rateConfig {@link LimiterConfig.RateLimiterConfig}
+     * @return the suffix of rate key
+     */
+    private static String rateKeySuffix(LimiterConfig.RateLimiterConfig rateConfig) {
+        return LimiterConfig.RateAlgorithm.GCRA == rateConfig.getAlgorithm() ? GCRA_KEY_SUFFIX : RATE_KEY_SUFFIX;
+    }
+
+    /**
+     * The key of the limiter on the shard of this node, each limiter has its own key
+     *
+     * @param suffix the suffix of limiter
+     * @return key
+     */
+    private String key(String suffix) {
+        return shardKey(shard, suffix);
+    }
+
+    /**
+     * The key of the limiter on the shard
+     * <p>
+     * 1.Not sharded: {identity}:suffix
+     * 2.Sharded: {identity:shard}:suffix
+     * <p>
+     * The hash tag keeps the keys checked by one script(such as the fused cluster script) on one slot of
+     * the Redis Cluster, without the hash tag(Switch.OFF) they are identity[:shard]:suffix.
+     *
+     * @param shardIndex the index of shard
+     * @param suffix     the suffix of limiter
+     * @return key
+     */
+    private String shardKey(int shardIndex, String suffix) {
+        LimiterConfig.ClusterLimiterConfig cluster = config.getCluster();
+        String shardIdentity = cluster.getShards() <= 1 ? config.identity() :
+                String.join(LimiterConfig.DELIMITER, config.identity(), String.valueOf(shardIndex));
+        if (LimiterConfig.Switch.ON == cluster.getHashTag()) {
+            return "{" + shardIdentity + "}" + LimiterConfig.DELIMITER + suffix;
+        }
+
+        return String.join(LimiterConfig.DELIMITER, shardIdentity, suffix);
+    }
+
+    /**
+     * The key shared by all shards of the limiter
+     *
+     * @param suffix the suffix of limiter
+     * @return key
+     */
+    private String globalKey(String suffix) {
+        if (LimiterConfig.Switch.ON == config.getCluster().getHashTag()) {
+            return "{" + config.identity() + "}" + LimiterConfig.DELIMITER + suffix;
+        }
+
+        return String.join(LimiterConfig.DELIMITER, config.identity(), suffix);
+    }
+
+    private String demandKey(int shardIndex, long period) {
+        return String.join(LimiterConfig.DELIMITER, shardKey(shardIndex, DEMAND_KEY_SUFFIX), String.valueOf(period));
+    }
+
 }
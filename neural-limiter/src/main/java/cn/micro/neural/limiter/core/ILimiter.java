@@ -7,6 +7,8 @@ import cn.micro.neural.storage.OriginalCall;
 import cn.micro.neural.storage.OriginalContext;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * The Limiter Interface.
@@ -49,6 +51,27 @@ public interface ILimiter {
      */
     Object wrapperCall(final OriginalContext originalContext, final OriginalCall originalCall) throws Throwable;
 
+    /**
+     * The process async original call.
+     * <p>
+     * The permits are held until the returned stage completes, the exceed and the exceptions
+     * are returned as the exceptionally completed stage.
+     *
+     * @param originalContext {@link OriginalContext}
+     * @param originalCall    {@link OriginalCall}, return {@link CompletionStage} or the plain result
+     * @return The stage of OriginalCall
+     */
+    default CompletionStage<?> wrapperAsyncCall(final OriginalContext originalContext, final OriginalCall originalCall) {
+        try {
+            Object result = wrapperCall(originalContext, originalCall);
+            return result instanceof CompletionStage ? (CompletionStage<?>) result : CompletableFuture.completedFuture(result);
+        } catch (Throwable t) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            return future;
+        }
+    }
+
     /**
      * The collect metric(get and reset)
      *
@@ -56,4 +79,11 @@ public interface ILimiter {
      */
     Map<String, Long> collect();
 
+    /**
+     * The destroy limiter, such as give back the resources held from the cluster
+     */
+    default void destroy() {
+
+    }
+
 }
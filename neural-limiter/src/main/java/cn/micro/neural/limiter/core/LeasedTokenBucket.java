@@ -0,0 +1,225 @@
+package cn.micro.neural.limiter.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The Leased Token Bucket.
+ * <p>
+ * The node borrows a block(lease) of tokens from the global token bucket and serves them by a local CAS counter:
+ * 1.When the local tokens drop below the low-water mark, the next lease is borrowed asynchronously
+ * 2.When the local tokens are used up, the next lease is borrowed synchronously once, unless the global
+ * bucket was found empty within the last 10ms
+ * 3.Only one lease is in flight(single-flight future) and no lock is held during the round trip, the other
+ * threads wait for the lease in flight at most the timeout
+ * 4.The lease size follows the demand of the node: the tokens consumed within {@link #LEASE_PERIOD_MILLIS}
+ * 5.The tokens older than {@link #LEASE_TTL_MILLIS} are dropped, so an idle node can't hold stale capacity
+ * <p>
+ * The overshoot of the global rate is bounded by the tokens leased by all nodes, at most maxLeaseSize per node.
+ *
+ * @author lry
+ */
+@Slf4j
+public class LeasedTokenBucket {
+
+    public static final long LEASE_PERIOD_MILLIS = 100L;
+    public static final long LEASE_TTL_MILLIS = 1000L;
+    private static final double LOW_WATER_MARK = 0.2;
+    private static final long EMPTY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+
+    private final int maxLeaseSize;
+    /**
+     * The lease of tokens from the global bucket: request size -> granted size, the negative size is given back
+     */
+    private final IntUnaryOperator lease;
+    private final Executor executor;
+
+    private final AtomicLong tokens = new AtomicLong();
+    private final LongAdder consumed = new LongAdder();
+    /**
+     * The lease in flight, null is none
+     */
+    private final AtomicReference<CompletableFuture<Void>> renewing = new AtomicReference<>();
+    private volatile int leaseSize = 1;
+    private volatile long leaseNanos = System.nanoTime();
+    private volatile long nextRenewNanos = 0L;
+
+    public LeasedTokenBucket(int maxLeaseSize, IntUnaryOperator lease, Executor executor) {
+        this.maxLeaseSize = Math.max(maxLeaseSize, 1);
+        this.lease = lease;
+        this.executor = executor;
+    }
+
+    /**
+     * The try acquire permits from the local tokens, without waiting for the lease in flight
+     *
+     * @param permits permits
+     * @return true is success
+     */
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, 0L);
+    }
+
+    /**
+     * The try acquire permits from the local tokens
+     *
+     * @param permits       permits
+     * @param timeoutMillis the max time(ms) waiting for the lease in flight of other threads
+     * @return true is success
+     */
+    public boolean tryAcquire(int permits, long timeoutMillis) {
+        if (System.nanoTime() - leaseNanos > TimeUnit.MILLISECONDS.toNanos(LEASE_TTL_MILLIS)) {
+            // 过期的租约直接丢弃，不归还
+            tokens.set(0);
+        }
+
+        if (tryTake(permits)) {
+            return true;
+        }
+
+        // 本地令牌耗尽，同步续租一次
+        renew(permits, timeoutMillis);
+        return tryTake(permits);
+    }
+
+    /**
+     * The give the permits back to the local tokens, such as the call is rejected by other limiter
+     *
+     * @param permits permits
+     */
+    public void refund(int permits) {
+        tokens.addAndGet(permits);
+        consumed.add(-permits);
+    }
+
+    /**
+     * The give the unused tokens back to the global bucket
+     */
+    public void giveBack() {
+        long remaining = tokens.getAndSet(0);
+        if (remaining > 0) {
+            try {
+                lease.applyAsInt((int) -remaining);
+            } catch (Exception e) {
+                log.error("Give back leased tokens exception", e);
+            }
+        }
+    }
+
+    public long getTokens() {
+        return tokens.get();
+    }
+
+    public int getMaxLeaseSize() {
+        return maxLeaseSize;
+    }
+
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+    private boolean tryTake(int permits) {
+        for (; ; ) {
+            long current = tokens.get();
+            if (current < permits) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - permits)) {
+                consumed.add(permits);
+                if (current - permits < leaseSize * LOW_WATER_MARK) {
+                    renewAsync();
+                }
+                return true;
+            }
+        }
+    }
+
+    private void renewAsync() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!renewing.compareAndSet(null, future)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> doRenew(0, future));
+        } catch (Exception e) {
+            renewing.compareAndSet(future, null);
+            future.complete(null);
+            log.error("Renew the token lease exception", e);
+        }
+    }
+
+    private void renew(int permits, long timeoutMillis) {
+        if (System.nanoTime() < nextRenewNanos) {
+            // 全局令牌桶已空，退避一段时间，避免每次拒绝都访问一次全局令牌桶
+            return;
+        }
+
+        CompletableFuture<Void> future = renewing.get();
+        if (null == future) {
+            CompletableFuture<Void> newFuture = new CompletableFuture<>();
+            if (renewing.compareAndSet(null, newFuture)) {
+                if (tokens.get() >= permits) {
+                    // 其他线程已完成续租
+                    renewing.compareAndSet(newFuture, null);
+                    newFuture.complete(null);
+                    return;
+                }
+
+                // 不持有锁，由CAS成功者同步续租一次
+                doRenew(permits, newFuture);
+                return;
+            }
+            future = renewing.get();
+            if (null == future) {
+                return;
+            }
+        }
+
+        // 其他线程的续租进行中，最多等待超时时间
+        if (timeoutMillis > 0) {
+            try {
+                future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException e) {
+                log.debug("Wait the token lease timeout: {}ms", timeoutMillis);
+            } catch (Exception e) {
+                log.error("Wait the token lease exception", e);
+            }
+        }
+    }
+
+    private void doRenew(int minSize, CompletableFuture<Void> future) {
+        try {
+            long now = System.nanoTime();
+            long elapsedMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(now - leaseNanos), 1L);
+            // 按最近的消耗速率预估一个租约周期内的需求
+            long demand = consumed.sumThenReset() * LEASE_PERIOD_MILLIS / elapsedMillis;
+            int size = (int) Math.max(Math.min(Math.max(demand, 1L), maxLeaseSize), minSize);
+            this.leaseSize = size;
+
+            int granted = lease.applyAsInt(size);
+            if (granted > 0) {
+                tokens.addAndGet(granted);
+            } else {
+                this.nextRenewNanos = now + EMPTY_BACKOFF_NANOS;
+            }
+            this.leaseNanos = now;
+        } catch (Exception e) {
+            log.error("Lease tokens exception", e);
+        } finally {
+            renewing.compareAndSet(future, null);
+            future.complete(null);
+        }
+    }
+
+}
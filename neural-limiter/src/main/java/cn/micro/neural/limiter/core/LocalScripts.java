@@ -0,0 +1,333 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.storage.ILocalScript;
+import cn.micro.neural.storage.MemoryStorage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static cn.micro.neural.storage.MemoryStorage.toNumber;
+
+/**
+ * The Local Scripts.
+ * <p>
+ * The native Java implementations({@link ILocalScript}) of the limiter scripts for the {@link MemoryStorage},
+ * each one has the same keys, arguments and result as its Lua script:
+ * 1.The counters(concurrent, counter and demand) are stored as {@link Long}
+ * 2.The token bucket is stored as double[]{stored permits, next free micros}, the GCRA as the TAT {@link Long}
+ * 3.The sorted set(leases and nodes) is stored as Map<member, score>
+ * <p>
+ * The numbers of the result are truncated to integers, as Redis converts the Lua numbers.
+ *
+ * @author lry
+ */
+public final class LocalScripts {
+
+    private LocalScripts() {
+    }
+
+    /**
+     * The same as cluster_limiter.lua
+     */
+    public static Number[] cluster(MemoryStorage storage, List<String> keys, Object... args) {
+        String concurrentKey = keys.get(0);
+        String rateKey = keys.get(1);
+        String counterKey = keys.get(2);
+
+        boolean concurrentEnable = toNumber(args[0]) == 1;
+        long permitUnit = (long) toNumber(args[1]);
+        double maxPermit = toNumber(args[2]);
+        long concurrentTimeout = (long) toNumber(args[3]);
+        boolean rateEnable = toNumber(args[4]) == 1;
+        int rateUnit = (int) toNumber(args[5]);
+        double maxRate = toNumber(args[6]);
+        double rateTimeout = toNumber(args[7]);
+        double warmupPeriod = toNumber(args[8]);
+        double coldFactor = toNumber(args[9]);
+        boolean counterEnable = toNumber(args[10]) == 1;
+        long countUnit = (long) toNumber(args[11]);
+        double maxCount = toNumber(args[12]);
+        long counterTimeout = (long) toNumber(args[13]);
+        String leaseId = String.valueOf(args[14]);
+        long leaseTimeout = (long) toNumber(args[15]);
+        double gcraBurst = args.length > 16 ? toNumber(args[16]) : 0;
+
+        long now = storage.nowMicros();
+        long nowMillis = now / 1000;
+
+        // === 1.检查并发
+        Map<String, Long> leases = null;
+        if (concurrentEnable) {
+            long currentConcurrent;
+            if (!leaseId.isEmpty()) {
+                leases = expireMembers(storage, concurrentKey, nowMillis);
+                currentConcurrent = leases.size();
+            } else {
+                currentConcurrent = getLong(storage, concurrentKey);
+            }
+            if (currentConcurrent + permitUnit > maxPermit) {
+                return result(0, -1, -1, 0);
+            }
+        }
+
+        // === 2.检查速率(GCRA或令牌桶)
+        double wait = 0;
+        double newTat = 0;
+        double[] bucket = null;
+        if (rateEnable && gcraBurst > 0) {
+            double interval = 1000000 / maxRate;
+            newTat = Math.max(getLong(storage, rateKey), now) + rateUnit * interval;
+            double allowAt = newTat - gcraBurst * interval;
+            if (allowAt - now > rateTimeout) {
+                return result(1, 0, -1, Math.ceil(allowAt - now));
+            }
+            wait = Math.max(allowAt - now, 0);
+        } else if (rateEnable) {
+            bucket = reserve((double[]) storage.get(rateKey), now, rateUnit, maxRate, rateTimeout, warmupPeriod, coldFactor);
+            if (null == bucket) {
+                double[] state = (double[]) storage.get(rateKey);
+                return result(1, 0, -1, state[1] - now);
+            }
+            wait = bucket[2];
+        }
+
+        // === 3.检查计数
+        if (counterEnable && getLong(storage, counterKey) + countUnit > maxCount) {
+            return result(1, 1, 0, 0);
+        }
+
+        // === 全部通过，预占所有开启的维度
+        if (concurrentEnable) {
+            if (!leaseId.isEmpty()) {
+                for (int i = 1; i <= permitUnit; i++) {
+                    leases.put(leaseId + ":" + i, nowMillis + leaseTimeout);
+                }
+                expire(storage, concurrentKey, leases, leaseTimeout);
+            } else {
+                expire(storage, concurrentKey, getLong(storage, concurrentKey) + permitUnit, concurrentTimeout);
+            }
+        }
+        if (rateEnable && gcraBurst > 0) {
+            expire(storage, rateKey, (long) newTat, Math.max((long) Math.ceil((newTat - now) / 1000), 1L));
+        } else if (rateEnable) {
+            expire(storage, rateKey, new double[]{bucket[0], bucket[1]},
+                    (long) Math.ceil((bucket[1] - now + warmupPeriod) / 1000) + 1000);
+        }
+        if (counterEnable) {
+            long ttl = storage.pttl(counterKey);
+            // 计数周期从第一次计数开始
+            expire(storage, counterKey, getLong(storage, counterKey) + countUnit, ttl < 0 ? counterTimeout : ttl);
+        }
+
+        return result(1, 1, 1, wait);
+    }
+
+    /**
+     * The same as concurrent_limiter.lua
+     */
+    public static Number[] counter(MemoryStorage storage, List<String> keys, Object... args) {
+        String key = keys.get(0);
+        long unit = (long) toNumber(args[0]);
+        double max = toNumber(args[1]);
+        long timeout = (long) toNumber(args[2]);
+
+        long next = getLong(storage, key) + unit;
+        if (next > max) {
+            return result(0, next);
+        }
+
+        expire(storage, key, next, timeout);
+        return result(1, next);
+    }
+
+    /**
+     * The same as lease_rate_limiter.lua
+     */
+    public static Number[] leaseRate(MemoryStorage storage, List<String> keys, Object... args) {
+        String key = keys.get(0);
+        double requested = toNumber(args[0]);
+        double rate = toNumber(args[1]);
+
+        long now = storage.nowMicros();
+        double stableInterval = 1000000 / rate;
+        double[] state = (double[]) storage.get(key);
+        double storedPermits = null == state ? rate : state[0];
+        double nextFree = null == state ? now : state[1];
+        if (now > nextFree) {
+            storedPermits = Math.min(rate, storedPermits + (now - nextFree) / stableInterval);
+            nextFree = now;
+        }
+
+        // 租约只借出已积攒的令牌，不预支
+        double granted;
+        if (requested < 0) {
+            storedPermits = Math.min(rate, storedPermits - requested);
+            granted = requested;
+        } else {
+            granted = Math.min(requested, Math.floor(storedPermits));
+            storedPermits = storedPermits - granted;
+        }
+
+        expire(storage, key, new double[]{storedPermits, nextFree}, (long) Math.ceil((nextFree - now) / 1000) + 1000);
+        return result(granted, 0);
+    }
+
+    /**
+     * The same as lease_concurrent_limiter.lua
+     */
+    public static Number[] leaseConcurrent(MemoryStorage storage, List<String> keys, Object... args) {
+        String key = keys.get(0);
+        boolean release = "release".equals(String.valueOf(args[0]));
+        long permitUnit = (long) toNumber(args[1]);
+        long leaseTimeout = (long) toNumber(args[2]);
+
+        long nowMillis = storage.nowMicros() / 1000;
+        Map<String, Long> leases = members(storage, key);
+        for (int j = 3; j < args.length; j++) {
+            for (int i = 1; i <= permitUnit; i++) {
+                String member = args[j] + ":" + i;
+                if (release) {
+                    leases.remove(member);
+                } else {
+                    // 只续约仍存在的租约，已过期被回收的租约不再恢复
+                    leases.replace(member, nowMillis + leaseTimeout);
+                }
+            }
+        }
+
+        long ttl = storage.pttl(key);
+        if (!release && !leases.isEmpty()) {
+            ttl = leaseTimeout;
+        }
+        if (ttl >= 0) {
+            expire(storage, key, leases, ttl);
+        }
+        return result(1, leases.size());
+    }
+
+    /**
+     * The same as node_heartbeat.lua
+     */
+    public static Number[] nodeHeartbeat(MemoryStorage storage, List<String> keys, Object... args) {
+        String key = keys.get(0);
+        String instance = String.valueOf(args[0]);
+        long ttl = (long) toNumber(args[1]);
+
+        long nowMillis = storage.nowMicros() / 1000;
+        Map<String, Long> nodes = members(storage, key);
+        nodes.put(instance, nowMillis);
+        // 移除已下线的节点
+        nodes.values().removeIf(score -> score <= nowMillis - ttl);
+        expire(storage, key, nodes, ttl);
+        return result(nodes.size(), 0);
+    }
+
+    /**
+     * The same as shard_demand.lua
+     */
+    public static Number[] shardDemand(MemoryStorage storage, List<String> keys, Object... args) {
+        String key = keys.get(0);
+        long demand = (long) toNumber(args[0]);
+        long expire = (long) toNumber(args[1]);
+
+        if (demand > 0) {
+            expire(storage, key, getLong(storage, key) + demand, expire);
+        }
+        return result(getLong(storage, key), 0);
+    }
+
+    /**
+     * The reserve the permits of the token bucket(bursty or warming up)
+     *
+     * @return {stored permits, next free micros, wait micros}, null is rejected
+     */
+    private static double[] reserve(double[] state, long now, int permits, double rate,
+                                    double timeout, double warmupPeriod, double coldFactor) {
+        double stableInterval = 1000000 / rate;
+        double maxPermits, coolDownInterval, thresholdPermits = 0, slope = 0;
+        if (warmupPeriod > 0) {
+            double coldInterval = stableInterval * coldFactor;
+            thresholdPermits = 0.5 * warmupPeriod / stableInterval;
+            maxPermits = thresholdPermits + 2.0 * warmupPeriod / (stableInterval + coldInterval);
+            slope = (coldInterval - stableInterval) / (maxPermits - thresholdPermits);
+            coolDownInterval = warmupPeriod / maxPermits;
+        } else {
+            maxPermits = rate;
+            coolDownInterval = stableInterval;
+        }
+
+        // key不存在说明已空闲至令牌积满后过期
+        double storedPermits = null == state ? maxPermits : state[0];
+        double nextFree = null == state ? now : state[1];
+        if (nextFree - timeout > now) {
+            return null;
+        }
+        if (now > nextFree) {
+            storedPermits = Math.min(maxPermits, storedPermits + (now - nextFree) / coolDownInterval);
+            nextFree = now;
+        }
+
+        double wait = nextFree - now;
+        double storedToSpend = Math.min(permits, storedPermits);
+        double waitMicros = 0;
+        if (warmupPeriod > 0) {
+            double permitsAboveThreshold = storedPermits - thresholdPermits;
+            if (permitsAboveThreshold > 0) {
+                double aboveToTake = Math.min(permitsAboveThreshold, storedToSpend);
+                double length = 2 * stableInterval + (2 * permitsAboveThreshold - aboveToTake) * slope;
+                waitMicros = aboveToTake * length / 2.0 + stableInterval * (storedToSpend - aboveToTake);
+            } else {
+                waitMicros = stableInterval * storedToSpend;
+            }
+        }
+        nextFree = nextFree + waitMicros + (permits - storedToSpend) * stableInterval;
+        return new double[]{storedPermits - storedToSpend, nextFree, wait};
+    }
+
+    /**
+     * The members of the sorted set after removing the expired ones(score &lt;= now), as ZREMRANGEBYSCORE
+     */
+    private static Map<String, Long> expireMembers(MemoryStorage storage, String key, long nowMillis) {
+        Map<String, Long> members = members(storage, key);
+        members.values().removeIf(score -> score <= nowMillis);
+        if (members.isEmpty()) {
+            storage.remove(key);
+        }
+
+        return members;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> members(MemoryStorage storage, String key) {
+        Object value = storage.get(key);
+        return null == value ? new HashMap<>() : (Map<String, Long>) value;
+    }
+
+    private static long getLong(MemoryStorage storage, String key) {
+        Object value = storage.get(key);
+        return null == value ? 0L : ((Number) value).longValue();
+    }
+
+    /**
+     * The set the value with the expire time, as SET and PEXPIRE
+     */
+    private static void expire(MemoryStorage storage, String key, Object value, long ttl) {
+        if (ttl <= 0 || (value instanceof Map && ((Map<?, ?>) value).isEmpty())) {
+            // 过期时间非正数或集合为空时，key被删除
+            storage.remove(key);
+        } else {
+            storage.setEx(key, value, ttl);
+        }
+    }
+
+    private static Number[] result(double... values) {
+        Number[] result = new Number[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (long) values[i];
+        }
+
+        return result;
+    }
+
+}
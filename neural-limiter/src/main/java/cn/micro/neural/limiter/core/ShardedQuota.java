@@ -0,0 +1,111 @@
+package cn.micro.neural.limiter.core;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Sharded Quota.
+ * <p>
+ * One global limit is split into the sub-limits of shards, each shard has its own keys(on its own slot):
+ * 1.The node picks a shard by the consistent hashing of its id, so only 1/shards nodes move when resharding
+ * 2.The quota of each shard is rebalanced by the demand of the shards in the last period, and each shard
+ * always keeps a minimum share of {@link #MIN_SHARE} / shards
+ * 3.The demand is the number of the calls of the nodes on the shard
+ *
+ * @author lry
+ */
+public class ShardedQuota {
+
+    /**
+     * The share of the global quota split evenly among all shards, the rest is split by demand
+     */
+    public static final double MIN_SHARE = 0.2;
+    private static final int VIRTUAL_NODES = 160;
+
+    private final int shards;
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+    private final LongAdder demand = new LongAdder();
+    private volatile double ratio;
+
+    public ShardedQuota(int shards) {
+        this.shards = shards;
+        this.ratio = 1.0 / shards;
+        for (int shard = 0; shard < shards; shard++) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash("shard-" + shard + "-" + i), shard);
+            }
+        }
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * The ratio of the global quota owned by the shard of this node
+     *
+     * @return ratio
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * The select the shard of the node by consistent hashing
+     *
+     * @param nodeId the id of node
+     * @return the index of shard
+     */
+    public int select(String nodeId) {
+        Map.Entry<Integer, Integer> entry = ring.ceilingEntry(hash(nodeId));
+        return null == entry ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    /**
+     * The record a call of this node
+     */
+    public void record() {
+        demand.increment();
+    }
+
+    /**
+     * The calls of this node since the last drain
+     *
+     * @return calls
+     */
+    public long drain() {
+        return demand.sumThenReset();
+    }
+
+    /**
+     * The rebalance the quota of the shard by the demand of all shards
+     *
+     * @param shard   the shard of this node
+     * @param demands the demand of all shards
+     * @return true is the ratio changed
+     */
+    public boolean rebalance(int shard, long[] demands) {
+        long total = 0;
+        for (long d : demands) {
+            total += Math.max(d, 0);
+        }
+
+        double weight = total == 0 ? 1.0 / shards : (double) Math.max(demands[shard], 0) / total;
+        double newRatio = MIN_SHARE / shards + (1 - MIN_SHARE) * weight;
+        if (Math.abs(newRatio - ratio) < 1e-6) {
+            return false;
+        }
+
+        this.ratio = newRatio;
+        return true;
+    }
+
+    private static int hash(String key) {
+        return Hashing.murmur3_32().hashString(key, StandardCharsets.UTF_8).asInt();
+    }
+
+}
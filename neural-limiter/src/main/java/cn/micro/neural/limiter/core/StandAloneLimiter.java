@@ -3,21 +3,29 @@ package cn.micro.neural.limiter.core;
 import cn.micro.neural.limiter.LimiterConfig;
 import cn.micro.neural.limiter.extension.AdjustableRateLimiter;
 import cn.micro.neural.limiter.extension.AdjustableSemaphore;
+import cn.micro.neural.limiter.extension.GcraRateLimiter;
+import cn.micro.neural.limiter.extension.IConcurrentLimiter;
+import cn.micro.neural.limiter.extension.IRateLimiter;
+import cn.micro.neural.limiter.extension.LockFreeRateLimiter;
+import cn.micro.neural.limiter.extension.LockFreeSemaphore;
+import cn.micro.neural.limiter.extension.SlidingWindowCounter;
 import cn.neural.common.extension.Extension;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The Stand Alone Limiter.
  * <p>
- * 1.The rate limiter：{@link AdjustableRateLimiter}
- * 2.The concurrent limiter：{@link AdjustableSemaphore}
- * 3.The counter limiter：{@link LoadingCache}
+ * 1.The rate limiter：{@link AdjustableRateLimiter}(bursty or warming up), {@link LockFreeRateLimiter} or
+ * {@link GcraRateLimiter}
+ * 2.The concurrent limiter：{@link AdjustableSemaphore} or {@link LockFreeSemaphore}
+ * 3.The counter limiter：{@link LoadingCache} or {@link SlidingWindowCounter}
  *
  * @author lry
  * @apiNote The local limiter
@@ -28,35 +36,131 @@ public class StandAloneLimiter extends AbstractCallLimiter {
 
     // === rate limiter
 
-    private AdjustableRateLimiter rateLimiter;
+    private volatile IRateLimiter rateLimiter;
+    private LimiterConfig.RateAlgorithm rateAlgorithm;
+    private Long warmupPeriod;
+    private Double coldFactor;
 
     // === concurrent limiter
 
-    private AdjustableSemaphore semaphore;
+    protected volatile IConcurrentLimiter semaphore;
+    private Boolean fair;
 
     // ==== counter limiter
 
-    private LoadingCache<Long, AtomicLong> counter;
+    private volatile CounterEngine counterEngine;
 
+    /**
+     * The refresh in place: only rebuild the engine whose kind or window is changed,
+     * and carry the in-flight permits and the window count over to the rebuilt engine.
+     *
+     * @param config configuration
+     * @return true is success
+     */
     @Override
     protected boolean tryRefresh(LimiterConfig config) {
-        // rate limiter
-        this.rateLimiter = AdjustableRateLimiter.create(config.getRate().getMaxRate());
-        // concurrent limiter
-        this.semaphore = new AdjustableSemaphore(config.getConcurrent().getMaxPermit(), true);
-        // counter limiter
-        // request limiter
-        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
-        cacheBuilder.expireAfterWrite(config.getCounter().getTimeout(), TimeUnit.MILLISECONDS);
-        this.counter = cacheBuilder.build(CacheLoader.from(() -> new AtomicLong(0)));
-
-        // the refresh rateLimiter
-        rateLimiter.setRate(config.getRate().getRateUnit());
-        // the refresh semaphore
-        semaphore.setMaxPermits(config.getConcurrent().getMaxPermit());
+        refreshRateLimiter(config.getRate());
+        refreshConcurrentLimiter(config.getConcurrent());
+        refreshCounterLimiter(config.getCounter());
         return true;
     }
 
+    /**
+     * The refresh rate limiter, the stored permits are kept when the algorithm is not changed
+     *
+     * @param rateConfig {@link LimiterConfig.RateLimiterConfig}
+     */
+    private void refreshRateLimiter(LimiterConfig.RateLimiterConfig rateConfig) {
+        boolean warmupChanged = LimiterConfig.RateAlgorithm.WARM_UP == rateConfig.getAlgorithm()
+                && (!Objects.equals(warmupPeriod, rateConfig.getWarmupPeriod())
+                || !Objects.equals(coldFactor, rateConfig.getColdFactor()));
+        if (null != rateLimiter && rateAlgorithm == rateConfig.getAlgorithm() && !warmupChanged) {
+            rateLimiter.setRate(rateConfig.getMaxRate());
+            if (rateLimiter instanceof GcraRateLimiter) {
+                ((GcraRateLimiter) rateLimiter).setBurst(rateConfig.getBurst());
+            }
+            return;
+        }
+
+        this.rateLimiter = createRateLimiter(rateConfig);
+        this.rateAlgorithm = rateConfig.getAlgorithm();
+        this.warmupPeriod = rateConfig.getWarmupPeriod();
+        this.coldFactor = rateConfig.getColdFactor();
+    }
+
+    /**
+     * The refresh concurrent limiter, the in-flight permits are kept when the fair is changed
+     *
+     * @param concurrentConfig {@link LimiterConfig.ConcurrentLimiterConfig}
+     */
+    private void refreshConcurrentLimiter(LimiterConfig.ConcurrentLimiterConfig concurrentConfig) {
+        IConcurrentLimiter oldSemaphore = semaphore;
+        if (null != oldSemaphore && Objects.equals(fair, concurrentConfig.getFair())) {
+            oldSemaphore.setMaxPermits(concurrentConfig.getMaxPermit());
+            return;
+        }
+
+        int acquired = null == oldSemaphore ? 0 : oldSemaphore.acquiredPermits();
+        this.semaphore = createConcurrentLimiter(concurrentConfig, acquired);
+        this.fair = concurrentConfig.getFair();
+    }
+
+    /**
+     * The refresh counter limiter, the count of current window is kept when the window is changed
+     *
+     * @param counterConfig {@link LimiterConfig.CounterLimiterConfig}
+     */
+    private void refreshCounterLimiter(LimiterConfig.CounterLimiterConfig counterConfig) {
+        CounterEngine oldEngine = this.counterEngine;
+        if (null != oldEngine && oldEngine.algorithm == counterConfig.getAlgorithm()
+                && oldEngine.timeout == counterConfig.getTimeout()
+                && (LimiterConfig.CounterAlgorithm.FIXED_WINDOW == oldEngine.algorithm
+                || oldEngine.bucketCount == counterConfig.getBucketCount())) {
+            // the max count is read by every acquire, so nothing to rebuild
+            return;
+        }
+
+        // the engine is published as a whole, so an acquire sees either the old or the new engine
+        long currentCount = null == oldEngine ? 0L : oldEngine.currentCount();
+        this.counterEngine = new CounterEngine(counterConfig, currentCount);
+    }
+
+    /**
+     * The create rate limiter by {@link LimiterConfig.RateAlgorithm}
+     *
+     * @param rateConfig {@link LimiterConfig.RateLimiterConfig}
+     * @return {@link IRateLimiter}
+     */
+    private IRateLimiter createRateLimiter(LimiterConfig.RateLimiterConfig rateConfig) {
+        if (LimiterConfig.RateAlgorithm.LOCK_FREE == rateConfig.getAlgorithm()) {
+            return LockFreeRateLimiter.create(rateConfig.getMaxRate());
+        }
+        if (LimiterConfig.RateAlgorithm.WARM_UP == rateConfig.getAlgorithm()) {
+            return AdjustableRateLimiter.create(rateConfig.getMaxRate(), rateConfig.getWarmupPeriod(),
+                    TimeUnit.MILLISECONDS, rateConfig.getColdFactor());
+        }
+        if (LimiterConfig.RateAlgorithm.GCRA == rateConfig.getAlgorithm()) {
+            return GcraRateLimiter.create(rateConfig.getMaxRate(), rateConfig.getBurst());
+        }
+
+        return AdjustableRateLimiter.create(rateConfig.getMaxRate());
+    }
+
+    /**
+     * The create concurrent limiter by {@link LimiterConfig.ConcurrentLimiterConfig#getFair()}
+     *
+     * @param concurrentConfig {@link LimiterConfig.ConcurrentLimiterConfig}
+     * @param acquired         the in-flight permits carried over
+     * @return {@link IConcurrentLimiter}
+     */
+    private IConcurrentLimiter createConcurrentLimiter(LimiterConfig.ConcurrentLimiterConfig concurrentConfig, int acquired) {
+        if (Boolean.TRUE.equals(concurrentConfig.getFair())) {
+            return new AdjustableSemaphore(concurrentConfig.getMaxPermit(), true, acquired);
+        }
+
+        return new LockFreeSemaphore(concurrentConfig.getMaxPermit(), acquired);
+    }
+
     @Override
     protected Acquire tryAcquireConcurrent() {
         LimiterConfig.ConcurrentLimiterConfig concurrentConfig = config.getConcurrent();
@@ -77,42 +181,105 @@ public class StandAloneLimiter extends AbstractCallLimiter {
 
     @Override
     protected void releaseConcurrent() {
-        semaphore.release();
+        semaphore.release(config.getConcurrent().getPermitUnit());
     }
 
     @Override
     protected Acquire tryAcquireRate() {
+        LimiterConfig.RateLimiterConfig rateConfig = config.getRate();
         try {
-            Long timeout = config.getRate().getTimeout();
-            if (timeout > 0) {
+            if (rateConfig.getTimeout() > 0) {
                 // try acquire by timeout
-                return rateLimiter.tryAcquire(timeout, TimeUnit.MILLISECONDS) ? Acquire.SUCCESS : Acquire.FAILURE;
+                return rateLimiter.tryAcquire(rateConfig.getRateUnit(), rateConfig.getTimeout(),
+                        TimeUnit.MILLISECONDS) ? Acquire.SUCCESS : Acquire.FAILURE;
             }
 
             // try acquire
-            return rateLimiter.tryAcquire() ? Acquire.SUCCESS : Acquire.FAILURE;
+            return rateLimiter.tryAcquire(rateConfig.getRateUnit()) ? Acquire.SUCCESS : Acquire.FAILURE;
         } catch (Exception e) {
             log.error("Try acquire local rate limiter exception", e);
             return Acquire.EXCEPTION;
         }
     }
 
+    @Override
+    protected long getRetryAfterMicros() {
+        IRateLimiter tempRateLimiter = rateLimiter;
+        if (tempRateLimiter instanceof GcraRateLimiter) {
+            return ((GcraRateLimiter) tempRateLimiter).getRetryAfterMicros(config.getRate().getRateUnit());
+        }
+
+        return super.getRetryAfterMicros();
+    }
+
     @Override
     protected Acquire tryAcquireCounter() {
         LimiterConfig.CounterLimiterConfig counterConfig = config.getCounter();
 
         try {
-            // get the current time window
-            long currentSeconds = System.currentTimeMillis() / counterConfig.getCountUnit();
-            if (counter.get(currentSeconds).incrementAndGet() > counterConfig.getMaxCount()) {
-                return Acquire.FAILURE;
-            }
-
-            return Acquire.SUCCESS;
+            return counterEngine.tryAcquire(counterConfig.getCountUnit(),
+                    counterConfig.getMaxCount()) ? Acquire.SUCCESS : Acquire.FAILURE;
         } catch (Exception e) {
             log.error("Try acquire local counter limiter exception", e);
             return Acquire.EXCEPTION;
         }
     }
 
+    /**
+     * The counter engine of one algorithm and window
+     *
+     * @author lry
+     */
+    private static class CounterEngine {
+
+        private final LimiterConfig.CounterAlgorithm algorithm;
+        private final long timeout;
+        private final int bucketCount;
+        private final LoadingCache<Long, AtomicLong> counter;
+        private final SlidingWindowCounter slidingCounter;
+
+        private CounterEngine(LimiterConfig.CounterLimiterConfig counterConfig, long currentCount) {
+            this.algorithm = counterConfig.getAlgorithm();
+            this.timeout = counterConfig.getTimeout();
+            this.bucketCount = counterConfig.getBucketCount();
+            if (LimiterConfig.CounterAlgorithm.SLIDING_WINDOW == algorithm) {
+                this.counter = null;
+                this.slidingCounter = new SlidingWindowCounter(timeout, bucketCount);
+                slidingCounter.add(currentCount);
+            } else {
+                CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+                cacheBuilder.expireAfterWrite(timeout, TimeUnit.MILLISECONDS);
+                this.counter = cacheBuilder.build(CacheLoader.from(() -> new AtomicLong(0)));
+                this.slidingCounter = null;
+                counter.put(System.currentTimeMillis() / timeout, new AtomicLong(currentCount));
+            }
+        }
+
+        private boolean tryAcquire(int countUnit, long maxCount) throws Exception {
+            if (null != slidingCounter) {
+                // try acquire within the sliding time window
+                return slidingCounter.tryAcquire(countUnit, maxCount);
+            }
+
+            // get the current time window
+            long currentWindow = System.currentTimeMillis() / timeout;
+            return counter.get(currentWindow).addAndGet(countUnit) <= maxCount;
+        }
+
+        /**
+         * The count of current window
+         *
+         * @return count
+         */
+        private long currentCount() {
+            if (null != slidingCounter) {
+                return slidingCounter.sum();
+            }
+
+            AtomicLong count = counter.getIfPresent(System.currentTimeMillis() / timeout);
+            return null == count ? 0L : count.get();
+        }
+
+    }
+
 }
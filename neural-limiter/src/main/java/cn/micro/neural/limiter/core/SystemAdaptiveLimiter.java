@@ -0,0 +1,93 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import cn.micro.neural.limiter.extension.CapacityWindow;
+import cn.micro.neural.limiter.extension.SystemLoadSampler;
+import cn.neural.common.extension.Extension;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The System Adaptive Limiter.
+ * <p>
+ * The stand-alone limiter with the BBR-style admission in front of the concurrent limiter:
+ * 1.The system is overloaded when the cpu usage or the load average(sampled by {@link SystemLoadSampler})
+ * reaches the threshold of {@link LimiterConfig.SystemLimiterConfig}
+ * 2.When overloaded, the call is rejected as the concurrent exceed if the in-flight calls exceed the
+ * estimated capacity(max pass QPS * min RT of {@link CapacityWindow})
+ * <p>
+ * When the system is not overloaded, the admission is only the volatile reads of the sampled load.
+ *
+ * @author lry
+ * @apiNote The local limiter shedding the traffic by the system load
+ */
+@Slf4j
+@Extension("system-adaptive")
+public class SystemAdaptiveLimiter extends StandAloneLimiter {
+
+    private volatile CapacityWindow capacityWindow;
+    private long windowMillis;
+    private int bucketCount;
+
+    @Override
+    protected boolean tryRefresh(LimiterConfig config) {
+        super.tryRefresh(config);
+
+        LimiterConfig.SystemLimiterConfig systemConfig = config.getSystem();
+        if (null == capacityWindow || windowMillis != systemConfig.getWindowMillis()
+                || bucketCount != systemConfig.getBucketCount()) {
+            this.capacityWindow = new CapacityWindow(systemConfig.getWindowMillis(), systemConfig.getBucketCount());
+            this.windowMillis = systemConfig.getWindowMillis();
+            this.bucketCount = systemConfig.getBucketCount();
+        }
+
+        return true;
+    }
+
+    @Override
+    protected Acquire tryAcquireConcurrent() {
+        if (isOverloaded()) {
+            int inflight = semaphore.acquiredPermits();
+            double capacity = capacityWindow.capacity();
+            if (inflight > 1 && capacity >= 0 && inflight > capacity) {
+                return Acquire.FAILURE;
+            }
+        }
+
+        return super.tryAcquireConcurrent();
+    }
+
+    @Override
+    protected void releaseConcurrent(long elapsedNanos, boolean dropped) {
+        super.releaseConcurrent(elapsedNanos, dropped);
+        if (!dropped) {
+            capacityWindow.addPass(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        }
+    }
+
+    /**
+     * The system is overloaded
+     *
+     * @return true is overloaded
+     */
+    private boolean isOverloaded() {
+        LimiterConfig.SystemLimiterConfig systemConfig = config.getSystem();
+        double cpuThreshold = systemConfig.getCpuThreshold();
+        if (cpuThreshold >= 0 && getCpuUsage() >= cpuThreshold) {
+            return true;
+        }
+
+        double loadThreshold = systemConfig.getLoadThreshold();
+        return loadThreshold >= 0 && getLoadAverage() >= loadThreshold;
+    }
+
+    protected double getCpuUsage() {
+        return SystemLoadSampler.getCpuUsage();
+    }
+
+    protected double getLoadAverage() {
+        return SystemLoadSampler.getLoadAverage();
+    }
+
+}
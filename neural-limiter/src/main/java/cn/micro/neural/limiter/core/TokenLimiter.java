@@ -0,0 +1,245 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import cn.micro.neural.limiter.event.EventType;
+import cn.micro.neural.limiter.token.TokenClient;
+import cn.micro.neural.limiter.token.TokenProtocol;
+import cn.micro.neural.limiter.token.TokenServer;
+import cn.micro.neural.storage.OriginalCall;
+import cn.micro.neural.storage.OriginalContext;
+import cn.neural.common.extension.Extension;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The Token Limiter.
+ * <p>
+ * The cluster limiter without Redis: one node(the token server switch is on) runs the embedded
+ * {@link TokenServer} holding the global limits in memory, and all nodes acquire the permits from it by the
+ * {@link TokenClient}. The concurrent, rate and counter limiters are checked by one round trip.
+ * <p>
+ * The token server is assigned by the config statically. When it is unreachable or doesn't answer within the
+ * timeout, the calls are limited by a local {@link StandAloneLimiter} with the node's fair share of the
+ * global limits.
+ *
+ * @author lry
+ * @apiNote The cluster limiter by the embedded token server
+ */
+@Slf4j
+@Extension("token")
+public class TokenLimiter extends AbstractCallLimiter {
+
+    /**
+     * The token servers of this node, shared by the limiters, closed when no limiter uses it
+     * <p>
+     * Map<key=host:port, value=SharedServer>
+     */
+    private static final Map<String, SharedServer> SERVERS = new HashMap<>();
+
+    private volatile TokenClient client;
+    private volatile StandAloneLimiter fallbackLimiter;
+    private String clientKey;
+    private String serverKey;
+
+    @Override
+    protected synchronized boolean tryRefresh(LimiterConfig config) {
+        LimiterConfig.TokenLimiterConfig tokenConfig = config.getToken();
+        String address = tokenConfig.getHost() + ":" + tokenConfig.getPort();
+        String newServerKey = LimiterConfig.Switch.ON == tokenConfig.getServer() ? address : null;
+        if (!Objects.equals(serverKey, newServerKey)) {
+            releaseServer(serverKey);
+            this.serverKey = null;
+            if (null != newServerKey) {
+                try {
+                    acquireServer(newServerKey, tokenConfig.getHost(), tokenConfig.getPort());
+                    this.serverKey = newServerKey;
+                } catch (Exception e) {
+                    log.error("Start the token server exception", e);
+                }
+            }
+        }
+        if (!address.equals(clientKey)) {
+            TokenClient oldClient = this.client;
+            this.client = TokenClient.of(tokenConfig.getHost(), tokenConfig.getPort());
+            this.clientKey = address;
+            if (null != oldClient) {
+                oldClient.close();
+            }
+        }
+
+        StandAloneLimiter limiter = this.fallbackLimiter;
+        if (null == limiter) {
+            limiter = new StandAloneLimiter();
+            // the calls limited locally are counted by the statistics of the token limiter
+            limiter.statistics = this.statistics;
+        }
+        try {
+            limiter.refresh(config.fairShare(tokenConfig.getNodeCount()));
+            this.fallbackLimiter = limiter;
+        } catch (Exception e) {
+            log.error("Refresh the local fallback limiter exception", e);
+        }
+
+        return true;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        TokenClient oldClient = this.client;
+        this.client = null;
+        this.clientKey = null;
+        if (null != oldClient) {
+            oldClient.close();
+        }
+        releaseServer(serverKey);
+        this.serverKey = null;
+    }
+
+    @Override
+    public Object wrapperCall(final OriginalContext originalContext, final OriginalCall originalCall) throws Throwable {
+        // the don't need limiting
+        if (null == config || LimiterConfig.Switch.OFF == config.getEnable()) {
+            return originalCall.call(originalContext);
+        }
+
+        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = config.getConcurrent();
+        final boolean concurrentEnable = LimiterConfig.Switch.ON == concurrentConfig.getEnable();
+        boolean rateEnable = LimiterConfig.Switch.ON == config.getRate().getEnable();
+        boolean counterEnable = LimiterConfig.Switch.ON == config.getCounter().getEnable();
+        if (!concurrentEnable && !rateEnable && !counterEnable) {
+            return statistics.wrapperOriginalCall(originalContext, originalCall);
+        }
+
+        // check and reserve all the enabled limiters by one round trip
+        switch (acquire(concurrentEnable, rateEnable, counterEnable)) {
+            case TokenProtocol.SUCCESS:
+                if (concurrentEnable) {
+                    return doReleaseOriginalCall(originalContext,
+                            () -> statistics.wrapperOriginalCall(originalContext, originalCall));
+                }
+                return statistics.wrapperOriginalCall(originalContext, originalCall);
+            case TokenProtocol.CONCURRENT_EXCEED:
+                this.collectEvent(EventType.CONCURRENT_EXCEED);
+                return statistics.doStrategyProcess(originalContext, EventType.CONCURRENT_EXCEED,
+                        concurrentConfig.getStrategy(), originalCall);
+            case TokenProtocol.RATE_EXCEED:
+                this.collectEvent(EventType.RATE_EXCEED);
+                return statistics.doStrategyProcess(originalContext, EventType.RATE_EXCEED,
+                        config.getRate().getStrategy(), originalCall);
+            case TokenProtocol.COUNTER_EXCEED:
+                this.collectEvent(EventType.COUNTER_EXCEED);
+                return statistics.doStrategyProcess(originalContext, EventType.COUNTER_EXCEED,
+                        config.getCounter().getStrategy(), originalCall);
+            default:
+                // the token server is unreachable, limit locally
+                StandAloneLimiter limiter = this.fallbackLimiter;
+                if (null == limiter) {
+                    return statistics.wrapperOriginalCall(originalContext, originalCall);
+                }
+                return limiter.wrapperCall(originalContext, originalCall);
+        }
+    }
+
+    @Override
+    protected Acquire tryAcquireConcurrent() {
+        return toAcquire(acquire(true, false, false));
+    }
+
+    @Override
+    protected void releaseConcurrent() {
+        TokenClient tempClient = this.client;
+        if (null != tempClient) {
+            tempClient.release(TokenProtocol.Request.release(config.identity(),
+                    config.getConcurrent().getPermitUnit()));
+        }
+    }
+
+    @Override
+    protected Acquire tryAcquireRate() {
+        return toAcquire(acquire(false, true, false));
+    }
+
+    @Override
+    protected Acquire tryAcquireCounter() {
+        return toAcquire(acquire(false, false, true));
+    }
+
+    /**
+     * The acquire the enabled limiters from the token server
+     *
+     * @param concurrentEnable the concurrent limiter is enabled
+     * @param rateEnable       the rate limiter is enabled
+     * @param counterEnable    the counter limiter is enabled
+     * @return the status of {@link TokenProtocol}
+     */
+    private byte acquire(boolean concurrentEnable, boolean rateEnable, boolean counterEnable) {
+        TokenClient tempClient = this.client;
+        if (null == tempClient) {
+            return TokenProtocol.ERROR;
+        }
+
+        LimiterConfig.ConcurrentLimiterConfig concurrentConfig = config.getConcurrent();
+        LimiterConfig.RateLimiterConfig rateConfig = config.getRate();
+        LimiterConfig.CounterLimiterConfig counterConfig = config.getCounter();
+        TokenProtocol.Request request = TokenProtocol.Request.acquire(config.identity(),
+                concurrentEnable ? concurrentConfig.getPermitUnit() : 0, concurrentConfig.getMaxPermit(),
+                rateEnable ? rateConfig.getRateUnit() : 0, rateConfig.getMaxRate(),
+                counterEnable ? counterConfig.getCountUnit() : 0, counterConfig.getMaxCount(),
+                counterConfig.getTimeout());
+        return tempClient.acquire(request, config.getToken().getTimeout());
+    }
+
+    private static void acquireServer(String key, String host, int port) throws IOException {
+        synchronized (SERVERS) {
+            SharedServer shared = SERVERS.get(key);
+            if (null == shared) {
+                shared = new SharedServer(new TokenServer(host, port));
+                SERVERS.put(key, shared);
+            }
+            shared.references++;
+        }
+    }
+
+    private static void releaseServer(String key) {
+        if (null == key) {
+            return;
+        }
+
+        synchronized (SERVERS) {
+            SharedServer shared = SERVERS.get(key);
+            if (null != shared && --shared.references < 1) {
+                SERVERS.remove(key);
+                shared.server.close();
+            }
+        }
+    }
+
+    private static Acquire toAcquire(byte status) {
+        if (TokenProtocol.SUCCESS == status) {
+            return Acquire.SUCCESS;
+        }
+
+        return TokenProtocol.ERROR == status ? Acquire.EXCEPTION : Acquire.FAILURE;
+    }
+
+    /**
+     * The token server shared by the limiters of this node
+     *
+     * @author lry
+     */
+    private static class SharedServer {
+
+        private final TokenServer server;
+        private int references = 0;
+
+        SharedServer(TokenServer server) {
+            this.server = server;
+        }
+
+    }
+
+}
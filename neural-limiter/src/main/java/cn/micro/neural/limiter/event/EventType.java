@@ -34,6 +34,10 @@ public enum EventType {
      * The concurrent exception
      */
     CONCURRENT_EXCEPTION(LimiterFactory.IDENTITY, "The concurrent exception"),
+    /**
+     * The concurrent limit changed by the adaptive limiter, args: old limit, new limit
+     */
+    CONCURRENT_LIMIT_CHANGED(LimiterFactory.IDENTITY, "The concurrent limit changed"),
 
     // === counter limiter
 
@@ -46,6 +50,17 @@ public enum EventType {
      */
     COUNTER_EXCEPTION(LimiterFactory.IDENTITY, "The counter exception"),
 
+    // === cluster limiter
+
+    /**
+     * The cluster limiter falls back to the local limiter, because the storage is slow or down
+     */
+    CLUSTER_DEGRADED(LimiterFactory.IDENTITY, "The cluster limiter degraded"),
+    /**
+     * The cluster limiter recovers from the local limiter
+     */
+    CLUSTER_RECOVERED(LimiterFactory.IDENTITY, "The cluster limiter recovered"),
+
     // === other
 
     /**
@@ -13,4 +13,8 @@ public class LimiterException extends RuntimeException {
         super(message);
     }
 
+    public LimiterException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
 }
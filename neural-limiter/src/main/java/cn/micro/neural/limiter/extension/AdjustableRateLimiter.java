@@ -16,7 +16,7 @@ import static java.util.concurrent.TimeUnit.SECONDS;
  *
  * @author lry
  */
-public class AdjustableRateLimiter {
+public class AdjustableRateLimiter implements IRateLimiter {
 
     private static final long TIME_GRIT = 1L;
     private volatile double timeGritSecond;
@@ -64,6 +64,17 @@ public class AdjustableRateLimiter {
                 permitsPerSecond, warmUpPeriod, unit, 3.0, timeGritSecond);
     }
 
+    public static AdjustableRateLimiter create(double permitsPerSecond, long warmUpPeriod, TimeUnit unit, double coldFactor) {
+        if (warmUpPeriod < 0) {
+            throw new LimiterException(String.format("warmupPeriod must not be negative: %s", warmUpPeriod));
+        }
+        if (coldFactor < 1.0 || Double.isNaN(coldFactor)) {
+            throw new LimiterException(String.format("coldFactor must not be less than 1: %s", coldFactor));
+        }
+        return create(SleepingStopwatch.createFromSystemTimer(),
+                permitsPerSecond, warmUpPeriod, unit, coldFactor, TIME_GRIT);
+    }
+
     /**
      * The create adjustable rate limiter
      *
@@ -106,6 +117,7 @@ public class AdjustableRateLimiter {
         this.stopwatch = stopwatch;
     }
 
+    @Override
     public final void setRate(double permitsPerSecond) {
         if (permitsPerSecond <= 0.0 || Double.isNaN(permitsPerSecond)) {
             throw new LimiterException("rate must be positive");
@@ -119,6 +131,7 @@ public class AdjustableRateLimiter {
 
     }
 
+    @Override
     public final double getRate() {
         synchronized (mutex()) {
             return doGetRate();
@@ -146,19 +159,23 @@ public class AdjustableRateLimiter {
         }
     }
 
+    @Override
     public boolean tryAcquire(long timeout, TimeUnit unit) {
         return tryAcquire(1, timeout, unit);
     }
 
+    @Override
     public boolean tryAcquire(int permits) {
         return tryAcquire(permits, 0, MICROSECONDS);
     }
 
+    @Override
     public boolean tryAcquire() {
         return tryAcquire(1, 0, MICROSECONDS);
     }
 
-    private boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+    @Override
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
         long timeoutMicros = max(unit.toMicros(timeout), 0);
         checkPermits(permits);
         long microsToWait;
@@ -9,7 +9,7 @@ import java.util.concurrent.Semaphore;
  *
  * @author lry
  */
-public class AdjustableSemaphore extends Semaphore {
+public class AdjustableSemaphore extends Semaphore implements IConcurrentLimiter {
 
     private static final long serialVersionUID = -392487128996569342L;
 
@@ -23,12 +23,23 @@ public class AdjustableSemaphore extends Semaphore {
     }
 
     public AdjustableSemaphore(int permits) {
-        super(permits);
-        this.setMaxPermits(permits);
+        this(permits, false);
     }
 
     public AdjustableSemaphore(int permits, boolean fair) {
-        super(permits, fair);
+        this(permits, fair, 0);
+    }
+
+    /**
+     * The create semaphore with the in-flight permits carried over from another semaphore
+     *
+     * @param permits  max permits
+     * @param fair     fair
+     * @param acquired in-flight permits
+     */
+    public AdjustableSemaphore(int permits, boolean fair, int acquired) {
+        // 许可由setMaxPermits统一释放，避免初始许可被计算两次
+        super(-acquired, fair);
         this.setMaxPermits(permits);
     }
 
@@ -37,6 +48,7 @@ public class AdjustableSemaphore extends Semaphore {
      *
      * @param maxPermits max permits
      */
+    @Override
     public synchronized void setMaxPermits(int maxPermits) {
         if (maxPermits < 1) {
             throw new LimiterException("Semaphore size(" + maxPermits + ") must be at least 1");
@@ -55,4 +67,9 @@ public class AdjustableSemaphore extends Semaphore {
         this.maxPermits = maxPermits;
     }
 
+    @Override
+    public int acquiredPermits() {
+        return maxPermits - availablePermits();
+    }
+
 }
\ No newline at end of file
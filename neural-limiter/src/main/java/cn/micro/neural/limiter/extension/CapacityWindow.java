@@ -0,0 +1,108 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.micro.neural.limiter.exception.LimiterException;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Capacity Window.
+ * <p>
+ * The passed calls and the min RT of a sliding window, in the same ring of time buckets as
+ * {@link SlidingWindowCounter}. The estimated capacity(the in-flight calls the system can hold without
+ * queueing) is the max pass QPS of a bucket multiplied by the min RT of the window, like the BBR.
+ *
+ * @author lry
+ */
+public class CapacityWindow {
+
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public CapacityWindow(long windowMillis, int bucketCount) {
+        if (windowMillis < 1 || bucketCount < 1) {
+            throw new LimiterException(String.format("Illegal capacity window: windowMillis=%s, bucketCount=%s",
+                    windowMillis, bucketCount));
+        }
+
+        this.bucketMillis = Math.max(windowMillis / bucketCount, 1L);
+        this.windowMillis = bucketMillis * bucketCount;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.set(i, new Bucket(-1L));
+        }
+    }
+
+    /**
+     * The add a passed call
+     *
+     * @param rtMicros the RT of the call
+     */
+    public void addPass(long rtMicros) {
+        Bucket bucket = currentBucket(System.currentTimeMillis());
+        bucket.pass.increment();
+        bucket.minRt.accumulate(rtMicros);
+    }
+
+    /**
+     * The estimated capacity: max pass QPS * min RT, -1 is no sample
+     *
+     * @return capacity
+     */
+    public double capacity() {
+        long now = System.currentTimeMillis();
+        long windowStart = now - windowMillis;
+        long maxPass = 0;
+        long minRt = Long.MAX_VALUE;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.windowStart > windowStart) {
+                maxPass = Math.max(maxPass, bucket.pass.sum());
+                minRt = Math.min(minRt, bucket.minRt.get());
+            }
+        }
+        if (maxPass == 0 || minRt == Long.MAX_VALUE) {
+            return -1;
+        }
+
+        double maxPassQps = maxPass * 1000.0 / bucketMillis;
+        return maxPassQps * minRt / 1000_000.0;
+    }
+
+    private Bucket currentBucket(long now) {
+        long bucketStart = now - now % bucketMillis;
+        int index = (int) ((now / bucketMillis) % buckets.length());
+        for (; ; ) {
+            Bucket bucket = buckets.get(index);
+            if (bucket.windowStart >= bucketStart) {
+                return bucket;
+            }
+
+            // 旧的时间桶整体替换为新的时间桶，不会在计数时被重置
+            Bucket newBucket = new Bucket(bucketStart);
+            if (buckets.compareAndSet(index, bucket, newBucket)) {
+                return newBucket;
+            }
+        }
+    }
+
+    /**
+     * The time bucket
+     *
+     * @author lry
+     */
+    private static final class Bucket {
+
+        private final long windowStart;
+        private final LongAdder pass = new LongAdder();
+        private final LongAccumulator minRt = new LongAccumulator(Long::min, Long.MAX_VALUE);
+
+        private Bucket(long windowStart) {
+            this.windowStart = windowStart;
+        }
+
+    }
+
+}
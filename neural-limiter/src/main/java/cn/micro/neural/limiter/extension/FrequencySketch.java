@@ -0,0 +1,125 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.micro.neural.limiter.exception.LimiterException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Frequency Sketch.
+ * <p>
+ * A count-min sketch of 4-bit counters used to estimate how often a key has been seen recently.
+ * Each {@code long} holds 16 counters and every key is counted in 4 of them, the estimate is the minimum.
+ * <p>
+ * When the number of increments reaches the sample size, all counters are halved so that the old keys
+ * fade out. The memory is fixed by the expected number of keys and does not grow with the traffic.
+ *
+ * @author lry
+ */
+public class FrequencySketch {
+
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_FREQUENCY = 15;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public FrequencySketch(long expectedSize) {
+        if (expectedSize < 1) {
+            throw new LimiterException(String.format("expectedSize must be positive: %s", expectedSize));
+        }
+
+        int capacity = ceilingPowerOfTwo((int) Math.min(expectedSize, 1 << 30));
+        this.table = new AtomicLongArray(capacity);
+        this.tableMask = capacity - 1;
+        this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The estimated frequency of the key, at most 15
+     *
+     * @param key key
+     * @return frequency
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table.get(index) >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * The increment the frequency of the key
+     *
+     * @param key key
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && size.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        for (; ; ) {
+            long current = table.get(index);
+            if ((current & mask) == mask) {
+                // 计数器已饱和
+                return false;
+            }
+            if (table.compareAndSet(index, current, current + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The halve all counters, so the keys not seen recently are aged out
+     */
+    private void reset() {
+        size.set(0);
+        for (int i = 0; i < table.length(); i++) {
+            for (; ; ) {
+                long current = table.get(i);
+                if (table.compareAndSet(i, current, (current >>> 1) & RESET_MASK)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return x <= 1 ? 1 : 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+    }
+
+}
@@ -0,0 +1,176 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.micro.neural.limiter.exception.LimiterException;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The GCRA(Generic Cell Rate Algorithm) Rate Limiter.
+ * <p>
+ * The only state is the theoretical arrival time(TAT) of the next request, updated by CAS without lock:
+ * 1.The permits are emitted every emission interval(1s / rate), the TAT moves forward by permits * interval
+ * 2.The request is allowed when TAT - burst * interval is not later than now, so at most burst permits at once
+ * 3.The rejected request knows exactly when it would be allowed, see {@link #getRetryAfterMicros(int)}
+ * <p>
+ * The same algorithm as the GCRA branch of cluster_limiter.lua, which stores only the TAT per key.
+ *
+ * @author lry
+ */
+public class GcraRateLimiter implements IRateLimiter {
+
+    public static GcraRateLimiter create(double permitsPerSecond) {
+        return create(permitsPerSecond, 0);
+    }
+
+    /**
+     * The create GCRA rate limiter
+     *
+     * @param permitsPerSecond permits per second
+     * @param burst            the max permits acquired at once, 0 is the permits of 1 second
+     * @return {@link GcraRateLimiter}
+     */
+    public static GcraRateLimiter create(double permitsPerSecond, int burst) {
+        GcraRateLimiter rateLimiter = new GcraRateLimiter();
+        rateLimiter.setBurst(burst);
+        rateLimiter.setRate(permitsPerSecond);
+        return rateLimiter;
+    }
+
+    private final long startNanos = System.nanoTime();
+    /**
+     * The theoretical arrival time(micros) of the next request
+     */
+    private final AtomicLong tat = new AtomicLong(0L);
+    private volatile double intervalMicros;
+    private volatile double permitsPerSecond;
+    private volatile int burst;
+
+    private GcraRateLimiter() {
+    }
+
+    @Override
+    public void setRate(double permitsPerSecond) {
+        if (permitsPerSecond <= 0.0 || Double.isNaN(permitsPerSecond)) {
+            throw new LimiterException("rate must be positive");
+        }
+
+        this.permitsPerSecond = permitsPerSecond;
+        this.intervalMicros = SECONDS.toMicros(1L) / permitsPerSecond;
+    }
+
+    @Override
+    public double getRate() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * The update the burst tolerance, and support dynamic change
+     *
+     * @param burst the max permits acquired at once, 0 is the permits of 1 second
+     */
+    public void setBurst(int burst) {
+        if (burst < 0) {
+            throw new LimiterException(String.format("burst (%s) must not be negative", burst));
+        }
+
+        this.burst = burst;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return tryAcquire(1, 0, MICROSECONDS);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, 0, MICROSECONDS);
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) {
+        return tryAcquire(1, timeout, unit);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        checkPermits(permits);
+        long microsToWait = reserve(permits, max(unit.toMicros(timeout), 0));
+        if (microsToWait < 0) {
+            return false;
+        }
+
+        // 等待，当未达到限制时，microsToWait为0
+        if (microsToWait > 0) {
+            Uninterruptibles.sleepUninterruptibly(microsToWait, MICROSECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * The micros after which the permits would be allowed without waiting
+     *
+     * @param permits permits
+     * @return micros, 0 is allowed now
+     */
+    public long getRetryAfterMicros(int permits) {
+        long nowMicros = readMicros();
+        return max(allowAt(max(tat.get(), nowMicros), permits) - nowMicros, 0L);
+    }
+
+    /**
+     * The reserve permits by CAS
+     *
+     * @param permits       permits
+     * @param timeoutMicros the max micros to wait
+     * @return the micros to wait, -1 is can't acquire within the timeout
+     */
+    private long reserve(int permits, long timeoutMicros) {
+        for (; ; ) {
+            long nowMicros = readMicros();
+            long current = tat.get();
+            long base = max(current, nowMicros);
+            long wait = allowAt(base, permits) - nowMicros;
+            if (wait > timeoutMicros) {
+                return -1L;
+            }
+            if (tat.compareAndSet(current, base + (long) (permits * intervalMicros))) {
+                return max(wait, 0L);
+            }
+        }
+    }
+
+    /**
+     * The moment at which the permits are allowed: the new TAT minus the burst tolerance
+     *
+     * @param base    the max of TAT and now
+     * @param permits permits
+     * @return micros
+     */
+    private long allowAt(long base, int permits) {
+        double tolerance = (burst > 0 ? burst : max(permitsPerSecond, 1.0)) * intervalMicros;
+        return base + (long) (permits * intervalMicros - tolerance);
+    }
+
+    private long readMicros() {
+        return (System.nanoTime() - startNanos) / 1000L;
+    }
+
+    private static void checkPermits(int permits) {
+        if (permits <= 0) {
+            throw new LimiterException(String.format("Requested permits (%s) must be positive", permits));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "GcraRateLimiter[stableRate=%3.1fqps, burst=%d]", getRate(), burst);
+    }
+
+}
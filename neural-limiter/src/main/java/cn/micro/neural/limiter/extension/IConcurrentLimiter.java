@@ -0,0 +1,61 @@
+package cn.micro.neural.limiter.extension;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Concurrent Limiter Interface.
+ * <p>
+ * The common view of the concurrent permit engines that {@link cn.micro.neural.limiter.core.StandAloneLimiter} can choose.
+ *
+ * @author lry
+ */
+public interface IConcurrentLimiter {
+
+    /**
+     * The update the max permits, and support dynamic change
+     *
+     * @param maxPermits max permits
+     */
+    void setMaxPermits(int maxPermits);
+
+    /**
+     * The get current available permits, negative is the in-flight permits exceed the max permits
+     *
+     * @return available permits
+     */
+    int availablePermits();
+
+    /**
+     * The get current in-flight permits
+     *
+     * @return acquired permits
+     */
+    int acquiredPermits();
+
+    /**
+     * The try acquire permits without waiting
+     *
+     * @param permits permits
+     * @return true is success
+     */
+    boolean tryAcquire(int permits);
+
+    /**
+     * The try acquire permits, wait at most timeout
+     *
+     * @param permits permits
+     * @param timeout timeout
+     * @param unit    {@link TimeUnit}
+     * @return true is success
+     * @throws InterruptedException interrupted when waiting
+     */
+    boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * The release permits
+     *
+     * @param permits permits
+     */
+    void release(int permits);
+
+}
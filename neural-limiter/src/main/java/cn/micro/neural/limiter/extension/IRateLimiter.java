@@ -0,0 +1,62 @@
+package cn.micro.neural.limiter.extension;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Rate Limiter Interface.
+ * <p>
+ * The common view of the rate limiter engines that {@link cn.micro.neural.limiter.core.StandAloneLimiter} can choose.
+ *
+ * @author lry
+ */
+public interface IRateLimiter {
+
+    /**
+     * The update the stable rate, and support dynamic change
+     *
+     * @param permitsPerSecond permits per second
+     */
+    void setRate(double permitsPerSecond);
+
+    /**
+     * The get the stable rate
+     *
+     * @return permits per second
+     */
+    double getRate();
+
+    /**
+     * The try acquire one permit without waiting
+     *
+     * @return true is success
+     */
+    boolean tryAcquire();
+
+    /**
+     * The try acquire permits without waiting
+     *
+     * @param permits permits
+     * @return true is success
+     */
+    boolean tryAcquire(int permits);
+
+    /**
+     * The try acquire one permit, wait at most timeout
+     *
+     * @param timeout timeout
+     * @param unit    {@link TimeUnit}
+     * @return true is success
+     */
+    boolean tryAcquire(long timeout, TimeUnit unit);
+
+    /**
+     * The try acquire permits, wait at most timeout
+     *
+     * @param permits permits
+     * @param timeout timeout
+     * @param unit    {@link TimeUnit}
+     * @return true is success
+     */
+    boolean tryAcquire(int permits, long timeout, TimeUnit unit);
+
+}
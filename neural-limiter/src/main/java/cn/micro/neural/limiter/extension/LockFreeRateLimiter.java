@@ -0,0 +1,162 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.micro.neural.limiter.exception.LimiterException;
+import com.google.common.math.LongMath;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The Lock Free Rate Limiter.
+ * <p>
+ * The same bursty token bucket as {@link SmoothRateLimiter.SmoothBursty}, but the stored permits and the
+ * next free ticket are packed into one CAS-updated {@code long}, so acquiring a permit never takes a lock.
+ * <p>
+ * The state is the moment(micros) at which the bucket is empty and has no debt:
+ * 1.state &gt; now: the next free ticket is at state, the requests are paying the debt
+ * 2.state &lt;= now: the stored permits are (now - state) / stableIntervalMicros, capped by the max burst
+ * <p>
+ * The stored permits are kept as time credit, so the {@link #setRate(double)} keeps the stored permits
+ * proportional to the new rate in the same way as {@link SmoothRateLimiter.SmoothBursty} does.
+ *
+ * @author lry
+ */
+public class LockFreeRateLimiter implements IRateLimiter {
+
+    private static final long TIME_GRIT = 1L;
+    private static final double MAX_BURST_SECONDS = 1.0;
+
+    public static LockFreeRateLimiter create(double permitsPerSecond) {
+        return create(permitsPerSecond, TIME_GRIT);
+    }
+
+    public static LockFreeRateLimiter create(double permitsPerSecond, long timeGritSecond) {
+        LockFreeRateLimiter rateLimiter = new LockFreeRateLimiter(timeGritSecond);
+        rateLimiter.setRate(permitsPerSecond);
+        return rateLimiter;
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final double timeGritMicros;
+    private final long maxBurstMicros;
+    /**
+     * The packed stored permits and next free ticket micros
+     */
+    private final AtomicLong state;
+    private volatile double stableIntervalMicros;
+
+    private LockFreeRateLimiter(long timeGritSecond) {
+        if (timeGritSecond < 1) {
+            throw new LimiterException(String.format("timeGritSecond must be positive: %s", timeGritSecond));
+        }
+
+        this.timeGritMicros = SECONDS.toMicros(timeGritSecond);
+        this.maxBurstMicros = (long) (MAX_BURST_SECONDS * timeGritMicros);
+        this.state = new AtomicLong(readMicros());
+    }
+
+    @Override
+    public void setRate(double permitsPerSecond) {
+        if (permitsPerSecond <= 0.0 || Double.isNaN(permitsPerSecond)) {
+            throw new LimiterException("rate must be positive");
+        }
+
+        this.stableIntervalMicros = timeGritMicros / permitsPerSecond;
+    }
+
+    @Override
+    public double getRate() {
+        return SECONDS.toMicros(1L) / stableIntervalMicros;
+    }
+
+    double acquire() {
+        return acquire(1);
+    }
+
+    double acquire(int permits) {
+        checkPermits(permits);
+        long microsToWait = reserve(permits, Long.MAX_VALUE);
+        sleepMicrosUninterruptibly(microsToWait);
+        return 1.0 * microsToWait / SECONDS.toMicros(1L);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return tryAcquire(1, 0, MICROSECONDS);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, 0, MICROSECONDS);
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) {
+        return tryAcquire(1, timeout, unit);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        checkPermits(permits);
+        long microsToWait = reserve(permits, max(unit.toMicros(timeout), 0));
+        if (microsToWait < 0) {
+            return false;
+        }
+
+        // 等待，当未达到限制时，microsToWait为0
+        sleepMicrosUninterruptibly(microsToWait);
+        return true;
+    }
+
+    /**
+     * The reserve permits by CAS
+     *
+     * @param permits       permits
+     * @param timeoutMicros the max micros to wait
+     * @return the micros to wait, -1 is can't acquire within the timeout
+     */
+    private long reserve(int permits, long timeoutMicros) {
+        for (; ; ) {
+            long nowMicros = readMicros();
+            long current = state.get();
+            if (current - timeoutMicros > nowMicros) {
+                return -1L;
+            }
+
+            // 补充令牌(最多补充至最大突发量)，然后减去消耗的令牌
+            long base = max(current, nowMicros - maxBurstMicros);
+            long next = LongMath.saturatedAdd(base, (long) (permits * stableIntervalMicros));
+            if (state.compareAndSet(current, next)) {
+                return max(current - nowMicros, 0L);
+            }
+        }
+    }
+
+    private long readMicros() {
+        return (System.nanoTime() - startNanos) / 1000L;
+    }
+
+    private static void sleepMicrosUninterruptibly(long micros) {
+        if (micros > 0) {
+            Uninterruptibles.sleepUninterruptibly(micros, MICROSECONDS);
+        }
+    }
+
+    private static void checkPermits(int permits) {
+        if (permits <= 0) {
+            throw new LimiterException(String.format("Requested permits (%s) must be positive", permits));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "LockFreeRateLimiter[stableRate=%3.1fqps]", getRate());
+    }
+
+}
@@ -0,0 +1,142 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.micro.neural.limiter.exception.LimiterException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The Lock Free Semaphore.
+ * <p>
+ * The non-fair concurrent permits, counted by a CAS in-flight counter:
+ * 1.The {@link #tryAcquire(int)} and {@link #release(int)} never take a lock when nobody is waiting
+ * 2.Only the {@link #tryAcquire(int, long, TimeUnit)} with timeout parks, until the permits are released or resized
+ *
+ * @author lry
+ */
+public class LockFreeSemaphore implements IConcurrentLimiter {
+
+    /**
+     * The in-flight permits
+     */
+    private final AtomicInteger acquired = new AtomicInteger(0);
+    /**
+     * The waiting threads
+     */
+    private final AtomicInteger waiters = new AtomicInteger(0);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    /**
+     * 最大许可数
+     */
+    private volatile int maxPermits;
+
+    public LockFreeSemaphore(int permits) {
+        this(permits, 0);
+    }
+
+    /**
+     * The create semaphore with the in-flight permits carried over from another semaphore
+     *
+     * @param permits  max permits
+     * @param acquired in-flight permits
+     */
+    public LockFreeSemaphore(int permits, int acquired) {
+        this.acquired.set(acquired);
+        this.setMaxPermits(permits);
+    }
+
+    /**
+     * 设置并发数(支持动态变更)，已获取的许可不受影响
+     *
+     * @param maxPermits max permits
+     */
+    @Override
+    public void setMaxPermits(int maxPermits) {
+        if (maxPermits < 1) {
+            throw new LimiterException("Semaphore size(" + maxPermits + ") must be at least 1");
+        }
+
+        int oldMaxPermits = this.maxPermits;
+        this.maxPermits = maxPermits;
+        if (maxPermits > oldMaxPermits) {
+            signalWaiters();
+        }
+    }
+
+    @Override
+    public int availablePermits() {
+        return maxPermits - acquired.get();
+    }
+
+    @Override
+    public int acquiredPermits() {
+        return acquired.get();
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        for (; ; ) {
+            int current = acquired.get();
+            int next = current + permits;
+            if (next > maxPermits) {
+                return false;
+            }
+            if (acquired.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        if (tryAcquire(permits)) {
+            return true;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        if (nanos <= 0) {
+            return false;
+        }
+
+        lock.lockInterruptibly();
+        try {
+            // 先登记等待者再重试，保证释放者能看到等待者并唤醒
+            waiters.incrementAndGet();
+            try {
+                while (!tryAcquire(permits)) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = released.awaitNanos(nanos);
+                }
+
+                return true;
+            } finally {
+                waiters.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void release(int permits) {
+        acquired.addAndGet(-permits);
+        signalWaiters();
+    }
+
+    private void signalWaiters() {
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.micro.neural.limiter.exception.LimiterException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The Sliding Window Counter.
+ * <p>
+ * The window is split into a ring of time buckets, and a running total of the live buckets is kept,
+ * so the acquire checks the total without summing the ring:
+ * 1.The acquire reserves the permits on the total first, and a rejected acquire only rolls back the total
+ * 2.The admitted permits are then added into the bucket of current tick, each bucket carries its tick
+ * 3.The bucket of an expired tick is replaced by CAS of its slot, the winner closes the old bucket and
+ * subtracts its final count from the total, a closed bucket refuses the late adding(retry on the new bucket)
+ * <p>
+ * The slot is replaced at most once per bucket period, the counting itself does not allocate.
+ *
+ * @author lry
+ */
+public class SlidingWindowCounter {
+
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong lastTick = new AtomicLong(-1L);
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount) {
+        if (windowMillis < 1 || bucketCount < 1) {
+            throw new LimiterException(String.format("Illegal sliding window: windowMillis=%s, bucketCount=%s",
+                    windowMillis, bucketCount));
+        }
+
+        this.bucketMillis = Math.max(windowMillis / bucketCount, 1L);
+        this.windowMillis = bucketMillis * bucketCount;
+        this.bucketCount = bucketCount;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.set(i, new Bucket(-1L));
+        }
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * The try acquire permits, the permits are only counted when the window total does not exceed maxCount
+     *
+     * @param permits  permits
+     * @param maxCount the max count within the window
+     * @return true is success
+     */
+    public boolean tryAcquire(long permits, long maxCount) {
+        long tick = advance(System.currentTimeMillis());
+        if (total.addAndGet(permits) > maxCount) {
+            // 超出限制则只回滚总数，时间桶中从未计入本次请求
+            total.addAndGet(-permits);
+            return false;
+        }
+
+        addBucket(tick, permits);
+        return true;
+    }
+
+    /**
+     * The add permits into current bucket without checking
+     *
+     * @param permits permits
+     */
+    public void add(long permits) {
+        long tick = advance(System.currentTimeMillis());
+        total.addAndGet(permits);
+        addBucket(tick, permits);
+    }
+
+    /**
+     * The total count within current window
+     *
+     * @return total count
+     */
+    public long sum() {
+        advance(System.currentTimeMillis());
+        return total.get();
+    }
+
+    /**
+     * The expire the buckets which slid out of the window, the expiring races are settled by the CAS of slot
+     *
+     * @param now current time millis
+     * @return current tick
+     */
+    private long advance(long now) {
+        long tick = now / bucketMillis;
+        long last = lastTick.get();
+        if (tick > last && lastTick.compareAndSet(last, tick)) {
+            for (long t = Math.max(last + 1, tick - bucketCount + 1); t <= tick; t++) {
+                expire(t);
+            }
+        }
+
+        return tick;
+    }
+
+    private Bucket expire(long tick) {
+        int index = (int) (tick % bucketCount);
+        for (; ; ) {
+            Bucket bucket = buckets.get(index);
+            if (bucket.tick >= tick) {
+                return bucket;
+            }
+
+            Bucket newBucket = new Bucket(tick);
+            if (buckets.compareAndSet(index, bucket, newBucket)) {
+                total.addAndGet(-bucket.close());
+                return newBucket;
+            }
+        }
+    }
+
+    private void addBucket(long tick, long permits) {
+        // 时间桶已被关闭(时间窗口滑过)时，计入最新的时间桶
+        while (!expire(tick).add(permits)) {
+            tick = Math.max(tick, lastTick.get());
+        }
+    }
+
+    /**
+     * The time bucket
+     *
+     * @author lry
+     */
+    private static final class Bucket {
+
+        private static final long CLOSED = Long.MIN_VALUE;
+
+        private final long tick;
+        private final AtomicLong count = new AtomicLong();
+
+        Bucket(long tick) {
+            this.tick = tick;
+        }
+
+        boolean add(long permits) {
+            for (; ; ) {
+                long current = count.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + permits)) {
+                    return true;
+                }
+            }
+        }
+
+        long close() {
+            return count.getAndSet(CLOSED);
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.neural.common.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The System Load Sampler.
+ * <p>
+ * The system cpu usage and load average are sampled from the OperatingSystem MBean by a daemon thread every
+ * second, so reading them is only a volatile read. The sampler is started lazily on the first read.
+ *
+ * @author lry
+ */
+@Slf4j
+public class SystemLoadSampler {
+
+    private static final String OS_MBEAN = "java.lang:type=OperatingSystem";
+    private static final String SYSTEM_CPU_LOAD_ATTR = "SystemCpuLoad";
+    private static final String SYSTEM_LOAD_AVERAGE_ATTR = "SystemLoadAverage";
+    private static final long SAMPLE_PERIOD_MILLIS = 1000L;
+
+    private static volatile double cpuUsage = -1;
+    private static volatile double loadAverage = -1;
+    private static volatile boolean started = false;
+
+    /**
+     * The system cpu usage in [0, 1], negative is not available
+     *
+     * @return cpu usage
+     */
+    public static double getCpuUsage() {
+        checkStart();
+        return cpuUsage;
+    }
+
+    /**
+     * The system load average of the last minute, negative is not available
+     *
+     * @return load average
+     */
+    public static double getLoadAverage() {
+        checkStart();
+        return loadAverage;
+    }
+
+    private static void checkStart() {
+        if (!started) {
+            synchronized (SystemLoadSampler.class) {
+                if (!started) {
+                    sample();
+                    ScheduledExecutorService executorService = new ScheduledThreadPoolExecutor(
+                            1, new NamedThreadFactory("neural-limiter-system-load", true));
+                    executorService.scheduleAtFixedRate(SystemLoadSampler::sample,
+                            SAMPLE_PERIOD_MILLIS, SAMPLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                    Runtime.getRuntime().addShutdownHook(new Thread(executorService::shutdown));
+                    started = true;
+                }
+            }
+        }
+    }
+
+    private static void sample() {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName osMBean = new ObjectName(OS_MBEAN);
+            try {
+                cpuUsage = ((Number) mbeanServer.getAttribute(osMBean, SYSTEM_CPU_LOAD_ATTR)).doubleValue();
+            } catch (Exception e) {
+                // the attribute is only available on the HotSpot
+                cpuUsage = -1;
+            }
+            loadAverage = ((Number) mbeanServer.getAttribute(osMBean, SYSTEM_LOAD_AVERAGE_ATTR)).doubleValue();
+        } catch (Exception e) {
+            log.error("Sample system load exception", e);
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package cn.micro.neural.limiter.extension;
+
+import cn.micro.neural.limiter.exception.LimiterException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Vegas Limit.
+ * <p>
+ * The concurrent limit estimated like the TCP-Vegas congestion control. The min RTT is taken as the
+ * no-load RTT, and the queue size is estimated as {@code limit * (1 - rttNoLoad / rtt)}:
+ * 1.queue size &lt;= threshold: no queueing, increase the limit by beta
+ * 2.queue size &lt; alpha: a little queueing, increase the limit by threshold
+ * 3.queue size &gt; beta: too much queueing, decrease the limit by threshold
+ * 4.dropped: decrease the limit by threshold
+ * <p>
+ * The alpha=3*log10(limit), the beta=6*log10(limit) and the threshold=log10(limit). When the in-flight
+ * is less than half of the limit, the limit is kept because the sample doesn't test the limit.
+ * The no-load RTT is probed again after probeMultiplier * limit samples to follow the changes of the RTT.
+ * <p>
+ * The samples are only accumulated without lock(min RTT, max in-flight and drops), the limit is updated
+ * once per sampleWindow samples by the thread which wins the CAS of the update.
+ *
+ * @author lry
+ */
+public class VegasLimit {
+
+    private volatile int minLimit;
+    private volatile int maxLimit;
+    private volatile double smoothing;
+    private volatile int probeMultiplier;
+    private volatile int sampleWindow;
+
+    private final LongAdder windowSamples = new LongAdder();
+    private final LongAccumulator windowMinRtt = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator windowMaxInflight = new LongAccumulator(Math::max, 0L);
+    private final LongAdder windowDrops = new LongAdder();
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    private volatile double estimatedLimit;
+    /**
+     * Only accessed by the thread holding the updating flag
+     */
+    private long rttNoLoadNanos = 0L;
+    private long probeSamples = 0L;
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeMultiplier) {
+        this(initialLimit, minLimit, maxLimit, smoothing, probeMultiplier, 1);
+    }
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeMultiplier, int sampleWindow) {
+        update(minLimit, maxLimit, smoothing, probeMultiplier, sampleWindow);
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * The update the parameters, the learned limit(clamped into the new range) and no-load RTT are kept
+     *
+     * @param minLimit        the min limit
+     * @param maxLimit        the max limit
+     * @param smoothing       the smoothing factor(0, 1]
+     * @param probeMultiplier probe the no-load RTT again after probeMultiplier * limit samples
+     * @param sampleWindow    the number of samples aggregated for each update
+     */
+    public void update(int minLimit, int maxLimit, double smoothing, int probeMultiplier, int sampleWindow) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new LimiterException(String.format("Illegal limit range: minLimit=%s, maxLimit=%s", minLimit, maxLimit));
+        }
+        if (smoothing <= 0.0 || smoothing > 1.0) {
+            throw new LimiterException(String.format("smoothing must be in (0, 1]: %s", smoothing));
+        }
+        if (sampleWindow < 1) {
+            throw new LimiterException(String.format("Illegal sample window: %s", sampleWindow));
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.probeMultiplier = probeMultiplier;
+        this.sampleWindow = sampleWindow;
+    }
+
+    public int getLimit() {
+        return (int) Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+    }
+
+    /**
+     * The record the sample of a call, and update the limit when the sample window is full
+     *
+     * @param rttNanos the RTT of the call
+     * @param inflight the in-flight calls when the call is finished(include itself)
+     * @param dropped  true is the call is timeout or rejected
+     * @return the current limit
+     */
+    public int onSample(long rttNanos, int inflight, boolean dropped) {
+        if (rttNanos <= 0) {
+            return getLimit();
+        }
+
+        windowMinRtt.accumulate(rttNanos);
+        windowMaxInflight.accumulate(inflight);
+        if (dropped) {
+            windowDrops.increment();
+        }
+        windowSamples.increment();
+        if (windowSamples.sum() < sampleWindow || !updating.compareAndSet(false, true)) {
+            return getLimit();
+        }
+
+        try {
+            long samples = windowSamples.sumThenReset();
+            if (samples > 0) {
+                update(samples, windowMinRtt.getThenReset(), (int) windowMaxInflight.getThenReset(),
+                        windowDrops.sumThenReset() > 0);
+            }
+        } finally {
+            updating.set(false);
+        }
+
+        return getLimit();
+    }
+
+    private void update(long samples, long rttNanos, int inflight, boolean dropped) {
+        // 周期性重新探测无负载时的RTT
+        probeSamples += samples;
+        if (probeMultiplier > 0 && probeSamples > probeMultiplier * estimatedLimit) {
+            probeSamples = 0;
+            rttNoLoadNanos = rttNanos;
+            return;
+        }
+        if (rttNoLoadNanos == 0 || rttNanos < rttNoLoadNanos) {
+            rttNoLoadNanos = rttNanos;
+            return;
+        }
+
+        double limit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+        double threshold = Math.log10(Math.max(limit, 10.0));
+        double newLimit;
+        if (dropped) {
+            newLimit = limit - threshold;
+        } else if (inflight * 2 < limit) {
+            // 未达到限制，样本无法反映当前限制是否合适
+            return;
+        } else {
+            double alpha = 3 * threshold;
+            double beta = 6 * threshold;
+            int queueSize = (int) Math.ceil(limit * (1 - (double) rttNoLoadNanos / rttNanos));
+            if (queueSize <= threshold) {
+                newLimit = limit + beta;
+            } else if (queueSize < alpha) {
+                newLimit = limit + threshold;
+            } else if (queueSize > beta) {
+                newLimit = limit - threshold;
+            } else {
+                return;
+            }
+        }
+
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        this.estimatedLimit = (1 - smoothing) * limit + smoothing * newLimit;
+    }
+
+}
@@ -2,14 +2,18 @@ package cn.micro.neural.limiter.spring;
 
 import cn.micro.neural.limiter.LimiterConfig;
 import cn.micro.neural.limiter.LimiterFactory;
+import cn.micro.neural.storage.OriginalContext;
 import cn.neural.common.utils.ClassUtils;
-import cn.neural.common.utils.CloneUtils;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -28,6 +32,8 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * LimitInterceptor
@@ -38,18 +44,22 @@ import java.util.*;
 @Aspect
 @Configuration
 @EnableConfigurationProperties(LimiterRuleConfig.class)
-public class LimiterInterceptor implements ApplicationContextAware {
+public class LimiterInterceptor implements ApplicationContextAware, DisposableBean {
 
-    private static final String DELIMITER = "_";
     private final LimiterFactory limiterFactory = new LimiterFactory();
     private final ExpressionParser parser = new SpelExpressionParser();
     private final LocalVariableTableParameterNameDiscoverer discoverer = new LocalVariableTableParameterNameDiscoverer();
+    /**
+     * Map<key=target class, subKey=signature method, value=LimiterDescriptor>
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, LimiterDescriptor>> descriptors = new ConcurrentHashMap<>();
 
     @Autowired
     private LimiterRuleConfig limiterRuleConfig;
 
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        limiterFactory.setKeyedLimiters(limiterRuleConfig.getKeyedMaximumSize(), limiterRuleConfig.getKeyedAdmissionThreshold());
         Map<String, Map<String, LimiterRuleConfig.RuleProperties>> ruleMap = new HashMap<>();
         limiterRuleConfig.getRules().forEach(ruleConfig -> ruleMap.computeIfAbsent(
                 ruleConfig.getGroup(), k -> new HashMap<>()).put(ruleConfig.getTag(), ruleConfig));
@@ -90,38 +100,99 @@ public class LimiterInterceptor implements ApplicationContextAware {
                 limiterConfig.setRate(ruleConfig.getRate());
                 limiterConfig.setCounter(ruleConfig.getRequest());
                 limiterConfig.setConcurrent(ruleConfig.getConcurrent());
+                limiterConfig.setAdaptive(ruleConfig.getAdaptive());
+                limiterConfig.setSystem(ruleConfig.getSystem());
+                limiterConfig.setCluster(ruleConfig.getCluster());
+                limiterConfig.setToken(ruleConfig.getToken());
                 limiterFactory.addConfig(limiterConfig);
             }
         }
     }
 
+    @Override
+    public void destroy() throws Exception {
+        limiterFactory.destroy();
+    }
+
     @Around("execution(public * *(..)) && @annotation(cn.micro.neural.limiter.spring.NeuralLimiter)")
     public Object interceptor(ProceedingJoinPoint pjp) throws Throwable {
-        MethodSignature methodSignature = (MethodSignature) pjp.getSignature();
-        Method method = getMethod(pjp, methodSignature);
-        NeuralLimiter neuralLimiter = method.getAnnotation(NeuralLimiter.class);
-
-        // 根据限流类型获取不同的key ,如果不传我们会以方法名作为key
-        String tag = neuralLimiter.value().length() != 0 ? neuralLimiter.value() : method.getName().toUpperCase();
-        LimiterConfig limiterConfig = limiterFactory.getConfig(neuralLimiter.group(), tag);
-        if (limiterConfig == null) {
+        LimiterDescriptor descriptor = getDescriptor(pjp);
+        String identity = resolveIdentity(descriptor);
+        if (null == identity) {
             return pjp.proceed();
         }
 
-        String tempTag;
-        if (LimitType.IP == neuralLimiter.type()) {
-            tempTag = tag + DELIMITER + getIpAddress();
+        // 根据限流类型获取热点参数，每个热点参数使用独立的限流器(有界，按需创建)
+        String key;
+        if (LimitType.IP == descriptor.getType()) {
+            key = getIpAddress();
         } else {
-            tempTag = String.valueOf(parseSpel(method, pjp.getArgs(), tag));
+            key = String.valueOf(descriptor.evaluate(pjp.getArgs()));
         }
 
-        // 校验新的限流器,不存在则自动创建
-        LimiterConfig tempLimiterConfig = CloneUtils.clone(limiterConfig);
-        tempLimiterConfig.setTag(tempTag);
-        limiterFactory.checkAndAddConfig(tempLimiterConfig);
-
         // 使用限流器包装调用
-        return limiterFactory.originalCall(limiterConfig.identity(), pjp::proceed);
+        return limiterFactory.originalCall(identity, key, pjp::proceed, new OriginalContext());
+    }
+
+    /**
+     * 解析拦截方法对应规则的标识，未找到规则时不缓存，以便后续通过addConfig添加的规则生效
+     *
+     * @param descriptor {@link LimiterDescriptor}
+     * @return the identity of the rule, null is no rule
+     */
+    private String resolveIdentity(LimiterDescriptor descriptor) {
+        String identity = descriptor.getIdentity();
+        if (null != identity) {
+            return identity;
+        }
+
+        LimiterConfig limiterConfig = limiterFactory.getConfig(descriptor.getGroup(), descriptor.getTag());
+        if (null == limiterConfig) {
+            return null;
+        }
+
+        identity = limiterConfig.identity();
+        descriptor.setIdentity(identity);
+        return identity;
+    }
+
+    /**
+     * 获取拦截方法的预编译描述，首次调用时构建
+     *
+     * @param joinPoint {@link ProceedingJoinPoint}
+     * @return {@link LimiterDescriptor}
+     */
+    private LimiterDescriptor getDescriptor(ProceedingJoinPoint joinPoint) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Class<?> targetClass = joinPoint.getTarget().getClass();
+        return descriptors.computeIfAbsent(targetClass, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(signature.getMethod(), k -> buildDescriptor(getMethod(joinPoint, signature)));
+    }
+
+    /**
+     * 构建拦截方法的描述: 注解、已解析的SpEL表达式、参数名，规则标识在调用时解析
+     *
+     * @param method {@link Method}
+     * @return {@link LimiterDescriptor}
+     */
+    private LimiterDescriptor buildDescriptor(Method method) {
+        NeuralLimiter neuralLimiter = method.getAnnotation(NeuralLimiter.class);
+
+        // 根据限流类型获取不同的key ,如果不传我们会以方法名作为key
+        String tag = neuralLimiter.value().length() != 0 ? neuralLimiter.value() : method.getName().toUpperCase();
+
+        Expression expression = null;
+        String[] parameterNames = null;
+        if (LimitType.CUSTOMER == neuralLimiter.type()) {
+            parameterNames = discoverer.getParameterNames(method);
+            try {
+                expression = parser.parseExpression(tag);
+            } catch (Exception e) {
+                log.warn("The tag[{}] of method[{}] is not a spel expression", tag, method);
+            }
+        }
+
+        return new LimiterDescriptor(neuralLimiter.group(), neuralLimiter.type(), tag, expression, parameterNames);
     }
 
     /**
@@ -145,33 +216,6 @@ public class LimiterInterceptor implements ApplicationContextAware {
         return method;
     }
 
-    /**
-     * 解析 spel 表达式
-     *
-     * @param method    方法
-     * @param arguments 参数
-     * @param spel      表达式
-     * @return 执行spel表达式后的结果
-     */
-    private Object parseSpel(Method method, Object[] arguments, String spel) {
-        String[] params = discoverer.getParameterNames(method);
-        if (params == null) {
-            return spel;
-        }
-
-        EvaluationContext context = new StandardEvaluationContext();
-        for (int len = 0; len < params.length; len++) {
-            context.setVariable(params[len], arguments[len]);
-        }
-
-        try {
-            Expression expression = parser.parseExpression(spel);
-            return expression.getValue(context);
-        } catch (Exception e) {
-            return spel;
-        }
-    }
-
     /**
      * 获取id地址
      *
@@ -194,4 +238,49 @@ public class LimiterInterceptor implements ApplicationContextAware {
         return ip;
     }
 
-}
\ No newline at end of file
+    /**
+     * The precompiled descriptor of the limited method
+     *
+     * @author lry
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static final class LimiterDescriptor {
+
+        private final String group;
+        private final LimitType type;
+        private final String tag;
+        private final Expression expression;
+        private final String[] parameterNames;
+        /**
+         * The identity of the rule, null is the rule is not resolved yet
+         */
+        @Setter
+        private volatile String identity;
+
+        /**
+         * 执行spel表达式，不是表达式或执行失败时返回tag
+         *
+         * @param arguments 参数
+         * @return 执行spel表达式后的结果
+         */
+        private Object evaluate(Object[] arguments) {
+            if (null == expression || null == parameterNames) {
+                return tag;
+            }
+
+            EvaluationContext context = new StandardEvaluationContext();
+            for (int len = 0; len < parameterNames.length; len++) {
+                context.setVariable(parameterNames[len], arguments[len]);
+            }
+
+            try {
+                return expression.getValue(context);
+            } catch (Exception e) {
+                return tag;
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package cn.micro.neural.limiter.spring;
 
+import cn.micro.neural.limiter.KeyedLimiterStore;
 import cn.micro.neural.limiter.LimiterConfig;
 import cn.micro.neural.limiter.LimiterConfig.*;
 import lombok.Data;
@@ -35,6 +36,17 @@ public class LimiterRuleConfig implements Serializable {
      **/
     private String application = LimiterConfig.DEFAULT_APPLICATION;
 
+    // === per-key limiter store
+
+    /**
+     * The max number of per-key(ip or spel value) limiters, the least recently used are evicted
+     **/
+    private Long keyedMaximumSize = KeyedLimiterStore.DEFAULT_MAXIMUM_SIZE;
+    /**
+     * The recent frequency a key needs before it gets its own limiter, 0 is always
+     **/
+    private Integer keyedAdmissionThreshold = KeyedLimiterStore.DEFAULT_ADMISSION_THRESHOLD;
+
     // === limiter config strategy
 
     /**
@@ -81,6 +93,22 @@ public class LimiterRuleConfig implements Serializable {
          * The concurrent limiter
          */
         private ConcurrentLimiterConfig concurrent = new ConcurrentLimiterConfig();
+        /**
+         * The adaptive concurrent limiter, only for Mode.ADAPTIVE
+         */
+        private AdaptiveLimiterConfig adaptive = new AdaptiveLimiterConfig();
+        /**
+         * The system load adaptive admission, only for Mode.SYSTEM_ADAPTIVE
+         */
+        private SystemLimiterConfig system = new SystemLimiterConfig();
+        /**
+         * The fallback of cluster limiter, only for Mode.CLUSTER
+         */
+        private ClusterLimiterConfig cluster = new ClusterLimiterConfig();
+        /**
+         * The embedded token server, only for Mode.TOKEN
+         */
+        private TokenLimiterConfig token = new TokenLimiterConfig();
     }
 
 }
@@ -0,0 +1,318 @@
+package cn.micro.neural.limiter.token;
+
+import cn.neural.common.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Token Client.
+ * <p>
+ * One connection per token server shared by all the limiters of the node:
+ * 1.The requests of all calling threads are queued, and one writer thread sends them in batches by one write
+ * 2.One reader thread completes the waiting requests by the id of the responses
+ * 3.The connection is reconnected lazily, at most once per {@link #RECONNECT_INTERVAL} ms
+ * 4.The request abandoned by the timeout is kept until its response, the concurrent permits granted late are
+ * released at once, so they are not leaked until the connection is closed
+ * <p>
+ * The client is shared by reference counting: each {@link #of(String, int)} must be paired with {@link #close()}.
+ *
+ * @author lry
+ */
+@Slf4j
+public class TokenClient {
+
+    public static final int MAX_BATCH_SIZE = 128;
+    public static final int QUEUE_SIZE = 10000;
+    private static final long RECONNECT_INTERVAL = 1000L;
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    /**
+     * Map<key=host:port, value=TokenClient>
+     */
+    private static final Map<String, TokenClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final InetSocketAddress address;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, CompletableFuture<Byte>> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<TokenProtocol.Request> requests = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread writer;
+    private volatile SocketChannel channel;
+    private volatile boolean closed = false;
+    private long nextConnectMillis = 0L;
+    /**
+     * The number of the users, guarded by {@link #CLIENTS}
+     */
+    private int references = 0;
+
+    private TokenClient(String key, String host, int port) {
+        this.key = key;
+        this.address = new InetSocketAddress(host, port);
+        this.writer = new NamedThreadFactory("neural-limiter-token-client", true).newThread(this::run);
+        writer.start();
+    }
+
+    /**
+     * The get the shared client of the token server
+     *
+     * @param host the host of token server
+     * @param port the port of token server
+     * @return {@link TokenClient}
+     */
+    public static TokenClient of(String host, int port) {
+        synchronized (CLIENTS) {
+            TokenClient client = CLIENTS.computeIfAbsent(host + ":" + port, k -> new TokenClient(k, host, port));
+            client.references++;
+            return client;
+        }
+    }
+
+    /**
+     * The close the client when it is no longer used by anyone, the waiting requests are failed
+     */
+    public void close() {
+        synchronized (CLIENTS) {
+            if (closed || --references > 0) {
+                return;
+            }
+
+            this.closed = true;
+            CLIENTS.remove(key, this);
+        }
+
+        writer.interrupt();
+        List<TokenProtocol.Request> queued = new ArrayList<>();
+        requests.drainTo(queued);
+        fail(queued);
+        SocketChannel tempChannel = this.channel;
+        if (null != tempChannel) {
+            close(tempChannel);
+        } else {
+            failPending();
+        }
+    }
+
+    /**
+     * The acquire from the token server
+     *
+     * @param request   the acquire request
+     * @param timeoutMs the timeout(ms) of waiting the response
+     * @return the status of {@link TokenProtocol}, ERROR is timeout or the server is unreachable
+     */
+    public byte acquire(TokenProtocol.Request request, long timeoutMs) {
+        if (closed) {
+            return TokenProtocol.ERROR;
+        }
+
+        request.id = ids.incrementAndGet();
+        CompletableFuture<Byte> future = new CompletableFuture<>();
+        pending.put(request.id, future);
+        if (!requests.offer(request)) {
+            pending.remove(request.id);
+            return TokenProtocol.ERROR;
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(request, future);
+            return TokenProtocol.ERROR;
+        } catch (TimeoutException e) {
+            abandon(request, future);
+            return TokenProtocol.ERROR;
+        } catch (Exception e) {
+            pending.remove(request.id);
+            return TokenProtocol.ERROR;
+        }
+    }
+
+    /**
+     * The release to the token server without waiting the response
+     *
+     * @param request the release request
+     */
+    public void release(TokenProtocol.Request request) {
+        if (closed) {
+            return;
+        }
+
+        request.id = ids.incrementAndGet();
+        if (!requests.offer(request)) {
+            log.warn("The token client queue is full, the release of {} is dropped", request.identity);
+        }
+    }
+
+    /**
+     * The abandon the request by the timeout, the pending entry is kept until the response(or the connection
+     * is closed), and the concurrent permits granted late are released
+     *
+     * @param request the acquire request
+     * @param future  the future of the response
+     */
+    private void abandon(TokenProtocol.Request request, CompletableFuture<Byte> future) {
+        if (request.permitUnit < 1) {
+            pending.remove(request.id);
+            return;
+        }
+
+        future.thenAccept(status -> {
+            if (TokenProtocol.SUCCESS == status) {
+                release(TokenProtocol.Request.release(request.identity, request.permitUnit));
+            }
+        });
+    }
+
+    private void run() {
+        List<TokenProtocol.Request> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (!closed) {
+            try {
+                batch.add(requests.take());
+                requests.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                SocketChannel tempChannel = connect();
+                if (null == tempChannel) {
+                    fail(batch);
+                    continue;
+                }
+
+                int size = 0;
+                for (TokenProtocol.Request request : batch) {
+                    size += TokenProtocol.encodedSize(request);
+                }
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+                buffer.clear();
+                for (TokenProtocol.Request request : batch) {
+                    TokenProtocol.encode(request, buffer);
+                }
+                buffer.flip();
+                try {
+                    while (buffer.hasRemaining()) {
+                        tempChannel.write(buffer);
+                    }
+                } catch (IOException e) {
+                    log.warn("Write to the token server exception: {}", e.getMessage());
+                    close(tempChannel);
+                    fail(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable t) {
+                log.error("The token client exception", t);
+                fail(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * The connect to the token server lazily, only called by the writer thread
+     *
+     * @return the connected channel, null is unreachable
+     */
+    private SocketChannel connect() {
+        SocketChannel tempChannel = this.channel;
+        if (null != tempChannel) {
+            return tempChannel;
+        }
+        if (System.currentTimeMillis() < nextConnectMillis) {
+            return null;
+        }
+
+        nextConnectMillis = System.currentTimeMillis() + RECONNECT_INTERVAL;
+        try {
+            tempChannel = SocketChannel.open();
+            tempChannel.socket().setTcpNoDelay(true);
+            tempChannel.socket().connect(address, CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            log.warn("Connect to the token server {} exception: {}", address, e.getMessage());
+            close(tempChannel);
+            return null;
+        }
+
+        final SocketChannel connected = tempChannel;
+        this.channel = connected;
+        new NamedThreadFactory("neural-limiter-token-reader", true).newThread(() -> read(connected)).start();
+        return connected;
+    }
+
+    private void read(SocketChannel connected) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connected)))) {
+            for (; ; ) {
+                int length = input.readInt();
+                if (length != TokenProtocol.RESPONSE_SIZE) {
+                    throw new IOException("Illegal token response length: " + length);
+                }
+
+                long id = input.readLong();
+                byte status = input.readByte();
+                CompletableFuture<Byte> future = pending.remove(id);
+                if (null != future) {
+                    future.complete(status);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Read from the token server exception: {}", e.getMessage());
+        } finally {
+            close(connected);
+        }
+    }
+
+    private void close(SocketChannel closed) {
+        if (null == closed) {
+            return;
+        }
+        if (this.channel == closed) {
+            this.channel = null;
+        }
+        try {
+            closed.close();
+        } catch (IOException e) {
+            log.debug("Close the token connection exception", e);
+        }
+
+        // the responses of the sent requests are lost with the connection, and the server releases their permits
+        failPending();
+    }
+
+    private void failPending() {
+        for (Long id : pending.keySet()) {
+            CompletableFuture<Byte> future = pending.remove(id);
+            if (null != future) {
+                future.complete(TokenProtocol.ERROR);
+            }
+        }
+    }
+
+    private void fail(List<TokenProtocol.Request> batch) {
+        for (TokenProtocol.Request request : batch) {
+            CompletableFuture<Byte> future = pending.remove(request.id);
+            if (null != future) {
+                future.complete(TokenProtocol.ERROR);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package cn.micro.neural.limiter.token;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Token Protocol.
+ * <p>
+ * The compact binary frames between the token client and the token server, each frame is the length(int)
+ * followed by the body:
+ * 1.Request: id(long), type(byte), identity(short length + utf8), then the ACQUIRE limits or the RELEASE permits
+ * 2.Response: id(long), status(byte)
+ * <p>
+ * The ACQUIRE limits are permitUnit(int), maxPermit(int), rateUnit(int), maxRate(int), countUnit(int),
+ * maxCount(long) and countWindow(long, ms), the unit 0 means the limiter is off.
+ *
+ * @author lry
+ */
+public final class TokenProtocol {
+
+    public static final byte ACQUIRE = 1;
+    public static final byte RELEASE = 2;
+
+    public static final byte SUCCESS = 0;
+    public static final byte CONCURRENT_EXCEED = 1;
+    public static final byte RATE_EXCEED = 2;
+    public static final byte COUNTER_EXCEED = 3;
+    public static final byte ERROR = 4;
+
+    static final int LENGTH_SIZE = 4;
+    static final int RESPONSE_SIZE = 9;
+    static final int MAX_FRAME_SIZE = 64 * 1024;
+    private static final int ACQUIRE_LIMITS_SIZE = 4 * 5 + 8 * 2;
+    /**
+     * The max utf8 length of the identity, so the frame fits {@link #MAX_FRAME_SIZE}(and the unsigned short length)
+     */
+    static final int MAX_IDENTITY_SIZE = MAX_FRAME_SIZE - 8 - 1 - 2 - ACQUIRE_LIMITS_SIZE;
+
+    private TokenProtocol() {
+    }
+
+    /**
+     * The acquire request
+     *
+     * @author lry
+     */
+    public static class Request {
+
+        long id;
+        byte type;
+        String identity;
+        int permitUnit;
+        int maxPermit;
+        int rateUnit;
+        int maxRate;
+        int countUnit;
+        long maxCount;
+        long countWindow;
+
+        public static Request acquire(String identity, int permitUnit, int maxPermit, int rateUnit,
+                                      int maxRate, int countUnit, long maxCount, long countWindow) {
+            checkIdentity(identity);
+            Request request = new Request();
+            request.type = ACQUIRE;
+            request.identity = identity;
+            request.permitUnit = permitUnit;
+            request.maxPermit = maxPermit;
+            request.rateUnit = rateUnit;
+            request.maxRate = maxRate;
+            request.countUnit = countUnit;
+            request.maxCount = maxCount;
+            request.countWindow = countWindow;
+            return request;
+        }
+
+        public static Request release(String identity, int permitUnit) {
+            checkIdentity(identity);
+            Request request = new Request();
+            request.type = RELEASE;
+            request.identity = identity;
+            request.permitUnit = permitUnit;
+            return request;
+        }
+
+    }
+
+    private static void checkIdentity(String identity) {
+        if (identity.getBytes(StandardCharsets.UTF_8).length > MAX_IDENTITY_SIZE) {
+            throw new IllegalArgumentException("The identity is too long: " + identity.length());
+        }
+    }
+
+    static int encodedSize(Request request) {
+        int size = LENGTH_SIZE + 8 + 1 + 2 + request.identity.getBytes(StandardCharsets.UTF_8).length;
+        return size + (ACQUIRE == request.type ? ACQUIRE_LIMITS_SIZE : 4);
+    }
+
+    static void encode(Request request, ByteBuffer buffer) {
+        byte[] identity = request.identity.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(encodedSize(request) - LENGTH_SIZE);
+        buffer.putLong(request.id);
+        buffer.put(request.type);
+        buffer.putShort((short) identity.length);
+        buffer.put(identity);
+        buffer.putInt(request.permitUnit);
+        if (ACQUIRE == request.type) {
+            buffer.putInt(request.maxPermit);
+            buffer.putInt(request.rateUnit);
+            buffer.putInt(request.maxRate);
+            buffer.putInt(request.countUnit);
+            buffer.putLong(request.maxCount);
+            buffer.putLong(request.countWindow);
+        }
+    }
+
+    /**
+     * The decode the request body, the length is read
+     *
+     * @param buffer the body
+     * @return {@link Request}
+     */
+    static Request decode(ByteBuffer buffer) {
+        Request request = new Request();
+        request.id = buffer.getLong();
+        request.type = buffer.get();
+        byte[] identity = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(identity);
+        request.identity = new String(identity, StandardCharsets.UTF_8);
+        request.permitUnit = buffer.getInt();
+        if (ACQUIRE == request.type) {
+            request.maxPermit = buffer.getInt();
+            request.rateUnit = buffer.getInt();
+            request.maxRate = buffer.getInt();
+            request.countUnit = buffer.getInt();
+            request.maxCount = buffer.getLong();
+            request.countWindow = buffer.getLong();
+        }
+
+        return request;
+    }
+
+    static void encodeResponse(long id, byte status, ByteBuffer buffer) {
+        buffer.putInt(RESPONSE_SIZE);
+        buffer.putLong(id);
+        buffer.put(status);
+    }
+
+}
@@ -0,0 +1,297 @@
+package cn.micro.neural.limiter.token;
+
+import cn.micro.neural.limiter.extension.LockFreeRateLimiter;
+import cn.micro.neural.limiter.extension.LockFreeSemaphore;
+import cn.micro.neural.limiter.extension.SlidingWindowCounter;
+import cn.neural.common.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The Token Server.
+ * <p>
+ * The embedded NIO server holding the global limits in memory, one selector thread serves all connections:
+ * 1.The requests of a read are processed in order and their responses are written back by one write
+ * 2.The limits of an identity are created on its first request, and follow the limits of the latest request
+ * 3.The concurrent permits held by a connection are released when it is closed, so a crashed node can't
+ * leak the permits
+ *
+ * @author lry
+ */
+@Slf4j
+public class TokenServer {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int COUNTER_BUCKET_COUNT = 10;
+
+    private final Map<String, Limits> limits = new HashMap<>();
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    /**
+     * The start the token server
+     *
+     * @param host the host to bind
+     * @param port the port to bind, 0 is an ephemeral port
+     * @throws IOException bind failure
+     */
+    public TokenServer(String host, int port) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(host, port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        new NamedThreadFactory("neural-limiter-token-server", true).newThread(this::run).start();
+        log.info("The token server is started: {}", serverChannel.getLocalAddress());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void close() {
+        this.running = false;
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        } else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        log.debug("The token connection is closed: {}", e.getMessage());
+                        closeConnection(key);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("The token server exception", e);
+            }
+        }
+
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    closeConnection(key);
+                }
+            }
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            log.error("Close the token server exception", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (null == channel) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (channel.read(connection.readBuffer) < 0) {
+            closeConnection(key);
+            return;
+        }
+
+        // 处理本次读取到的所有完整请求，响应合并为一次写出
+        ByteBuffer readBuffer = connection.readBuffer;
+        readBuffer.flip();
+        while (readBuffer.remaining() >= TokenProtocol.LENGTH_SIZE) {
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length < 0 || length > TokenProtocol.MAX_FRAME_SIZE) {
+                throw new IOException("Illegal token frame length: " + length);
+            }
+            if (readBuffer.remaining() < TokenProtocol.LENGTH_SIZE + length) {
+                break;
+            }
+
+            readBuffer.getInt();
+            int end = readBuffer.position() + length;
+            TokenProtocol.Request request = TokenProtocol.decode(readBuffer);
+            readBuffer.position(end);
+            connection.write(request.id, process(connection, request));
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            connection.growReadBuffer();
+        }
+
+        write(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer writeBuffer = connection.writeBuffer;
+        writeBuffer.flip();
+        ((SocketChannel) key.channel()).write(writeBuffer);
+        writeBuffer.compact();
+        // 未写完的响应等待可写事件
+        key.interestOps(writeBuffer.position() > 0 ?
+                SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private byte process(Connection connection, TokenProtocol.Request request) {
+        try {
+            Limits identityLimits = limits.computeIfAbsent(request.identity, k -> new Limits());
+            if (TokenProtocol.RELEASE == request.type) {
+                int held = connection.held.getOrDefault(request.identity, 0);
+                int permits = Math.min(held, request.permitUnit);
+                if (permits > 0) {
+                    identityLimits.semaphore.release(permits);
+                    connection.held.put(request.identity, held - permits);
+                }
+                return TokenProtocol.SUCCESS;
+            }
+
+            return identityLimits.tryAcquire(connection, request);
+        } catch (Exception e) {
+            log.error("Process token request exception", e);
+            return TokenProtocol.ERROR;
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        Object attachment = key.attachment();
+        if (attachment instanceof Connection) {
+            // 释放连接持有的并发许可
+            for (Map.Entry<String, Integer> entry : ((Connection) attachment).held.entrySet()) {
+                Limits identityLimits = limits.get(entry.getKey());
+                if (null != identityLimits && entry.getValue() > 0) {
+                    identityLimits.semaphore.release(entry.getValue());
+                }
+            }
+            ((Connection) attachment).held.clear();
+        }
+
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Close the token connection exception", e);
+        }
+    }
+
+    /**
+     * The global limits of an identity, only accessed by the selector thread
+     *
+     * @author lry
+     */
+    private static class Limits {
+
+        private final LockFreeSemaphore semaphore = new LockFreeSemaphore(1);
+        private int maxPermit = 1;
+        private LockFreeRateLimiter rateLimiter;
+        private int maxRate;
+        private SlidingWindowCounter counter;
+
+        private byte tryAcquire(Connection connection, TokenProtocol.Request request) {
+            if (request.permitUnit > 0) {
+                if (maxPermit != request.maxPermit) {
+                    semaphore.setMaxPermits(request.maxPermit);
+                    maxPermit = request.maxPermit;
+                }
+                if (!semaphore.tryAcquire(request.permitUnit)) {
+                    return TokenProtocol.CONCURRENT_EXCEED;
+                }
+            }
+
+            byte status = TokenProtocol.SUCCESS;
+            if (request.rateUnit > 0) {
+                if (null == rateLimiter) {
+                    rateLimiter = LockFreeRateLimiter.create(request.maxRate);
+                    maxRate = request.maxRate;
+                } else if (maxRate != request.maxRate) {
+                    rateLimiter.setRate(request.maxRate);
+                    maxRate = request.maxRate;
+                }
+                if (!rateLimiter.tryAcquire(request.rateUnit)) {
+                    status = TokenProtocol.RATE_EXCEED;
+                }
+            }
+            if (TokenProtocol.SUCCESS == status && request.countUnit > 0) {
+                if (null == counter || counter.getWindowMillis() != request.countWindow) {
+                    counter = new SlidingWindowCounter(request.countWindow, COUNTER_BUCKET_COUNT);
+                }
+                if (!counter.tryAcquire(request.countUnit, request.maxCount)) {
+                    status = TokenProtocol.COUNTER_EXCEED;
+                }
+            }
+
+            if (request.permitUnit > 0) {
+                if (TokenProtocol.SUCCESS == status) {
+                    connection.held.merge(request.identity, request.permitUnit, Integer::sum);
+                } else {
+                    semaphore.release(request.permitUnit);
+                }
+            }
+
+            return status;
+        }
+
+    }
+
+    /**
+     * The connection of a token client
+     *
+     * @author lry
+     */
+    private static class Connection {
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        /**
+         * Map<key=identity, value=the concurrent permits held by the connection>
+         */
+        private final Map<String, Integer> held = new HashMap<>();
+
+        private void write(long id, byte status) {
+            if (writeBuffer.remaining() < TokenProtocol.LENGTH_SIZE + TokenProtocol.RESPONSE_SIZE) {
+                ByteBuffer newBuffer = ByteBuffer.allocate(writeBuffer.capacity() * 2);
+                writeBuffer.flip();
+                newBuffer.put(writeBuffer);
+                this.writeBuffer = newBuffer;
+            }
+            TokenProtocol.encodeResponse(id, status, writeBuffer);
+        }
+
+        private void growReadBuffer() {
+            ByteBuffer newBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            newBuffer.put(readBuffer);
+            this.readBuffer = newBuffer;
+        }
+
+    }
+
+}
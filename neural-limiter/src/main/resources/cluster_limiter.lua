@@ -0,0 +1,149 @@
+-- 并发、速率、计数三种限流的合并脚本: 一次调用完成所有维度的检查和预占
+-- 先检查所有维度，全部通过后才写入，任一维度被拒绝时不预占任何维度(无需回滚)
+-- 返回: {并发结果, 速率结果, 计数结果, 速率需要等待的时间(微秒，速率拒绝时为无需等待即可放行的时间)}，1为放行(或未开启)，0为拒绝，-1为前序维度已拒绝而未检查
+-- 速率被拒绝时，第四个值为精确的重试等待时间(微秒)
+
+-- 获取调用脚本时传入的key值: 并发(租约模式下为有序集合)、速率、计数
+local concurrentKey = KEYS[1]
+local rateKey = KEYS[2]
+local counterKey = KEYS[3]
+
+-- 并发: 是否开启、并发最小单元、最大并发许可数、并发计数周期的超时时间(单位为毫秒)
+local concurrentEnable = tonumber(ARGV[1]) == 1
+local permitUnit = tonumber(ARGV[2])
+local maxPermit = tonumber(ARGV[3])
+local concurrentTimeout = tonumber(ARGV[4])
+-- 速率: 是否开启、请求令牌数量、每秒发放的令牌数、最大等待时间(微秒)、预热时间(微秒,0为突发模式)、冷却因子、
+-- GCRA的突发容量(0为令牌桶)
+local rateEnable = tonumber(ARGV[5]) == 1
+local rateUnit = tonumber(ARGV[6])
+local maxRate = tonumber(ARGV[7])
+local rateTimeout = tonumber(ARGV[8])
+local warmupPeriod = tonumber(ARGV[9])
+local coldFactor = tonumber(ARGV[10])
+-- 计数: 是否开启、统计最小单元、最大统计许可数、统计计数周期的超时时间(单位为毫秒)
+local counterEnable = tonumber(ARGV[11]) == 1
+local countUnit = tonumber(ARGV[12])
+local maxCount = tonumber(ARGV[13])
+local counterTimeout = tonumber(ARGV[14])
+-- 并发租约: 租约ID(空字符串为计数模式)、租约的超时时间(单位为毫秒)
+local leaseId = ARGV[15]
+local leaseTimeout = tonumber(ARGV[16])
+local gcraBurst = tonumber(ARGV[17])
+
+-- 使用Redis服务器时间，避免各节点的时钟偏差(必须在写命令之前开启命令复制)
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+local nowMillis = math.floor(now / 1000)
+
+-- === 1.检查并发
+if concurrentEnable then
+    local currentConcurrent
+    if leaseId ~= '' then
+        -- 惰性回收已过期的租约(持有租约的节点宕机或失联)
+        redis.call('ZREMRANGEBYSCORE', concurrentKey, '-inf', nowMillis)
+        currentConcurrent = redis.call('ZCARD', concurrentKey)
+    else
+        currentConcurrent = tonumber(redis.call('GET', concurrentKey) or '0')
+    end
+    if currentConcurrent + permitUnit > maxPermit then
+        return {0, -1, -1, 0}
+    end
+end
+
+-- === 2.检查速率(GCRA或令牌桶)
+local storedPermits, nextFree, wait, newTat
+if rateEnable and gcraBurst > 0 then
+    -- GCRA只存储理论到达时间(TAT)
+    local interval = 1000000 / maxRate
+    local tat = math.max(tonumber(redis.call('GET', rateKey) or '0'), now)
+    newTat = tat + rateUnit * interval
+    local allowAt = newTat - gcraBurst * interval
+    if allowAt - now > rateTimeout then
+        return {1, 0, -1, math.ceil(allowAt - now)}
+    end
+    wait = math.max(allowAt - now, 0)
+elseif rateEnable then
+    local stableInterval = 1000000 / maxRate
+    local maxPermits, coolDownInterval, thresholdPermits, slope
+    if warmupPeriod > 0 then
+        local coldInterval = stableInterval * coldFactor
+        thresholdPermits = 0.5 * warmupPeriod / stableInterval
+        maxPermits = thresholdPermits + 2.0 * warmupPeriod / (stableInterval + coldInterval)
+        slope = (coldInterval - stableInterval) / (maxPermits - thresholdPermits)
+        coolDownInterval = warmupPeriod / maxPermits
+    else
+        maxPermits = maxRate
+        coolDownInterval = stableInterval
+    end
+
+    local info = redis.call('HMGET', rateKey, 'stored_permits', 'next_free_micros')
+    -- key不存在说明已空闲至令牌积满后过期
+    storedPermits = tonumber(info[1]) or maxPermits
+    nextFree = tonumber(info[2]) or now
+    if nextFree - rateTimeout > now then
+        return {1, 0, -1, nextFree - now}
+    end
+
+    -- 根据空闲时间补充令牌
+    if now > nextFree then
+        storedPermits = math.min(maxPermits, storedPermits + (now - nextFree) / coolDownInterval)
+        nextFree = now
+    end
+
+    -- 先消耗积攒的令牌(预热模式下高于阈值的令牌按梯形面积计算等待时间)，不足的部分预支后续的令牌
+    wait = nextFree - now
+    local storedToSpend = math.min(rateUnit, storedPermits)
+    local waitMicros = 0
+    if warmupPeriod > 0 then
+        local permitsAboveThreshold = storedPermits - thresholdPermits
+        if permitsAboveThreshold > 0 then
+            local aboveToTake = math.min(permitsAboveThreshold, storedToSpend)
+            local length = 2 * stableInterval + (2 * permitsAboveThreshold - aboveToTake) * slope
+            waitMicros = aboveToTake * length / 2.0 + stableInterval * (storedToSpend - aboveToTake)
+        else
+            waitMicros = stableInterval * storedToSpend
+        end
+    end
+    nextFree = nextFree + waitMicros + (rateUnit - storedToSpend) * stableInterval
+    storedPermits = storedPermits - storedToSpend
+end
+
+-- === 3.检查计数
+if counterEnable then
+    local currentCount = tonumber(redis.call('GET', counterKey) or '0')
+    if currentCount + countUnit > maxCount then
+        return {1, 1, 0, 0}
+    end
+end
+
+-- === 全部通过，预占所有开启的维度
+if concurrentEnable then
+    if leaseId ~= '' then
+        -- 每个许可一个租约成员，分值为租约的截止时间
+        for i = 1, permitUnit do
+            redis.call('ZADD', concurrentKey, nowMillis + leaseTimeout, leaseId .. ':' .. i)
+        end
+        redis.call('PEXPIRE', concurrentKey, leaseTimeout)
+    else
+        redis.call('INCRBY', concurrentKey, permitUnit)
+        redis.call('PEXPIRE', concurrentKey, concurrentTimeout)
+    end
+end
+if rateEnable and gcraBurst > 0 then
+    -- TAT按整数微秒存储(避免浮点数转字符串时丢失精度)，早于当前时间后自动过期
+    redis.call('SET', rateKey, string.format('%.0f', newTat), 'PX', math.max(math.ceil((newTat - now) / 1000), 1))
+elseif rateEnable then
+    redis.call('HMSET', rateKey, 'stored_permits', storedPermits, 'next_free_micros', nextFree)
+    redis.call('PEXPIRE', rateKey, math.ceil((nextFree - now + warmupPeriod) / 1000) + 1000)
+end
+if counterEnable then
+    redis.call('INCRBY', counterKey, countUnit)
+    -- 计数周期从第一次计数开始
+    if redis.call('PTTL', counterKey) < 0 then
+        redis.call('PEXPIRE', counterKey, counterTimeout)
+    end
+end
+
+return {1, 1, 1, wait or 0}
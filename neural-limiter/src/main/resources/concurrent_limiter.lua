@@ -14,12 +14,12 @@ local nextConcurrent = currentConcurrent + permitUnit
 -- 是否超出限流
 if nextConcurrent > maxPermit then
     -- 返回(拒绝)
-    return 0, nextConcurrent
+    return {0, nextConcurrent}
 else
     -- 没有超出value + 1
     redis.call('INCRBY', identity, permitUnit)
     -- 设置过期时间
     redis.call('PEXPIRE', identity, timeout)
     -- 返回(放行)
-    return 1, nextConcurrent
+    return {1, nextConcurrent}
 end
\ No newline at end of file
@@ -0,0 +1,33 @@
+-- 并发租约的释放和续约: 租约由cluster_limiter.lua获取，每个许可一个有序集合成员，分值为租约的截止时间
+-- 获取调用脚本时传入的第一个key值（用作限流的key）
+local identity = KEYS[1]
+-- 操作: release为释放，renew为续约
+local action = ARGV[1]
+-- 并发最小单元,默认为1
+local permitUnit = tonumber(ARGV[2])
+-- 租约的超时时间(单位为毫秒)
+local leaseTimeout = tonumber(ARGV[3])
+
+-- 使用Redis服务器时间，避免各节点的时钟偏差
+redis.replicate_commands()
+local time = redis.call('TIME')
+local nowMillis = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+-- 第4个参数开始为租约ID
+for j = 4, #ARGV do
+    for i = 1, permitUnit do
+        local member = ARGV[j] .. ':' .. i
+        if action == 'release' then
+            redis.call('ZREM', identity, member)
+        else
+            -- 只续约仍存在的租约，已过期被回收的租约不再恢复
+            redis.call('ZADD', identity, 'XX', nowMillis + leaseTimeout, member)
+        end
+    end
+end
+
+if action == 'renew' and redis.call('EXISTS', identity) == 1 then
+    redis.call('PEXPIRE', identity, leaseTimeout)
+end
+-- 返回当前的并发数
+return {1, redis.call('ZCARD', identity)}
@@ -0,0 +1,41 @@
+-- 令牌桶租约: 从全局令牌桶(与cluster_limiter.lua为同一个桶)中借出一批令牌，由节点在本地发放
+-- 获取调用脚本时传入的第一个key值（用作限流的key）
+local identity = KEYS[1]
+-- 借出的令牌数量，负数表示归还未使用的令牌
+local requested = tonumber(ARGV[1])
+-- 每秒发放的令牌数
+local rate = tonumber(ARGV[2])
+
+-- 使用Redis服务器时间，避免各节点的时钟偏差
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local stableInterval = 1000000 / rate
+local maxPermits = rate
+local info = redis.call('HMGET', identity, 'stored_permits', 'next_free_micros')
+-- key不存在说明已空闲至令牌积满后过期
+local storedPermits = tonumber(info[1]) or maxPermits
+local nextFree = tonumber(info[2]) or now
+
+-- 根据空闲时间补充令牌
+if now > nextFree then
+    storedPermits = math.min(maxPermits, storedPermits + (now - nextFree) / stableInterval)
+    nextFree = now
+end
+
+-- 租约只借出已积攒的令牌，不预支
+local granted
+if requested < 0 then
+    storedPermits = math.min(maxPermits, storedPermits - requested)
+    granted = requested
+else
+    granted = math.min(requested, math.floor(storedPermits))
+    storedPermits = storedPermits - granted
+end
+
+redis.call('HMSET', identity, 'stored_permits', storedPermits, 'next_free_micros', nextFree)
+-- 设置过期时间: 预支的时间 + 积攒满令牌的时间
+redis.call('PEXPIRE', identity, math.ceil((nextFree - now) / 1000) + 1000)
+-- 返回借出(或归还)的令牌数
+return {granted, 0}
@@ -0,0 +1,19 @@
+-- 节点心跳: 记录当前节点的心跳时间，并返回存活的节点数
+-- 获取调用脚本时传入的第一个key值（用作节点集合的key）
+local identity = KEYS[1]
+-- 当前节点的实例ID
+local instance = ARGV[1]
+-- 心跳的过期时间(单位为毫秒)，超过该时间未心跳的节点视为下线
+local ttl = tonumber(ARGV[2])
+
+-- 使用Redis服务器时间，避免各节点的时钟偏差
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+redis.call('ZADD', identity, now, instance)
+-- 移除已下线的节点
+redis.call('ZREMRANGEBYSCORE', identity, 0, now - ttl)
+redis.call('PEXPIRE', identity, ttl)
+-- 返回存活的节点数
+return {redis.call('ZCARD', identity), 0}
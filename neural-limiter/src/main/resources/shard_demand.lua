@@ -0,0 +1,15 @@
+-- 分片的需求统计: 上报本节点在本周期内的调用次数，并返回分片在该周期内的总需求
+-- 获取调用脚本时传入的第一个key值（分片在某个周期的需求key）
+local demandKey = KEYS[1]
+-- 本节点上报的调用次数(0为只读取)
+local demand = tonumber(ARGV[1])
+-- 需求key的过期时间(单位为毫秒)
+local expire = tonumber(ARGV[2])
+
+if demand > 0 then
+    redis.call('INCRBY', demandKey, demand)
+    redis.call('PEXPIRE', demandKey, expire)
+end
+
+-- 返回分片的总需求
+return {tonumber(redis.call('GET', demandKey) or '0'), 0}
@@ -0,0 +1,49 @@
+package cn.micro.neural.limiter;
+
+import cn.micro.neural.limiter.core.ILimiter;
+import cn.micro.neural.limiter.core.StandAloneLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyedLimiterStoreTest {
+
+    @Test
+    public void admissionTest() {
+        KeyedLimiterStore store = new KeyedLimiterStore(100, 3);
+        // 前2次访问为冷key，使用规则共享的冷限流器
+        ILimiter coldLimiter = store.get("rule", "127.0.0.1", KeyedLimiterStoreTest::newLimiter);
+        Assert.assertEquals(KeyedLimiterStore.COLD_KEY, coldLimiter.getConfig().getTag());
+        Assert.assertSame(coldLimiter, store.get("rule", "127.0.0.1", KeyedLimiterStoreTest::newLimiter));
+        ILimiter limiter = store.get("rule", "127.0.0.1", KeyedLimiterStoreTest::newLimiter);
+        Assert.assertEquals("127.0.0.1", limiter.getConfig().getTag());
+        Assert.assertSame(limiter, store.get("rule", "127.0.0.1", KeyedLimiterStoreTest::newLimiter));
+        Assert.assertSame(coldLimiter, store.get("rule", "127.0.0.2", KeyedLimiterStoreTest::newLimiter));
+
+        store.invalidate("rule");
+        Assert.assertEquals(0, store.size());
+        Assert.assertNotSame(coldLimiter, store.get("rule", "127.0.0.3", KeyedLimiterStoreTest::newLimiter));
+    }
+
+    @Test
+    public void boundedTest() {
+        KeyedLimiterStore store = new KeyedLimiterStore(100, 0);
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertNotNull(store.get("rule", String.valueOf(i), KeyedLimiterStoreTest::newLimiter));
+        }
+
+        Assert.assertTrue(store.size() <= 100);
+    }
+
+    private static ILimiter newLimiter(String key) {
+        StandAloneLimiter limiter = new StandAloneLimiter();
+        LimiterConfig config = new LimiterConfig();
+        config.setTag(key);
+        try {
+            limiter.refresh(config);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return limiter;
+    }
+
+}
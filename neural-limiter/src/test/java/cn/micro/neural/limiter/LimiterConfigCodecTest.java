@@ -0,0 +1,181 @@
+package cn.micro.neural.limiter;
+
+import cn.micro.neural.storage.BinaryReader;
+import cn.micro.neural.storage.BinaryWriter;
+import cn.micro.neural.storage.CodecRedisSerializer;
+import cn.micro.neural.storage.CodecRegistry;
+import cn.micro.neural.storage.StatisticsCodec;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class LimiterConfigCodecTest {
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+    private final CodecRedisSerializer serializer = newSerializer();
+
+    @Test
+    public void limiterConfigTest() {
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("order");
+        config.setName("下单限流");
+        config.getLabels().add("label😀");
+        config.setMode(LimiterConfig.Mode.CLUSTER);
+        config.getRate().setAlgorithm(LimiterConfig.RateAlgorithm.GCRA);
+        config.getRate().setColdFactor(2.5);
+        config.getCounter().setMaxCount(-1L);
+        config.getCluster().setShards(4);
+        config.getToken().setHost("10.0.0.1");
+
+        byte[] bytes = serializer.serialize(config);
+        Assert.assertEquals(config, serializer.deserialize(bytes));
+        Assert.assertTrue(bytes.length * 5 < jdkSerializer.serialize(config).length);
+    }
+
+    @Test
+    public void allFieldsTest() throws Exception {
+        LimiterConfig config = new LimiterConfig();
+        config.setNode("node1");
+        config.setApplication("app1");
+        config.setGroup("group1");
+        config.setTag("order");
+        config.setEnable(LimiterConfig.Switch.OFF);
+        config.setName("name1");
+        config.getLabels().add("label1");
+        config.setIntro("intro1");
+        config.setMode(LimiterConfig.Mode.TOKEN);
+
+        LimiterConfig.RateLimiterConfig rate = config.getRate();
+        rate.setEnable(LimiterConfig.Switch.OFF);
+        rate.setRateUnit(2);
+        rate.setMaxRate(2000);
+        rate.setTimeout(2000L);
+        rate.setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        rate.setAlgorithm(LimiterConfig.RateAlgorithm.GCRA);
+        rate.setWarmupPeriod(20000L);
+        rate.setColdFactor(4.5);
+        rate.setBurst(5);
+        rate.setLease(LimiterConfig.Switch.ON);
+        rate.setMaxLeaseSize(50);
+
+        LimiterConfig.CounterLimiterConfig counter = config.getCounter();
+        counter.setEnable(LimiterConfig.Switch.OFF);
+        counter.setCountUnit(2);
+        counter.setMaxCount(-2000L);
+        counter.setTimeout(120000L);
+        counter.setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        counter.setAlgorithm(LimiterConfig.CounterAlgorithm.SLIDING_WINDOW);
+        counter.setBucketCount(20);
+
+        LimiterConfig.ConcurrentLimiterConfig concurrent = config.getConcurrent();
+        concurrent.setEnable(LimiterConfig.Switch.OFF);
+        concurrent.setPermitUnit(2);
+        concurrent.setMaxPermit(400);
+        concurrent.setTimeout(2L);
+        concurrent.setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        concurrent.setFair(true);
+        concurrent.setLease(LimiterConfig.Switch.ON);
+        concurrent.setLeaseTimeout(60000L);
+
+        LimiterConfig.AdaptiveLimiterConfig adaptive = config.getAdaptive();
+        adaptive.setInitialLimit(40);
+        adaptive.setMinLimit(2);
+        adaptive.setSmoothing(0.5);
+        adaptive.setProbeMultiplier(60);
+        adaptive.setSampleWindow(20);
+
+        LimiterConfig.SystemLimiterConfig system = config.getSystem();
+        system.setCpuThreshold(0.9);
+        system.setLoadThreshold(4.0);
+        system.setWindowMillis(20000L);
+        system.setBucketCount(20);
+
+        LimiterConfig.ClusterLimiterConfig cluster = config.getCluster();
+        cluster.setFallback(LimiterConfig.Switch.ON);
+        cluster.setSlowThreshold(100L);
+        cluster.setFailureThreshold(6);
+        cluster.setProbeInterval(2000L);
+        cluster.setRecoverThreshold(6);
+        cluster.setNodeCount(2);
+        cluster.setHeartbeatInterval(6000L);
+        cluster.setShards(4);
+        cluster.setHashTag(LimiterConfig.Switch.OFF);
+        cluster.setRebalanceInterval(10000L);
+
+        LimiterConfig.TokenLimiterConfig token = config.getToken();
+        token.setHost("10.0.0.1");
+        token.setPort(9528);
+        token.setServer(LimiterConfig.Switch.ON);
+        token.setTimeout(40L);
+        token.setNodeCount(2);
+
+        // 所有字段都不是默认值，新增的字段未编码时测试失败
+        assertAllChanged(config, new LimiterConfig());
+        Assert.assertEquals(config, serializer.deserialize(serializer.serialize(config)));
+    }
+
+    @Test
+    public void unknownEnumTest() {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeString(9, "UNKNOWN_MODE");
+        byte[] bytes = writer.toByteArray();
+        try {
+            LimiterConfigCodec.INSTANCE.decode(new BinaryReader(bytes));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("UNKNOWN_MODE"));
+        }
+    }
+
+    @Test
+    public void statisticsTest() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("request", 1000L);
+        statistics.put("max_elapsed", 0L);
+        statistics.put("rate_exceed", Long.MAX_VALUE);
+
+        byte[] bytes = serializer.serialize(statistics);
+        Assert.assertTrue(CodecRegistry.isEncoded(bytes));
+        Assert.assertEquals(statistics, serializer.deserialize(bytes));
+
+        // 非统计数据的Map交给默认的序列化
+        Map<String, Object> other = new LinkedHashMap<>();
+        other.put("name", "value");
+        bytes = serializer.serialize(other);
+        Assert.assertFalse(CodecRegistry.isEncoded(bytes));
+        Assert.assertEquals(other, serializer.deserialize(bytes));
+    }
+
+    @SuppressWarnings("unchecked")
+    private CodecRedisSerializer newSerializer() {
+        CodecRegistry codecRegistry = new CodecRegistry();
+        StatisticsCodec.register(codecRegistry);
+        codecRegistry.register(LimiterConfigCodec.TYPE_ID, LimiterConfigCodec.INSTANCE, LimiterConfig.class);
+        return new CodecRedisSerializer((RedisSerializer) jdkSerializer, codecRegistry);
+    }
+
+    private static void assertAllChanged(Object value, Object defaults) throws IllegalAccessException {
+        for (Field field : value.getClass().getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+
+            field.setAccessible(true);
+            Object fieldValue = field.get(value);
+            Object defaultValue = field.get(defaults);
+            if (null != fieldValue && fieldValue.getClass().getName().startsWith(LimiterConfig.class.getName() + "$")
+                    && !fieldValue.getClass().isEnum()) {
+                assertAllChanged(fieldValue, defaultValue);
+            } else {
+                Assert.assertNotEquals(value.getClass().getSimpleName() + "." + field.getName(), defaultValue, fieldValue);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package cn.micro.neural.limiter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LimiterConfigTest {
+
+    @Test
+    public void copyTest() {
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("test");
+        config.getLabels().add("label");
+        config.getRate().setMaxRate(100);
+
+        LimiterConfig copy = config.copy();
+        Assert.assertEquals(config, copy);
+
+        // 修改副本不影响原配置
+        copy.getLabels().add("other");
+        copy.getRate().setMaxRate(200);
+        copy.getCounter().setMaxCount(1L);
+        copy.getConcurrent().setMaxPermit(1);
+        Assert.assertEquals(1, config.getLabels().size());
+        Assert.assertEquals(100, (int) config.getRate().getMaxRate());
+        Assert.assertEquals(1000L, (long) config.getCounter().getMaxCount());
+        Assert.assertEquals(200, (int) config.getConcurrent().getMaxPermit());
+    }
+
+    @Test
+    public void shareTest() {
+        LimiterConfig config = new LimiterConfig();
+        config.getConcurrent().setMaxPermit(9);
+        config.getRate().setMaxRate(1000);
+        config.getCounter().setMaxCount(10L);
+
+        LimiterConfig share = config.share(1.0 / 3);
+        Assert.assertEquals(3, (int) share.getConcurrent().getMaxPermit());
+        Assert.assertEquals(334, (int) share.getRate().getMaxRate());
+        Assert.assertEquals(4L, (long) share.getCounter().getMaxCount());
+        Assert.assertEquals(config.getMode(), share.getMode());
+
+        // 至少保留一个单元
+        Assert.assertEquals(2, (int) config.fairShare(100).getConcurrent().getMaxPermit());
+        Assert.assertEquals(LimiterConfig.Mode.STAND_ALONE, config.fairShare(100).getMode());
+    }
+
+}
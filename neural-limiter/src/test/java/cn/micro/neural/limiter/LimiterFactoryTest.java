@@ -0,0 +1,122 @@
+package cn.micro.neural.limiter;
+
+import cn.micro.neural.limiter.core.ILimiter;
+import cn.micro.neural.limiter.exception.LimiterExceedException;
+import cn.micro.neural.limiter.exception.LimiterException;
+import cn.micro.neural.storage.CodecRegistry;
+import cn.micro.neural.storage.FactoryStorage;
+import cn.micro.neural.storage.OriginalContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class LimiterFactoryTest {
+
+    @Test
+    public void illegalConfigTest() {
+        LimiterFactory factory = new LimiterFactory();
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("illegal");
+        config.getConcurrent().setMaxPermit(0);
+        try {
+            factory.addConfig(config);
+            Assert.fail();
+        } catch (LimiterException e) {
+            // 非法配置不注册限流器
+            Assert.assertFalse(factory.getLimiters().containsKey(config.identity()));
+            Assert.assertNull(factory.getConfig(config.getGroup(), config.getTag()));
+        }
+
+        config.getConcurrent().setMaxPermit(10);
+        factory.addConfig(config);
+        Assert.assertTrue(factory.getLimiters().containsKey(config.identity()));
+    }
+
+    @Test
+    public void collectKeyedTest() throws Throwable {
+        LimiterFactory factory = new LimiterFactory();
+        factory.setKeyedLimiters(100, 0);
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("keyed");
+        factory.addConfig(config);
+
+        String identity = config.identity();
+        factory.originalCall(identity, "127.0.0.1", () -> "ok", new OriginalContext());
+        factory.originalCall(identity, "127.0.0.1", () -> "ok", new OriginalContext());
+        factory.originalCall(identity, "127.0.0.2", () -> "ok", new OriginalContext());
+        factory.originalCall(identity, () -> "ok", new OriginalContext());
+
+        // 热点参数限流器的统计汇总至所属规则
+        Map<String, Map<String, Long>> dataMap = factory.collect();
+        Assert.assertEquals(1, dataMap.size());
+        Assert.assertEquals(4L, (long) dataMap.get(identity).get(LimiterStatistics.REQUEST_KEY));
+        Assert.assertEquals(4L, (long) dataMap.get(identity).get(LimiterStatistics.SUCCESS_KEY));
+        Assert.assertTrue(factory.collect().isEmpty());
+    }
+
+    @Test
+    public void coldKeyTest() throws Throwable {
+        LimiterFactory factory = new LimiterFactory();
+        factory.setKeyedLimiters(100, 2);
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("cold");
+        config.getCounter().setMaxCount(3L);
+        config.getCounter().setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        factory.addConfig(config);
+
+        // 大量一次性的冷key只消耗冷限流器，不影响规则的限流器
+        String identity = config.identity();
+        int success = 0;
+        for (int i = 0; i < 10; i++) {
+            try {
+                factory.originalCall(identity, "key-" + i, () -> "ok", new OriginalContext());
+                success++;
+            } catch (LimiterExceedException e) {
+                // the cold limiter is exhausted
+            }
+        }
+        Assert.assertEquals(3, success);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("ok", factory.originalCall(identity, () -> "ok", new OriginalContext()));
+        }
+
+        // 热key使用以key为标签的独立限流器
+        Assert.assertEquals("ok", factory.originalCall(identity, "key-0", () -> "ok", new OriginalContext()));
+        Map<String, ILimiter> keyLimiters = new LinkedHashMap<>();
+        factory.getKeyedLimiters().forEach((rule, keyLimiter) -> keyLimiters.put(keyLimiter.getConfig().getTag(), keyLimiter));
+        Assert.assertEquals(2, keyLimiters.size());
+        Assert.assertTrue(keyLimiters.containsKey("cold@key-0"));
+        Assert.assertTrue(keyLimiters.containsKey("cold@" + KeyedLimiterStore.COLD_KEY));
+    }
+
+    @Test
+    public void codecTest() {
+        // 编解码器由LimiterFactory注册，而不是由配置类注册
+        new LimiterFactory();
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("codec");
+        byte[] bytes = FactoryStorage.INSTANCE.getCodecRegistry().encode(config);
+        Assert.assertTrue(CodecRegistry.isEncoded(bytes));
+        Assert.assertEquals(config, FactoryStorage.INSTANCE.getCodecRegistry().decode(bytes));
+    }
+
+    @Test
+    public void mergeTest() {
+        Map<String, Long> target = new LinkedHashMap<>();
+        target.put(LimiterStatistics.SUCCESS_KEY, 1L);
+        target.put(LimiterStatistics.AVG_ELAPSED_KEY, 10L);
+        target.put(LimiterStatistics.MAX_ELAPSED_KEY, 10L);
+        Map<String, Long> source = new LinkedHashMap<>();
+        source.put(LimiterStatistics.SUCCESS_KEY, 3L);
+        source.put(LimiterStatistics.AVG_ELAPSED_KEY, 30L);
+        source.put(LimiterStatistics.MAX_ELAPSED_KEY, 50L);
+
+        LimiterStatistics.merge(target, source);
+        Assert.assertEquals(4L, (long) target.get(LimiterStatistics.SUCCESS_KEY));
+        Assert.assertEquals(25L, (long) target.get(LimiterStatistics.AVG_ELAPSED_KEY));
+        Assert.assertEquals(50L, (long) target.get(LimiterStatistics.MAX_ELAPSED_KEY));
+    }
+
+}
@@ -0,0 +1,46 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ClusterHealthTest {
+
+    @Test
+    public void degradeAndRecoverTest() throws Exception {
+        LimiterConfig.ClusterLimiterConfig config = new LimiterConfig.ClusterLimiterConfig();
+        config.setSlowThreshold(10L);
+        config.setFailureThreshold(3);
+        config.setProbeInterval(50L);
+        config.setRecoverThreshold(2);
+        ClusterHealth health = new ClusterHealth(config);
+
+        // 快速成功的调用会重置连续失败计数
+        Assert.assertFalse(health.record(TimeUnit.MILLISECONDS.toNanos(20), true));
+        Assert.assertFalse(health.record(0, false));
+        Assert.assertFalse(health.record(0, true));
+        Assert.assertFalse(health.isDegraded());
+
+        // 连续3次慢调用或失败后降级
+        Assert.assertFalse(health.record(TimeUnit.MILLISECONDS.toNanos(20), true));
+        Assert.assertFalse(health.record(0, false));
+        Assert.assertTrue(health.record(0, false));
+        Assert.assertTrue(health.isDegraded());
+
+        // 降级后每个探测周期只允许一次探测
+        Assert.assertFalse(health.tryProbe());
+        Thread.sleep(60);
+        Assert.assertTrue(health.tryProbe());
+        Assert.assertFalse(health.tryProbe());
+
+        // 连续2次健康的探测后恢复，期间的失败会重新计数
+        Assert.assertFalse(health.record(0, true));
+        Assert.assertFalse(health.record(0, false));
+        Assert.assertFalse(health.record(0, true));
+        Assert.assertTrue(health.record(0, true));
+        Assert.assertFalse(health.isDegraded());
+    }
+
+}
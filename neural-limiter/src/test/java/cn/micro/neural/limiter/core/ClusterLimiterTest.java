@@ -0,0 +1,211 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import cn.micro.neural.limiter.exception.LimiterExceedException;
+import cn.micro.neural.storage.FactoryStorage;
+import cn.micro.neural.storage.OriginalContext;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The cluster limiter on the memory storage
+ */
+public class ClusterLimiterTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        FactoryStorage.INSTANCE.useMemoryStorage();
+    }
+
+    @Test
+    public void concurrentTest() throws Throwable {
+        ClusterLimiter limiter = new ClusterLimiter();
+        LimiterConfig config = newConfig("concurrent");
+        config.getConcurrent().setMaxPermit(2);
+        config.getConcurrent().setTimeout(60 * 1000L);
+        Assert.assertTrue(limiter.refresh(config));
+
+        // 嵌套调用持有许可，第3层被拒绝
+        AtomicInteger depth = new AtomicInteger();
+        Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> {
+            depth.incrementAndGet();
+            return limiter.wrapperCall(new OriginalContext(), () -> {
+                depth.incrementAndGet();
+                try {
+                    limiter.wrapperCall(new OriginalContext(), () -> depth.incrementAndGet());
+                    Assert.fail();
+                } catch (LimiterExceedException e) {
+                    Assert.assertEquals(2, depth.get());
+                }
+                return "ok";
+            });
+        }));
+
+        // 调用结束后许可被释放
+        Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+    }
+
+    @Test
+    public void leaseConcurrentTest() throws Throwable {
+        ClusterLimiter limiter = new ClusterLimiter();
+        LimiterConfig config = newConfig("lease");
+        config.getConcurrent().setMaxPermit(2);
+        config.getConcurrent().setLease(LimiterConfig.Switch.ON);
+        Assert.assertTrue(limiter.refresh(config));
+
+        CompletableFuture<String> future1 = new CompletableFuture<>();
+        CompletableFuture<String> future2 = new CompletableFuture<>();
+        Assert.assertSame(future1, limiter.wrapperCall(new OriginalContext(), () -> future1));
+        Assert.assertSame(future2, limiter.wrapperCall(new OriginalContext(), () -> future2));
+        try {
+            limiter.wrapperCall(new OriginalContext(), () -> "exceed");
+            Assert.fail();
+        } catch (LimiterExceedException e) {
+            // 租约已占满
+        }
+
+        future1.complete("ok");
+        Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+        limiter.destroy();
+    }
+
+    @Test
+    public void counterTest() throws Throwable {
+        ClusterLimiter limiter = new ClusterLimiter();
+        LimiterConfig config = newConfig("counter");
+        config.getConcurrent().setEnable(LimiterConfig.Switch.OFF);
+        config.getCounter().setEnable(LimiterConfig.Switch.ON);
+        config.getCounter().setMaxCount(3L);
+        Assert.assertTrue(limiter.refresh(config));
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+        }
+        try {
+            limiter.wrapperCall(new OriginalContext(), () -> "exceed");
+            Assert.fail();
+        } catch (LimiterExceedException e) {
+            Assert.assertEquals("COUNTER_EXCEED", e.getMessage());
+        }
+
+        // 融合脚本的key默认使用hash tag，在Redis Cluster中落在同一个slot
+        Assert.assertTrue(FactoryStorage.INSTANCE.getStorage().exists("{" + config.identity() + "}:counter"));
+    }
+
+    @Test
+    public void gcraRateTest() throws Throwable {
+        ClusterLimiter limiter = new ClusterLimiter();
+        LimiterConfig config = newConfig("gcra");
+        config.getConcurrent().setEnable(LimiterConfig.Switch.OFF);
+        config.getRate().setEnable(LimiterConfig.Switch.ON);
+        config.getRate().setAlgorithm(LimiterConfig.RateAlgorithm.GCRA);
+        config.getRate().setMaxRate(10);
+        config.getRate().setBurst(2);
+        Assert.assertTrue(limiter.refresh(config));
+
+        Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+        Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+        OriginalContext context = new OriginalContext();
+        try {
+            limiter.wrapperCall(context, () -> "exceed");
+            Assert.fail();
+        } catch (LimiterExceedException e) {
+            Assert.assertEquals("RATE_EXCEED", e.getMessage());
+        }
+
+        // 等待重试时间后放行
+        long retryAfter = (Long) context.getAttachments().get(AbstractCallLimiter.RETRY_AFTER_KEY);
+        Assert.assertTrue(retryAfter > 0 && retryAfter <= 100_000);
+        Thread.sleep(TimeUnit.MICROSECONDS.toMillis(retryAfter) + 1);
+        Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+    }
+
+    @Test
+    public void gcraRetryAfterTest() throws Throwable {
+        LimiterConfig config = newConfig("gcra_retry");
+        config.getConcurrent().setEnable(LimiterConfig.Switch.OFF);
+        config.getRate().setEnable(LimiterConfig.Switch.ON);
+        config.getRate().setAlgorithm(LimiterConfig.RateAlgorithm.GCRA);
+        config.getRate().setMaxRate(10);
+        config.getRate().setBurst(1);
+        config.getRate().setTimeout(50L);
+        ClusterLimiter clusterLimiter = new ClusterLimiter();
+        Assert.assertTrue(clusterLimiter.refresh(config));
+        StandAloneLimiter standAloneLimiter = new StandAloneLimiter();
+        Assert.assertTrue(standAloneLimiter.refresh(config));
+
+        // 集群与单机的重试等待时间一致: 无需等待即可放行的时间，而不是减去超时时间
+        for (AbstractCallLimiter limiter : new AbstractCallLimiter[]{clusterLimiter, standAloneLimiter}) {
+            Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+            OriginalContext context = new OriginalContext();
+            try {
+                limiter.wrapperCall(context, () -> "exceed");
+                Assert.fail();
+            } catch (LimiterExceedException e) {
+                Assert.assertEquals("RATE_EXCEED", e.getMessage());
+            }
+            long retryAfter = (Long) context.getAttachments().get(AbstractCallLimiter.RETRY_AFTER_KEY);
+            Assert.assertTrue(String.valueOf(retryAfter), retryAfter > 50_000 && retryAfter <= 100_000);
+        }
+    }
+
+    @Test
+    public void asyncTest() throws Exception {
+        ClusterLimiter limiter = new ClusterLimiter();
+        LimiterConfig config = newConfig("async");
+        config.getConcurrent().setEnable(LimiterConfig.Switch.OFF);
+        config.getRate().setEnable(LimiterConfig.Switch.ON);
+        config.getRate().setMaxRate(2);
+        Assert.assertTrue(limiter.refresh(config));
+
+        // 令牌桶积攒1秒的令牌，且可预支下一个令牌
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("ok", limiter.wrapperAsyncCall(new OriginalContext(),
+                    () -> "ok").toCompletableFuture().get(1, TimeUnit.SECONDS));
+        }
+        Assert.assertTrue(limiter.wrapperAsyncCall(new OriginalContext(), () -> "exceed")
+                .toCompletableFuture().handle((r, t) -> null != t).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void asyncWaitTest() throws Exception {
+        ClusterLimiter limiter = new ClusterLimiter();
+        LimiterConfig config = newConfig("async-wait");
+        config.getConcurrent().setEnable(LimiterConfig.Switch.OFF);
+        config.getRate().setEnable(LimiterConfig.Switch.ON);
+        config.getRate().setMaxRate(2);
+        config.getRate().setTimeout(1000L);
+        Assert.assertTrue(limiter.refresh(config));
+        for (int i = 0; i < 3; i++) {
+            limiter.wrapperAsyncCall(new OriginalContext(), () -> "ok").toCompletableFuture().get(1, TimeUnit.SECONDS);
+        }
+
+        // 需要等待令牌的调用不阻塞调用线程，原始调用可以获取调用方的上下文
+        OriginalContext context = new OriginalContext();
+        long start = System.nanoTime();
+        CompletableFuture<?> future = limiter.wrapperAsyncCall(context, OriginalContext::get).toCompletableFuture();
+        Assert.assertFalse(future.isDone());
+        Assert.assertSame(context, future.get(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+        Assert.assertNull(OriginalContext.get());
+    }
+
+    private LimiterConfig newConfig(String tag) {
+        LimiterConfig config = new LimiterConfig();
+        config.setMode(LimiterConfig.Mode.CLUSTER);
+        config.setTag(tag);
+        config.getRate().setEnable(LimiterConfig.Switch.OFF);
+        config.getRate().setTimeout(0L);
+        config.getCounter().setEnable(LimiterConfig.Switch.OFF);
+        config.getConcurrent().setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        config.getRate().setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        config.getCounter().setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        return config;
+    }
+
+}
@@ -0,0 +1,92 @@
+package cn.micro.neural.limiter.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LeasedTokenBucketTest {
+
+    @Test
+    public void leaseTest() {
+        AtomicInteger global = new AtomicInteger(1000);
+        AtomicInteger leaseCount = new AtomicInteger();
+        LeasedTokenBucket bucket = new LeasedTokenBucket(50, size -> {
+            leaseCount.incrementAndGet();
+            int granted = Math.min(size, global.get());
+            global.addAndGet(-granted);
+            return granted;
+        }, Runnable::run);
+
+        for (int i = 0; i < 300; i++) {
+            Assert.assertTrue(bucket.tryAcquire(1));
+        }
+
+        // 租约大小随消耗增长，但不超过上限，远少于每次访问全局令牌桶
+        Assert.assertTrue(bucket.getLeaseSize() <= 50);
+        Assert.assertTrue(leaseCount.get() < 300);
+        // 令牌守恒: 全局剩余 + 本地剩余 + 已消耗
+        Assert.assertEquals(1000, global.get() + bucket.getTokens() + 300);
+
+        // 退还的令牌可以被再次获取
+        long tokens = bucket.getTokens();
+        bucket.refund(1);
+        Assert.assertEquals(tokens + 1, bucket.getTokens());
+
+        // 归还未使用的令牌
+        bucket.giveBack();
+        Assert.assertEquals(0, bucket.getTokens());
+        Assert.assertEquals(1000 - 299, global.get());
+    }
+
+    @Test
+    public void emptyTest() {
+        AtomicInteger leaseCount = new AtomicInteger();
+        LeasedTokenBucket bucket = new LeasedTokenBucket(10, size -> {
+            leaseCount.incrementAndGet();
+            return 0;
+        }, Runnable::run);
+
+        Assert.assertFalse(bucket.tryAcquire(1));
+        // 全局令牌桶为空时退避，不会每次拒绝都访问全局令牌桶
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(bucket.tryAcquire(1));
+        }
+        Assert.assertTrue(leaseCount.get() < 10);
+    }
+
+    @Test
+    public void singleFlightTest() throws Exception {
+        CountDownLatch leasing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger leaseCount = new AtomicInteger();
+        LeasedTokenBucket bucket = new LeasedTokenBucket(10, size -> {
+            leaseCount.incrementAndGet();
+            leasing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return size;
+        }, Runnable::run);
+
+        Thread renewer = new Thread(() -> bucket.tryAcquire(1, 0L));
+        renewer.start();
+        Assert.assertTrue(leasing.await(5, TimeUnit.SECONDS));
+
+        // 续租进行中，其他线程不会再访问全局令牌桶，且最多等待超时时间
+        long startNanos = System.nanoTime();
+        Assert.assertFalse(bucket.tryAcquire(1, 50L));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        Assert.assertTrue(elapsedMillis >= 40 && elapsedMillis < 1000);
+        Assert.assertFalse(bucket.tryAcquire(1));
+        Assert.assertEquals(1, leaseCount.get());
+
+        release.countDown();
+        renewer.join(5000);
+    }
+
+}
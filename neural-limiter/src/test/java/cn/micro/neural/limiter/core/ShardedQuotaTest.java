@@ -0,0 +1,57 @@
+package cn.micro.neural.limiter.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+
+public class ShardedQuotaTest {
+
+    @Test
+    public void selectTest() {
+        ShardedQuota quota = new ShardedQuota(4);
+        int[] nodes = new int[4];
+        for (int i = 0; i < 1000; i++) {
+            String nodeId = UUID.randomUUID().toString();
+            int shard = quota.select(nodeId);
+            Assert.assertEquals(shard, quota.select(nodeId));
+            nodes[shard]++;
+        }
+
+        // 一致性哈希使节点大致均匀地分布在各分片上
+        for (int count : nodes) {
+            Assert.assertTrue(count > 150 && count < 350);
+        }
+    }
+
+    @Test
+    public void rebalanceTest() {
+        ShardedQuota quota = new ShardedQuota(4);
+        Assert.assertEquals(0.25, quota.getRatio(), 1e-9);
+
+        // 无需求时平均分配
+        Assert.assertFalse(quota.rebalance(0, new long[]{0, 0, 0, 0}));
+
+        // 按需求分配，每个分片保留最小份额
+        Assert.assertTrue(quota.rebalance(0, new long[]{600, 200, 200, 0}));
+        Assert.assertEquals(0.05 + 0.8 * 0.6, quota.getRatio(), 1e-9);
+        double total = 0;
+        long[] demands = {600, 200, 200, 0};
+        for (int i = 0; i < 4; i++) {
+            ShardedQuota shard = new ShardedQuota(4);
+            shard.rebalance(i, demands);
+            total += shard.getRatio();
+        }
+        Assert.assertEquals(1.0, total, 1e-9);
+    }
+
+    @Test
+    public void drainTest() {
+        ShardedQuota quota = new ShardedQuota(2);
+        quota.record();
+        quota.record();
+        Assert.assertEquals(2, quota.drain());
+        Assert.assertEquals(0, quota.drain());
+    }
+
+}
@@ -0,0 +1,177 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import cn.micro.neural.limiter.LimiterStatistics;
+import cn.micro.neural.storage.OriginalContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StandAloneLimiterTest {
+
+    @Test
+    public void refreshConcurrentTest() throws Exception {
+        StandAloneLimiter limiter = new StandAloneLimiter();
+        LimiterConfig config = newConfig();
+        config.getConcurrent().setMaxPermit(10);
+        config.getConcurrent().setTimeout(0L);
+        Assert.assertTrue(limiter.refresh(config));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireConcurrent());
+        }
+
+        // 缩小并发数，已获取的5个许可保留
+        config = newConfig();
+        config.getConcurrent().setMaxPermit(6);
+        config.getConcurrent().setTimeout(0L);
+        Assert.assertTrue(limiter.refresh(config));
+        Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireConcurrent());
+        Assert.assertEquals(AbstractCallLimiter.Acquire.FAILURE, limiter.tryAcquireConcurrent());
+
+        // 切换为公平模式，已获取的6个许可转移至新的信号量
+        config = newConfig();
+        config.getConcurrent().setMaxPermit(6);
+        config.getConcurrent().setTimeout(0L);
+        config.getConcurrent().setFair(true);
+        Assert.assertTrue(limiter.refresh(config));
+        Assert.assertEquals(AbstractCallLimiter.Acquire.FAILURE, limiter.tryAcquireConcurrent());
+        for (int i = 0; i < 6; i++) {
+            limiter.releaseConcurrent();
+        }
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireConcurrent());
+        }
+        Assert.assertEquals(AbstractCallLimiter.Acquire.FAILURE, limiter.tryAcquireConcurrent());
+    }
+
+    @Test
+    public void refreshCounterTest() throws Exception {
+        StandAloneLimiter limiter = new StandAloneLimiter();
+        LimiterConfig config = newConfig();
+        config.getCounter().setMaxCount(100L);
+        Assert.assertTrue(limiter.refresh(config));
+        for (int i = 0; i < 60; i++) {
+            Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireCounter());
+        }
+
+        // 切换为滑动窗口，当前窗口的计数保留
+        config = newConfig();
+        config.getCounter().setMaxCount(100L);
+        config.getCounter().setAlgorithm(LimiterConfig.CounterAlgorithm.SLIDING_WINDOW);
+        Assert.assertTrue(limiter.refresh(config));
+        for (int i = 0; i < 40; i++) {
+            Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireCounter());
+        }
+        Assert.assertEquals(AbstractCallLimiter.Acquire.FAILURE, limiter.tryAcquireCounter());
+
+        // 调大最大计数，无需重建
+        config = newConfig();
+        config.getCounter().setMaxCount(110L);
+        config.getCounter().setAlgorithm(LimiterConfig.CounterAlgorithm.SLIDING_WINDOW);
+        Assert.assertTrue(limiter.refresh(config));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireCounter());
+        }
+        Assert.assertEquals(AbstractCallLimiter.Acquire.FAILURE, limiter.tryAcquireCounter());
+    }
+
+    @Test
+    public void refreshCounterRaceTest() throws Exception {
+        StandAloneLimiter limiter = new StandAloneLimiter();
+        LimiterConfig config = newConfig();
+        config.getCounter().setMaxCount(Long.MAX_VALUE);
+        Assert.assertTrue(limiter.refresh(config));
+
+        // 并发切换计数算法时，获取计数许可不会出现异常
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger exceptions = new AtomicInteger();
+        Thread acquirer = new Thread(() -> {
+            while (running.get()) {
+                if (AbstractCallLimiter.Acquire.EXCEPTION == limiter.tryAcquireCounter()) {
+                    exceptions.incrementAndGet();
+                }
+            }
+        });
+        acquirer.start();
+        for (int i = 0; i < 2000; i++) {
+            config = newConfig();
+            config.getCounter().setMaxCount(Long.MAX_VALUE);
+            config.getCounter().setAlgorithm(i % 2 == 0 ?
+                    LimiterConfig.CounterAlgorithm.SLIDING_WINDOW : LimiterConfig.CounterAlgorithm.FIXED_WINDOW);
+            Assert.assertTrue(limiter.refresh(config));
+        }
+        running.set(false);
+        acquirer.join();
+        Assert.assertEquals(0, exceptions.get());
+    }
+
+    @Test
+    public void warmupTest() throws Exception {
+        StandAloneLimiter limiter = new StandAloneLimiter();
+        LimiterConfig config = newConfig();
+        config.getRate().setMaxRate(10);
+        config.getRate().setTimeout(150L);
+        Assert.assertTrue(limiter.refresh(config));
+        // 突发模式: 100ms发放1个
+        Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireRate());
+        Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireRate());
+
+        // 预热模式: 冷启动时300ms发放1个
+        config = newConfig();
+        config.getRate().setMaxRate(10);
+        config.getRate().setTimeout(150L);
+        config.getRate().setAlgorithm(LimiterConfig.RateAlgorithm.WARM_UP);
+        config.getRate().setWarmupPeriod(1000L);
+        Assert.assertTrue(limiter.refresh(config));
+        Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter.tryAcquireRate());
+        Assert.assertEquals(AbstractCallLimiter.Acquire.FAILURE, limiter.tryAcquireRate());
+
+        // 预热时长为0时除零，拒绝该配置
+        config = newConfig();
+        config.getRate().setAlgorithm(LimiterConfig.RateAlgorithm.WARM_UP);
+        config.getRate().setWarmupPeriod(0L);
+        Assert.assertFalse(limiter.refresh(config));
+    }
+
+    @Test
+    public void asyncCallTest() throws Exception {
+        StandAloneLimiter limiter = new StandAloneLimiter();
+        LimiterConfig config = newConfig();
+        config.getConcurrent().setMaxPermit(2);
+        config.getConcurrent().setTimeout(0L);
+        config.getConcurrent().setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        Assert.assertTrue(limiter.refresh(config));
+
+        // 异步调用在future完成前一直占用许可
+        CompletableFuture<String> future1 = new CompletableFuture<>();
+        CompletableFuture<String> future2 = new CompletableFuture<>();
+        Assert.assertSame(future1, limiter.wrapperAsyncCall(new OriginalContext(), () -> future1));
+        Assert.assertSame(future2, limiter.wrapperAsyncCall(new OriginalContext(), () -> future2));
+        Assert.assertEquals(2L, limiter.getStatistics().getConcurrentCounter().get());
+        CompletionStage<?> exceed = limiter.wrapperAsyncCall(new OriginalContext(), () -> "exceed");
+        Assert.assertTrue(exceed.toCompletableFuture().isCompletedExceptionally());
+
+        // 完成后释放许可
+        future1.complete("ok");
+        future2.completeExceptionally(new TimeoutException());
+        Assert.assertEquals(0L, limiter.getStatistics().getConcurrentCounter().get());
+        Assert.assertEquals("ok", limiter.wrapperAsyncCall(new OriginalContext(), () -> "ok").toCompletableFuture().get());
+        Map<String, Long> statistics = limiter.collect();
+        Assert.assertEquals(2L, (long) statistics.get(LimiterStatistics.SUCCESS_KEY));
+        Assert.assertEquals(1L, (long) statistics.get(LimiterStatistics.TIMEOUT_KEY));
+    }
+
+    private LimiterConfig newConfig() {
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("test");
+        config.getRate().setTimeout(0L);
+        return config;
+    }
+
+}
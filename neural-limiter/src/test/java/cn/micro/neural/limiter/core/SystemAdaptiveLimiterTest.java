@@ -0,0 +1,48 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import cn.micro.neural.storage.OriginalContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+public class SystemAdaptiveLimiterTest {
+
+    private volatile double cpuUsage = 0.1;
+
+    @Test
+    public void overloadTest() throws Throwable {
+        SystemAdaptiveLimiter limiter = new SystemAdaptiveLimiter() {
+            @Override
+            protected double getCpuUsage() {
+                return cpuUsage;
+            }
+        };
+        LimiterConfig config = new LimiterConfig();
+        config.setTag("test");
+        config.getConcurrent().setStrategy(LimiterConfig.Strategy.EXCEPTION);
+        Assert.assertTrue(limiter.refresh(config));
+
+        // 采集通过的QPS和RT
+        for (int i = 0; i < 10; i++) {
+            limiter.wrapperCall(new OriginalContext(), () -> {
+                Thread.sleep(1);
+                return null;
+            });
+        }
+
+        // 负载正常时不做准入控制
+        CompletableFuture<String> future = new CompletableFuture<>();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertSame(future, limiter.wrapperCall(new OriginalContext(), () -> future));
+        }
+
+        // 过载时在途请求超过估算容量则拒绝
+        cpuUsage = 0.9;
+        Assert.assertTrue(limiter.wrapperAsyncCall(new OriginalContext(), () -> "ok").toCompletableFuture().isCompletedExceptionally());
+        future.complete("ok");
+        Assert.assertEquals("ok", limiter.wrapperCall(new OriginalContext(), () -> "ok"));
+    }
+
+}
@@ -0,0 +1,63 @@
+package cn.micro.neural.limiter.core;
+
+import cn.micro.neural.limiter.LimiterConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.SocketChannel;
+
+public class TokenLimiterTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    @Test
+    public void destroyTest() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        TokenLimiter limiter1 = new TokenLimiter();
+        TokenLimiter limiter2 = new TokenLimiter();
+        Assert.assertTrue(limiter1.refresh(newConfig("test1", port)));
+        Assert.assertTrue(limiter2.refresh(newConfig("test2", port)));
+        Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter1.tryAcquireConcurrent());
+        limiter1.releaseConcurrent();
+
+        // 共享的令牌服务在最后一个限流器销毁后关闭
+        limiter1.destroy();
+        Assert.assertTrue(isReachable(port));
+        Assert.assertEquals(AbstractCallLimiter.Acquire.SUCCESS, limiter2.tryAcquireConcurrent());
+        limiter2.releaseConcurrent();
+        limiter2.destroy();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (isReachable(port) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(isReachable(port));
+    }
+
+    private static boolean isReachable(int port) {
+        try (SocketChannel channel = SocketChannel.open()) {
+            channel.socket().connect(new InetSocketAddress(HOST, port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static LimiterConfig newConfig(String tag, int port) {
+        LimiterConfig config = new LimiterConfig();
+        config.setTag(tag);
+        config.setMode(LimiterConfig.Mode.TOKEN);
+        config.getToken().setServer(LimiterConfig.Switch.ON);
+        config.getToken().setPort(port);
+        config.getToken().setTimeout(1000L);
+        return config;
+    }
+
+}
@@ -0,0 +1,66 @@
+package cn.micro.neural.limiter.extension;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class CapacityWindowTest {
+
+    @Test
+    public void capacityTest() throws Exception {
+        CapacityWindow window = new CapacityWindow(60 * 1000, 1);
+        Assert.assertEquals(-1, window.capacity(), 0);
+        for (int i = 0; i < 100; i++) {
+            window.addPass(10_000);
+        }
+        window.addPass(5_000);
+
+        // 容量 = 单个时间桶的最大通过QPS * 最小RT
+        Assert.assertEquals(101 / 60.0 * 0.005, window.capacity(), 0.000001);
+    }
+
+    @Test
+    public void expireTest() throws Exception {
+        CapacityWindow window = new CapacityWindow(100, 1);
+        window.addPass(10_000);
+        Assert.assertTrue(window.capacity() > 0);
+
+        // 超过窗口时间的时间桶不再统计
+        Thread.sleep(250);
+        Assert.assertEquals(-1, window.capacity(), 0);
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        CapacityWindow window = new CapacityWindow(60 * 1000, 1);
+        int threads = 8;
+        int passes = 10000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < passes; j++) {
+                    window.addPass(1_000_000);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // 时间桶被替换而不是重置，并发的通过数不会丢失
+        Assert.assertEquals(threads * passes / 60.0, window.capacity(), 0.000001);
+    }
+
+}
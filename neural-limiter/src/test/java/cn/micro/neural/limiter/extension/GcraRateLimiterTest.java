@@ -0,0 +1,66 @@
+package cn.micro.neural.limiter.extension;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class GcraRateLimiterTest {
+
+    /**
+     * 测试突发容量: 一次最多允许burst个，之后按发放间隔放行
+     */
+    @Test
+    public void burstTest() throws Exception {
+        GcraRateLimiter rateLimiter = GcraRateLimiter.create(10, 3);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertFalse(rateLimiter.tryAcquire());
+
+        // 空闲再久也只能积攒burst个
+        Thread.sleep(1000);
+        Assert.assertTrue(rateLimiter.tryAcquire(3));
+        Assert.assertFalse(rateLimiter.tryAcquire());
+    }
+
+    /**
+     * 测试重试等待时间: 被拒绝后等待retry-after即可放行
+     */
+    @Test
+    public void retryAfterTest() throws Exception {
+        GcraRateLimiter rateLimiter = GcraRateLimiter.create(5, 1);
+        Assert.assertEquals(0, rateLimiter.getRetryAfterMicros(1));
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertFalse(rateLimiter.tryAcquire());
+
+        long retryAfter = rateLimiter.getRetryAfterMicros(1);
+        Assert.assertTrue(retryAfter > 150_000 && retryAfter <= 200_000);
+        Thread.sleep(TimeUnit.MICROSECONDS.toMillis(retryAfter) + 1);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+    }
+
+    /**
+     * 测试超时等待: 在超时时间内可放行的请求等待后放行
+     */
+    @Test
+    public void timeoutTest() {
+        GcraRateLimiter rateLimiter = GcraRateLimiter.create(10, 1);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        long start = System.nanoTime();
+        Assert.assertTrue(rateLimiter.tryAcquire(200, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(80));
+        Assert.assertFalse(rateLimiter.tryAcquire(50, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 测试默认突发容量为1秒的令牌
+     */
+    @Test
+    public void defaultBurstTest() {
+        GcraRateLimiter rateLimiter = GcraRateLimiter.create(100);
+        Assert.assertTrue(rateLimiter.tryAcquire(100));
+        Assert.assertFalse(rateLimiter.tryAcquire());
+    }
+
+}
@@ -0,0 +1,93 @@
+package cn.micro.neural.limiter.extension;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LockFreeRateLimiterTest {
+
+    /**
+     * 平均200ms获取1个
+     */
+    @Test
+    public void testAvgRate() {
+        LockFreeRateLimiter rateLimiter = LockFreeRateLimiter.create(5);
+        Assert.assertEquals(0, Math.round(rateLimiter.acquire() * 10));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(2, Math.round(rateLimiter.acquire() * 10));
+        }
+    }
+
+    /**
+     * 测试积攒量: 空闲时最多积攒1秒的令牌，积攒的令牌用完后还可预支1次
+     */
+    @Test
+    public void accumulateTest() throws Exception {
+        LockFreeRateLimiter rateLimiter = LockFreeRateLimiter.create(2);
+        Thread.sleep(3000);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertFalse(rateLimiter.tryAcquire());
+    }
+
+    /**
+     * 测试动态调整速率: 调整后按新速率发放令牌
+     */
+    @Test
+    public void setRateTest() throws Exception {
+        LockFreeRateLimiter rateLimiter = LockFreeRateLimiter.create(1);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertFalse(rateLimiter.tryAcquire());
+
+        rateLimiter.setRate(100);
+        Assert.assertEquals(100, rateLimiter.getRate(), 0.001);
+        Thread.sleep(2100);
+        Assert.assertTrue(rateLimiter.tryAcquire(50));
+        Assert.assertTrue(rateLimiter.tryAcquire(50));
+        Assert.assertTrue(rateLimiter.tryAcquire(50));
+        Assert.assertFalse(rateLimiter.tryAcquire(50));
+    }
+
+    @Test
+    public void testTry() {
+        LockFreeRateLimiter rateLimiter = LockFreeRateLimiter.create(10);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertFalse(rateLimiter.tryAcquire());
+        Assert.assertTrue(rateLimiter.tryAcquire(200, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 测试并发: 1秒内放行的数量不超过速率+突发量
+     */
+    @Test
+    public void concurrentTest() throws Exception {
+        LockFreeRateLimiter rateLimiter = LockFreeRateLimiter.create(1000);
+        AtomicInteger success = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch latch = new CountDownLatch(threads);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        long endTime = System.currentTimeMillis() + 1000;
+        for (int i = 0; i < threads; i++) {
+            executorService.execute(() -> {
+                while (System.currentTimeMillis() < endTime) {
+                    if (rateLimiter.tryAcquire()) {
+                        success.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            });
+        }
+
+        latch.await();
+        executorService.shutdown();
+        Assert.assertTrue(success.get() <= 1100);
+        Assert.assertTrue(success.get() >= 900);
+    }
+
+}
@@ -0,0 +1,60 @@
+package cn.micro.neural.limiter.extension;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LockFreeSemaphoreTest {
+
+    @Test
+    public void semaphoreTest() {
+        LockFreeSemaphore semaphore = new LockFreeSemaphore(5);
+        for (int i = 0; i < 20; i++) {
+            semaphore.tryAcquire(1);
+        }
+
+        // 5个许可全被占用，所以当前可用的为0
+        Assert.assertEquals(0, semaphore.availablePermits());
+
+        // 缩小至2，已获取的5个许可不受影响，表示还有3个欠着待释放
+        semaphore.setMaxPermits(2);
+        Assert.assertEquals(-3, semaphore.availablePermits());
+        semaphore.release(3);
+        Assert.assertFalse(semaphore.tryAcquire(1));
+
+        // 扩大至20，可用的为20-2=18
+        semaphore.setMaxPermits(20);
+        Assert.assertEquals(18, semaphore.availablePermits());
+        Assert.assertTrue(semaphore.tryAcquire(18));
+        Assert.assertFalse(semaphore.tryAcquire(1));
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        LockFreeSemaphore semaphore = new LockFreeSemaphore(1);
+        Assert.assertTrue(semaphore.tryAcquire(1));
+        Assert.assertFalse(semaphore.tryAcquire(1, 50, TimeUnit.MILLISECONDS));
+
+        // 释放后唤醒等待者
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            semaphore.release(1);
+        }).start();
+        Assert.assertTrue(semaphore.tryAcquire(1, 2000, TimeUnit.MILLISECONDS));
+
+        // 扩容后唤醒等待者
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            semaphore.setMaxPermits(2);
+        }).start();
+        Assert.assertTrue(semaphore.tryAcquire(1, 2000, TimeUnit.MILLISECONDS));
+    }
+
+}
@@ -0,0 +1,93 @@
+package cn.micro.neural.limiter.extension;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SlidingWindowCounterTest {
+
+    @Test
+    public void slidingTest() throws Exception {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(counter.tryAcquire(1, 100));
+        }
+
+        // 超出的请求不计数
+        Assert.assertFalse(counter.tryAcquire(1, 100));
+        Assert.assertEquals(100, counter.sum());
+
+        // 半个窗口后仍在窗口内，不会像固定窗口一样在边界处放行2倍流量
+        Thread.sleep(500);
+        Assert.assertFalse(counter.tryAcquire(1, 100));
+
+        // 整个窗口滑过后重新放行
+        Thread.sleep(600);
+        Assert.assertEquals(0, counter.sum());
+        Assert.assertTrue(counter.tryAcquire(1, 100));
+    }
+
+    @Test
+    public void granularityTest() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 3);
+        Assert.assertEquals(3, counter.getBucketCount());
+        Assert.assertEquals(999, counter.getWindowMillis());
+
+        counter.add(5);
+        Assert.assertEquals(5, counter.sum());
+        Assert.assertTrue(counter.tryAcquire(5, 10));
+        Assert.assertFalse(counter.tryAcquire(1, 10));
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60 * 1000, 10);
+        AtomicLong admitted = new AtomicLong();
+        CountDownLatch latch = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    if (counter.tryAcquire(1, 1000)) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        // 被拒绝的请求回滚后不影响计数
+        Assert.assertEquals(1000, admitted.get());
+        Assert.assertEquals(1000, counter.sum());
+    }
+
+    @Test
+    public void slideConcurrentTest() throws Exception {
+        SlidingWindowCounter counter = new SlidingWindowCounter(100, 10);
+        AtomicBoolean illegal = new AtomicBoolean();
+        CountDownLatch latch = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread(() -> {
+                long deadline = System.currentTimeMillis() + 300;
+                while (System.currentTimeMillis() < deadline) {
+                    counter.tryAcquire(1, 50);
+                    long sum = counter.sum();
+                    if (sum < 0 || sum > 50 + 8) {
+                        illegal.set(true);
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        Assert.assertFalse(illegal.get());
+
+        // 窗口滑过后所有的计数都被准确扣除
+        Thread.sleep(150);
+        Assert.assertEquals(0, counter.sum());
+    }
+
+}
@@ -0,0 +1,60 @@
+package cn.micro.neural.limiter.extension;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VegasLimitTest {
+
+    private static final long RTT = 10_000_000L;
+
+    @Test
+    public void increaseTest() {
+        VegasLimit vegasLimit = new VegasLimit(10, 1, 100, 1.0, 0);
+        vegasLimit.onSample(RTT, 10, false);
+
+        // 无排队时增大限制
+        Assert.assertEquals(16, vegasLimit.onSample(RTT, 10, false));
+        // 未达到限制时保持不变
+        Assert.assertEquals(16, vegasLimit.onSample(RTT, 2, false));
+    }
+
+    @Test
+    public void decreaseTest() {
+        VegasLimit vegasLimit = new VegasLimit(100, 1, 100, 1.0, 0);
+        vegasLimit.onSample(RTT, 100, false);
+
+        // RTT翻倍，排队严重时减小限制
+        Assert.assertEquals(98, vegasLimit.onSample(2 * RTT, 100, false));
+        // 超时或拒绝时减小限制
+        Assert.assertEquals(96, vegasLimit.onSample(RTT, 100, true));
+        for (int i = 0; i < 1000; i++) {
+            vegasLimit.onSample(RTT, 100, true);
+        }
+        Assert.assertEquals(1, vegasLimit.getLimit());
+    }
+
+    @Test
+    public void sampleWindowTest() {
+        VegasLimit vegasLimit = new VegasLimit(10, 1, 100, 1.0, 0, 3);
+        for (int i = 0; i < 3; i++) {
+            vegasLimit.onSample(RTT, 10, false);
+        }
+
+        // 每3个样本更新一次限制，窗口内取最小的RTT
+        Assert.assertEquals(10, vegasLimit.onSample(RTT, 10, false));
+        Assert.assertEquals(10, vegasLimit.onSample(3 * RTT, 10, false));
+        Assert.assertEquals(16, vegasLimit.onSample(RTT, 10, false));
+    }
+
+    @Test
+    public void updateTest() {
+        VegasLimit vegasLimit = new VegasLimit(100, 1, 100, 1.0, 0);
+        vegasLimit.onSample(RTT, 100, false);
+
+        // 更新参数时保留已学习的无负载RTT，限制收缩至新的范围
+        vegasLimit.update(1, 50, 1.0, 0, 1);
+        Assert.assertEquals(50, vegasLimit.getLimit());
+        Assert.assertEquals(48, vegasLimit.onSample(2 * RTT, 50, false));
+    }
+
+}
@@ -0,0 +1,157 @@
+package cn.micro.neural.limiter.token;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class TokenServerTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    private TokenServer server;
+    private TokenClient client;
+
+    @Before
+    public void before() throws Exception {
+        server = new TokenServer(HOST, 0);
+        client = TokenClient.of(HOST, server.getPort());
+    }
+
+    @After
+    public void after() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void acquireAndReleaseTest() {
+        // 并发上限为2
+        Assert.assertEquals(TokenProtocol.SUCCESS, acquireConcurrent("concurrent"));
+        Assert.assertEquals(TokenProtocol.SUCCESS, acquireConcurrent("concurrent"));
+        Assert.assertEquals(TokenProtocol.CONCURRENT_EXCEED, acquireConcurrent("concurrent"));
+
+        client.release(TokenProtocol.Request.release("concurrent", 1));
+        Assert.assertEquals(TokenProtocol.SUCCESS, acquireConcurrent("concurrent"));
+    }
+
+    @Test
+    public void counterExceedReleasesConcurrentTest() {
+        // 计数器拒绝时，已占用的并发许可被归还
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(TokenProtocol.SUCCESS, client.acquire(TokenProtocol.Request.acquire(
+                    "counter", 1, 10, 0, 0, 1, 3, 60000L), 1000));
+        }
+        Assert.assertEquals(TokenProtocol.COUNTER_EXCEED, client.acquire(TokenProtocol.Request.acquire(
+                "counter", 1, 4, 0, 0, 1, 3, 60000L), 1000));
+        Assert.assertEquals(TokenProtocol.CONCURRENT_EXCEED, client.acquire(TokenProtocol.Request.acquire(
+                "counter", 1, 3, 0, 0, 0, 3, 60000L), 1000));
+        client.release(TokenProtocol.Request.release("counter", 1));
+        Assert.assertEquals(TokenProtocol.SUCCESS, client.acquire(TokenProtocol.Request.acquire(
+                "counter", 1, 3, 0, 0, 0, 3, 60000L), 1000));
+    }
+
+    @Test
+    public void disconnectReleasesPermitsTest() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, server.getPort()))) {
+            TokenProtocol.Request request = TokenProtocol.Request.acquire("crash", 2, 2, 0, 0, 0, 0, 0L);
+            request.id = 1L;
+            ByteBuffer buffer = ByteBuffer.allocate(TokenProtocol.encodedSize(request));
+            TokenProtocol.encode(request, buffer);
+            buffer.flip();
+            channel.write(buffer);
+
+            DataInputStream input = new DataInputStream(Channels.newInputStream(channel));
+            Assert.assertEquals(TokenProtocol.RESPONSE_SIZE, input.readInt());
+            Assert.assertEquals(1L, input.readLong());
+            Assert.assertEquals(TokenProtocol.SUCCESS, input.readByte());
+            Assert.assertEquals(TokenProtocol.CONCURRENT_EXCEED, acquireConcurrent("crash"));
+        }
+
+        // 连接断开后，持有的许可被服务端回收
+        long deadline = System.currentTimeMillis() + 2000;
+        byte status;
+        do {
+            Thread.sleep(10);
+            status = acquireConcurrent("crash");
+        } while (TokenProtocol.SUCCESS != status && System.currentTimeMillis() < deadline);
+        Assert.assertEquals(TokenProtocol.SUCCESS, status);
+    }
+
+    @Test
+    public void unreachableTest() {
+        TokenClient unreachable = TokenClient.of(HOST, 1);
+        Assert.assertEquals(TokenProtocol.ERROR, unreachable.acquire(
+                TokenProtocol.Request.acquire("unreachable", 1, 2, 0, 0, 0, 0, 0L), 1000));
+        unreachable.close();
+    }
+
+    @Test
+    public void lateSuccessReleaseTest() throws Exception {
+        try (ServerSocketChannel slowServer = ServerSocketChannel.open()) {
+            slowServer.bind(new InetSocketAddress(HOST, 0));
+            TokenClient slowClient = TokenClient.of(HOST, slowServer.socket().getLocalPort());
+            try {
+                CompletableFuture<Byte> result = CompletableFuture.supplyAsync(() -> slowClient.acquire(
+                        TokenProtocol.Request.acquire("late", 2, 2, 0, 0, 0, 0, 0L), 50));
+                try (SocketChannel channel = slowServer.accept()) {
+                    DataInputStream input = new DataInputStream(Channels.newInputStream(channel));
+                    TokenProtocol.Request request = readRequest(input);
+                    Assert.assertEquals(TokenProtocol.ACQUIRE, request.type);
+                    Assert.assertEquals(TokenProtocol.ERROR, (byte) result.get(5, TimeUnit.SECONDS));
+
+                    // 超时之后才响应成功，迟到的并发许可被归还
+                    ByteBuffer buffer = ByteBuffer.allocate(TokenProtocol.LENGTH_SIZE + TokenProtocol.RESPONSE_SIZE);
+                    TokenProtocol.encodeResponse(request.id, TokenProtocol.SUCCESS, buffer);
+                    buffer.flip();
+                    channel.write(buffer);
+
+                    TokenProtocol.Request release = readRequest(input);
+                    Assert.assertEquals(TokenProtocol.RELEASE, release.type);
+                    Assert.assertEquals("late", release.identity);
+                    Assert.assertEquals(2, release.permitUnit);
+                }
+            } finally {
+                slowClient.close();
+            }
+        }
+    }
+
+    @Test
+    public void longIdentityTest() {
+        char[] chars = new char[40000];
+        Arrays.fill(chars, 'a');
+        String identity = new String(chars);
+        TokenProtocol.Request request = TokenProtocol.Request.acquire(identity, 1, 2, 0, 0, 0, 0, 0L);
+        ByteBuffer buffer = ByteBuffer.allocate(TokenProtocol.encodedSize(request));
+        TokenProtocol.encode(request, buffer);
+        buffer.flip();
+        buffer.getInt();
+
+        // 标识的长度按无符号short解码
+        Assert.assertEquals(identity, TokenProtocol.decode(buffer).identity);
+        Assert.assertEquals(TokenProtocol.SUCCESS, acquireConcurrent(identity));
+    }
+
+    private static TokenProtocol.Request readRequest(DataInputStream input) throws IOException {
+        byte[] body = new byte[input.readInt()];
+        input.readFully(body);
+        return TokenProtocol.decode(ByteBuffer.wrap(body));
+    }
+
+    private byte acquireConcurrent(String identity) {
+        return client.acquire(TokenProtocol.Request.acquire(identity, 1, 2, 0, 0, 0, 0, 0L), 1000);
+    }
+
+}
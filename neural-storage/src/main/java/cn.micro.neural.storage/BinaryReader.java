@@ -0,0 +1,158 @@
+package cn.micro.neural.storage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Binary Reader.
+ * <p>
+ * The reader of the encoding written by {@link BinaryWriter}, the nested message is read on the same array
+ * without copying. The fields are read in a loop:
+ * <pre>
+ * int key;
+ * while ((key = reader.readKey()) != 0) {
+ *     switch (BinaryReader.tag(key)) {
+ *         case 1: value.setName(reader.readString()); break;
+ *         default: reader.skip(key);
+ *     }
+ * }
+ * </pre>
+ *
+ * @author lry
+ */
+public final class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+    private final int limit;
+
+    public BinaryReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public BinaryReader(byte[] buffer, int offset, int limit) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = limit;
+    }
+
+    public static int tag(int key) {
+        return key >>> 3;
+    }
+
+    /**
+     * The read the key of the next field
+     *
+     * @return key, 0 is the end
+     */
+    public int readKey() {
+        return position >= limit ? 0 : (int) readVarint();
+    }
+
+    public int readInt() {
+        return (int) readLong();
+    }
+
+    public long readLong() {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public boolean readBoolean() {
+        return readVarint() != 0;
+    }
+
+    public double readDouble() {
+        checkRemaining(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (buffer[position++] & 0xFFL) << (i * 8);
+        }
+
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * The read the enum by its name
+     *
+     * @param type the enum type
+     * @param <E>  the enum type
+     * @return the constant
+     * @throws IllegalStateException the name is not a constant of the enum
+     */
+    public <E extends Enum<E>> E readEnum(Class<E> type) {
+        String name = readString();
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown constant of " + type.getSimpleName() + ": " + name, e);
+        }
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public <T> T readMessage(ICodec<T> codec) {
+        int length = readLength();
+        T value = codec.decode(new BinaryReader(buffer, position, position + length));
+        position += length;
+        return value;
+    }
+
+    /**
+     * The skip the value of the unknown field
+     *
+     * @param key the key of field
+     */
+    public void skip(int key) {
+        switch (key & 0x7) {
+            case BinaryWriter.VARINT:
+                readVarint();
+                break;
+            case BinaryWriter.FIXED64:
+                checkRemaining(8);
+                position += 8;
+                break;
+            case BinaryWriter.LENGTH_DELIMITED:
+                position += readLength();
+                break;
+            default:
+                throw new IllegalStateException("Unknown wire type: " + (key & 0x7));
+        }
+    }
+
+    public long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            checkRemaining(1);
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    public int readByte() {
+        checkRemaining(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    private int readLength() {
+        int length = (int) readVarint();
+        checkRemaining(length);
+        return length;
+    }
+
+    private void checkRemaining(int size) {
+        if (size < 0 || position + size > limit) {
+            throw new IllegalStateException("Truncated binary value");
+        }
+    }
+
+}
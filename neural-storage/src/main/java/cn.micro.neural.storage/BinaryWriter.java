@@ -0,0 +1,243 @@
+package cn.micro.neural.storage;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The Binary Writer.
+ * <p>
+ * The tagged binary encoding(the same wire format as Protocol Buffers):
+ * 1.Each field is a varint key(tag &lt;&lt; 3 | wire type) followed by the value, the null field is not written
+ * 2.The integers are zig-zag varints, the doubles are fixed 64 bits, the strings and messages are length-delimited
+ * 3.The strings are encoded into the buffer as UTF-8 directly, without the intermediate byte array
+ * <p>
+ * The writer of each thread is reused by {@link #local()}, so the buffer isn't allocated for every value.
+ *
+ * @author lry
+ */
+public final class BinaryWriter {
+
+    public static final int VARINT = 0;
+    public static final int FIXED64 = 1;
+    public static final int LENGTH_DELIMITED = 2;
+
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * The buffer of the thread local writer larger than it is released after use
+     */
+    private static final int MAX_REUSED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<BinaryWriter> LOCAL = ThreadLocal.withInitial(BinaryWriter::new);
+
+    private byte[] buffer;
+    private int position;
+
+    public BinaryWriter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public BinaryWriter(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * The reset writer of the current thread
+     *
+     * @return {@link BinaryWriter}
+     */
+    public static BinaryWriter local() {
+        BinaryWriter writer = LOCAL.get();
+        if (writer.buffer.length > MAX_REUSED_CAPACITY) {
+            writer = new BinaryWriter();
+            LOCAL.set(writer);
+        }
+
+        writer.position = 0;
+        return writer;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    // === the fields
+
+    public BinaryWriter writeInt(int tag, Integer value) {
+        if (null != value) {
+            writeKey(tag, VARINT);
+            writeVarint(zigZag(value));
+        }
+        return this;
+    }
+
+    public BinaryWriter writeLong(int tag, Long value) {
+        if (null != value) {
+            writeKey(tag, VARINT);
+            writeVarint(zigZag(value));
+        }
+        return this;
+    }
+
+    public BinaryWriter writeBoolean(int tag, Boolean value) {
+        if (null != value) {
+            writeKey(tag, VARINT);
+            writeVarint(value ? 1 : 0);
+        }
+        return this;
+    }
+
+    public BinaryWriter writeDouble(int tag, Double value) {
+        if (null != value) {
+            writeKey(tag, FIXED64);
+            long bits = Double.doubleToRawLongBits(value);
+            ensureCapacity(8);
+            for (int i = 0; i < 8; i++) {
+                buffer[position++] = (byte) (bits >>> (i * 8));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * The enum is written by its name, so the constants can be reordered but never renamed
+     */
+    public BinaryWriter writeEnum(int tag, Enum<?> value) {
+        if (null != value) {
+            writeString(tag, value.name());
+        }
+        return this;
+    }
+
+    public BinaryWriter writeString(int tag, String value) {
+        if (null != value) {
+            writeKey(tag, LENGTH_DELIMITED);
+            writeUtf8(value);
+        }
+        return this;
+    }
+
+    /**
+     * The each string is a repeated field with the same tag
+     */
+    public BinaryWriter writeStrings(int tag, Collection<String> values) {
+        if (null != values) {
+            for (String value : values) {
+                writeString(tag, value);
+            }
+        }
+        return this;
+    }
+
+    public <T> BinaryWriter writeMessage(int tag, T value, ICodec<T> codec) {
+        if (null != value) {
+            writeKey(tag, LENGTH_DELIMITED);
+            int start = reserveLength();
+            codec.encode(value, this);
+            writeLength(start);
+        }
+        return this;
+    }
+
+    // === the raw values
+
+    public void writeKey(int tag, int wireType) {
+        writeVarint(((long) tag << 3) | wireType);
+    }
+
+    public void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeUtf8(String value) {
+        int start = reserveLength();
+        int length = value.length();
+        ensureCapacity(length * 3);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >>> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >>> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                if (Character.isSurrogate(c)) {
+                    // 不成对的代理字符按'?'写入，与String.getBytes一致
+                    c = '?';
+                }
+                buffer[position++] = (byte) (0xE0 | (c >>> 12));
+                buffer[position++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        writeLength(start);
+    }
+
+    /**
+     * The reserve one byte for the length, which is enough for the most values
+     */
+    private int reserveLength() {
+        writeByte(0);
+        return position;
+    }
+
+    /**
+     * The write the length of the value started at start, the value is moved if the length takes more bytes
+     */
+    private void writeLength(int start) {
+        int length = position - start;
+        int lengthSize = varintSize(length);
+        if (lengthSize > 1) {
+            ensureCapacity(lengthSize - 1);
+            System.arraycopy(buffer, start, buffer, start + lengthSize - 1, length);
+            position += lengthSize - 1;
+        }
+
+        int index = start - 1;
+        long value = length;
+        while ((value & ~0x7FL) != 0) {
+            buffer[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[index] = (byte) value;
+    }
+
+    private void ensureCapacity(int size) {
+        if (position + size > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + size));
+        }
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+
+        return size;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+}
@@ -0,0 +1,43 @@
+package cn.micro.neural.storage;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * The Codec Redis Serializer.
+ * <p>
+ * The value serializer of the storage, the value with a registered {@link ICodec} is encoded by the codec,
+ * and the others are serialized by the value serializer of the RedisTemplate.
+ *
+ * @author lry
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> delegate;
+    private final CodecRegistry codecRegistry;
+
+    public CodecRedisSerializer(RedisSerializer<Object> delegate, CodecRegistry codecRegistry) {
+        this.delegate = delegate;
+        this.codecRegistry = codecRegistry;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = codecRegistry.encode(value);
+        return null == bytes ? delegate.serialize(value) : bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (!CodecRegistry.isEncoded(bytes)) {
+            return delegate.deserialize(bytes);
+        }
+
+        try {
+            return codecRegistry.decode(bytes);
+        } catch (Exception e) {
+            throw new SerializationException("Cannot deserialize the value by codec", e);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package cn.micro.neural.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Codec Registry.
+ * <p>
+ * The registry of the {@link ICodec} by the value type, the encoded value is:
+ * [{@link #MAGIC}][type id(varint)][fields]
+ * The magic is never the first byte of the JDK serialization, the JSON or the UTF-8 string,
+ * so the value without the magic is left to the default serializer.
+ *
+ * @author lry
+ */
+public class CodecRegistry {
+
+    public static final int MAGIC = 0xB1;
+
+    /**
+     * Map<key=value type, value=Registration>
+     */
+    private final Map<Class<?>, Registration<?>> types = new ConcurrentHashMap<>();
+    /**
+     * Map<key=type id, value=Registration>
+     */
+    private final Map<Integer, Registration<?>> typeIds = new ConcurrentHashMap<>();
+
+    /**
+     * The register the codec of the value types
+     *
+     * @param typeId the type id written into the value, it must never be reused
+     * @param codec  {@link ICodec}
+     * @param types  the value types, matched exactly
+     * @param <T>    the value type
+     */
+    @SafeVarargs
+    public final <T> void register(int typeId, ICodec<T> codec, Class<? extends T>... types) {
+        Registration<T> registration = new Registration<>(typeId, codec);
+        Registration<?> exists = typeIds.putIfAbsent(typeId, registration);
+        if (null != exists && exists.codec != codec) {
+            throw new IllegalArgumentException("The codec type id is already registered: " + typeId);
+        }
+        for (Class<? extends T> type : types) {
+            this.types.put(type, registration);
+        }
+    }
+
+    /**
+     * The encode the value by its codec
+     *
+     * @param value the value
+     * @return the encoded value, null is no codec
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Object value) {
+        if (null == value) {
+            return null;
+        }
+
+        Registration<Object> registration = (Registration<Object>) types.get(value.getClass());
+        if (null == registration || !registration.codec.isEncodable(value)) {
+            return null;
+        }
+
+        BinaryWriter writer = BinaryWriter.local();
+        writer.writeByte(MAGIC);
+        writer.writeVarint(registration.typeId);
+        registration.codec.encode(value, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * The value is encoded by a codec
+     *
+     * @param bytes the value
+     * @return true is encoded by codec
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return null != bytes && bytes.length > 0 && (bytes[0] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * The decode the value encoded by its codec
+     *
+     * @param bytes the value, which is {@link #isEncoded(byte[])}
+     * @return the value
+     */
+    public Object decode(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(bytes);
+        reader.readByte();
+        int typeId = (int) reader.readVarint();
+        Registration<?> registration = typeIds.get(typeId);
+        if (null == registration) {
+            throw new IllegalStateException("The codec isn't registered, type id: " + typeId);
+        }
+
+        return registration.codec.decode(reader);
+    }
+
+    private static class Registration<T> {
+
+        private final int typeId;
+        private final ICodec<T> codec;
+
+        Registration(int typeId, ICodec<T> codec) {
+            this.typeId = typeId;
+            this.codec = codec;
+        }
+
+    }
+
+}
@@ -2,10 +2,10 @@ package cn.micro.neural.storage;
 
 import lombok.Getter;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 
 import java.io.Serializable;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * FactoryStorage
@@ -20,39 +20,100 @@ public enum FactoryStorage {
     INSTANCE;
 
     private IStorage storage;
+    /**
+     * The non-blocking storage, null is not supported by the storage
+     */
+    private IAsyncStorage asyncStorage;
+    /**
+     * The SHA1 registry of the Lua scripts
+     */
+    private final ScriptRegistry scriptRegistry = new ScriptRegistry();
+    /**
+     * The native Java implementations of the Lua scripts for the {@link MemoryStorage}
+     * <p>
+     * Map<key=script, value=ILocalScript>
+     */
+    private final Map<String, ILocalScript> localScripts = new ConcurrentHashMap<>();
+    /**
+     * The binary codecs of the values stored into Redis
+     */
+    private final CodecRegistry codecRegistry = new CodecRegistry();
 
-    public void setRedisTemplate(RedisTemplate<String, Serializable> redisTemplate) {
-        this.storage = new IStorage() {
-            @Override
-            public Number[] eval(String script, List<String> keys, Object... args) {
-                return redisTemplate.execute(new DefaultRedisScript<>(script, Number[].class), keys, args);
-            }
-
-            @Override
-            public boolean set(String key, Object value) {
-                return false;
-            }
-
-            @Override
-            public boolean setEx(String key, Object value, Long expireTime) {
-                return false;
-            }
-
-            @Override
-            public boolean exists(String key) {
-                return false;
-            }
-
-            @Override
-            public Object get(String key) {
-                return null;
-            }
-
-            @Override
-            public boolean remove(String key) {
-                return false;
-            }
-        };
+    FactoryStorage() {
+        StatisticsCodec.register(codecRegistry);
+    }
+
+    /**
+     * The use the Redis storage, the async storage of the previous template is closed
+     *
+     * @param redisTemplate {@link RedisTemplate}
+     */
+    public synchronized void setRedisTemplate(RedisTemplate<String, Serializable> redisTemplate) {
+        if (storage instanceof RedisStorage && ((RedisStorage) storage).getRedisTemplate() == redisTemplate) {
+            return;
+        }
+
+        IAsyncStorage oldAsyncStorage = this.asyncStorage;
+        this.storage = new RedisStorage(redisTemplate, scriptRegistry, codecRegistry);
+        this.asyncStorage = new RedisAsyncStorage(redisTemplate, scriptRegistry, codecRegistry);
+        close(oldAsyncStorage);
+    }
+
+    /**
+     * The use the in-process {@link MemoryStorage} instead of Redis
+     */
+    public synchronized void useMemoryStorage() {
+        if (storage instanceof MemoryStorage) {
+            return;
+        }
+
+        IAsyncStorage oldAsyncStorage = this.asyncStorage;
+        MemoryStorage memoryStorage = new MemoryStorage(localScripts);
+        this.storage = memoryStorage;
+        this.asyncStorage = memoryStorage;
+        close(oldAsyncStorage);
+    }
+
+    /**
+     * The register the binary codec of the value types, for the values stored into Redis
+     *
+     * @param typeId the type id written into the value, it must never be reused
+     * @param codec  {@link ICodec}
+     * @param types  the value types
+     * @param <T>    the value type
+     */
+    @SafeVarargs
+    public final <T> void registerCodec(int typeId, ICodec<T> codec, Class<? extends T>... types) {
+        codecRegistry.register(typeId, codec, types);
+    }
+
+    /**
+     * The register the Lua script with its native Java implementation for the {@link MemoryStorage}
+     *
+     * @param script      the Lua script
+     * @param localScript {@link ILocalScript}
+     */
+    public void registerScript(String script, ILocalScript localScript) {
+        localScripts.put(script, localScript);
+        registerScripts(script);
+    }
+
+    /**
+     * The register the Lua scripts, and load them into the storage if it is ready
+     *
+     * @param scripts the Lua scripts
+     */
+    public void registerScripts(String... scripts) {
+        scriptRegistry.register(scripts);
+        if (storage instanceof RedisStorage) {
+            ((RedisStorage) storage).loadScripts(scripts);
+        }
+    }
+
+    private static void close(IAsyncStorage asyncStorage) {
+        if (asyncStorage instanceof RedisAsyncStorage) {
+            ((RedisAsyncStorage) asyncStorage).close();
+        }
     }
 
 }
@@ -0,0 +1,36 @@
+package cn.micro.neural.storage;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * IAsyncStorage
+ * <p>
+ * The non-blocking counterpart of {@link IStorage}, the calling thread only enqueues the command and the
+ * returned stage is completed by the IO thread of the storage.
+ *
+ * @author lry
+ */
+public interface IAsyncStorage {
+
+    CompletionStage<Number[]> evalAsync(String script, List<String> keys, Object... args);
+
+    CompletionStage<Boolean> setAsync(String key, Object value);
+
+    /**
+     * The set with expire time
+     *
+     * @param key        key
+     * @param value      value
+     * @param expireTime the expire time(ms)
+     * @return true is success
+     */
+    CompletionStage<Boolean> setExAsync(String key, Object value, Long expireTime);
+
+    CompletionStage<Boolean> existsAsync(String key);
+
+    CompletionStage<Object> getAsync(String key);
+
+    CompletionStage<Boolean> removeAsync(String key);
+
+}
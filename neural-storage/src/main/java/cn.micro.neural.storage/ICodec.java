@@ -0,0 +1,41 @@
+package cn.micro.neural.storage;
+
+/**
+ * ICodec
+ * <p>
+ * The compact binary codec of a value type, registered into {@link CodecRegistry} with a type id.
+ * Each field is written with its tag, so the tags must never be reused, the new fields take new tags and
+ * the unknown tags are skipped when reading.
+ *
+ * @param <T> the value type
+ * @author lry
+ */
+public interface ICodec<T> {
+
+    /**
+     * The encode the value
+     *
+     * @param value  the value
+     * @param writer {@link BinaryWriter}
+     */
+    void encode(T value, BinaryWriter writer);
+
+    /**
+     * The decode the value
+     *
+     * @param reader {@link BinaryReader}
+     * @return the value
+     */
+    T decode(BinaryReader reader);
+
+    /**
+     * The value can be encoded by this codec, otherwise it is serialized by the default serializer
+     *
+     * @param value the value
+     * @return true is encodable
+     */
+    default boolean isEncodable(T value) {
+        return true;
+    }
+
+}
@@ -0,0 +1,26 @@
+package cn.micro.neural.storage;
+
+import java.util.List;
+
+/**
+ * ILocalScript
+ * <p>
+ * The native Java implementation of a Lua script for the {@link MemoryStorage}, with the same keys, arguments
+ * and result as the script. It is evaluated atomically on its keys, as Redis evaluates the script.
+ *
+ * @author lry
+ */
+@FunctionalInterface
+public interface ILocalScript {
+
+    /**
+     * The evaluate the script
+     *
+     * @param storage {@link MemoryStorage}
+     * @param keys    the keys of script
+     * @param args    the arguments of script
+     * @return the result of script
+     */
+    Number[] eval(MemoryStorage storage, List<String> keys, Object... args);
+
+}
@@ -0,0 +1,249 @@
+package cn.micro.neural.storage;
+
+import cn.neural.common.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The Memory Storage.
+ * <p>
+ * The in-process storage without network, for the load tests, the CI and the single node deployment:
+ * 1.The values are kept in a concurrent map with the TTL, expired lazily on access and swept periodically
+ * 2.The scripts are evaluated by their {@link ILocalScript} registered with the same script text
+ * 3.A script holds the striped locks of all its keys(in order), so it is atomic on its keys as in Redis
+ * <p>
+ * The stages of {@link IAsyncStorage} are completed by the calling thread.
+ *
+ * @author lry
+ */
+@Slf4j
+public class MemoryStorage implements IStorage, IAsyncStorage {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final long SWEEP_INTERVAL = 1000L;
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("neural-storage-expire", true));
+
+    private final Map<String, ILocalScript> localScripts;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final long startMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final long startNanos = System.nanoTime();
+    private final ScheduledFuture<?> sweeper;
+
+    /**
+     * The create memory storage
+     *
+     * @param localScripts Map<key=script, value=ILocalScript>, read on every evaluation
+     */
+    public MemoryStorage(Map<String, ILocalScript> localScripts) {
+        this.localScripts = localScripts;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.sweeper = SWEEPER.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Number[] eval(String script, List<String> keys, Object... args) {
+        ILocalScript localScript = localScripts.get(script);
+        if (null == localScript) {
+            throw new UnsupportedOperationException("The script has no local implementation");
+        }
+
+        // 按顺序获取所有key的分段锁，避免死锁
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        for (String key : keys) {
+            stripes[stripe(key)] = true;
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            if (stripes[i]) {
+                locks[i].lock();
+            }
+        }
+        try {
+            return localScript.eval(this, keys, args);
+        } finally {
+            for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+                if (stripes[i]) {
+                    locks[i].unlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean set(String key, Object value) {
+        entries.put(key, new Entry(value, 0L));
+        return true;
+    }
+
+    @Override
+    public boolean setEx(String key, Object value, Long expireTime) {
+        entries.put(key, new Entry(value, System.currentTimeMillis() + expireTime));
+        return true;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return null != getEntry(key);
+    }
+
+    @Override
+    public Object get(String key) {
+        Entry entry = getEntry(key);
+        return null == entry ? null : entry.value;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        Entry entry = entries.remove(key);
+        return null != entry && !entry.isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * The remaining time to live of the key, the same as the PTTL of Redis
+     *
+     * @param key the key
+     * @return ms, -1 is no expire, -2 is not exists
+     */
+    public long pttl(String key) {
+        Entry entry = getEntry(key);
+        if (null == entry) {
+            return -2L;
+        }
+
+        return entry.expireAt <= 0 ? -1L : Math.max(entry.expireAt - System.currentTimeMillis(), 0L);
+    }
+
+    /**
+     * The current time(micros) of the storage, the same as the TIME of Redis
+     *
+     * @return micros
+     */
+    public long nowMicros() {
+        return startMicros + (System.nanoTime() - startNanos) / 1000L;
+    }
+
+    /**
+     * The stop sweeping the expired keys
+     */
+    public void destroy() {
+        sweeper.cancel(false);
+    }
+
+    @Override
+    public CompletionStage<Number[]> evalAsync(String script, List<String> keys, Object... args) {
+        return complete(() -> eval(script, keys, args));
+    }
+
+    @Override
+    public CompletionStage<Boolean> setAsync(String key, Object value) {
+        return complete(() -> set(key, value));
+    }
+
+    @Override
+    public CompletionStage<Boolean> setExAsync(String key, Object value, Long expireTime) {
+        return complete(() -> setEx(key, value, expireTime));
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(String key) {
+        return complete(() -> exists(key));
+    }
+
+    @Override
+    public CompletionStage<Object> getAsync(String key) {
+        return complete(() -> get(key));
+    }
+
+    @Override
+    public CompletionStage<Boolean> removeAsync(String key) {
+        return complete(() -> remove(key));
+    }
+
+    /**
+     * The parse the argument of script, as the tonumber of Lua
+     *
+     * @param arg the argument
+     * @return number
+     */
+    public static double toNumber(Object arg) {
+        return arg instanceof Number ? ((Number) arg).doubleValue() : Double.parseDouble(String.valueOf(arg));
+    }
+
+    private Entry getEntry(String key) {
+        Entry entry = entries.get(key);
+        if (null != entry && entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry;
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            entries.forEach((key, entry) -> {
+                if (entry.isExpired(now)) {
+                    entries.remove(key, entry);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Sweep the expired keys exception", e);
+        }
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private static <T> CompletionStage<T> complete(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(supplier.get());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * The value with the expire time
+     *
+     * @author lry
+     */
+    private static class Entry {
+
+        private final Object value;
+        /**
+         * The expire time(ms), 0 is no expire
+         */
+        private final long expireAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt > 0 && expireAt <= now;
+        }
+
+    }
+
+}
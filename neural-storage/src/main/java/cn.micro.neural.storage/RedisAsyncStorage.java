@@ -0,0 +1,307 @@
+package cn.micro.neural.storage;
+
+import cn.neural.common.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The Redis Async Storage.
+ * <p>
+ * The commands of all calling threads are put into a bounded queue, and one daemon IO thread drains them
+ * in batches and sends each batch as one pipeline on one connection:
+ * 1.The calling thread never waits for the network, the stage is completed on the completion executor
+ * 2.The concurrent commands share the round trip of their batch, at most {@link #MAX_BATCH_SIZE} per batch
+ * 3.When the queue is full, the command is rejected by the exceptionally completed stage
+ * 4.The scripts are sent by EVALSHA, and by EVAL once when Redis answers NOSCRIPT
+ * <p>
+ * The dependent stages run on the completion executor(never on the IO thread), so a slow stage can't stall
+ * the pipeline. The IO thread and the owned completion executor are stopped by {@link #close()}.
+ *
+ * @author lry
+ */
+@Slf4j
+public class RedisAsyncStorage implements IAsyncStorage {
+
+    public static final int MAX_BATCH_SIZE = 128;
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+    public static final int DEFAULT_COMPLETION_THREADS = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+
+    private final RedisTemplate<String, ?> redisTemplate;
+    private final ScriptRegistry scriptRegistry;
+    private final RedisSerializer<Object> keySerializer;
+    private final RedisSerializer<Object> valueSerializer;
+    private final BlockingQueue<Command> commands;
+    private final Executor completionExecutor;
+    /**
+     * The completion executor created by this storage, shutdown when closed
+     */
+    private final ExecutorService ownedExecutor;
+    private final Thread ioThread;
+    private volatile boolean closed = false;
+
+    public RedisAsyncStorage(RedisTemplate<String, ?> redisTemplate, ScriptRegistry scriptRegistry) {
+        this(redisTemplate, scriptRegistry, new CodecRegistry());
+    }
+
+    public RedisAsyncStorage(RedisTemplate<String, ?> redisTemplate, ScriptRegistry scriptRegistry,
+                             CodecRegistry codecRegistry) {
+        this(redisTemplate, scriptRegistry, codecRegistry, DEFAULT_QUEUE_SIZE, null);
+    }
+
+    /**
+     * The create the async storage
+     *
+     * @param redisTemplate      {@link RedisTemplate}
+     * @param scriptRegistry     {@link ScriptRegistry}
+     * @param codecRegistry      {@link CodecRegistry}
+     * @param queueSize          the max queued commands
+     * @param completionExecutor the executor completing the stages, null is a bounded executor owned by the storage
+     */
+    @SuppressWarnings("unchecked")
+    public RedisAsyncStorage(RedisTemplate<String, ?> redisTemplate, ScriptRegistry scriptRegistry,
+                             CodecRegistry codecRegistry, int queueSize, Executor completionExecutor) {
+        this.redisTemplate = redisTemplate;
+        this.scriptRegistry = scriptRegistry;
+        this.keySerializer = (RedisSerializer<Object>) redisTemplate.getKeySerializer();
+        this.valueSerializer = new CodecRedisSerializer(
+                (RedisSerializer<Object>) redisTemplate.getValueSerializer(), codecRegistry);
+        this.commands = new ArrayBlockingQueue<>(queueSize);
+        if (null == completionExecutor) {
+            // 队列由命令队列限定，超出时由提交线程执行
+            this.ownedExecutor = new ThreadPoolExecutor(DEFAULT_COMPLETION_THREADS, DEFAULT_COMPLETION_THREADS,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize),
+                    new NamedThreadFactory("neural-storage-completion", true), new ThreadPoolExecutor.CallerRunsPolicy());
+            this.completionExecutor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.completionExecutor = completionExecutor;
+        }
+
+        this.ioThread = new NamedThreadFactory("neural-storage-pipeline", true).newThread(this::run);
+        ioThread.start();
+    }
+
+    /**
+     * The stop the IO thread and the owned completion executor, the queued commands are failed
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        this.closed = true;
+        ioThread.interrupt();
+        List<Command> pending = new ArrayList<>();
+        commands.drainTo(pending);
+        for (Command command : pending) {
+            command.failure.accept(new RejectedExecutionException("The storage pipeline is closed"));
+        }
+        if (null != ownedExecutor) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public CompletionStage<Number[]> evalAsync(String script, List<String> keys, Object... args) {
+        String sha1 = scriptRegistry.sha1(script);
+        byte[][] keysAndArgs = RedisStorage.keysAndArgs(redisTemplate.getKeySerializer(), keys, args);
+        CompletableFuture<Number[]> future = new CompletableFuture<>();
+        submit(connection -> connection.scriptingCommands().evalSha(
+                sha1, ReturnType.MULTI, keys.size(), keysAndArgs), RedisStorage::toNumbers).whenComplete((result, t) -> {
+            if (null == t) {
+                future.complete(result);
+            } else if (ScriptRegistry.isNoScript(t)) {
+                // Redis发生了主从切换或脚本被清空，使用EVAL执行的同时也重新加载了脚本
+                byte[] rawScript = script.getBytes(StandardCharsets.UTF_8);
+                submit(connection -> connection.scriptingCommands().eval(
+                        rawScript, ReturnType.MULTI, keys.size(), keysAndArgs), RedisStorage::toNumbers)
+                        .whenComplete((r, e) -> {
+                            if (null == e) {
+                                future.complete(r);
+                            } else {
+                                future.completeExceptionally(e);
+                            }
+                        });
+            } else {
+                future.completeExceptionally(t);
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public CompletionStage<Boolean> setAsync(String key, Object value) {
+        byte[] rawKey = keySerializer.serialize(key);
+        byte[] rawValue = valueSerializer.serialize(value);
+        return submit(connection -> connection.stringCommands().set(rawKey, rawValue), RedisAsyncStorage::toBoolean);
+    }
+
+    @Override
+    public CompletionStage<Boolean> setExAsync(String key, Object value, Long expireTime) {
+        byte[] rawKey = keySerializer.serialize(key);
+        byte[] rawValue = valueSerializer.serialize(value);
+        return submit(connection -> connection.stringCommands().pSetEx(rawKey, expireTime, rawValue),
+                RedisAsyncStorage::toBoolean);
+    }
+
+    @Override
+    public CompletionStage<Boolean> existsAsync(String key) {
+        byte[] rawKey = keySerializer.serialize(key);
+        return submit(connection -> connection.keyCommands().exists(rawKey), RedisAsyncStorage::toBoolean);
+    }
+
+    @Override
+    public CompletionStage<Object> getAsync(String key) {
+        byte[] rawKey = keySerializer.serialize(key);
+        return submit(connection -> connection.stringCommands().get(rawKey), Function.identity());
+    }
+
+    @Override
+    public CompletionStage<Boolean> removeAsync(String key) {
+        byte[] rawKey = keySerializer.serialize(key);
+        return submit(connection -> connection.keyCommands().del(rawKey), RedisAsyncStorage::toBoolean);
+    }
+
+    private <T> CompletionStage<T> submit(Consumer<RedisConnection> command, Function<Object, T> converter) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new RejectedExecutionException("The storage pipeline is closed"));
+            return future;
+        }
+
+        Command cmd = new Command(command, result -> complete(() -> {
+            try {
+                future.complete(converter.apply(result));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }), t -> complete(() -> future.completeExceptionally(t)));
+        if (!commands.offer(cmd)) {
+            future.completeExceptionally(new RejectedExecutionException("The storage pipeline queue is full"));
+        }
+
+        return future;
+    }
+
+    /**
+     * The complete the stage on the completion executor, so the dependent stages never run on the IO thread
+     *
+     * @param completion the completion of the stage
+     */
+    private void complete(Runnable completion) {
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // the completion executor is shutdown, the stage must still be completed
+            completion.run();
+        }
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (!closed) {
+            try {
+                batch.add(commands.take());
+                commands.drainTo(batch, MAX_BATCH_SIZE - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable t) {
+                log.error("The storage pipeline exception", t);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * The send the batch of commands as one pipeline, and complete each command by its own result
+     *
+     * @param batch the batch of commands
+     */
+    private void flush(List<Command> batch) {
+        List<Object> results;
+        try {
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Command command : batch) {
+                    command.command.accept(connection);
+                }
+                return null;
+            }, valueSerializer);
+        } catch (RedisPipelineException e) {
+            // 部分命令失败，其余命令的结果仍然有效
+            results = e.getPipelineResult();
+        } catch (Exception e) {
+            for (Command command : batch) {
+                command.failure.accept(e);
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Command command = batch.get(i);
+            if (i >= results.size()) {
+                command.failure.accept(new IllegalStateException("The pipeline result is missing"));
+            } else if (results.get(i) instanceof Throwable) {
+                command.failure.accept((Throwable) results.get(i));
+            } else {
+                command.success.accept(results.get(i));
+            }
+        }
+    }
+
+    private static Boolean toBoolean(Object result) {
+        if (result instanceof Number) {
+            return ((Number) result).longValue() > 0;
+        }
+
+        return Boolean.TRUE.equals(result);
+    }
+
+    /**
+     * The command of pipeline
+     *
+     * @author lry
+     */
+    private static class Command {
+
+        private final Consumer<RedisConnection> command;
+        private final Consumer<Object> success;
+        private final Consumer<Throwable> failure;
+
+        Command(Consumer<RedisConnection> command, Consumer<Object> success, Consumer<Throwable> failure) {
+            this.command = command;
+            this.success = success;
+            this.failure = failure;
+        }
+
+    }
+
+}
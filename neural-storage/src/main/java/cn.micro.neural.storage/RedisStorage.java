@@ -0,0 +1,174 @@
+package cn.micro.neural.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The Redis Storage.
+ * <p>
+ * The scripts are evaluated by EVALSHA with the SHA1 cached in {@link ScriptRegistry}, and reloaded when
+ * Redis answers NOSCRIPT. The keys are serialized by the key serializer of the {@link RedisTemplate},
+ * the script arguments are sent as plain strings for the tonumber of Lua. The values are encoded by
+ * the {@link CodecRedisSerializer}, the value without a registered codec is serialized by the RedisTemplate.
+ *
+ * @author lry
+ */
+@Slf4j
+public class RedisStorage implements IStorage {
+
+    private final RedisTemplate<String, Serializable> redisTemplate;
+    private final ScriptRegistry scriptRegistry;
+    private final RedisSerializer<Object> keySerializer;
+    private final RedisSerializer<Object> valueSerializer;
+
+    public RedisStorage(RedisTemplate<String, Serializable> redisTemplate, ScriptRegistry scriptRegistry) {
+        this(redisTemplate, scriptRegistry, new CodecRegistry());
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisStorage(RedisTemplate<String, Serializable> redisTemplate, ScriptRegistry scriptRegistry,
+                        CodecRegistry codecRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.scriptRegistry = scriptRegistry;
+        this.keySerializer = (RedisSerializer<Object>) redisTemplate.getKeySerializer();
+        this.valueSerializer = new CodecRedisSerializer(
+                (RedisSerializer<Object>) redisTemplate.getValueSerializer(), codecRegistry);
+        loadScripts();
+    }
+
+    public RedisTemplate<String, Serializable> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    /**
+     * The load the scripts into Redis, all registered scripts by default
+     *
+     * @param scripts the Lua scripts
+     */
+    public void loadScripts(String... scripts) {
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                if (scripts.length == 0) {
+                    scriptRegistry.loadAll(connection);
+                } else {
+                    for (String script : scripts) {
+                        scriptRegistry.load(connection, script);
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Load scripts exception", e);
+        }
+    }
+
+    @Override
+    public Number[] eval(String script, List<String> keys, Object... args) {
+        String sha1 = scriptRegistry.sha1(script);
+        byte[][] keysAndArgs = keysAndArgs(redisTemplate.getKeySerializer(), keys, args);
+        return redisTemplate.execute((RedisCallback<Number[]>) connection -> {
+            Object result;
+            try {
+                result = connection.scriptingCommands().evalSha(sha1, ReturnType.MULTI, keys.size(), keysAndArgs);
+            } catch (Exception e) {
+                if (!ScriptRegistry.isNoScript(e)) {
+                    throw e;
+                }
+
+                // Redis发生了主从切换或脚本被清空，重新加载后再执行
+                scriptRegistry.load(connection, script);
+                result = connection.scriptingCommands().evalSha(sha1, ReturnType.MULTI, keys.size(), keysAndArgs);
+            }
+
+            return toNumbers(result);
+        });
+    }
+
+    @Override
+    public boolean set(String key, Object value) {
+        byte[] rawKey = keySerializer.serialize(key);
+        byte[] rawValue = valueSerializer.serialize(value);
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands().set(rawKey, rawValue));
+        return true;
+    }
+
+    @Override
+    public boolean setEx(String key, Object value, Long expireTime) {
+        byte[] rawKey = keySerializer.serialize(key);
+        byte[] rawValue = valueSerializer.serialize(value);
+        redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.stringCommands().pSetEx(rawKey, expireTime, rawValue));
+        return true;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    }
+
+    @Override
+    public Object get(String key) {
+        byte[] rawKey = keySerializer.serialize(key);
+        byte[] rawValue = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+        return null == rawValue ? null : valueSerializer.deserialize(rawValue);
+    }
+
+    @Override
+    public boolean remove(String key) {
+        return Boolean.TRUE.equals(redisTemplate.delete(key));
+    }
+
+    /**
+     * The serialize the keys and the arguments of script
+     *
+     * @param keySerializer the key serializer
+     * @param keys          the keys
+     * @param args          the arguments
+     * @return the raw keys and arguments
+     */
+    @SuppressWarnings("unchecked")
+    static byte[][] keysAndArgs(RedisSerializer<?> keySerializer, List<String> keys, Object... args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = ((RedisSerializer<Object>) keySerializer).serialize(keys.get(i));
+        }
+        // 脚本参数按字符串传递，脚本中使用tonumber解析
+        for (int i = 0; i < args.length; i++) {
+            keysAndArgs[keys.size() + i] = String.valueOf(args[i]).getBytes(StandardCharsets.UTF_8);
+        }
+
+        return keysAndArgs;
+    }
+
+    /**
+     * The convert the multi bulk reply of script to numbers
+     *
+     * @param result the reply of script
+     * @return numbers, null is not a multi bulk reply
+     */
+    static Number[] toNumbers(Object result) {
+        if (!(result instanceof List)) {
+            return null;
+        }
+
+        List<?> list = (List<?>) result;
+        Number[] numbers = new Number[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            Object value = list.get(i);
+            if (value instanceof byte[]) {
+                value = new String((byte[]) value, StandardCharsets.UTF_8);
+            }
+            numbers[i] = value instanceof Number ? (Number) value : Double.valueOf(String.valueOf(value));
+        }
+
+        return numbers;
+    }
+
+}
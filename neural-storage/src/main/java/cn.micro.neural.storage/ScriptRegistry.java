@@ -0,0 +1,96 @@
+package cn.micro.neural.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.script.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The Script Registry.
+ * <p>
+ * The SHA1 of each Lua script is computed once and cached, so the hot path only sends the EVALSHA:
+ * 1.The scripts registered at startup are loaded(SCRIPT LOAD) into Redis once the connection is ready
+ * 2.The script evaluated but not registered is cached on its first evaluation
+ * 3.After a failover or a SCRIPT FLUSH, the NOSCRIPT error is caught, the script is reloaded and evaluated again
+ *
+ * @author lry
+ */
+@Slf4j
+public class ScriptRegistry {
+
+    private static final String NO_SCRIPT = "NOSCRIPT";
+
+    /**
+     * Map<key=script, value=SHA1>
+     */
+    private final ConcurrentMap<String, String> scripts = new ConcurrentHashMap<>();
+
+    /**
+     * The register the scripts
+     *
+     * @param scripts the Lua scripts
+     */
+    public void register(String... scripts) {
+        for (String script : scripts) {
+            sha1(script);
+        }
+    }
+
+    /**
+     * The get the cached SHA1 of script
+     *
+     * @param script the Lua script
+     * @return SHA1
+     */
+    public String sha1(String script) {
+        return scripts.computeIfAbsent(script, DigestUtils::sha1DigestAsHex);
+    }
+
+    /**
+     * The load all registered scripts into Redis
+     *
+     * @param connection {@link RedisConnection}
+     */
+    public void loadAll(RedisConnection connection) {
+        for (String script : scripts.keySet()) {
+            load(connection, script);
+        }
+    }
+
+    /**
+     * The load the script into Redis
+     *
+     * @param connection {@link RedisConnection}
+     * @param script     the Lua script
+     */
+    public void load(RedisConnection connection, String script) {
+        try {
+            connection.scriptingCommands().scriptLoad(script.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.error("Load script[" + sha1(script) + "] exception", e);
+        }
+    }
+
+    /**
+     * The exception is caused by the script missing in Redis
+     *
+     * @param t {@link Throwable}
+     * @return true is NOSCRIPT
+     */
+    public static boolean isNoScript(Throwable t) {
+        for (Throwable cause = t; null != cause; cause = cause.getCause()) {
+            if (null != cause.getMessage() && cause.getMessage().contains(NO_SCRIPT)) {
+                return true;
+            }
+            if (cause == cause.getCause()) {
+                break;
+            }
+        }
+
+        return false;
+    }
+
+}
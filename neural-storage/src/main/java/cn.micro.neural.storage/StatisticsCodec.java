@@ -0,0 +1,100 @@
+package cn.micro.neural.storage;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Statistics Codec.
+ * <p>
+ * The codec of the statistic map(Map&lt;String, Long&gt;), each entry is a repeated message{1:key, 2:value}.
+ * The map with the other keys or values is left to the default serializer.
+ *
+ * @author lry
+ */
+public class StatisticsCodec implements ICodec<Map<String, Long>> {
+
+    public static final int TYPE_ID = 1;
+    public static final StatisticsCodec INSTANCE = new StatisticsCodec();
+
+    private static final int ENTRY = 1;
+    private static final ICodec<Map.Entry<String, Long>> ENTRY_CODEC = new ICodec<Map.Entry<String, Long>>() {
+
+        private static final int KEY = 1;
+        private static final int VALUE = 2;
+
+        @Override
+        public void encode(Map.Entry<String, Long> value, BinaryWriter writer) {
+            writer.writeString(KEY, value.getKey()).writeLong(VALUE, value.getValue());
+        }
+
+        @Override
+        public Map.Entry<String, Long> decode(BinaryReader reader) {
+            String key = null;
+            Long value = null;
+            int fieldKey;
+            while ((fieldKey = reader.readKey()) != 0) {
+                switch (BinaryReader.tag(fieldKey)) {
+                    case KEY:
+                        key = reader.readString();
+                        break;
+                    case VALUE:
+                        value = reader.readLong();
+                        break;
+                    default:
+                        reader.skip(fieldKey);
+                }
+            }
+
+            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+        }
+
+    };
+
+    /**
+     * The register the codec of the statistic maps
+     *
+     * @param codecRegistry {@link CodecRegistry}
+     */
+    @SuppressWarnings("unchecked")
+    public static void register(CodecRegistry codecRegistry) {
+        codecRegistry.register(TYPE_ID, INSTANCE, (Class<Map<String, Long>>) (Class<?>) HashMap.class,
+                (Class<Map<String, Long>>) (Class<?>) LinkedHashMap.class);
+    }
+
+    @Override
+    public void encode(Map<String, Long> value, BinaryWriter writer) {
+        for (Map.Entry<String, Long> entry : value.entrySet()) {
+            writer.writeMessage(ENTRY, entry, ENTRY_CODEC);
+        }
+    }
+
+    @Override
+    public Map<String, Long> decode(BinaryReader reader) {
+        Map<String, Long> value = new LinkedHashMap<>();
+        int fieldKey;
+        while ((fieldKey = reader.readKey()) != 0) {
+            if (BinaryReader.tag(fieldKey) == ENTRY) {
+                Map.Entry<String, Long> entry = reader.readMessage(ENTRY_CODEC);
+                value.put(entry.getKey(), entry.getValue());
+            } else {
+                reader.skip(fieldKey);
+            }
+        }
+
+        return value;
+    }
+
+    @Override
+    public boolean isEncodable(Map<String, Long> value) {
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof Long)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}